@@ -0,0 +1,32 @@
+package com.wildeats.onlinecanteen.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Serves API responses as CBOR to clients sending Accept: application/cbor
+ *
+ * CBOR is a binary encoding of the same documents the JSON responses carry,
+ * for the mobile client on cellular data. It starts from the application's
+ * Jackson settings, but writes dates as epoch milliseconds and leaves out null
+ * fields, since a number takes far fewer bytes than an ISO date string. JSON
+ * stays the default when the Accept header does not ask for CBOR.
+ */
+@Configuration
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder
+                .factory(new CBORFactory())
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .build());
+    }
+}
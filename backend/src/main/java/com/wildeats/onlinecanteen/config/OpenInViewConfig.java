@@ -0,0 +1,36 @@
+package com.wildeats.onlinecanteen.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Keeps an EntityManager open for the whole request, except while placing an
+ * order
+ *
+ * Replaces Spring Boot's open-in-view (disabled in application.properties).
+ * The open EntityManager holds the first connection it uses until the request
+ * ends. A checkout request waits on the {@link
+ * com.wildeats.onlinecanteen.service.CheckoutDispatcher} while a worker runs
+ * the checkout on a connection of its own, so with open-in-view every waiting
+ * checkout would tie up a second connection of the small pool. POST
+ * /api/orders builds its response inside the checkout transaction and needs
+ * no lazy loading afterwards.
+ */
+@Configuration
+public class OpenInViewConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor).excludePathPatterns("/api/orders");
+    }
+}
@@ -0,0 +1,12 @@
+package com.wildeats.onlinecanteen.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the background maintenance jobs declared with @Scheduled
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,31 @@
+package com.wildeats.onlinecanteen.config;
+
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.wildeats.onlinecanteen.storage.DocumentStore;
+import com.wildeats.onlinecanteen.storage.LocalDocumentStore;
+
+/**
+ * The stores that keep uploaded shop documents and images, chosen with
+ * storage.documents.backend and storage.images.backend
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.documents.backend", havingValue = "local", matchIfMissing = true)
+    public DocumentStore documentStore(@Value("${storage.documents.local-root:./data/documents}") String root) {
+        return new LocalDocumentStore(Path.of(root));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.images.backend", havingValue = "local", matchIfMissing = true)
+    public DocumentStore imageStore(@Value("${storage.images.local-root:./data/images}") String root) {
+        return new LocalDocumentStore(Path.of(root));
+    }
+}
@@ -1,9 +1,9 @@
 package com.wildeats.onlinecanteen.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
@@ -11,12 +11,16 @@ import org.springframework.web.bind.annotation.*;
 import com.wildeats.onlinecanteen.entity.UserEntity;
 import com.wildeats.onlinecanteen.entity.RoleEntity;
 import com.wildeats.onlinecanteen.security.JwtUtil;
+import com.wildeats.onlinecanteen.security.TokenRevocationStore;
+import com.wildeats.onlinecanteen.service.PasswordHashingService;
+import com.wildeats.onlinecanteen.service.RefreshTokenService;
 import com.wildeats.onlinecanteen.service.UserService;
 import com.wildeats.onlinecanteen.repository.RoleRepository;
 import com.wildeats.onlinecanteen.dto.LoginRequest;
 import com.wildeats.onlinecanteen.dto.RegisterRequest;
 import com.wildeats.onlinecanteen.dto.AuthResponse;
 
+import io.jsonwebtoken.Claims;
 import jakarta.validation.Valid;
 import java.util.Date;
 import java.util.List;
@@ -44,7 +48,13 @@ public class AuthController {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHasher;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocations;
 
     /**
      * Global validation exception handler
@@ -60,55 +70,71 @@ public class AuthController {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
     }
 
+    /**
+     * Helper method for requests shed because password hashing is busy
+     */
+    private ResponseEntity<?> busy(PasswordHashingService.BusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    /**
+     * Helper method to add a new access token and refresh token to a response
+     */
+    private void putTokens(Map<String, Object> response, UserEntity user, String primaryRole) {
+        response.put("token", jwtUtil.generateToken(user.getUserId(), user.getEmail(), primaryRole));
+        response.put("refreshToken", refreshTokenService.issue(user.getUserId()));
+        response.put("expiresIn", jwtUtil.getAccessTokenValiditySeconds());
+    }
+
+    /**
+     * Helper method to determine the primary role of a user (Priority: ADMIN >
+     * SELLER > CUSTOMER)
+     */
+    private static String primaryRoleOf(UserEntity user) {
+        if (user.isAdmin()) {
+            return "ADMIN";
+        } else if (user.isSeller()) {
+            return "SELLER";
+        } else if (user.isCustomer()) {
+            return "CUSTOMER";
+        } else if (!user.getRoles().isEmpty()) {
+            return user.getRoles().iterator().next().getRoleName();
+        }
+        return "CUSTOMER";
+    }
+
     /**
      * User login
      * 
      * @param loginRequest Email and password
-     * @return JWT token and user details
+     * @return JWT token, refresh token and user details
      */
     @PostMapping("/login")
     public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest) {
         logger.info("Login attempt for email: {}", loginRequest.getEmail());
 
         try {
-            UserEntity user = userService.findByEmail(loginRequest.getEmail());
+            // Unknown emails and wrong passwords look the same, also in timing
+            UserEntity user = userService.authenticate(loginRequest.getEmail(), loginRequest.getPassword());
 
             if (user == null) {
-                logger.warn("Login failed - user not found: {}", loginRequest.getEmail());
+                logger.warn("Login failed - invalid credentials for: {}", loginRequest.getEmail());
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("message", "Invalid email or password"));
             }
 
-            // Check password using BCrypt
-            if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
-                logger.warn("Login failed - incorrect password for: {}", loginRequest.getEmail());
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("message", "Invalid email or password"));
-            }
-
-            // Determine primary role (Priority: ADMIN > SELLER > CUSTOMER)
-            String primaryRole = "CUSTOMER"; // Default role
-            if (user.isAdmin()) {
-                primaryRole = "ADMIN";
-            } else if (user.isSeller()) {
-                primaryRole = "SELLER";
-            } else if (user.isCustomer()) {
-                primaryRole = "CUSTOMER";
-            } else if (!user.getRoles().isEmpty()) {
-                primaryRole = user.getRoles().iterator().next().getRoleName();
-            }
+            String primaryRole = primaryRoleOf(user);
 
             // Get all role names
             List<String> roleNames = user.getRoles().stream()
                     .map(RoleEntity::getRoleName)
                     .collect(Collectors.toList());
 
-            // Generate JWT token
-            String token = jwtUtil.generateToken(user.getUserId(), user.getEmail(), primaryRole);
-
-            // Create response with user details and token
+            // Create response with user details and tokens
             Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
+            putTokens(response, user, primaryRole);
             response.put("user", new AuthResponse(
                     user.getUserId(),
                     user.getFirstName(),
@@ -119,6 +145,8 @@ public class AuthController {
 
             logger.info("Login successful for: {} with role: {}", loginRequest.getEmail(), primaryRole);
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingService.BusyException e) {
+            return busy(e);
         } catch (Exception e) {
             logger.error("Login error for {}: {}", loginRequest.getEmail(), e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -132,7 +160,7 @@ public class AuthController {
      * Sellers receive SELLER role when admin approves their shop application
      * 
      * @param registerRequest FirstName, LastName, Email, and Password
-     * @return JWT token and user details
+     * @return JWT token, refresh token and user details
      */
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest registerRequest) {
@@ -157,7 +185,7 @@ public class AuthController {
             newUser.setFirstName(registerRequest.getFirstName());
             newUser.setLastName(registerRequest.getLastName());
             newUser.setEmail(registerRequest.getEmail());
-            newUser.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
+            newUser.setPassword(passwordHasher.hash(registerRequest.getPassword()));
             newUser.setCreatedAt(new Date());
 
             // EVERYONE registers as CUSTOMER by default
@@ -183,15 +211,9 @@ public class AuthController {
                     .map(RoleEntity::getRoleName)
                     .collect(Collectors.toList());
 
-            // Generate JWT token
-            String token = jwtUtil.generateToken(
-                    savedUser.getUserId(),
-                    savedUser.getEmail(),
-                    primaryRole);
-
-            // Create response with user details and token
+            // Create response with user details and tokens
             Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
+            putTokens(response, savedUser, primaryRole);
             response.put("user", new AuthResponse(
                     savedUser.getUserId(),
                     savedUser.getFirstName(),
@@ -201,6 +223,8 @@ public class AuthController {
                     roleNames));
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (PasswordHashingService.BusyException e) {
+            return busy(e);
         } catch (Exception e) {
             logger.error("Registration error for {}: {}", registerRequest.getEmail(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -221,13 +245,37 @@ public class AuthController {
 
     /**
      * User logout
-     * Note: With JWT, logout is handled client-side by removing the token
+     * Revokes the access token sent in the Authorization header and the
+     * refresh token (with every token refreshed from the same login)
      * 
+     * @param authorization Optional Authorization header with the access token
+     * @param request       Optional map containing the refresh token
      * @return Success message
      */
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
+    public ResponseEntity<?> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) Map<String, String> request) {
         logger.info("Logout request received");
+
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            try {
+                Claims claims = jwtUtil.extractAllClaims(authorization.substring(7));
+                tokenRevocations.revokeToken(claims.getId(), claims.get("userId", Long.class),
+                        claims.getExpiration());
+            } catch (Exception e) {
+                logger.debug("Access token not revoked at logout: {}", e.getMessage());
+            }
+        }
+
+        String refreshToken = request != null ? request.get("refreshToken") : null;
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            try {
+                refreshTokenService.revoke(refreshToken);
+            } catch (Exception e) {
+                logger.error("Refresh token revocation error: {}", e.getMessage());
+            }
+        }
         return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
     }
 
@@ -252,6 +300,12 @@ public class AuthController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("message", "Invalid or expired token"));
             }
+            Claims claims = jwtUtil.extractAllClaims(token);
+            if (tokenRevocations.isRevoked(claims.getId(), claims.get("userId", Long.class),
+                    claims.getIssuedAt())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("message", "Token has been revoked"));
+            }
 
             // Extract user details from token
             Long userId = jwtUtil.extractUserId(token);
@@ -290,49 +344,46 @@ public class AuthController {
     }
 
     /**
-     * Refresh token (get a new token with extended expiration)
+     * Refresh token (exchange a refresh token for a new access token and the
+     * next refresh token)
+     * Each refresh token can be used once; using it again revokes every token
+     * refreshed from the same login
      * 
-     * @param request Map containing the old token
-     * @return New JWT token
+     * @param request Map containing the refresh token
+     * @return New JWT token and refresh token
      */
     @PostMapping("/refresh-token")
     public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> request) {
-        String oldToken = request.get("token");
+        String refreshToken = request.get("refreshToken");
 
-        if (oldToken == null || oldToken.trim().isEmpty()) {
+        if (refreshToken == null || refreshToken.trim().isEmpty()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("message", "Token is required"));
+                    .body(Map.of("message", "Refresh token is required"));
         }
 
         try {
-            // Validate old token
-            if (!jwtUtil.validateToken(oldToken)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("message", "Invalid or expired token"));
-            }
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
 
-            // Extract user details from old token
-            Long userId = jwtUtil.extractUserId(oldToken);
-            String email = jwtUtil.extractUsername(oldToken);
-            String role = jwtUtil.extractRole(oldToken);
-
-            // Verify user still exists
-            UserEntity user = userService.getUserById(userId);
+            // Verify user still exists; roles may have changed since the login
+            UserEntity user = userService.getUserById(rotation.getUserId());
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("message", "User not found"));
             }
 
-            // Generate new token
-            String newToken = jwtUtil.generateToken(userId, email, role);
-
             return ResponseEntity.ok(Map.of(
-                    "token", newToken,
+                    "token", jwtUtil.generateToken(user.getUserId(), user.getEmail(), primaryRoleOf(user)),
+                    "refreshToken", rotation.getRefreshToken(),
+                    "expiresIn", jwtUtil.getAccessTokenValiditySeconds(),
                     "message", "Token refreshed successfully"));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Token refresh rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             logger.error("Token refresh error: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("message", "Token refresh failed"));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,172 @@
+package com.wildeats.onlinecanteen.controller;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.wildeats.onlinecanteen.dto.ImageResponse;
+import com.wildeats.onlinecanteen.entity.ImageAssetEntity;
+import com.wildeats.onlinecanteen.service.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads images and serves their resized variants
+ *
+ * Shop, menu item and profile image URLs point at a variant, e.g.
+ * /api/images/{id}/card. Variant URLs never change content, so they are
+ * public, cacheable for a year and safe to put behind a CDN; with
+ * storage.images.public-base-url set, the returned URLs point at the CDN.
+ */
+@RestController
+@RequestMapping("/api/images")
+@CrossOrigin(origins = { "http://localhost:3000", "http://127.0.0.1:3000" })
+public class ImageController {
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+
+    private static final Pattern IMAGE_ID = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private ImageService imageService;
+
+    @Value("${storage.images.public-base-url:}")
+    private String publicBaseUrl;
+
+    /**
+     * Helper method to get current user ID from JWT token
+     */
+    private Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof Long) {
+            return (Long) authentication.getPrincipal();
+        }
+        return null;
+    }
+
+    private ImageResponse toResponse(ImageAssetEntity image) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (ImageService.Variant variant : ImageService.Variant.values()) {
+            urls.put(variant.getKey(), publicBaseUrl + "/api/images/" + image.getImageHash() + "/" + variant.getKey());
+        }
+        return new ImageResponse(image.getImageHash(), image.getStatus().name(), image.getWidth(), image.getHeight(),
+                urls);
+    }
+
+    /**
+     * Upload an image (any signed-in user)
+     * 
+     * The variants are made in the background: the response is 202 while
+     * they are being made, 200 if the same image was uploaded before.
+     * 
+     * @param file The image (JPEG, PNG, GIF or BMP)
+     * @return The image with the URLs of its variants
+     */
+    @PostMapping
+    public ResponseEntity<?> uploadImage(@RequestParam("file") MultipartFile file) {
+        Long userId = getCurrentUserId();
+        logger.info("POST request to upload an image from user {}", userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        try {
+            ImageAssetEntity image = imageService.upload(userId, file);
+            HttpStatus status = image.getStatus() == ImageAssetEntity.Status.READY ? HttpStatus.OK
+                    : HttpStatus.ACCEPTED;
+            return ResponseEntity.status(status).body(toResponse(image));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("Error uploading image from user {}: {}", userId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Failed to upload image"));
+        }
+    }
+
+    /**
+     * Get an image and the URLs of its variants (PUBLIC)
+     * 
+     * @param id The image ID
+     * @return The image
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getImage(@PathVariable String id) {
+        ImageAssetEntity image = IMAGE_ID.matcher(id).matches() ? imageService.getImage(id) : null;
+        if (image == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Image not found"));
+        }
+        return ResponseEntity.ok(toResponse(image));
+    }
+
+    /**
+     * Get a variant of an image as JPEG (PUBLIC)
+     * 
+     * Cacheable by anyone for a year; revalidates with If-None-Match. Gets 503
+     * with Retry-After while the variants are being made.
+     * 
+     * @param id      The image ID
+     * @param variant thumbnail, card or full
+     * @return The JPEG
+     */
+    @GetMapping("/{id}/{variant}")
+    public ResponseEntity<?> getImageVariant(@PathVariable String id, @PathVariable String variant,
+            WebRequest request, HttpServletResponse response) {
+        ImageService.Variant size;
+        try {
+            size = ImageService.Variant.fromKey(variant);
+        } catch (IllegalArgumentException e) {
+            size = null;
+        }
+        if (size == null || !IMAGE_ID.matcher(id).matches()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Image not found"));
+        }
+
+        try {
+            ImageService.CachedVariant image = imageService.getVariant(id, size);
+            if (image == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("message", "Image not found"));
+            }
+
+            response.setHeader(HttpHeaders.CACHE_CONTROL,
+                    CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue());
+            if (request.checkNotModified("\"" + image.getContentHash() + "\"")) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .body(image.getContent());
+        } catch (ImageService.NotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .cacheControl(CacheControl.noStore())
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("Error reading image {} ({}): {}", id, variant, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Failed to read image"));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.wildeats.onlinecanteen.controller;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wildeats.onlinecanteen.security.SigningKeyProvider;
+
+/**
+ * Publishes the public keys that verify access tokens, so that other
+ * instances and services can check tokens themselves
+ */
+@RestController
+public class JwksController {
+
+    @Autowired
+    private SigningKeyProvider signingKeys;
+
+    @Value("${security.jwt.jwks-max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    /**
+     * Get the JSON Web Key Set (RFC 7517) of the signing keys. Clients look
+     * keys up by the kid header of a token and fetch the set again when a
+     * token names a key they do not have yet.
+     * 
+     * @return The key set; empty when tokens are signed with secret keys
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<?> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic())
+                .body(Map.of("keys", signingKeys.getPublicJwks()));
+    }
+}
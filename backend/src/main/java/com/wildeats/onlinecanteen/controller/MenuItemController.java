@@ -3,11 +3,16 @@ package com.wildeats.onlinecanteen.controller;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -15,6 +20,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import com.wildeats.onlinecanteen.dto.MenuItemResponse;
 import com.wildeats.onlinecanteen.entity.MenuItemEntity;
@@ -41,6 +47,14 @@ public class MenuItemController {
     @Autowired
     private UserService userService;
 
+    // Clients revalidate on every use (a cheap 304), shared caches such as a
+    // CDN may serve a response for a few seconds
+    @Value("${http.cache.max-age-seconds:0}")
+    private long cacheMaxAge;
+
+    @Value("${http.cache.shared-max-age-seconds:10}")
+    private long cacheSharedMaxAge;
+
     /**
      * Global validation exception handler
      */
@@ -66,30 +80,74 @@ public class MenuItemController {
         return null;
     }
 
+    /**
+     * Answer a conditional GET from an ETag before anything is loaded. The
+     * ETag is read before the body, so a body is at most newer than its tag,
+     * which only costs the next revalidation a full response. The body may
+     * be JSON or CBOR, so caches have to keep them apart by Accept header.
+     * 
+     * @return true if a 304 was sent and the handler should return null
+     */
+    private boolean checkNotModified(String eTag, WebRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(cacheMaxAge, TimeUnit.SECONDS)
+                .sMaxAge(cacheSharedMaxAge, TimeUnit.SECONDS).cachePublic().mustRevalidate().getHeaderValue());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return request.checkNotModified(eTag);
+    }
+
     /**
      * Get all menu items for a specific shop (PUBLIC)
      * 
+     * Supports conditional GET: a matching If-None-Match gets 304.
+     * 
      * @param shopId The ID of the shop
      * @return List of menu items for the shop
      */
     @GetMapping("/shop/{shopId}")
-    public ResponseEntity<?> getMenuItemsByShop(@PathVariable Long shopId) {
+    public ResponseEntity<?> getMenuItemsByShop(@PathVariable Long shopId, WebRequest request,
+            HttpServletResponse response) {
         logger.info("GET request to fetch menu items for shop with ID: {}", shopId);
 
-        ShopEntity shop = shopService.getShopById(shopId);
-        if (shop == null || shop.getStatus() != ShopEntity.Status.ACTIVE) {
+        // Only active shops have a menu ETag, so this also checks the shop
+        String eTag = shopService.getMenuETag(shopId);
+        if (eTag == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "Shop not found or inactive"));
         }
+        if (checkNotModified(eTag, request, response)) {
+            return null;
+        }
 
-        List<MenuItemEntity> menuItems = menuItemService.getAvailableMenuItemsByShopId(shopId);
+        List<MenuItemResponse> menuItemDTOs = menuItemService.getAvailableMenuItemResponses(shopId);
+        return ResponseEntity.ok(menuItemDTOs);
+    }
 
-        // Convert to DTOs
-        List<MenuItemResponse> menuItemDTOs = menuItems.stream()
-                .map(MenuItemResponse::new)
-                .collect(Collectors.toList());
+    /**
+     * Get the changes to a shop's menu since a revision (PUBLIC)
+     * 
+     * Clients start with since=0, which returns the whole menu, and then pass
+     * the revision of the last response to get only what changed.
+     * 
+     * @param shopId The ID of the shop
+     * @param since  The revision the client has
+     * @return Items changed and deleted since then, and the current revision
+     */
+    @GetMapping("/shop/{shopId}/changes")
+    public ResponseEntity<?> getMenuChanges(@PathVariable Long shopId,
+            @RequestParam(defaultValue = "0") long since) {
+        logger.info("GET request to fetch menu changes for shop with ID: {} since revision {}", shopId, since);
 
-        return ResponseEntity.ok(menuItemDTOs);
+        if (shopService.getMenuETag(shopId) == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Shop not found or inactive"));
+        }
+
+        try {
+            return ResponseEntity.ok(menuItemService.getMenuChanges(shopId, since));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
     }
 
     /**
@@ -338,6 +396,61 @@ public class MenuItemController {
         }
     }
 
+    /**
+     * Set the daily stock of a menu item (SELLER only)
+     * 
+     * @param id         The menu item ID
+     * @param dailyStock Portions per day; omit to stop tracking stock
+     * @param hot        Whether the item is a flash special whose stock is
+     *                   reserved in memory
+     * @return The updated menu item
+     */
+    @PutMapping("/{id}/stock")
+    public ResponseEntity<?> updateMenuItemStock(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer dailyStock,
+            @RequestParam(defaultValue = "false") boolean hot) {
+        Long userId = getCurrentUserId();
+        logger.info("PUT request to update daily stock for menu item {} to {} from user {}",
+                id, dailyStock, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        UserEntity user = userService.getUserById(userId);
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "User not found"));
+        }
+
+        if (!user.isSeller()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Only sellers can update menu item stock"));
+        }
+
+        MenuItemEntity existingItem = menuItemService.getMenuItemById(id);
+        if (existingItem == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Menu item not found"));
+        }
+
+        Long shopId = existingItem.getShop().getShopId();
+        if (!shopService.isShopOwnedByUser(userId, shopId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only update menu items in your own shops"));
+        }
+
+        try {
+            MenuItemEntity updatedMenuItem = menuItemService.updateDailyStock(id, dailyStock, hot);
+            return ResponseEntity.ok(new MenuItemResponse(updatedMenuItem));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
     /**
      * Delete a menu item (SELLER only)
      * 
@@ -1,18 +1,29 @@
 package com.wildeats.onlinecanteen.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.FieldError;
@@ -20,14 +31,22 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
 import com.wildeats.onlinecanteen.entity.OrderEntity;
+import com.wildeats.onlinecanteen.entity.OrderItemEntity;
 import com.wildeats.onlinecanteen.entity.UserEntity;
+import com.wildeats.onlinecanteen.service.CheckoutDispatcher;
+import com.wildeats.onlinecanteen.service.IdempotencyService;
+import com.wildeats.onlinecanteen.service.OrderEtaService;
 import com.wildeats.onlinecanteen.service.OrderService;
 import com.wildeats.onlinecanteen.service.ShopService;
 import com.wildeats.onlinecanteen.service.UserService;
+import com.wildeats.onlinecanteen.dto.BulkOrderStatusResult;
+import com.wildeats.onlinecanteen.dto.BulkUpdateOrderStatusRequest;
 import com.wildeats.onlinecanteen.dto.CreateOrderRequest;
 import com.wildeats.onlinecanteen.dto.UpdateOrderStatusRequest;
 import com.wildeats.onlinecanteen.dto.OrderResponse;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +65,18 @@ public class OrderController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private OrderEtaService orderEtaService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
     /**
      * Global validation exception handler
      */
@@ -71,6 +102,86 @@ public class OrderController {
         return null;
     }
 
+    /**
+     * Helper method to convert an order to a DTO including its estimated ready
+     * time
+     */
+    private OrderResponse toResponse(OrderEntity order) {
+        OrderResponse response = new OrderResponse(order);
+        response.setEstimatedReadyTime(orderEtaService.estimateReadyTime(order));
+        return response;
+    }
+
+    /**
+     * Write order histories to the response as one array, batch by batch as
+     * they are read. Neither the orders nor the serialized body are held in
+     * memory as a whole, and the response is compressed on the fly when the
+     * client accepts it. The array is JSON, or CBOR if the client prefers
+     * application/cbor.
+     * 
+     * @param request  The request, for its Accept header
+     * @param response The response to write to
+     * @param sources  Order sources, written one after the other
+     * @return Number of orders written
+     */
+    private int writeOrders(HttpServletRequest request, HttpServletResponse response, List<OrderSource> sources)
+            throws IOException {
+        ObjectMapper mapper = objectMapper;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (prefersCbor(request)) {
+            mapper = cborConverter.getObjectMapper();
+            response.setContentType(MediaType.APPLICATION_CBOR_VALUE);
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        int[] count = new int[1];
+        try (SequenceWriter writer = mapper.writer().writeValuesAsArray(response.getOutputStream())) {
+            for (OrderSource source : sources) {
+                source.forEachBatch(batch -> {
+                    try {
+                        for (OrderEntity order : batch) {
+                            writer.write(toResponse(order));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0] += batch.size();
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    // Whether the Accept header rates CBOR at least as high as JSON; wildcards
+    // and unparseable headers get JSON
+    private static boolean prefersCbor(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return false;
+        }
+        double cbor = 0;
+        double json = 0;
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                    cbor = Math.max(cbor, type.getQualityValue());
+                } else if (type.equalsTypeAndSubtype(MediaType.APPLICATION_JSON)) {
+                    json = Math.max(json, type.getQualityValue());
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return cbor > 0 && cbor >= json;
+    }
+
+    // Orders read batch by batch, see OrderService.forEachOrderBatchOfCustomer
+    private interface OrderSource {
+        void forEachBatch(Consumer<List<OrderEntity>> consumer);
+    }
+
     /**
      * Get all orders placed by the current user as a customer
      * (Orders they made at any shop, regardless of their seller role)
@@ -78,7 +189,7 @@ public class OrderController {
      * @return List of orders placed by user (as DTOs)
      */
     @GetMapping("/my-orders")
-    public ResponseEntity<?> getMyOrders() {
+    public ResponseEntity<?> getMyOrders(HttpServletRequest request, HttpServletResponse response) throws IOException {
         Long userId = getCurrentUserId();
         logger.info("GET request to fetch orders placed by user with ID: {}", userId);
 
@@ -94,15 +205,10 @@ public class OrderController {
         }
 
         // Get orders placed by this user as a customer
-        List<OrderEntity> orders = orderService.getOrdersByCustomerId(userId);
-        logger.info("Found {} orders placed by user", orders.size());
-
-        // Convert to DTOs
-        List<OrderResponse> orderDTOs = orders.stream()
-                .map(OrderResponse::new)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(orderDTOs);
+        int count = writeOrders(request, response, List.of(
+                consumer -> orderService.forEachOrderBatchOfCustomer(userId, consumer)));
+        logger.info("Sent {} orders placed by user", count);
+        return null;
     }
 
     /**
@@ -112,7 +218,7 @@ public class OrderController {
      * @return List of orders for user's shops (as DTOs)
      */
     @GetMapping("/my-shop-orders")
-    public ResponseEntity<?> getMyShopOrders() {
+    public ResponseEntity<?> getMyShopOrders(HttpServletRequest request, HttpServletResponse response) throws IOException {
         Long userId = getCurrentUserId();
         logger.info("GET request to fetch shop orders for user with ID: {}", userId);
 
@@ -140,19 +246,13 @@ public class OrderController {
             return ResponseEntity.ok(List.of());
         }
 
-        List<OrderEntity> orders = new java.util.ArrayList<>();
-        for (Long shopId : shopIds) {
-            orders.addAll(orderService.getOrdersByShopId(shopId));
-        }
-
-        logger.info("Found {} orders for user's shops", orders.size());
-
-        // Convert to DTOs
-        List<OrderResponse> orderDTOs = orders.stream()
-                .map(OrderResponse::new)
-                .collect(Collectors.toList());
+        List<OrderSource> sources = shopIds.stream()
+                .<OrderSource>map(shopId -> consumer -> orderService.forEachOrderBatchOfShop(shopId, consumer))
+                .toList();
+        int count = writeOrders(request, response, sources);
 
-        return ResponseEntity.ok(orderDTOs);
+        logger.info("Sent {} orders for user's shops", count);
+        return null;
     }
 
     /**
@@ -162,7 +262,8 @@ public class OrderController {
      * @return List of orders for the shop (as DTOs)
      */
     @GetMapping("/shop/{shopId}")
-    public ResponseEntity<?> getOrdersByShop(@PathVariable Long shopId) {
+    public ResponseEntity<?> getOrdersByShop(@PathVariable Long shopId, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         Long userId = getCurrentUserId();
         logger.info("GET request to fetch orders for shop with ID: {} from user with ID: {}", shopId, userId);
 
@@ -182,14 +283,8 @@ public class OrderController {
                     .body(Map.of("message", "You can only view orders for your own shops"));
         }
 
-        List<OrderEntity> orders = orderService.getOrdersByShopId(shopId);
-
-        // Convert to DTOs
-        List<OrderResponse> orderDTOs = orders.stream()
-                .map(OrderResponse::new)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(orderDTOs);
+        writeOrders(request, response, List.of(consumer -> orderService.forEachOrderBatchOfShop(shopId, consumer)));
+        return null;
     }
 
     /**
@@ -223,7 +318,7 @@ public class OrderController {
 
         // Convert to DTOs
         List<OrderResponse> orderDTOs = orders.stream()
-                .map(OrderResponse::new)
+                .map(this::toResponse)
                 .collect(Collectors.toList());
 
         return ResponseEntity.ok(orderDTOs);
@@ -266,7 +361,7 @@ public class OrderController {
 
             // Convert to DTOs
             List<OrderResponse> orderDTOs = orders.stream()
-                    .map(OrderResponse::new)
+                    .map(this::toResponse)
                     .collect(Collectors.toList());
 
             return ResponseEntity.ok(orderDTOs);
@@ -304,7 +399,7 @@ public class OrderController {
 
             // Convert to DTOs
             List<OrderResponse> orderDTOs = orders.stream()
-                    .map(OrderResponse::new)
+                    .map(this::toResponse)
                     .collect(Collectors.toList());
 
             return ResponseEntity.ok(orderDTOs);
@@ -361,18 +456,60 @@ public class OrderController {
         }
 
         // Convert to DTO
-        OrderResponse orderDTO = new OrderResponse(order);
+        OrderResponse orderDTO = toResponse(order);
         return ResponseEntity.ok(orderDTO);
     }
 
+    /**
+     * Get the estimated ready time of an order
+     * Answered from the in-memory queue model, without scanning the shop's queue
+     * 
+     * @param id The order ID
+     * @return Queue position and estimated ready time
+     */
+    @GetMapping("/{id}/eta")
+    public ResponseEntity<?> getOrderEta(@PathVariable Long id) {
+        Long userId = getCurrentUserId();
+        logger.info("GET request for ETA of order with ID: {} from user with ID: {}", id, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        OrderEntity order = orderService.getOrderById(id);
+        if (order == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Order not found"));
+        }
+
+        boolean isCustomer = order.getCustomer() != null && order.getCustomer().getUserId().equals(userId);
+        if (!isCustomer && !shopService.isShopOwnedByUser(userId, order.getShop().getShopId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You do not have access to this order"));
+        }
+
+        Map<String, Object> eta = new HashMap<>();
+        eta.put("orderId", order.getOrderId());
+        eta.put("queueNumber", order.getQueueNumber());
+        eta.put("status", order.getStatus().toString());
+        eta.put("ordersAhead", orderEtaService.countOrdersAhead(order));
+        eta.put("estimatedReadyTime", orderEtaService.estimateReadyTime(order));
+        return ResponseEntity.ok(eta);
+    }
+
     /**
      * Create a new order (CUSTOMER only)
      * 
-     * @param request The order request containing shop ID, order items, and notes
+     * @param request        The order request containing shop ID, order items, and
+     *                       notes
+     * @param idempotencyKey Optional client-generated key; retries with the same
+     *                       key return the original response
      * @return The created order (as DTO)
      */
     @PostMapping
-    public ResponseEntity<?> createOrder(@Valid @RequestBody CreateOrderRequest request) {
+    public ResponseEntity<?> createOrder(@Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         Long userId = getCurrentUserId();
         logger.info("POST request to create a new order for user with ID: {}", userId);
 
@@ -392,22 +529,64 @@ public class OrderController {
                     .body(Map.of("message", "Only customers can create orders"));
         }
 
+        if (idempotencyKey == null) {
+            return placeOrder(userId, request, null);
+        }
+
+        // Retries with the same key get the stored response instead of a new order
         try {
-            OrderEntity order = orderService.createOrder(
+            return idempotencyService.execute(userId, idempotencyKey, fingerprint(request), OrderResponse.class,
+                    completion -> placeOrder(userId, request, completion));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // The response is built inside the checkout transaction, so under an
+    // idempotency key it is stored together with the order
+    private ResponseEntity<?> placeOrder(Long userId, CreateOrderRequest request,
+            IdempotencyService.Completion completion) {
+        try {
+            OrderResponse[] orderDTO = new OrderResponse[1];
+            orderService.createOrder(
                     userId,
                     request.getShopId(),
                     request.getOrderItems(),
-                    request.getNotes());
-
-            // Convert to DTO
-            OrderResponse orderDTO = new OrderResponse(order);
-            return ResponseEntity.status(HttpStatus.CREATED).body(orderDTO);
+                    request.getNotes(),
+                    request.getPickupTime(),
+                    order -> {
+                        // Convert to DTO
+                        orderDTO[0] = toResponse(order);
+                        if (completion != null) {
+                            completion.complete(HttpStatus.CREATED, orderDTO[0]);
+                        }
+                    });
+            return ResponseEntity.status(HttpStatus.CREATED).body(orderDTO[0]);
+        } catch (CheckoutDispatcher.BusyException e) {
+            // Not stored under the idempotency key, so the client can retry with it
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
         } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("message", e.getMessage()));
         }
     }
 
+    // Canonical form of an order request, used to detect a key reused for a different order
+    private static String fingerprint(CreateOrderRequest request) {
+        StringBuilder sb = new StringBuilder("shop=").append(request.getShopId())
+                .append(";notes=").append(request.getNotes())
+                .append(";pickup=").append(request.getPickupTime() != null ? request.getPickupTime().getTime() : null)
+                .append(";items=");
+        for (OrderItemEntity item : request.getOrderItems()) {
+            sb.append(item.getMenuItem() != null ? item.getMenuItem().getItemId() : null)
+                    .append('x').append(item.getQuantity()).append(',');
+        }
+        return sb.toString();
+    }
+
     /**
      * Update the status of an order
      * 
@@ -471,7 +650,7 @@ public class OrderController {
             OrderEntity updatedOrder = orderService.updateOrderStatus(id, status);
 
             // Convert to DTO
-            OrderResponse orderDTO = new OrderResponse(updatedOrder);
+            OrderResponse orderDTO = toResponse(updatedOrder);
             return ResponseEntity.ok(orderDTO);
         } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -535,7 +714,7 @@ public class OrderController {
             OrderEntity cancelledOrder = orderService.cancelOrder(id, reason);
 
             // Convert to DTO
-            OrderResponse orderDTO = new OrderResponse(cancelledOrder);
+            OrderResponse orderDTO = toResponse(cancelledOrder);
             return ResponseEntity.ok(orderDTO);
         } catch (IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -543,6 +722,62 @@ public class OrderController {
         }
     }
 
+    /**
+     * Update the status of several orders of a shop at once (SELLER only)
+     * 
+     * The seller is authorized once for the whole batch. Orders that cannot be
+     * moved to the requested status are reported in the results instead of
+     * failing the request.
+     * 
+     * @param shopId  The ID of the shop
+     * @param request The orders and their target statuses
+     * @return The result for each order
+     */
+    @PutMapping("/shop/{shopId}/status")
+    public ResponseEntity<?> bulkUpdateOrderStatus(
+            @PathVariable Long shopId,
+            @Valid @RequestBody BulkUpdateOrderStatusRequest request) {
+        Long userId = getCurrentUserId();
+        logger.info("PUT request to bulk update {} orders of shop {} from user with ID: {}",
+                request.getUpdates().size(), shopId, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        UserEntity user = userService.getUserById(userId);
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "User not found"));
+        }
+
+        if (!user.isSeller() || !shopService.isShopOwnedByUser(userId, shopId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only update orders for your own shops"));
+        }
+
+        try {
+            Map<Long, OrderEntity.Status> updates = new LinkedHashMap<>();
+            for (BulkUpdateOrderStatusRequest.Item item : request.getUpdates()) {
+                OrderEntity.Status status = OrderEntity.Status.valueOf(item.getStatus().toUpperCase());
+                if (updates.put(item.getOrderId(), status) != null) {
+                    throw new IllegalArgumentException("Order " + item.getOrderId() + " is listed more than once");
+                }
+            }
+
+            List<BulkOrderStatusResult> results = orderService.updateOrderStatuses(shopId, updates);
+            long updated = results.stream().filter(BulkOrderStatusResult::isUpdated).count();
+            return ResponseEntity.ok(Map.of(
+                    "shopId", shopId,
+                    "updated", updated,
+                    "results", results));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
     /**
      * Get revenue for a shop within a date range (SELLER only)
      * 
@@ -583,4 +818,79 @@ public class OrderController {
                 "endDate", endDate,
                 "revenue", revenue));
     }
-}
\ No newline at end of file
+
+    /**
+     * Get archived orders placed by the current user
+     * 
+     * Orders older than the archive horizon are no longer returned by
+     * /my-orders and have to be requested explicitly with a date range
+     * 
+     * @param startDate The first day of the range
+     * @param endDate   The last day of the range (inclusive)
+     * @return List of archived orders (as DTOs)
+     */
+    @GetMapping("/archive/my-orders")
+    public ResponseEntity<?> getMyArchivedOrders(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        Long userId = getCurrentUserId();
+        logger.info("GET request to fetch archived orders of user {} between {} and {}", userId, startDate, endDate);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        try {
+            return ResponseEntity.ok(orderService.getArchivedOrdersByCustomerId(userId, startDate, endOfDay(endDate)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get archived orders for a shop (SELLER only)
+     * 
+     * @param shopId    The ID of the shop
+     * @param startDate The first day of the range
+     * @param endDate   The last day of the range (inclusive)
+     * @return List of archived orders (as DTOs)
+     */
+    @GetMapping("/shop/{shopId}/archive")
+    public ResponseEntity<?> getArchivedOrdersByShop(
+            @PathVariable Long shopId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        Long userId = getCurrentUserId();
+        logger.info("GET request to fetch archived orders of shop {} between {} and {} from user {}",
+                shopId, startDate, endDate, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        UserEntity user = userService.getUserById(userId);
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "User not found"));
+        }
+
+        if (!user.isSeller() || !shopService.isShopOwnedByUser(userId, shopId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only view orders for your own shops"));
+        }
+
+        try {
+            return ResponseEntity.ok(orderService.getArchivedOrdersByShopId(shopId, startDate, endOfDay(endDate)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    private static Date endOfDay(Date day) {
+        return day == null ? null : new Date(day.getTime() + TimeUnit.DAYS.toMillis(1) - 1);
+    }
+}
@@ -1,14 +1,27 @@
 package com.wildeats.onlinecanteen.controller;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -17,12 +30,18 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.wildeats.onlinecanteen.dto.ShopResponse;
 import com.wildeats.onlinecanteen.dto.CreateShopRequest;
+import com.wildeats.onlinecanteen.dto.ShopDocumentResponse;
+import com.wildeats.onlinecanteen.entity.ShopDocumentEntity;
 import com.wildeats.onlinecanteen.entity.ShopEntity;
 import com.wildeats.onlinecanteen.entity.UserEntity;
+import com.wildeats.onlinecanteen.service.PickupSlotService;
+import com.wildeats.onlinecanteen.service.ShopDocumentService;
 import com.wildeats.onlinecanteen.service.ShopService;
 import com.wildeats.onlinecanteen.service.UserService;
 import org.slf4j.Logger;
@@ -34,12 +53,32 @@ import org.slf4j.LoggerFactory;
 public class ShopController {
     private static final Logger logger = LoggerFactory.getLogger(ShopController.class);
 
+    // Request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ShopService shopService;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private PickupSlotService pickupSlotService;
+
+    @Autowired
+    private ShopDocumentService shopDocumentService;
+
+    // Clients revalidate on every use (a cheap 304), shared caches such as a
+    // CDN may serve a response for a few seconds
+    @Value("${http.cache.max-age-seconds:0}")
+    private long cacheMaxAge;
+
+    @Value("${http.cache.shared-max-age-seconds:10}")
+    private long cacheSharedMaxAge;
+
     /**
      * Global validation exception handler
      */
@@ -65,21 +104,42 @@ public class ShopController {
         return null;
     }
 
+    private boolean isCurrentUserAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+
+    /**
+     * Answer a conditional GET from an ETag before anything is loaded. The
+     * ETag is read before the body, so a body is at most newer than its tag,
+     * which only costs the next revalidation a full response. The body may
+     * be JSON or CBOR, so caches have to keep them apart by Accept header.
+     * 
+     * @return true if a 304 was sent and the handler should return null
+     */
+    private boolean checkNotModified(String eTag, WebRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(cacheMaxAge, TimeUnit.SECONDS)
+                .sMaxAge(cacheSharedMaxAge, TimeUnit.SECONDS).cachePublic().mustRevalidate().getHeaderValue());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return request.checkNotModified(eTag);
+    }
+
     /**
      * Get all operational shops (PUBLIC - no auth required)
      * 
+     * Supports conditional GET: a matching If-None-Match gets 304.
+     * 
      * @return List of all operational shops (ACTIVE and open)
      */
     @GetMapping
-    public ResponseEntity<?> getAllShops() {
+    public ResponseEntity<?> getAllShops(WebRequest request, HttpServletResponse response) {
         logger.info("GET request to fetch all operational shops");
-        List<ShopEntity> shops = shopService.getAllOperationalShops();
-
-        // Convert to DTOs
-        List<ShopResponse> shopDTOs = shops.stream()
-                .map(ShopResponse::new)
-                .collect(Collectors.toList());
+        if (checkNotModified(shopService.getOperationalShopsETag(), request, response)) {
+            return null;
+        }
 
+        List<ShopResponse> shopDTOs = shopService.getOperationalShopResponses();
         return ResponseEntity.ok(shopDTOs);
     }
 
@@ -112,13 +172,20 @@ public class ShopController {
     /**
      * Get a shop by its ID (PUBLIC - no auth required)
      * 
+     * Supports conditional GET: a matching If-None-Match gets 304.
+     * 
      * @param id The shop ID
      * @return The shop if found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getShopById(@PathVariable Long id) {
+    public ResponseEntity<?> getShopById(@PathVariable Long id, WebRequest request, HttpServletResponse response) {
         logger.info("GET request to fetch shop with ID: {}", id);
 
+        String eTag = shopService.getShopETag(id);
+        if (eTag != null && checkNotModified(eTag, request, response)) {
+            return null;
+        }
+
         ShopEntity shop = shopService.getShopById(id);
         if (shop != null && shop.getStatus() == ShopEntity.Status.ACTIVE) {
             // Convert to DTO
@@ -269,6 +336,8 @@ public class ShopController {
         shop.setOwner(existingShop.getOwner());
         shop.setStatus(existingShop.getStatus());
         shop.setCreatedAt(existingShop.getCreatedAt());
+        shop.setPickupSlotMinutes(existingShop.getPickupSlotMinutes());
+        shop.setPickupSlotCapacity(existingShop.getPickupSlotCapacity());
 
         if (shop.getShopName() == null) {
             shop.setShopName(existingShop.getShopName());
@@ -317,9 +386,13 @@ public class ShopController {
     /**
      * Upload shop documents (business permits, ID, etc.)
      * 
+     * Files are streamed to the document store; uploading a file the shop
+     * already has returns the existing document. Gets 413 if the files do not
+     * fit in the shop's quota.
+     * 
      * @param shopId The ID of the shop
      * @param files  The files to upload
-     * @return Success message
+     * @return The uploaded documents
      */
     @PostMapping("/{shopId}/documents")
     @PreAuthorize("hasRole('SELLER') or hasRole('CUSTOMER')")
@@ -342,23 +415,19 @@ public class ShopController {
         }
 
         try {
-            // TODO: Implement file storage logic
-            // For now, just return success
-            List<String> uploadedFiles = new ArrayList<>();
-
-            for (MultipartFile file : files) {
-                if (!file.isEmpty()) {
-                    // In production, save to cloud storage (AWS S3, Google Cloud Storage, etc.)
-                    // For now, just log the file name
-                    uploadedFiles.add(file.getOriginalFilename());
-                    logger.info("Received file: {}", file.getOriginalFilename());
-                }
-            }
+            List<ShopDocumentEntity> documents = shopDocumentService.upload(shopId, userId, files);
 
             return ResponseEntity.ok(Map.of(
                     "message", "Documents uploaded successfully",
-                    "files", uploadedFiles));
+                    "files", documents.stream().map(ShopDocumentEntity::getFileName).collect(Collectors.toList()),
+                    "documents", documents.stream().map(ShopDocumentResponse::new).collect(Collectors.toList())));
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (ShopDocumentService.QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error uploading documents for shop {}: {}", shopId, e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -366,6 +435,175 @@ public class ShopController {
         }
     }
 
+    /**
+     * List the documents of a shop (shop owner or ADMIN)
+     * 
+     * @param shopId The ID of the shop
+     * @return The documents, newest first, and the bytes used of the quota
+     */
+    @GetMapping("/{shopId}/documents")
+    @PreAuthorize("hasRole('SELLER') or hasRole('CUSTOMER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getShopDocuments(@PathVariable Long shopId) {
+        Long userId = getCurrentUserId();
+        logger.info("GET request for documents of shop {} from user {}", shopId, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        if (!isCurrentUserAdmin() && !shopService.isShopOwnedByUser(userId, shopId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only view documents of your own shops"));
+        }
+
+        List<ShopDocumentResponse> documents = shopDocumentService.getDocuments(shopId).stream()
+                .map(ShopDocumentResponse::new)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(Map.of(
+                "documents", documents,
+                "usedBytes", shopDocumentService.getUsedBytes(shopId),
+                "quotaBytes", shopDocumentService.getShopQuotaBytes()));
+    }
+
+    /**
+     * Download a document of a shop (shop owner or ADMIN)
+     * 
+     * Supports a single byte range (206, or 416 if it is outside the
+     * document) with If-Range, and If-None-Match against the content hash.
+     * Documents on local disk are handed to Tomcat's sendfile, which copies
+     * them to the socket with FileChannel.transferTo; otherwise the content
+     * is copied to the response from a file channel.
+     * 
+     * @param shopId     The ID of the shop
+     * @param documentId The ID of the document
+     * @return null once the content has been written, or an error
+     */
+    @GetMapping("/{shopId}/documents/{documentId}")
+    @PreAuthorize("hasRole('SELLER') or hasRole('CUSTOMER') or hasRole('ADMIN')")
+    public ResponseEntity<?> downloadShopDocument(
+            @PathVariable Long shopId,
+            @PathVariable Long documentId,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        Long userId = getCurrentUserId();
+        logger.info("GET request for document {} of shop {} from user {}", documentId, shopId, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        if (!isCurrentUserAdmin() && !shopService.isShopOwnedByUser(userId, shopId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only view documents of your own shops"));
+        }
+
+        ShopDocumentEntity document = shopDocumentService.getDocument(shopId, documentId);
+        if (document == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Document not found"));
+        }
+
+        // A document's content never changes
+        String eTag = "\"" + document.getContentHash() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable().getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(eTag)) {
+            return null;
+        }
+
+        long size = document.getSizeBytes();
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                // A malformed Range header is ignored
+                ranges = List.of();
+            }
+            // Several ranges are rare enough to answer with the whole document
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+                if (start >= size || end < start) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(document.getContentType());
+        response.setContentLengthLong(length);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(document.getFileName(), StandardCharsets.UTF_8).build().toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if ("HEAD".equals(request.getMethod())) {
+            return null;
+        }
+
+        try {
+            Path file = shopDocumentService.getLocalFile(document);
+            if (file != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // Tomcat sends the file after the handler returns
+                request.setAttribute(SENDFILE_FILENAME, file.toFile().getCanonicalPath());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+            } else {
+                shopDocumentService.transferTo(document, start, length,
+                        Channels.newChannel(response.getOutputStream()));
+            }
+            return null;
+        } catch (IOException e) {
+            logger.warn("Could not send document {} of shop {}: {}", documentId, shopId, e.getMessage());
+            if (response.isCommitted()) {
+                return null;
+            }
+            response.reset();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Failed to read document"));
+        }
+    }
+
+    /**
+     * Delete a document of a shop and free its space in the quota (shop
+     * owner)
+     * 
+     * @param shopId     The ID of the shop
+     * @param documentId The ID of the document
+     * @return Success message
+     */
+    @DeleteMapping("/{shopId}/documents/{documentId}")
+    @PreAuthorize("hasRole('SELLER') or hasRole('CUSTOMER')")
+    public ResponseEntity<?> deleteShopDocument(@PathVariable Long shopId, @PathVariable Long documentId) {
+        Long userId = getCurrentUserId();
+        logger.info("DELETE request for document {} of shop {} from user {}", documentId, shopId, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        if (!shopService.isShopOwnedByUser(userId, shopId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only delete documents of your own shops"));
+        }
+
+        if (!shopDocumentService.deleteDocument(shopId, documentId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Document not found"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Document deleted successfully"));
+    }
+
     /**
      * Toggle shop open/closed status (SELLER only)
      * 
@@ -407,6 +645,71 @@ public class ShopController {
         }
     }
 
+    /**
+     * Get the upcoming pickup slots of a shop (PUBLIC - no auth required)
+     * 
+     * @param id   The shop ID
+     * @param date The day, defaults to today
+     * @return The slots that have not started yet, with their remaining capacity
+     */
+    @GetMapping("/{id}/pickup-slots")
+    public ResponseEntity<?> getPickupSlots(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        logger.info("GET request for pickup slots of shop with ID: {} on {}", id, date);
+
+        ShopEntity shop = shopService.getShopById(id);
+        if (shop == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Shop not found"));
+        }
+
+        return ResponseEntity.ok(pickupSlotService.getSlots(shop, date != null ? date : LocalDate.now()));
+    }
+
+    /**
+     * Configure the pickup slots of a shop (SELLER only)
+     * 
+     * @param id          The shop ID
+     * @param slotMinutes Length of a slot in minutes; omit to stop taking
+     *                    pre-orders
+     * @param capacity    Orders accepted per slot
+     * @return The updated shop
+     */
+    @PutMapping("/{id}/pickup-slots")
+    @PreAuthorize("hasRole('SELLER')")
+    public ResponseEntity<?> updatePickupSlots(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer slotMinutes,
+            @RequestParam(required = false) Integer capacity) {
+        Long userId = getCurrentUserId();
+        logger.info("PUT request to update pickup slots for shop with ID: {} from user with ID: {}", id, userId);
+
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "User not authenticated"));
+        }
+
+        ShopEntity existingShop = shopService.getShopById(id);
+        if (existingShop == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Shop not found"));
+        }
+
+        if (!shopService.isShopOwnedByUser(userId, id)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "You can only configure pickup slots for your own shops"));
+        }
+
+        try {
+            ShopEntity updatedShop = shopService.updatePickupSlots(id, slotMinutes, capacity);
+            return ResponseEntity.ok(new ShopResponse(updatedShop));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
     /**
      * Soft delete a shop (SELLER only)
      * 
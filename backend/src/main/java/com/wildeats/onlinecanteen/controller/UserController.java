@@ -1,5 +1,7 @@
 package com.wildeats.onlinecanteen.controller;
 
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,6 +10,9 @@ import java.util.stream.Collectors;
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -20,8 +25,11 @@ import org.springframework.web.bind.annotation.*;
 import com.wildeats.onlinecanteen.dto.AuthResponse;
 import com.wildeats.onlinecanteen.dto.ChangePasswordRequest;
 import com.wildeats.onlinecanteen.dto.UpdateProfileRequest;
+import com.wildeats.onlinecanteen.dto.UserPageResponse;
 import com.wildeats.onlinecanteen.entity.RoleEntity;
 import com.wildeats.onlinecanteen.entity.UserEntity;
+import com.wildeats.onlinecanteen.repository.UserDirectoryRepository.UserFilter;
+import com.wildeats.onlinecanteen.service.PasswordHashingService;
 import com.wildeats.onlinecanteen.service.UserService;
 
 import org.slf4j.Logger;
@@ -36,6 +44,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Value("${users.admin.page-size:50}")
+    private int defaultPageSize;
+
     /**
      * Global validation exception handler
      */
@@ -50,6 +61,16 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
     }
 
+    /**
+     * Password checks and changes shed because password hashing is busy
+     */
+    @ExceptionHandler(PasswordHashingService.BusyException.class)
+    public ResponseEntity<?> handlePasswordHashingBusy(PasswordHashingService.BusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", ex.getMessage()));
+    }
+
     /**
      * Helper method to get current user ID from JWT token
      */
@@ -280,33 +301,8 @@ public class UserController {
     public ResponseEntity<?> getAllUsers() {
         logger.info("Admin fetching all users");
 
-        List<UserEntity> users = userService.getAllUsers();
-
-        // Map to response objects without passwords
-        List<AuthResponse> responses = users.stream().map(user -> {
-            // Determine primary role
-            String primaryRole = "CUSTOMER";
-            if (user.isAdmin()) {
-                primaryRole = "ADMIN";
-            } else if (user.isSeller()) {
-                primaryRole = "SELLER";
-            } else if (user.isCustomer()) {
-                primaryRole = "CUSTOMER";
-            }
-
-            // Get all roles
-            List<String> allRoles = user.getRoles().stream()
-                    .map(RoleEntity::getRoleName)
-                    .collect(Collectors.toList());
-
-            return new AuthResponse(
-                    user.getUserId(),
-                    user.getFirstName(),
-                    user.getLastName(),
-                    user.getEmail(),
-                    primaryRole,
-                    allRoles);
-        }).toList();
+        // Summary columns and roles only, without passwords
+        List<AuthResponse> responses = userService.getAllUserSummaries();
 
         return ResponseEntity.ok(responses);
     }
@@ -321,21 +317,7 @@ public class UserController {
     public ResponseEntity<?> getAllCustomers() {
         logger.info("Admin fetching all customers");
 
-        List<UserEntity> customers = userService.getAllCustomers();
-
-        List<AuthResponse> responses = customers.stream().map(user -> {
-            List<String> allRoles = user.getRoles().stream()
-                    .map(RoleEntity::getRoleName)
-                    .collect(Collectors.toList());
-
-            return new AuthResponse(
-                    user.getUserId(),
-                    user.getFirstName(),
-                    user.getLastName(),
-                    user.getEmail(),
-                    "CUSTOMER",
-                    allRoles);
-        }).toList();
+        List<AuthResponse> responses = userService.getCustomerSummaries();
 
         return ResponseEntity.ok(responses);
     }
@@ -350,23 +332,54 @@ public class UserController {
     public ResponseEntity<?> getAllSellers() {
         logger.info("Admin fetching all sellers");
 
-        List<UserEntity> sellers = userService.getAllSellers();
+        List<AuthResponse> responses = userService.getSellerSummaries();
 
-        List<AuthResponse> responses = sellers.stream().map(user -> {
-            List<String> allRoles = user.getRoles().stream()
-                    .map(RoleEntity::getRoleName)
-                    .collect(Collectors.toList());
+        return ResponseEntity.ok(responses);
+    }
 
-            return new AuthResponse(
-                    user.getUserId(),
-                    user.getFirstName(),
-                    user.getLastName(),
-                    user.getEmail(),
-                    "SELLER",
-                    allRoles);
-        }).toList();
+    /**
+     * Get a page of users (ADMIN only)
+     * 
+     * Users are ordered by ID. Pass the nextCursor of a page as after to get
+     * the next one; the first page also carries the number of matching users.
+     * 
+     * @param role        Only users with this role
+     * @param createdFrom Only users created on or after this day
+     * @param createdTo   Only users created on or before this day
+     * @param emailPrefix Only users whose email starts with this
+     * @param after       The nextCursor of the previous page
+     * @param size        Page size
+     * @return A page of users
+     */
+    @GetMapping("/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getUsersPage(
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date createdTo,
+            @RequestParam(required = false) String emailPrefix,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size) {
+        logger.info("Admin fetching users (role: {}, after: {})", role, after);
+
+        // createdTo is inclusive, the filter takes the start of the next day
+        Date createdBefore = createdTo != null
+                ? Date.from(createdTo.toInstant().plus(1, ChronoUnit.DAYS))
+                : null;
+        UserFilter filter = new UserFilter(
+                role != null && !role.isBlank() ? role.trim().toUpperCase() : null,
+                createdFrom,
+                createdBefore,
+                emailPrefix != null && !emailPrefix.isBlank() ? emailPrefix.trim() : null);
 
-        return ResponseEntity.ok(responses);
+        try {
+            UserPageResponse page = userService.getUserPage(filter, after,
+                    size != null ? size : defaultPageSize);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
     }
 
     /**
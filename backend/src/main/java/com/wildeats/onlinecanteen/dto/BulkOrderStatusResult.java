@@ -0,0 +1,57 @@
+package com.wildeats.onlinecanteen.dto;
+
+/**
+ * Outcome of one order in a bulk status update
+ */
+public class BulkOrderStatusResult {
+    private Long orderId;
+    private boolean updated;
+    private String status;
+    private String message;
+
+    public BulkOrderStatusResult() {
+    }
+
+    public BulkOrderStatusResult(Long orderId, boolean updated, String status, String message) {
+        this.orderId = orderId;
+        this.updated = updated;
+        this.status = status;
+        this.message = message;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public boolean isUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(boolean updated) {
+        this.updated = updated;
+    }
+
+    /**
+     * @return The order's status after the update attempt, or null if the order
+     *         was not found in the shop
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,68 @@
+package com.wildeats.onlinecanteen.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Request to change the status of several orders of one shop at once
+ */
+public class BulkUpdateOrderStatusRequest {
+
+    @Valid
+    @NotEmpty(message = "At least one order update is required")
+    private List<Item> updates;
+
+    public BulkUpdateOrderStatusRequest() {
+    }
+
+    public BulkUpdateOrderStatusRequest(List<Item> updates) {
+        this.updates = updates;
+    }
+
+    public List<Item> getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(List<Item> updates) {
+        this.updates = updates;
+    }
+
+    /**
+     * A single order and the status it should move to
+     */
+    public static class Item {
+        @NotNull(message = "Order ID is required")
+        private Long orderId;
+
+        @NotBlank(message = "Status is required")
+        private String status;
+
+        public Item() {
+        }
+
+        public Item(Long orderId, String status) {
+            this.orderId = orderId;
+            this.status = status;
+        }
+
+        public Long getOrderId() {
+            return orderId;
+        }
+
+        public void setOrderId(Long orderId) {
+            this.orderId = orderId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+    }
+}
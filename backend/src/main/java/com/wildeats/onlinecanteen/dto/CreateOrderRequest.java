@@ -1,10 +1,12 @@
 package com.wildeats.onlinecanteen.dto;
 
+import java.util.Date;
 import java.util.List;
 import com.wildeats.onlinecanteen.entity.OrderItemEntity;
 
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
 
@@ -28,6 +30,10 @@ public class CreateOrderRequest {
     @Size(max = 500, message = "Notes cannot exceed 500 characters")
     private String notes;
 
+    // Optional pickup time for a pre-order; omitted for an order placed for now
+    @Future(message = "Pickup time must be in the future")
+    private Date pickupTime;
+
     public CreateOrderRequest() {
     }
 
@@ -60,4 +66,12 @@ public class CreateOrderRequest {
     public void setNotes(String notes) {
         this.notes = notes;
     }
-}
\ No newline at end of file
+
+    public Date getPickupTime() {
+        return pickupTime;
+    }
+
+    public void setPickupTime(Date pickupTime) {
+        this.pickupTime = pickupTime;
+    }
+}
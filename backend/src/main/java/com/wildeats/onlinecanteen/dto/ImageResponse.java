@@ -0,0 +1,68 @@
+package com.wildeats.onlinecanteen.dto;
+
+import java.util.Map;
+
+/**
+ * An uploaded image and the URLs of its variants (thumbnail, card, full)
+ *
+ * The URLs are known as soon as the image is uploaded; they answer 503 with
+ * Retry-After until the status is READY.
+ */
+public class ImageResponse {
+    private String id;
+    private String status;
+    private int width;
+    private int height;
+    private Map<String, String> urls;
+
+    public ImageResponse() {
+    }
+
+    public ImageResponse(String id, String status, int width, int height, Map<String, String> urls) {
+        this.id = id;
+        this.status = status;
+        this.width = width;
+        this.height = height;
+        this.urls = urls;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public Map<String, String> getUrls() {
+        return urls;
+    }
+
+    public void setUrls(Map<String, String> urls) {
+        this.urls = urls;
+    }
+}
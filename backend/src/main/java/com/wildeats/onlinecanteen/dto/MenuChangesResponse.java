@@ -0,0 +1,58 @@
+package com.wildeats.onlinecanteen.dto;
+
+import java.util.List;
+
+/**
+ * DTO for incremental menu sync
+ * Items changed and deleted since the client's revision, and the revision to
+ * ask from next time
+ */
+public class MenuChangesResponse {
+    private Long shopId;
+    private long revision;
+    private List<MenuItemResponse> changed;
+    private List<Long> deleted;
+
+    public MenuChangesResponse() {
+    }
+
+    public MenuChangesResponse(Long shopId, long revision, List<MenuItemResponse> changed, List<Long> deleted) {
+        this.shopId = shopId;
+        this.revision = revision;
+        this.changed = changed;
+        this.deleted = deleted;
+    }
+
+    // Getters and Setters
+    public Long getShopId() {
+        return shopId;
+    }
+
+    public void setShopId(Long shopId) {
+        this.shopId = shopId;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public List<MenuItemResponse> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<MenuItemResponse> changed) {
+        this.changed = changed;
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted;
+    }
+}
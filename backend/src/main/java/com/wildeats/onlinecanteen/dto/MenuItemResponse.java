@@ -2,6 +2,7 @@ package com.wildeats.onlinecanteen.dto;
 
 import com.wildeats.onlinecanteen.entity.MenuItemEntity;
 import java.math.BigDecimal;
+import java.util.Date;
 
 /**
  * DTO for Menu Item responses
@@ -16,6 +17,10 @@ public class MenuItemResponse {
     private String itemImageURL;
     private BigDecimal price;
     private Boolean isAvailable;
+    private Integer dailyStock;
+    private Integer stockRemaining;
+    private boolean hotStock;
+    private Date updatedAt;
 
     public MenuItemResponse() {
     }
@@ -37,6 +42,31 @@ public class MenuItemResponse {
         this.itemImageURL = menuItem.getItemImageURL();
         this.price = menuItem.getPrice();
         this.isAvailable = menuItem.getIsAvailable();
+        this.dailyStock = menuItem.getDailyStock();
+        this.stockRemaining = menuItem.getStockRemaining();
+        this.hotStock = menuItem.isHotStock();
+        this.updatedAt = menuItem.getUpdatedAt();
+    }
+
+    /**
+     * Constructor for JPQL constructor expressions, which select only these
+     * columns instead of loading the item, its shop and the shop's owner
+     */
+    public MenuItemResponse(Long itemId, Long shopId, String shopName, String itemName, String itemDescr,
+            String itemImageURL, BigDecimal price, Boolean isAvailable, Integer dailyStock, Integer stockRemaining,
+            boolean hotStock, Date updatedAt) {
+        this.itemId = itemId;
+        this.shopId = shopId;
+        this.shopName = shopName;
+        this.itemName = itemName;
+        this.itemDescr = itemDescr;
+        this.itemImageURL = itemImageURL;
+        this.price = price;
+        this.isAvailable = isAvailable;
+        this.dailyStock = dailyStock;
+        this.stockRemaining = stockRemaining;
+        this.hotStock = hotStock;
+        this.updatedAt = updatedAt;
     }
 
     // Getters and Setters
@@ -103,4 +133,36 @@ public class MenuItemResponse {
     public void setIsAvailable(Boolean isAvailable) {
         this.isAvailable = isAvailable;
     }
-}
\ No newline at end of file
+
+    public Integer getDailyStock() {
+        return dailyStock;
+    }
+
+    public void setDailyStock(Integer dailyStock) {
+        this.dailyStock = dailyStock;
+    }
+
+    public Integer getStockRemaining() {
+        return stockRemaining;
+    }
+
+    public void setStockRemaining(Integer stockRemaining) {
+        this.stockRemaining = stockRemaining;
+    }
+
+    public boolean isHotStock() {
+        return hotStock;
+    }
+
+    public void setHotStock(boolean hotStock) {
+        this.hotStock = hotStock;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
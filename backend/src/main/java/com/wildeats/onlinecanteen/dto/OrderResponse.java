@@ -24,6 +24,8 @@ public class OrderResponse {
     private Date orderDateTime;
     private Date cancelledAt;
     private String cancellationReason;
+    private Date pickupTime;
+    private Date estimatedReadyTime;
     private List<OrderItemResponse> orderItems;
 
     public OrderResponse() {
@@ -56,6 +58,7 @@ public class OrderResponse {
         this.orderDateTime = order.getOrderDateTime();
         this.cancelledAt = order.getCancelledAt();
         this.cancellationReason = order.getCancellationReason();
+        this.pickupTime = order.getPickupTime();
 
         // Order items
         if (order.getOrderItems() != null) {
@@ -170,6 +173,22 @@ public class OrderResponse {
         this.cancellationReason = cancellationReason;
     }
 
+    public Date getPickupTime() {
+        return pickupTime;
+    }
+
+    public void setPickupTime(Date pickupTime) {
+        this.pickupTime = pickupTime;
+    }
+
+    public Date getEstimatedReadyTime() {
+        return estimatedReadyTime;
+    }
+
+    public void setEstimatedReadyTime(Date estimatedReadyTime) {
+        this.estimatedReadyTime = estimatedReadyTime;
+    }
+
     public List<OrderItemResponse> getOrderItems() {
         return orderItems;
     }
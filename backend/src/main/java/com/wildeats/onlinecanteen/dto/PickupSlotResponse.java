@@ -0,0 +1,55 @@
+package com.wildeats.onlinecanteen.dto;
+
+import java.util.Date;
+
+/**
+ * A pickup slot of a shop and how many pre-orders it can still take
+ */
+public class PickupSlotResponse {
+    private Date slotStart;
+    private Date slotEnd;
+    private int capacity;
+    private int remaining;
+
+    public PickupSlotResponse() {
+    }
+
+    public PickupSlotResponse(Date slotStart, Date slotEnd, int capacity, int remaining) {
+        this.slotStart = slotStart;
+        this.slotEnd = slotEnd;
+        this.capacity = capacity;
+        this.remaining = remaining;
+    }
+
+    public Date getSlotStart() {
+        return slotStart;
+    }
+
+    public void setSlotStart(Date slotStart) {
+        this.slotStart = slotStart;
+    }
+
+    public Date getSlotEnd() {
+        return slotEnd;
+    }
+
+    public void setSlotEnd(Date slotEnd) {
+        this.slotEnd = slotEnd;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+
+    public void setRemaining(int remaining) {
+        this.remaining = remaining;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wildeats.onlinecanteen.dto;
+
+import java.util.Date;
+
+import com.wildeats.onlinecanteen.entity.ShopDocumentEntity;
+
+/**
+ * A document uploaded by a shop, without its content
+ */
+public class ShopDocumentResponse {
+    private Long id;
+    private String fileName;
+    private String contentType;
+    private long sizeBytes;
+    private Date uploadedAt;
+
+    public ShopDocumentResponse() {
+    }
+
+    public ShopDocumentResponse(ShopDocumentEntity document) {
+        this.id = document.getId();
+        this.fileName = document.getFileName();
+        this.contentType = document.getContentType();
+        this.sizeBytes = document.getSizeBytes();
+        this.uploadedAt = document.getUploadedAt();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public Date getUploadedAt() {
+        return uploadedAt;
+    }
+
+    public void setUploadedAt(Date uploadedAt) {
+        this.uploadedAt = uploadedAt;
+    }
+}
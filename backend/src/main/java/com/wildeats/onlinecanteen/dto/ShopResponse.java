@@ -17,6 +17,8 @@ public class ShopResponse {
     private String shopImageURL;
     private String status;
     private Boolean isOpen;
+    private Integer pickupSlotMinutes;
+    private Integer pickupSlotCapacity;
     private Long ownerId;
     private String ownerName;
     private Date createdAt;
@@ -38,6 +40,8 @@ public class ShopResponse {
         this.shopImageURL = shop.getShopImageURL();
         this.status = shop.getStatus().toString();
         this.isOpen = shop.getIsOpen();
+        this.pickupSlotMinutes = shop.getPickupSlotMinutes();
+        this.pickupSlotCapacity = shop.getPickupSlotCapacity();
 
         // Owner info (without circular reference)
         if (shop.getOwner() != null) {
@@ -49,6 +53,31 @@ public class ShopResponse {
         this.updatedAt = shop.getUpdatedAt();
     }
 
+    /**
+     * Constructor for JPQL constructor expressions, which select only these
+     * columns instead of loading the shop and its owner
+     */
+    public ShopResponse(Long shopId, String shopName, String shopDescr, String shopAddress,
+            ShopEntity.Location location, String contactNumber, String shopImageURL, ShopEntity.Status status,
+            Boolean isOpen, Integer pickupSlotMinutes, Integer pickupSlotCapacity, Long ownerId,
+            String ownerFirstName, String ownerLastName, Date createdAt, Date updatedAt) {
+        this.shopId = shopId;
+        this.shopName = shopName;
+        this.shopDescr = shopDescr;
+        this.shopAddress = shopAddress;
+        this.location = location != null ? location.getDisplayName() : null;
+        this.contactNumber = contactNumber;
+        this.shopImageURL = shopImageURL;
+        this.status = status.toString();
+        this.isOpen = isOpen;
+        this.pickupSlotMinutes = pickupSlotMinutes;
+        this.pickupSlotCapacity = pickupSlotCapacity;
+        this.ownerId = ownerId;
+        this.ownerName = ownerId != null ? ownerFirstName + " " + ownerLastName : null;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     // Getters and Setters
     public Long getShopId() {
         return shopId;
@@ -122,6 +151,22 @@ public class ShopResponse {
         this.isOpen = isOpen;
     }
 
+    public Integer getPickupSlotMinutes() {
+        return pickupSlotMinutes;
+    }
+
+    public void setPickupSlotMinutes(Integer pickupSlotMinutes) {
+        this.pickupSlotMinutes = pickupSlotMinutes;
+    }
+
+    public Integer getPickupSlotCapacity() {
+        return pickupSlotCapacity;
+    }
+
+    public void setPickupSlotCapacity(Integer pickupSlotCapacity) {
+        this.pickupSlotCapacity = pickupSlotCapacity;
+    }
+
     public Long getOwnerId() {
         return ownerId;
     }
@@ -0,0 +1,56 @@
+package com.wildeats.onlinecanteen.dto;
+
+import java.util.List;
+
+/**
+ * DTO for a page of the admin user listing
+ * The users of the page, the cursor to ask for the next page with, and the
+ * number of matching users (on the first page only)
+ */
+public class UserPageResponse {
+    private List<AuthResponse> users;
+    private Long nextCursor;
+    private Long totalCount;
+
+    public UserPageResponse() {
+    }
+
+    public UserPageResponse(List<AuthResponse> users, Long nextCursor, Long totalCount) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+        this.totalCount = totalCount;
+    }
+
+    // Getters and Setters
+    public List<AuthResponse> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<AuthResponse> users) {
+        this.users = users;
+    }
+
+    /**
+     * @return Value of the after parameter for the next page, or null if this
+     *         is the last page
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return Number of users matching the filters, or null on pages after
+     *         the first
+     */
+    public Long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Long totalCount) {
+        this.totalCount = totalCount;
+    }
+}
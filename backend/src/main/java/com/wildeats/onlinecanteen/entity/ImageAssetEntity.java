@@ -0,0 +1,129 @@
+package com.wildeats.onlinecanteen.entity;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * An uploaded image, identified by the SHA-256 hash of the original file
+ *
+ * The original is kept in the image store; its resized variants are made in
+ * the background and listed in image_variant once the image is READY.
+ */
+@Entity
+@Table(name = "image_asset")
+public class ImageAssetEntity {
+
+    public enum Status {
+        PENDING, READY, FAILED
+    }
+
+    @Id
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
+
+    @Column(name = "format", nullable = false, length = 20)
+    private String format;
+
+    @Column(name = "width", nullable = false)
+    private int width;
+
+    @Column(name = "height", nullable = false)
+    private int height;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status;
+
+    @Column(name = "uploaded_by")
+    private Long uploadedBy;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Column(name = "processed_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date processedAt;
+
+    public ImageAssetEntity() {
+        this.status = Status.PENDING;
+        this.createdAt = new Date();
+    }
+
+    // Getters and Setters
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getUploadedBy() {
+        return uploadedBy;
+    }
+
+    public void setUploadedBy(Long uploadedBy) {
+        this.uploadedBy = uploadedBy;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(Date processedAt) {
+        this.processedAt = processedAt;
+    }
+}
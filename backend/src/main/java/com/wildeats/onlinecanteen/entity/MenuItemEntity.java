@@ -2,6 +2,7 @@ package com.wildeats.onlinecanteen.entity;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.util.Date;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
@@ -34,9 +35,41 @@ public class MenuItemEntity {
     @Column(name = "is_available", nullable = false)
     private Boolean isAvailable = true;
 
+    // Portions offered per day; null means the item is not stock-tracked
+    @Column(name = "daily_stock")
+    private Integer dailyStock;
+
+    // Portions left today; reaching 0 marks the item unavailable
+    @Column(name = "stock_remaining")
+    private Integer stockRemaining;
+
+    // When the stock was last refilled; orders since then count against it
+    @Column(name = "stock_refilled_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date stockRefilledAt;
+
+    // Flash special: stock is reserved in memory and written back in batches
+    @Column(name = "hot_stock", nullable = false)
+    private boolean hotStock;
+
+    // Menu revision of the shop at the item's last change; stamped in the
+    // database, see MenuRevisionRepository
+    @Column(name = "menu_revision", insertable = false, updatable = false)
+    private Long menuRevision;
+
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+
     public MenuItemEntity() {
     }
 
+    @PrePersist
+    @PreUpdate
+    public void updateTimestamp() {
+        this.updatedAt = new Date();
+    }
+
     // Getters and Setters
     public Long getItemId() {
         return itemId;
@@ -120,4 +153,48 @@ public class MenuItemEntity {
     public void setAvailable(boolean available) {
         this.isAvailable = available;
     }
-}
\ No newline at end of file
+
+    public Integer getDailyStock() {
+        return dailyStock;
+    }
+
+    public void setDailyStock(Integer dailyStock) {
+        this.dailyStock = dailyStock;
+    }
+
+    public Integer getStockRemaining() {
+        return stockRemaining;
+    }
+
+    public void setStockRemaining(Integer stockRemaining) {
+        this.stockRemaining = stockRemaining;
+    }
+
+    public Date getStockRefilledAt() {
+        return stockRefilledAt;
+    }
+
+    public void setStockRefilledAt(Date stockRefilledAt) {
+        this.stockRefilledAt = stockRefilledAt;
+    }
+
+    public boolean isHotStock() {
+        return hotStock;
+    }
+
+    public void setHotStock(boolean hotStock) {
+        this.hotStock = hotStock;
+    }
+
+    public Long getMenuRevision() {
+        return menuRevision;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
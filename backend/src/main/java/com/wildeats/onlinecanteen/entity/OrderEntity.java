@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
@@ -13,11 +15,41 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 public class OrderEntity {
 
     public enum Status {
+        SCHEDULED,
         PENDING,
         PREPARING,
         READY,
         COMPLETED,
-        CANCELLED
+        CANCELLED;
+
+        /**
+         * Order lifecycle: PENDING -> PREPARING -> READY -> COMPLETED, where
+         * PREPARING may be skipped and any non-final order may be cancelled.
+         * Pre-orders start as SCHEDULED and become PENDING when their pickup
+         * slot starts
+         * 
+         * @return The statuses an order may move to this status from
+         */
+        public Set<Status> allowedPredecessors() {
+            switch (this) {
+                case PENDING:
+                    return EnumSet.of(SCHEDULED);
+                case PREPARING:
+                    return EnumSet.of(PENDING);
+                case READY:
+                    return EnumSet.of(PENDING, PREPARING);
+                case COMPLETED:
+                    return EnumSet.of(READY);
+                case CANCELLED:
+                    return EnumSet.of(SCHEDULED, PENDING, PREPARING, READY);
+                default:
+                    return EnumSet.noneOf(Status.class);
+            }
+        }
+
+        public boolean canTransitionTo(Status next) {
+            return next != null && next.allowedPredecessors().contains(this);
+        }
     }
 
     @Id
@@ -56,6 +88,15 @@ public class OrderEntity {
     @Column(name = "cancellation_reason", length = 500)
     private String cancellationReason;
 
+    // Start of the pickup slot of a pre-order; null for orders placed for now
+    @Column(name = "pickup_time")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date pickupTime;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrderItemEntity> orderItems = new ArrayList<>();
 
@@ -81,6 +122,9 @@ public class OrderEntity {
     }
 
     public void cancel(String reason) {
+        if (!status.canTransitionTo(Status.CANCELLED)) {
+            throw new IllegalStateException("Cannot cancel order with status " + status);
+        }
         this.status = Status.CANCELLED;
         this.cancelledAt = new Date();
         this.cancellationReason = reason;
@@ -168,6 +212,14 @@ public class OrderEntity {
         this.cancellationReason = cancellationReason;
     }
 
+    public Date getPickupTime() {
+        return pickupTime;
+    }
+
+    public void setPickupTime(Date pickupTime) {
+        this.pickupTime = pickupTime;
+    }
+
     public List<OrderItemEntity> getOrderItems() {
         return orderItems;
     }
@@ -175,4 +227,12 @@ public class OrderEntity {
     public void setOrderItems(List<OrderItemEntity> orderItems) {
         this.orderItems = orderItems;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
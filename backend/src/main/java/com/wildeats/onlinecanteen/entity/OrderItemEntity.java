@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 
 import java.math.BigDecimal;
+import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
@@ -16,8 +18,9 @@ public class OrderItemEntity {
     @Column(name = "id")
     private Long id;
 
+    // The foreign key is (order_id, order_date_time) and is managed by the migrations
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "order_id", nullable = false)
+    @JoinColumn(name = "order_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonIgnoreProperties({ "orderItems" })
     private OrderEntity order;
 
@@ -33,9 +36,22 @@ public class OrderItemEntity {
     @Column(name = "price_at_purchase", nullable = false, precision = 10, scale = 2)
     private BigDecimal priceAtPurchase;
 
+    // Copy of the order's timestamp; order_item is partitioned by it
+    @JsonIgnore
+    @Column(name = "order_date_time", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date orderDateTime;
+
     public OrderItemEntity() {
     }
 
+    @PrePersist
+    protected void onCreate() {
+        if (orderDateTime == null && order != null) {
+            orderDateTime = order.getOrderDateTime();
+        }
+    }
+
     // Helper method to calculate subtotal - NOW RETURNS BigDecimal
     public BigDecimal getSubtotal() {
         if (priceAtPurchase != null && quantity != null) {
@@ -59,6 +75,17 @@ public class OrderItemEntity {
 
     public void setOrder(OrderEntity order) {
         this.order = order;
+        if (order != null) {
+            this.orderDateTime = order.getOrderDateTime();
+        }
+    }
+
+    public Date getOrderDateTime() {
+        return orderDateTime;
+    }
+
+    public void setOrderDateTime(Date orderDateTime) {
+        this.orderDateTime = orderDateTime;
     }
 
     public MenuItemEntity getMenuItem() {
@@ -0,0 +1,117 @@
+package com.wildeats.onlinecanteen.entity;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * A refresh token, kept only as the SHA-256 hash of the value handed to the
+ * client
+ *
+ * Tokens issued by one login form a family: every refresh rotates the
+ * presented token and issues the next one of the same family.
+ */
+@Entity
+@Table(name = "refresh_token", uniqueConstraints = @UniqueConstraint(name = "uk_refresh_token_hash", columnNames = {
+        "token_hash" }))
+public class RefreshTokenEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+
+    @Column(name = "rotated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date rotatedAt;
+
+    @Column(name = "revoked_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date revokedAt;
+
+    public RefreshTokenEntity() {
+        this.createdAt = new Date();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
+    public String getFamilyId() {
+        return familyId;
+    }
+
+    public void setFamilyId(String familyId) {
+        this.familyId = familyId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Date getRotatedAt() {
+        return rotatedAt;
+    }
+
+    public void setRotatedAt(Date rotatedAt) {
+        this.rotatedAt = rotatedAt;
+    }
+
+    public Date getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(Date revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+}
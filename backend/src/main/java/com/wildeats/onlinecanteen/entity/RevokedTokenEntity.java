@@ -0,0 +1,65 @@
+package com.wildeats.onlinecanteen.entity;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * An access token revoked before its expiry, identified by its jti claim
+ */
+@Entity
+@Table(name = "revoked_token")
+public class RevokedTokenEntity {
+
+    @Id
+    @Column(name = "jti", length = 36)
+    private String jti;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date revokedAt;
+
+    public RevokedTokenEntity() {
+        this.revokedAt = new Date();
+    }
+
+    // Getters and Setters
+    public String getJti() {
+        return jti;
+    }
+
+    public void setJti(String jti) {
+        this.jti = jti;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Date getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(Date revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+}
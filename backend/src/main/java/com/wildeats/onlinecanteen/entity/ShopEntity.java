@@ -76,6 +76,19 @@ public class ShopEntity {
     @Column(name = "is_open")
     private Boolean isOpen = false;
 
+    // Pre-orders: length of a pickup slot and orders accepted per slot; null
+    // when the shop does not take pre-orders
+    @Column(name = "pickup_slot_minutes")
+    private Integer pickupSlotMinutes;
+
+    @Column(name = "pickup_slot_capacity")
+    private Integer pickupSlotCapacity;
+
+    // Bumped in the database by every menu change; never written through the
+    // entity, so saving a shop cannot roll it back
+    @Column(name = "menu_version", insertable = false, updatable = false)
+    private Long menuVersion;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "owner_id", nullable = false)
     @JsonIgnoreProperties({ "roles", "password", "shops", "orders" })
@@ -99,6 +112,11 @@ public class ShopEntity {
         return status == Status.ACTIVE && isOpen;
     }
 
+    public boolean acceptsPreOrders() {
+        return pickupSlotMinutes != null && pickupSlotCapacity != null;
+    }
+
+    @PreUpdate
     public void updateTimestamp() {
         this.updatedAt = new Date();
     }
@@ -192,6 +210,22 @@ public class ShopEntity {
         this.isOpen = isOpen;
     }
 
+    public Integer getPickupSlotMinutes() {
+        return pickupSlotMinutes;
+    }
+
+    public void setPickupSlotMinutes(Integer pickupSlotMinutes) {
+        this.pickupSlotMinutes = pickupSlotMinutes;
+    }
+
+    public Integer getPickupSlotCapacity() {
+        return pickupSlotCapacity;
+    }
+
+    public void setPickupSlotCapacity(Integer pickupSlotCapacity) {
+        this.pickupSlotCapacity = pickupSlotCapacity;
+    }
+
     public boolean isActive() {
         return status == Status.ACTIVE;
     }
@@ -216,6 +250,10 @@ public class ShopEntity {
         this.createdAt = createdAt;
     }
 
+    public Long getMenuVersion() {
+        return menuVersion;
+    }
+
     public Date getUpdatedAt() {
         return updatedAt;
     }
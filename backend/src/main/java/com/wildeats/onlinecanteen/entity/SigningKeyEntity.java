@@ -0,0 +1,66 @@
+package com.wildeats.onlinecanteen.entity;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * A key that signs access tokens, identified in each token by its key ID
+ * (kid)
+ */
+@Entity
+@Table(name = "signing_key")
+public class SigningKeyEntity {
+
+    @Id
+    @Column(name = "kid", length = 40)
+    private String kid;
+
+    @Column(nullable = false, length = 20)
+    private String algorithm;
+
+    // Base64-encoded key material
+    @Column(nullable = false, length = 200)
+    private String secret;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    public SigningKeyEntity() {
+        this.createdAt = new Date();
+    }
+
+    // Getters and Setters
+    public String getKid() {
+        return kid;
+    }
+
+    public void setKid(String kid) {
+        this.kid = kid;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
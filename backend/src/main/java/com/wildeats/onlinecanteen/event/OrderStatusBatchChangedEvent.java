@@ -0,0 +1,26 @@
+package com.wildeats.onlinecanteen.event;
+
+import java.util.List;
+
+/**
+ * Published once for a bulk status update, carrying the change of every order
+ * that was actually updated
+ * Listeners receive it after the surrounding transaction commits
+ */
+public class OrderStatusBatchChangedEvent {
+    private final Long shopId;
+    private final List<OrderStatusChangedEvent> changes;
+
+    public OrderStatusBatchChangedEvent(Long shopId, List<OrderStatusChangedEvent> changes) {
+        this.shopId = shopId;
+        this.changes = List.copyOf(changes);
+    }
+
+    public Long getShopId() {
+        return shopId;
+    }
+
+    public List<OrderStatusChangedEvent> getChanges() {
+        return changes;
+    }
+}
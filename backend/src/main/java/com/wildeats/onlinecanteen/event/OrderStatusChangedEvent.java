@@ -0,0 +1,75 @@
+package com.wildeats.onlinecanteen.event;
+
+import java.util.Date;
+
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+
+/**
+ * Published whenever an order enters a new status (including creation)
+ * Listeners receive it after the surrounding transaction commits
+ */
+public class OrderStatusChangedEvent {
+    private final Long orderId;
+    private final Long shopId;
+    private final OrderEntity.Status previousStatus;
+    private final OrderEntity.Status newStatus;
+    private final Integer queueNumber;
+    private final Date occurredAt;
+
+    public OrderStatusChangedEvent(Long orderId, Long shopId, OrderEntity.Status previousStatus,
+            OrderEntity.Status newStatus) {
+        this(orderId, shopId, previousStatus, newStatus, null, new Date());
+    }
+
+    public OrderStatusChangedEvent(Long orderId, Long shopId, OrderEntity.Status previousStatus,
+            OrderEntity.Status newStatus, Date occurredAt) {
+        this(orderId, shopId, previousStatus, newStatus, null, occurredAt);
+    }
+
+    public OrderStatusChangedEvent(Long orderId, Long shopId, OrderEntity.Status previousStatus,
+            OrderEntity.Status newStatus, Integer queueNumber) {
+        this(orderId, shopId, previousStatus, newStatus, queueNumber, new Date());
+    }
+
+    public OrderStatusChangedEvent(Long orderId, Long shopId, OrderEntity.Status previousStatus,
+            OrderEntity.Status newStatus, Integer queueNumber, Date occurredAt) {
+        this.orderId = orderId;
+        this.shopId = shopId;
+        this.previousStatus = previousStatus;
+        this.newStatus = newStatus;
+        this.queueNumber = queueNumber;
+        this.occurredAt = occurredAt;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public Long getShopId() {
+        return shopId;
+    }
+
+    /**
+     * @return The status before the change, or null for a newly created order
+     *         or when the new status can be reached from several statuses
+     */
+    public OrderEntity.Status getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public OrderEntity.Status getNewStatus() {
+        return newStatus;
+    }
+
+    /**
+     * @return The queue number of an order entering the kitchen queue, or null
+     *         when the change does not carry it
+     */
+    public Integer getQueueNumber() {
+        return queueNumber;
+    }
+
+    public Date getOccurredAt() {
+        return occurredAt;
+    }
+}
@@ -0,0 +1,63 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Keeps the bytes of documents per shop in the shop_document_usage table
+ *
+ * A reservation is a single conditional update, so concurrent uploads to the
+ * same shop cannot together exceed its quota, and no lock is held while the
+ * content is written.
+ */
+@Repository
+public class DocumentQuotaRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Reserve space for documents of a shop
+     *
+     * @param shopId     The ID of the shop
+     * @param bytes      Number of bytes to reserve
+     * @param quotaBytes Quota of the shop
+     * @return true if the bytes fit within the quota and were reserved
+     */
+    public boolean reserve(Long shopId, long bytes, long quotaBytes) {
+        int updated = add(shopId, bytes, quotaBytes);
+        if (updated == 0) {
+            // First upload of the shop
+            jdbcTemplate.update("INSERT INTO shop_document_usage (shop_id, used_bytes) VALUES (?, 0) "
+                    + "ON CONFLICT DO NOTHING", shopId);
+            updated = add(shopId, bytes, quotaBytes);
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Give back space reserved for documents of a shop
+     *
+     * @param shopId The ID of the shop
+     * @param bytes  Number of bytes to give back
+     */
+    public void release(Long shopId, long bytes) {
+        jdbcTemplate.update("UPDATE shop_document_usage SET used_bytes = GREATEST(used_bytes - ?, 0) "
+                + "WHERE shop_id = ?", bytes, shopId);
+    }
+
+    /**
+     * @param shopId The ID of the shop
+     * @return Bytes of documents the shop currently uses
+     */
+    public long getUsedBytes(Long shopId) {
+        return jdbcTemplate.query("SELECT used_bytes FROM shop_document_usage WHERE shop_id = ?",
+                rs -> rs.next() ? rs.getLong(1) : 0L, shopId);
+    }
+
+    private int add(Long shopId, long bytes, long quotaBytes) {
+        return jdbcTemplate.update("UPDATE shop_document_usage SET used_bytes = used_bytes + ? "
+                + "WHERE shop_id = ? AND used_bytes + ? <= ?", bytes, shopId, bytes, quotaBytes);
+    }
+}
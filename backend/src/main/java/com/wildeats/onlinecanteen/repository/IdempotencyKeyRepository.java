@@ -0,0 +1,88 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.entity.IdempotencyKeyEntity;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, Long> {
+    /**
+     * Find the stored record for a user's idempotency key
+     * 
+     * @param userId         The ID of the user who sent the request
+     * @param idempotencyKey The Idempotency-Key header value
+     * @return Optional containing the record if found
+     */
+    Optional<IdempotencyKeyEntity> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    /**
+     * Store the response of an IN_PROGRESS record. Runs in the caller's
+     * transaction, so the response is stored if and only if the work that
+     * produced it commits.
+     * 
+     * @param id             The ID of the record
+     * @param responseStatus The HTTP status of the response
+     * @param responseBody   The response body as JSON
+     * @return Number of updated records: 0 if the record is gone or already
+     *         completed
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query("UPDATE IdempotencyKeyEntity k SET k.status = com.wildeats.onlinecanteen.entity.IdempotencyKeyEntity.Status.COMPLETED, k.responseStatus = :responseStatus, k.responseBody = :responseBody WHERE k.id = :id AND k.status = com.wildeats.onlinecanteen.entity.IdempotencyKeyEntity.Status.IN_PROGRESS")
+    int complete(@Param("id") Long id, @Param("responseStatus") Integer responseStatus,
+            @Param("responseBody") String responseBody);
+
+    /**
+     * Delete a record unless its response was stored
+     * 
+     * @param id The ID of the record
+     * @return Number of deleted records
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyKeyEntity k WHERE k.id = :id AND k.status = com.wildeats.onlinecanteen.entity.IdempotencyKeyEntity.Status.IN_PROGRESS")
+    int deleteInProgress(@Param("id") Long id);
+
+    /**
+     * Delete all records that expired before the given time
+     * 
+     * @param now The current time
+     * @return Number of deleted records
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyKeyEntity k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+
+    /**
+     * Find record IDs from newest to oldest, used to locate the cut-off when
+     * trimming the table to its maximum size
+     * 
+     * @param pageable The page to fetch
+     * @return List of record IDs
+     */
+    @Query("SELECT k.id FROM IdempotencyKeyEntity k ORDER BY k.id DESC")
+    List<Long> findIdsNewestFirst(Pageable pageable);
+
+    /**
+     * Delete all records older than the given ID
+     * 
+     * @param id The oldest ID to keep
+     * @return Number of deleted records
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyKeyEntity k WHERE k.id < :id")
+    int deleteOlderThan(@Param("id") Long id);
+}
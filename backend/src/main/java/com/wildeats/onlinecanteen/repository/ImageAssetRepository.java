@@ -0,0 +1,41 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.entity.ImageAssetEntity;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface ImageAssetRepository extends JpaRepository<ImageAssetEntity, String> {
+    /**
+     * Find the images still waiting for their variants that were uploaded
+     * before the given time
+     * 
+     * @param before Latest upload time
+     * @return List of image hashes
+     */
+    @Query("SELECT i.imageHash FROM ImageAssetEntity i WHERE i.status = 'PENDING' AND i.createdAt < :before")
+    List<String> findPendingHashesCreatedBefore(@Param("before") Date before);
+
+    /**
+     * Set the status of an image
+     * 
+     * @param imageHash   The hash of the image
+     * @param status      The new status
+     * @param processedAt When the variants were made, or null
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageAssetEntity i SET i.status = :status, i.processedAt = :processedAt "
+            + "WHERE i.imageHash = :imageHash")
+    int updateStatus(@Param("imageHash") String imageHash, @Param("status") ImageAssetEntity.Status status,
+            @Param("processedAt") Date processedAt);
+}
@@ -0,0 +1,100 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The resized variants of images, in the image_variant table
+ */
+@Repository
+public class ImageVariantRepository {
+
+    private static final RowMapper<VariantRow> ROW_MAPPER = (rs, rowNum) -> new VariantRow(rs.getString("variant"),
+            rs.getString("content_hash"), rs.getInt("width"), rs.getInt("height"), rs.getLong("size_bytes"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Replace the variants of an image. Must be called inside a transaction
+     * together with marking the image READY.
+     *
+     * @param imageHash The hash of the image
+     * @param variants  The new variants
+     */
+    public void replaceVariants(String imageHash, List<VariantRow> variants) {
+        jdbcTemplate.update("DELETE FROM image_variant WHERE image_hash = ?", imageHash);
+        jdbcTemplate.batchUpdate("INSERT INTO image_variant (image_hash, variant, content_hash, width, height, "
+                + "size_bytes) VALUES (?, ?, ?, ?, ?, ?)", variants, variants.size(), (ps, variant) -> {
+                    ps.setString(1, imageHash);
+                    ps.setString(2, variant.getVariant());
+                    ps.setString(3, variant.getContentHash());
+                    ps.setInt(4, variant.getWidth());
+                    ps.setInt(5, variant.getHeight());
+                    ps.setLong(6, variant.getSizeBytes());
+                });
+    }
+
+    /**
+     * @param imageHash The hash of the image
+     * @param variant   The name of the variant
+     * @return The variant, or null if it has not been made
+     */
+    public VariantRow findVariant(String imageHash, String variant) {
+        List<VariantRow> rows = jdbcTemplate.query("SELECT variant, content_hash, width, height, size_bytes "
+                + "FROM image_variant WHERE image_hash = ? AND variant = ?", ROW_MAPPER, imageHash, variant);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * @param imageHash The hash of the image
+     * @return The variants of the image
+     */
+    public List<VariantRow> findVariants(String imageHash) {
+        return jdbcTemplate.query("SELECT variant, content_hash, width, height, size_bytes "
+                + "FROM image_variant WHERE image_hash = ?", ROW_MAPPER, imageHash);
+    }
+
+    /**
+     * A variant of an image and where its content is stored
+     */
+    public static class VariantRow {
+        private final String variant;
+        private final String contentHash;
+        private final int width;
+        private final int height;
+        private final long sizeBytes;
+
+        public VariantRow(String variant, String contentHash, int width, int height, long sizeBytes) {
+            this.variant = variant;
+            this.contentHash = contentHash;
+            this.width = width;
+            this.height = height;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public String getVariant() {
+            return variant;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.wildeats.onlinecanteen.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.wildeats.onlinecanteen.dto.MenuItemResponse;
 import com.wildeats.onlinecanteen.entity.MenuItemEntity;
 
+import jakarta.persistence.LockModeType;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +25,15 @@ public interface MenuItemRepository extends JpaRepository<MenuItemEntity, Long>
      */
     List<MenuItemEntity> findByShopShopId(Long shopId);
 
+    /**
+     * Find the menu items of a shop changed after a menu revision
+     * 
+     * @param shopId   The ID of the shop
+     * @param revision The revision the client has
+     * @return List of menu items changed since then, available or not
+     */
+    List<MenuItemEntity> findByShopShopIdAndMenuRevisionGreaterThan(Long shopId, Long revision);
+
     /**
      * Find all available menu items for a specific shop
      * 
@@ -29,6 +43,20 @@ public interface MenuItemRepository extends JpaRepository<MenuItemEntity, Long>
      */
     List<MenuItemEntity> findByShopShopIdAndIsAvailable(Long shopId, Boolean isAvailable);
 
+    /**
+     * Read the available menu items of a shop straight into response DTOs,
+     * selecting only the columns the DTO needs instead of loading the items,
+     * their shop and its owner
+     * 
+     * @param shopId The ID of the shop
+     * @return List of available menu items for the shop as DTOs
+     */
+    @Query("SELECT new com.wildeats.onlinecanteen.dto.MenuItemResponse(m.itemId, s.shopId, s.shopName, "
+            + "m.itemName, m.itemDescr, m.itemImageURL, m.price, m.isAvailable, m.dailyStock, m.stockRemaining, "
+            + "m.hotStock, m.updatedAt) FROM MenuItemEntity m JOIN m.shop s "
+            + "WHERE s.shopId = :shopId AND m.isAvailable = true")
+    List<MenuItemResponse> findAvailableResponsesByShopId(@Param("shopId") Long shopId);
+
     /**
      * Find a menu item by name in a specific shop
      * 
@@ -67,4 +95,16 @@ public interface MenuItemRepository extends JpaRepository<MenuItemEntity, Long>
      */
     @Query("SELECT COUNT(m) FROM MenuItemEntity m WHERE m.shop.shopId = :shopId AND m.isAvailable = true")
     long countAvailableByShopId(@Param("shopId") Long shopId);
-}
\ No newline at end of file
+
+    /**
+     * Load menu items with a shared row lock, so their availability and price
+     * cannot change until the current transaction ends. Rows are locked in ID
+     * order to avoid deadlocks between concurrent checkouts
+     * 
+     * @param itemIds The IDs of the menu items
+     * @return The menu items that exist, ordered by ID
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT m FROM MenuItemEntity m WHERE m.itemId IN :itemIds ORDER BY m.itemId")
+    List<MenuItemEntity> findAllByIdForShare(@Param("itemIds") Collection<Long> itemIds);
+}
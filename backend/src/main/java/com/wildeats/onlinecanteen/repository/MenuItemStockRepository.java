@@ -0,0 +1,222 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Set-based stock bookkeeping for menu items with a daily stock limit
+ *
+ * Each operation is a single statement no matter how many items it touches,
+ * so a checkout or cancellation costs one round trip for stock. Stock is part
+ * of the public menu, so changing it is recorded as a new menu revision of the
+ * shops concerned, see {@link MenuRevisionRepository}.
+ */
+@Repository
+public class MenuItemStockRepository {
+
+    // Items that were sold out come back when stock is returned or reset;
+    // items the seller switched off with stock left stay off
+    private static final String REAVAILABLE = "is_available = CASE WHEN stock_remaining = 0 THEN TRUE ELSE is_available END";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MenuRevisionRepository revisionRepo;
+
+    @Autowired
+    private UpdateReturning updateReturning;
+
+    /**
+     * Take the requested quantities from the stock of several items of a shop
+     * in one statement. An item is only decremented if it is stock-tracked,
+     * not hot, available and has enough stock left; an item that reaches zero
+     * is marked unavailable. Other items are not touched or locked.
+     *
+     * @param shopId     The ID of the shop the order is placed at
+     * @param quantities Quantity to take, by menu item ID
+     * @return IDs of the items decremented; a stock-tracked item missing from
+     *         them had too little stock. The caller records the menu revision
+     *         once its item locks are taken.
+     */
+    public Set<Long> decrement(Long shopId, Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        StringBuilder qty = new StringBuilder("CASE item_id");
+        List<Object> qtyArgs = new ArrayList<>();
+        quantities.forEach((itemId, quantity) -> {
+            qty.append(" WHEN ? THEN ?");
+            qtyArgs.add(itemId);
+            qtyArgs.add(quantity);
+        });
+        qty.append(" END");
+
+        List<Object> args = new ArrayList<>();
+        args.addAll(qtyArgs);
+        args.addAll(qtyArgs);
+        args.addAll(quantities.keySet());
+        args.add(shopId);
+        args.addAll(qtyArgs);
+
+        return new HashSet<>(updateReturning.update("UPDATE menu_item SET stock_remaining = stock_remaining - " + qty
+                + ", is_available = CASE WHEN stock_remaining - " + qty + " > 0 THEN is_available ELSE FALSE END"
+                + " WHERE item_id IN (" + placeholders(quantities.size()) + ") AND shop_id = ?"
+                + " AND stock_remaining IS NOT NULL AND hot_stock = FALSE AND is_available = TRUE"
+                + " AND stock_remaining >= " + qty,
+                "item_id", Long.class, args.toArray()));
+    }
+
+    /**
+     * Give the stock of cancelled orders back under a new menu revision. Only
+     * orders placed since the item's stock was last refilled count; older
+     * orders were taken from an earlier stock.
+     *
+     * @param orderIds The IDs of the cancelled orders
+     * @param since    Start of the current stock day, a lower bound for all items
+     * @return Number of menu items restocked
+     */
+    public int restock(Collection<Long> orderIds, Date since) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        String items = "FROM order_item oi WHERE oi.order_id IN (" + placeholders(orderIds.size())
+                + ") AND oi.order_date_time >= ?";
+
+        List<Object> args = new ArrayList<>(orderIds);
+        args.add(new Timestamp(since.getTime()));
+        List<Object> allArgs = new ArrayList<>(args);
+        allArgs.addAll(args);
+
+        int restocked = jdbcTemplate.update("UPDATE menu_item SET " + REAVAILABLE
+                + ", stock_remaining = stock_remaining + (SELECT COALESCE(SUM(oi.quantity), 0) " + items
+                + " AND oi.item_id = menu_item.item_id"
+                + " AND (menu_item.stock_refilled_at IS NULL OR oi.order_date_time >= menu_item.stock_refilled_at))"
+                + " WHERE stock_remaining IS NOT NULL AND item_id IN (SELECT oi.item_id " + items + ")",
+                allArgs.toArray());
+        if (restocked > 0) {
+            revisionRepo.touchItems(jdbcTemplate.queryForList("SELECT DISTINCT m.item_id FROM menu_item m "
+                    + "WHERE m.stock_remaining IS NOT NULL AND m.item_id IN (SELECT oi.item_id " + items + ")",
+                    Long.class, args.toArray()));
+        }
+        return restocked;
+    }
+
+    /**
+     * Quantities of hot items in cancelled orders that {@link #restock} gives
+     * back, so the in-memory counters can be credited the same amount
+     *
+     * @param orderIds The IDs of the cancelled orders
+     * @param since    Start of the current stock day
+     * @return Quantity to give back, by menu item ID
+     */
+    public Map<Long, Integer> findHotRestockQuantities(Collection<Long> orderIds, Date since) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return quantities;
+        }
+
+        List<Object> args = new ArrayList<>(orderIds);
+        args.add(new Timestamp(since.getTime()));
+        jdbcTemplate.query("SELECT oi.item_id, SUM(oi.quantity) AS quantity FROM order_item oi"
+                + " JOIN menu_item m ON m.item_id = oi.item_id"
+                + " WHERE oi.order_id IN (" + placeholders(orderIds.size()) + ") AND oi.order_date_time >= ?"
+                + " AND m.hot_stock = TRUE AND m.stock_remaining IS NOT NULL"
+                + " AND (m.stock_refilled_at IS NULL OR oi.order_date_time >= m.stock_refilled_at)"
+                + " GROUP BY oi.item_id",
+                rs -> {
+                    quantities.put(rs.getLong("item_id"), rs.getInt("quantity"));
+                },
+                args.toArray());
+        return quantities;
+    }
+
+    /**
+     * Write back the stock taken from hot items in memory, one batched
+     * statement per flush. Items that reach zero are marked unavailable. Runs
+     * in its own transaction, so a flush triggered from a caller's
+     * transaction is kept even if the caller rolls back.
+     *
+     * @param taken Portions taken since the last flush, by menu item ID
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void applyTaken(Map<Long, Long> taken) {
+        List<Object[]> batch = new ArrayList<>(taken.size());
+        taken.forEach((itemId, quantity) -> batch.add(new Object[] { quantity, quantity, itemId }));
+        jdbcTemplate.batchUpdate("UPDATE menu_item SET stock_remaining = GREATEST(stock_remaining - ?, 0),"
+                + " is_available = CASE WHEN stock_remaining - ? > 0 THEN is_available ELSE FALSE END"
+                + " WHERE item_id = ? AND stock_remaining IS NOT NULL", batch);
+        revisionRepo.touchItems(taken.keySet());
+    }
+
+    /**
+     * Rebuild the remaining stock of hot items from the orders placed since
+     * their last refill. Stock taken in memory but not yet written back when
+     * the application stopped is recovered this way, as the orders themselves
+     * were committed.
+     *
+     * @return Number of hot items reconciled
+     */
+    @Transactional
+    public int reconcileHotStock() {
+        String remaining = "GREATEST(daily_stock - (SELECT COALESCE(SUM(oi.quantity), 0) FROM order_item oi"
+                + " JOIN orders o ON o.order_id = oi.order_id AND o.order_date_time = oi.order_date_time"
+                + " WHERE oi.item_id = menu_item.item_id AND oi.order_date_time >= menu_item.stock_refilled_at"
+                + " AND o.status <> 'CANCELLED'), 0)";
+        int reconciled = jdbcTemplate.update("UPDATE menu_item SET is_available = CASE WHEN " + remaining
+                + " = 0 THEN FALSE WHEN stock_remaining = 0 THEN TRUE ELSE is_available END, stock_remaining = "
+                + remaining + " WHERE hot_stock = TRUE AND daily_stock IS NOT NULL AND stock_refilled_at IS NOT NULL");
+        revisionRepo.touchStockTracked(true);
+        return reconciled;
+    }
+
+    /**
+     * Remaining stock of every hot item
+     *
+     * @return Portions left, by menu item ID
+     */
+    public Map<Long, Integer> findHotStock() {
+        Map<Long, Integer> stock = new HashMap<>();
+        jdbcTemplate.query("SELECT item_id, stock_remaining FROM menu_item"
+                + " WHERE hot_stock = TRUE AND stock_remaining IS NOT NULL",
+                rs -> {
+                    stock.put(rs.getLong("item_id"), rs.getInt("stock_remaining"));
+                });
+        return stock;
+    }
+
+    /**
+     * Refill every stock-tracked item to its daily stock
+     *
+     * @param refilledAt Start of the new stock period
+     * @return Number of menu items reset
+     */
+    @Transactional
+    public int resetDailyStock(Date refilledAt) {
+        int reset = jdbcTemplate.update("UPDATE menu_item SET stock_remaining = daily_stock, stock_refilled_at = ?,"
+                + " is_available = CASE WHEN daily_stock = 0 THEN FALSE WHEN stock_remaining = 0 THEN TRUE"
+                + " ELSE is_available END WHERE daily_stock IS NOT NULL", new Timestamp(refilledAt.getTime()));
+        revisionRepo.touchStockTracked(false);
+        return reset;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Revisions of the shops' public menus
+ *
+ * A menu change bumps the shop's menu_version and stamps the changed items, or
+ * the tombstone of a deleted item, with the new value in the same transaction.
+ * The bump locks the shop row until commit, so revisions become visible in
+ * order: once a client has seen revision N, no change at or below N can still
+ * appear.
+ *
+ * Call these after the menu item rows of the change are written, so every
+ * transaction locks menu items before their shop.
+ */
+@Repository
+public class MenuRevisionRepository {
+
+    private static final String STAMP = "UPDATE menu_item SET menu_revision = "
+            + "(SELECT s.menu_version FROM shop s WHERE s.shop_id = menu_item.shop_id), updated_at = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Record a change of some menu items under a new revision of their shops
+     *
+     * @param itemIds The IDs of the changed menu items
+     */
+    public void touchItems(Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+
+        String ids = placeholders(itemIds.size());
+        jdbcTemplate.update("UPDATE shop SET menu_version = menu_version + 1 WHERE shop_id IN "
+                + "(SELECT shop_id FROM menu_item WHERE item_id IN (" + ids + "))", itemIds.toArray());
+
+        List<Object> args = new ArrayList<>();
+        args.add(new Timestamp(System.currentTimeMillis()));
+        args.addAll(itemIds);
+        jdbcTemplate.update(STAMP + " WHERE item_id IN (" + ids + ")", args.toArray());
+    }
+
+    /**
+     * Record a change of every stock-tracked item, after their stock was reset
+     * or rebuilt
+     *
+     * @param hotOnly Only hot items
+     */
+    public void touchStockTracked(boolean hotOnly) {
+        String tracked = "daily_stock IS NOT NULL" + (hotOnly ? " AND hot_stock = TRUE" : "");
+        jdbcTemplate.update("UPDATE shop SET menu_version = menu_version + 1 WHERE shop_id IN "
+                + "(SELECT shop_id FROM menu_item WHERE " + tracked + ")");
+        jdbcTemplate.update(STAMP + " WHERE " + tracked, new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * Record the deletion of a menu item under a new revision of its shop.
+     * Call it after the item row is deleted.
+     *
+     * @param itemId The ID of the deleted menu item
+     * @param shopId The ID of its shop
+     */
+    public void recordDeletion(Long itemId, Long shopId) {
+        jdbcTemplate.update("UPDATE shop SET menu_version = menu_version + 1 WHERE shop_id = ?", shopId);
+        jdbcTemplate.update("INSERT INTO menu_item_tombstone (item_id, shop_id, menu_revision, deleted_at) "
+                + "SELECT ?, shop_id, menu_version, ? FROM shop WHERE shop_id = ?",
+                itemId, new Timestamp(System.currentTimeMillis()), shopId);
+    }
+
+    /**
+     * Current revision of a shop's menu
+     *
+     * @param shopId The ID of the shop
+     * @return The revision, or null if the shop does not exist
+     */
+    public Long findRevision(Long shopId) {
+        try {
+            return jdbcTemplate.queryForObject("SELECT menu_version FROM shop WHERE shop_id = ?", Long.class,
+                    shopId);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Menu items of a shop deleted after a revision
+     *
+     * @param shopId The ID of the shop
+     * @param since  The revision the client has
+     * @return The IDs of the deleted items
+     */
+    public List<Long> findDeletedSince(Long shopId, long since) {
+        return jdbcTemplate.queryForList("SELECT item_id FROM menu_item_tombstone "
+                + "WHERE shop_id = ? AND menu_revision > ? ORDER BY item_id", Long.class, shopId, since);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.wildeats.onlinecanteen.dto.OrderItemResponse;
+import com.wildeats.onlinecanteen.dto.OrderResponse;
+
+/**
+ * Read-only access to orders that have been moved to the orders_archive schema
+ *
+ * Archived partitions are not mapped as JPA entities, so they are queried with
+ * plain SQL and returned directly as DTOs. Every query requires a date range so
+ * that only the matching archived partitions are scanned.
+ */
+@Repository
+public class OrderArchiveRepository {
+
+    private static final String ORDER_COLUMNS = "SELECT o.order_id, o.user_id, o.shop_id, o.total_amount, o.status, "
+            + "o.queue_number, o.order_date_time, o.cancelled_at, o.cancellation_reason, "
+            + "u.first_name, u.last_name, u.email, s.shop_name, s.shop_image_url "
+            + "FROM orders_archive.orders o "
+            + "LEFT JOIN users u ON u.user_id = o.user_id "
+            + "LEFT JOIN shop s ON s.shop_id = o.shop_id ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Find archived orders for a customer within a date range
+     *
+     * @param customerId The ID of the customer
+     * @param startDate  The start date
+     * @param endDate    The end date
+     * @return List of archived orders, newest first
+     */
+    public List<OrderResponse> findByCustomerIdAndDateRange(Long customerId, Date startDate, Date endDate) {
+        List<OrderResponse> orders = jdbcTemplate.query(
+                ORDER_COLUMNS + "WHERE o.user_id = ? AND o.order_date_time BETWEEN ? AND ? "
+                        + "ORDER BY o.order_date_time DESC",
+                (rs, rowNum) -> mapOrder(rs),
+                customerId, new Timestamp(startDate.getTime()), new Timestamp(endDate.getTime()));
+        attachItems(orders, startDate, endDate);
+        return orders;
+    }
+
+    /**
+     * Find archived orders for a shop within a date range
+     *
+     * @param shopId    The ID of the shop
+     * @param startDate The start date
+     * @param endDate   The end date
+     * @return List of archived orders, newest first
+     */
+    public List<OrderResponse> findByShopIdAndDateRange(Long shopId, Date startDate, Date endDate) {
+        List<OrderResponse> orders = jdbcTemplate.query(
+                ORDER_COLUMNS + "WHERE o.shop_id = ? AND o.order_date_time BETWEEN ? AND ? "
+                        + "ORDER BY o.order_date_time DESC",
+                (rs, rowNum) -> mapOrder(rs),
+                shopId, new Timestamp(startDate.getTime()), new Timestamp(endDate.getTime()));
+        attachItems(orders, startDate, endDate);
+        return orders;
+    }
+
+    // Loads the items of all given orders in one query over the same date range
+    private void attachItems(List<OrderResponse> orders, Date startDate, Date endDate) {
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        Map<Long, OrderResponse> byId = new LinkedHashMap<>();
+        for (OrderResponse order : orders) {
+            order.setOrderItems(new ArrayList<>());
+            byId.put(order.getOrderId(), order);
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(byId.size(), "?"));
+        List<Object> args = new ArrayList<>(byId.keySet());
+        args.add(new Timestamp(startDate.getTime()));
+        args.add(new Timestamp(endDate.getTime()));
+
+        jdbcTemplate.query(
+                "SELECT oi.id, oi.order_id, oi.item_id, oi.quantity, oi.price_at_purchase, "
+                        + "m.item_name, m.item_image_url "
+                        + "FROM orders_archive.order_item oi "
+                        + "LEFT JOIN menu_item m ON m.item_id = oi.item_id "
+                        + "WHERE oi.order_id IN (" + placeholders + ") AND oi.order_date_time BETWEEN ? AND ?",
+                rs -> {
+                    OrderItemResponse item = new OrderItemResponse();
+                    item.setId(rs.getLong("id"));
+                    item.setMenuItemId(rs.getLong("item_id"));
+                    item.setMenuItemName(rs.getString("item_name"));
+                    item.setMenuItemImageURL(rs.getString("item_image_url"));
+                    item.setQuantity(rs.getInt("quantity"));
+                    item.setPriceAtPurchase(rs.getBigDecimal("price_at_purchase"));
+                    item.setSubtotal(item.getPriceAtPurchase().multiply(BigDecimal.valueOf(item.getQuantity())));
+                    byId.get(rs.getLong("order_id")).getOrderItems().add(item);
+                },
+                args.toArray());
+    }
+
+    private static OrderResponse mapOrder(ResultSet rs) throws SQLException {
+        OrderResponse order = new OrderResponse();
+        order.setOrderId(rs.getLong("order_id"));
+        order.setCustomerId(rs.getLong("user_id"));
+        order.setShopId(rs.getLong("shop_id"));
+        order.setTotalAmount(rs.getBigDecimal("total_amount"));
+        order.setStatus(rs.getString("status"));
+        order.setQueueNumber(rs.getObject("queue_number", Integer.class));
+        order.setOrderDateTime(rs.getTimestamp("order_date_time"));
+        order.setCancelledAt(rs.getTimestamp("cancelled_at"));
+        order.setCancellationReason(rs.getString("cancellation_reason"));
+
+        String firstName = rs.getString("first_name");
+        String lastName = rs.getString("last_name");
+        if (firstName != null || lastName != null) {
+            order.setCustomerName(((firstName != null ? firstName : "") + " "
+                    + (lastName != null ? lastName : "")).trim());
+        }
+        order.setCustomerEmail(rs.getString("email"));
+        order.setShopName(rs.getString("shop_name"));
+        order.setShopImageURL(rs.getString("shop_image_url"));
+        return order;
+    }
+}
@@ -1,6 +1,9 @@
 package com.wildeats.onlinecanteen.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -9,9 +12,11 @@ import com.wildeats.onlinecanteen.entity.OrderEntity;
 import com.wildeats.onlinecanteen.entity.OrderEntity.Status;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
@@ -32,6 +37,64 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
          */
         List<OrderEntity> findByShopShopIdOrderByOrderDateTimeDesc(Long shopId);
 
+        /**
+         * Find the first page of a customer's order IDs, newest first
+         * 
+         * @param customerId The ID of the customer
+         * @param pageable   Page size (always the first page)
+         * @return List of order IDs
+         */
+        @Query("SELECT o.orderId FROM OrderEntity o WHERE o.customer.userId = :customerId ORDER BY o.orderDateTime DESC, o.orderId DESC")
+        List<Long> findFirstIdsByCustomer(@Param("customerId") Long customerId, Pageable pageable);
+
+        /**
+         * Find the next page of a customer's order IDs, newest first, after a
+         * keyset cursor
+         * 
+         * @param customerId The ID of the customer
+         * @param beforeTime Order time of the last order already read
+         * @param beforeId   ID of the last order already read
+         * @param pageable   Page size (always the first page)
+         * @return List of order IDs
+         */
+        @Query("SELECT o.orderId FROM OrderEntity o WHERE o.customer.userId = :customerId AND (o.orderDateTime < :beforeTime OR (o.orderDateTime = :beforeTime AND o.orderId < :beforeId)) ORDER BY o.orderDateTime DESC, o.orderId DESC")
+        List<Long> findIdsByCustomerBefore(@Param("customerId") Long customerId,
+                        @Param("beforeTime") Date beforeTime, @Param("beforeId") Long beforeId, Pageable pageable);
+
+        /**
+         * Find the first page of a shop's order IDs, newest first
+         * 
+         * @param shopId   The ID of the shop
+         * @param pageable Page size (always the first page)
+         * @return List of order IDs
+         */
+        @Query("SELECT o.orderId FROM OrderEntity o WHERE o.shop.shopId = :shopId ORDER BY o.orderDateTime DESC, o.orderId DESC")
+        List<Long> findFirstIdsByShop(@Param("shopId") Long shopId, Pageable pageable);
+
+        /**
+         * Find the next page of a shop's order IDs, newest first, after a keyset
+         * cursor
+         * 
+         * @param shopId     The ID of the shop
+         * @param beforeTime Order time of the last order already read
+         * @param beforeId   ID of the last order already read
+         * @param pageable   Page size (always the first page)
+         * @return List of order IDs
+         */
+        @Query("SELECT o.orderId FROM OrderEntity o WHERE o.shop.shopId = :shopId AND (o.orderDateTime < :beforeTime OR (o.orderDateTime = :beforeTime AND o.orderId < :beforeId)) ORDER BY o.orderDateTime DESC, o.orderId DESC")
+        List<Long> findIdsByShopBefore(@Param("shopId") Long shopId,
+                        @Param("beforeTime") Date beforeTime, @Param("beforeId") Long beforeId, Pageable pageable);
+
+        /**
+         * Find orders with their items and menu items in one query
+         * 
+         * @param orderIds The IDs of the orders
+         * @return List of orders, newest first
+         */
+        @EntityGraph(attributePaths = { "orderItems", "orderItems.menuItem" })
+        @Query("SELECT o FROM OrderEntity o WHERE o.orderId IN :orderIds ORDER BY o.orderDateTime DESC, o.orderId DESC")
+        List<OrderEntity> findWithItemsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
         /**
          * Find all orders for a specific shop with a specific status
          * 
@@ -75,10 +138,13 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
          * Find all orders for a shop that are currently active (not completed or
          * cancelled)
          * 
+         * The statuses are listed positively so the (shop_id, status, queue_number)
+         * index and the active-order partial index can serve the lookup
+         * 
          * @param shopId The ID of the shop
          * @return List of active orders
          */
-        @Query("SELECT o FROM OrderEntity o WHERE o.shop.shopId = :shopId AND o.status NOT IN ('COMPLETED', 'CANCELLED') ORDER BY o.queueNumber ASC")
+        @Query("SELECT o FROM OrderEntity o WHERE o.shop.shopId = :shopId AND o.status IN ('PENDING', 'PREPARING', 'READY') ORDER BY o.queueNumber ASC")
         List<OrderEntity> findActiveOrdersByShopId(@Param("shopId") Long shopId);
 
         /**
@@ -114,4 +180,117 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
         @Query("SELECT COALESCE(SUM(o.totalAmount), 0) FROM OrderEntity o WHERE o.shop.shopId = :shopId AND o.status = 'COMPLETED' AND o.orderDateTime BETWEEN :startDate AND :endDate")
         BigDecimal calculateRevenueForShopAndDateRange(@Param("shopId") Long shopId, @Param("startDate") Date startDate,
                         @Param("endDate") Date endDate);
-}
\ No newline at end of file
+
+        /**
+         * Move an order to a new status if its current status is one of the allowed
+         * predecessors. The status check and the write happen in one statement, so
+         * concurrent transitions cannot overwrite each other
+         * 
+         * @param orderId The ID of the order
+         * @param status  The new status
+         * @param from    The statuses the order may currently be in
+         * @return 1 if the order was updated, 0 otherwise
+         */
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.status = :status, o.version = o.version + 1 WHERE o.orderId = :orderId AND o.status IN :from")
+        int transitionStatus(@Param("orderId") Long orderId, @Param("status") Status status,
+                        @Param("from") Set<Status> from);
+
+        /**
+         * Cancel an order if its current status is one of the allowed predecessors
+         * 
+         * @param orderId     The ID of the order
+         * @param reason      The reason for cancellation
+         * @param cancelledAt The time of cancellation
+         * @param from        The statuses the order may currently be in
+         * @return 1 if the order was cancelled, 0 otherwise
+         */
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.status = com.wildeats.onlinecanteen.entity.OrderEntity.Status.CANCELLED, o.cancellationReason = :reason, o.cancelledAt = :cancelledAt, o.version = o.version + 1 WHERE o.orderId = :orderId AND o.status IN :from")
+        int cancel(@Param("orderId") Long orderId, @Param("reason") String reason,
+                        @Param("cancelledAt") Date cancelledAt, @Param("from") Set<Status> from);
+
+        /**
+         * Status and version of a set of orders of one shop, without loading the
+         * full entities
+         * 
+         * @param shopId   The ID of the shop
+         * @param orderIds The IDs of the orders
+         * @return The status of every matching order
+         */
+        @Query("SELECT o.orderId AS orderId, o.status AS status, o.version AS version FROM OrderEntity o WHERE o.shop.shopId = :shopId AND o.orderId IN :orderIds")
+        List<OrderStatusView> findStatusViews(@Param("shopId") Long shopId,
+                        @Param("orderIds") Collection<Long> orderIds);
+
+        /**
+         * Move an order of a shop to a new status if it is still at the version
+         * it was read at, so the caller knows the status it replaced
+         * 
+         * @param shopId  The ID of the shop
+         * @param orderId The ID of the order
+         * @param status  The new status
+         * @param version The version the order was read at
+         * @return 1 if the order was updated, 0 otherwise
+         */
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.status = :status, o.version = o.version + 1 WHERE o.shop.shopId = :shopId AND o.orderId = :orderId AND o.version = :version")
+        int transitionStatusForShop(@Param("shopId") Long shopId, @Param("orderId") Long orderId,
+                        @Param("status") Status status, @Param("version") Long version);
+
+        /**
+         * Cancel an order of a shop if it is still at the version it was read at
+         * 
+         * @param shopId      The ID of the shop
+         * @param orderId     The ID of the order
+         * @param reason      The reason for cancellation
+         * @param cancelledAt The time of cancellation
+         * @param version     The version the order was read at
+         * @return 1 if the order was cancelled, 0 otherwise
+         */
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.status = com.wildeats.onlinecanteen.entity.OrderEntity.Status.CANCELLED, o.cancellationReason = :reason, o.cancelledAt = :cancelledAt, o.version = o.version + 1 WHERE o.shop.shopId = :shopId AND o.orderId = :orderId AND o.version = :version")
+        int cancelForShop(@Param("shopId") Long shopId, @Param("orderId") Long orderId,
+                        @Param("reason") String reason, @Param("cancelledAt") Date cancelledAt,
+                        @Param("version") Long version);
+
+        /**
+         * Find scheduled pre-orders whose pickup slot is due, in the order they
+         * should join the kitchen queue
+         * 
+         * @param until Release orders with a pickup time up to this time
+         * @return The due orders
+         */
+        @Query("SELECT o.orderId AS orderId, o.shop.shopId AS shopId FROM OrderEntity o WHERE o.status = com.wildeats.onlinecanteen.entity.OrderEntity.Status.SCHEDULED AND o.pickupTime <= :until ORDER BY o.pickupTime ASC, o.orderId ASC")
+        List<ScheduledOrderView> findDueScheduledOrders(@Param("until") Date until);
+
+        /**
+         * Give an order its queue number
+         * 
+         * @param orderId     The ID of the order
+         * @param queueNumber The queue number
+         * @return 1 if the order was updated, 0 otherwise
+         */
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.queueNumber = :queueNumber WHERE o.orderId = :orderId")
+        int assignQueueNumber(@Param("orderId") Long orderId, @Param("queueNumber") Integer queueNumber);
+
+        /**
+         * Lightweight view of an order's status
+         */
+        interface OrderStatusView {
+                Long getOrderId();
+
+                Status getStatus();
+
+                Long getVersion();
+        }
+
+        /**
+         * Order and shop of a scheduled pre-order
+         */
+        interface ScheduledOrderView {
+                Long getOrderId();
+
+                Long getShopId();
+        }
+}
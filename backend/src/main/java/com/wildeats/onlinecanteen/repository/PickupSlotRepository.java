@@ -0,0 +1,99 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Admission counters of pickup slots in the pickup_slot_counter table
+ *
+ * A booking is a single conditional increment of the slot's row, so
+ * concurrent checkouts can never push a slot past its capacity. The row stays
+ * locked until the surrounding transaction ends, which only blocks checkouts
+ * for the same shop and slot; call it late in the transaction.
+ */
+@Repository
+public class PickupSlotRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Book one order into a pickup slot if it has room left
+     *
+     * @param shopId    The ID of the shop
+     * @param slotStart Start of the slot
+     * @param capacity  Orders the slot accepts
+     * @return true if the order was admitted, false if the slot is full
+     */
+    public boolean tryBook(Long shopId, Date slotStart, int capacity) {
+        Timestamp start = new Timestamp(slotStart.getTime());
+        if (increment(shopId, start, capacity) > 0) {
+            return true;
+        }
+
+        // First booking of the slot, or the slot is full
+        jdbcTemplate.update("INSERT INTO pickup_slot_counter (shop_id, slot_start, booked) VALUES (?, ?, 0) "
+                + "ON CONFLICT DO NOTHING", shopId, start);
+        return increment(shopId, start, capacity) > 0;
+    }
+
+    /**
+     * Give the slots of cancelled pre-orders back, in one statement. Slots that
+     * have already started are left alone.
+     *
+     * @param orderIds The IDs of the cancelled orders
+     * @param now      The current time
+     * @return Number of slots updated
+     */
+    public int release(Collection<Long> orderIds, Date now) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        String ids = String.join(",", Collections.nCopies(orderIds.size(), "?"));
+        String orders = "FROM orders o WHERE o.order_id IN (" + ids + ") AND o.pickup_time IS NOT NULL";
+        List<Object> args = new ArrayList<>(orderIds);
+        args.addAll(orderIds);
+        args.add(new Timestamp(now.getTime()));
+
+        return jdbcTemplate.update("UPDATE pickup_slot_counter SET booked = booked - (SELECT COUNT(*) " + orders
+                + " AND o.shop_id = pickup_slot_counter.shop_id AND o.pickup_time = pickup_slot_counter.slot_start)"
+                + " WHERE EXISTS (SELECT 1 " + orders
+                + " AND o.shop_id = pickup_slot_counter.shop_id AND o.pickup_time = pickup_slot_counter.slot_start)"
+                + " AND slot_start > ?", args.toArray());
+    }
+
+    /**
+     * Orders booked per slot of a shop
+     *
+     * @param shopId The ID of the shop
+     * @param from   Start of the range (inclusive)
+     * @param to     End of the range (exclusive)
+     * @return Booked orders, by slot start time in milliseconds
+     */
+    public Map<Long, Integer> findBooked(Long shopId, Date from, Date to) {
+        Map<Long, Integer> booked = new HashMap<>();
+        jdbcTemplate.query("SELECT slot_start, booked FROM pickup_slot_counter "
+                + "WHERE shop_id = ? AND slot_start >= ? AND slot_start < ?",
+                rs -> {
+                    booked.put(rs.getTimestamp("slot_start").getTime(), rs.getInt("booked"));
+                },
+                shopId, new Timestamp(from.getTime()), new Timestamp(to.getTime()));
+        return booked;
+    }
+
+    private int increment(Long shopId, Timestamp slotStart, int capacity) {
+        return jdbcTemplate.update("UPDATE pickup_slot_counter SET booked = booked + 1 "
+                + "WHERE shop_id = ? AND slot_start = ? AND booked < ?", shopId, slotStart, capacity);
+    }
+}
@@ -0,0 +1,59 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Hands out queue numbers from the shop_queue_counter table
+ *
+ * Incrementing the counter row locks it until the surrounding transaction
+ * ends, so concurrent checkouts at the same shop get consecutive numbers while
+ * checkouts at other shops are not blocked. Must be called inside a
+ * transaction, as late as possible to keep the lock short.
+ */
+@Repository
+public class QueueNumberRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UpdateReturning updateReturning;
+
+    /**
+     * Allocate the next queue number of a shop for a day
+     *
+     * @param shopId The ID of the shop
+     * @param day    The day the order is placed on
+     * @return The allocated queue number
+     */
+    public int nextQueueNumber(Long shopId, LocalDate day) {
+        Date queueDate = Date.valueOf(day);
+
+        List<Integer> number = increment(shopId, queueDate);
+        if (number.isEmpty()) {
+            // First order of the day: start after any order already placed today
+            jdbcTemplate.update("INSERT INTO shop_queue_counter (shop_id, queue_date, last_number) "
+                    + "SELECT ?, ?, COALESCE(MAX(o.queue_number), 0) FROM orders o "
+                    + "WHERE o.shop_id = ? AND o.order_date_time >= ? AND o.order_date_time < ? "
+                    + "ON CONFLICT DO NOTHING",
+                    shopId, queueDate, shopId, Timestamp.valueOf(day.atStartOfDay()),
+                    Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            number = increment(shopId, queueDate);
+        }
+        return number.get(0);
+    }
+
+    // Reads the new number back in the same statement
+    private List<Integer> increment(Long shopId, Date queueDate) {
+        return updateReturning.update(
+                "UPDATE shop_queue_counter SET last_number = last_number + 1 WHERE shop_id = ? AND queue_date = ?",
+                "last_number", Integer.class, shopId, queueDate);
+    }
+}
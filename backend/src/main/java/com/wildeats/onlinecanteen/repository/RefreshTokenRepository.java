@@ -0,0 +1,82 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.entity.RefreshTokenEntity;
+
+import java.util.Date;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshTokenEntity, Long> {
+    /**
+     * Find a refresh token by the hash of its value
+     * 
+     * @param tokenHash SHA-256 hash of the token value
+     * @return Optional containing the token if found
+     */
+    Optional<RefreshTokenEntity> findByTokenHash(String tokenHash);
+
+    /**
+     * Check whether any token of a family has been revoked
+     * 
+     * @param familyId The family of tokens issued by one login
+     * @return true if the family has been revoked
+     */
+    boolean existsByFamilyIdAndRevokedAtIsNotNull(String familyId);
+
+    /**
+     * Mark a token as used, if it has not been used or revoked yet. Of two
+     * concurrent refreshes with the same token only one gets 1 back.
+     * 
+     * @param id  The ID of the token
+     * @param now The current time
+     * @return 1 if the token was marked, 0 if it had already been used or
+     *         revoked
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshTokenEntity t SET t.rotatedAt = :now "
+            + "WHERE t.id = :id AND t.rotatedAt IS NULL AND t.revokedAt IS NULL")
+    int markRotated(@Param("id") Long id, @Param("now") Date now);
+
+    /**
+     * Revoke every token of a family that is not revoked yet
+     * 
+     * @param familyId The family of tokens issued by one login
+     * @param now      The current time
+     * @return Number of revoked tokens
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshTokenEntity t SET t.revokedAt = :now WHERE t.familyId = :familyId AND t.revokedAt IS NULL")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") Date now);
+
+    /**
+     * Revoke every token of a user that is not revoked yet
+     * 
+     * @param userId The ID of the user
+     * @param now    The current time
+     * @return Number of revoked tokens
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshTokenEntity t SET t.revokedAt = :now WHERE t.userId = :userId AND t.revokedAt IS NULL")
+    int revokeAllForUser(@Param("userId") Long userId, @Param("now") Date now);
+
+    /**
+     * Delete all tokens that expired before the given time
+     * 
+     * @param now The current time
+     * @return Number of deleted tokens
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshTokenEntity t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+}
@@ -0,0 +1,38 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.entity.RevokedTokenEntity;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedTokenEntity, String> {
+    /**
+     * Find the IDs of tokens revoked at or after the given time that have not
+     * expired yet
+     * 
+     * @param since Earliest revocation time
+     * @param now   The current time
+     * @return List of jti values
+     */
+    @Query("SELECT t.jti FROM RevokedTokenEntity t WHERE t.revokedAt >= :since AND t.expiresAt > :now")
+    List<String> findJtisRevokedSince(@Param("since") Date since, @Param("now") Date now);
+
+    /**
+     * Delete revoked tokens that have expired before the given time
+     * 
+     * @param now The current time
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedTokenEntity t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+}
@@ -0,0 +1,61 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.wildeats.onlinecanteen.entity.ShopDocumentEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ShopDocumentRepository extends JpaRepository<ShopDocumentEntity, Long> {
+    /**
+     * Find the documents of a shop, newest first
+     * 
+     * @param shopId The ID of the shop
+     * @return List of documents
+     */
+    List<ShopDocumentEntity> findByShopIdOrderByUploadedAtDesc(Long shopId);
+
+    /**
+     * Find a document of a shop
+     * 
+     * @param id     The ID of the document
+     * @param shopId The ID of the shop
+     * @return The document, if it belongs to the shop
+     */
+    Optional<ShopDocumentEntity> findByIdAndShopId(Long id, Long shopId);
+
+    /**
+     * Delete a document of a shop
+     * 
+     * @param id     The ID of the document
+     * @param shopId The ID of the shop
+     * @return 1 if the document was deleted, 0 if it was not found (or was
+     *         deleted concurrently)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM ShopDocumentEntity d WHERE d.id = :id AND d.shopId = :shopId")
+    int deleteByIdAndShopId(@Param("id") Long id, @Param("shopId") Long shopId);
+
+    /**
+     * Find the document of a shop with the given content
+     * 
+     * @param shopId      The ID of the shop
+     * @param contentHash SHA-256 hash of the content
+     * @return The document, if the shop has uploaded this content
+     */
+    Optional<ShopDocumentEntity> findByShopIdAndContentHash(Long shopId, String contentHash);
+
+    /**
+     * Check whether any document, of any shop, has the given content
+     * 
+     * @param contentHash SHA-256 hash of the content
+     * @return true if the content is still referenced
+     */
+    boolean existsByContentHash(String contentHash);
+}
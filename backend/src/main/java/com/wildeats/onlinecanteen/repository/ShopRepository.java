@@ -5,9 +5,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.wildeats.onlinecanteen.dto.ShopResponse;
 import com.wildeats.onlinecanteen.entity.ShopEntity;
 import com.wildeats.onlinecanteen.entity.ShopEntity.Status;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +32,18 @@ public interface ShopRepository extends JpaRepository<ShopEntity, Long> {
     @Query("SELECT s FROM ShopEntity s WHERE s.status = 'ACTIVE' AND s.isOpen = true")
     List<ShopEntity> findAllOperational();
 
+    /**
+     * Read the operational shops straight into response DTOs, selecting only
+     * the columns the DTO needs instead of loading the shops and their owners
+     * 
+     * @return List of operational shops as DTOs
+     */
+    @Query("SELECT new com.wildeats.onlinecanteen.dto.ShopResponse(s.shopId, s.shopName, s.shopDescr, "
+            + "s.shopAddress, s.location, s.contactNumber, s.shopImageURL, s.status, s.isOpen, "
+            + "s.pickupSlotMinutes, s.pickupSlotCapacity, o.userId, o.firstName, o.lastName, s.createdAt, "
+            + "s.updatedAt) FROM ShopEntity s LEFT JOIN s.owner o WHERE s.status = 'ACTIVE' AND s.isOpen = true")
+    List<ShopResponse> findAllOperationalResponses();
+
     /**
      * Find all shops owned by a specific user with a specific status
      * 
@@ -64,4 +78,44 @@ public interface ShopRepository extends JpaRepository<ShopEntity, Long> {
      */
     @Query("SELECT CASE WHEN COUNT(s) > 0 THEN true ELSE false END FROM ShopEntity s WHERE s.shopId = :shopId AND s.owner.userId = :ownerId")
     boolean existsByShopIdAndOwnerId(@Param("shopId") Long shopId, @Param("ownerId") Long ownerId);
-}
\ No newline at end of file
+
+    /**
+     * Read what a shop's cache validators are derived from, without loading
+     * the shop
+     * 
+     * @param shopId The ID of the shop
+     * @return Status, last update and menu version of the shop if found
+     */
+    @Query("SELECT s.status AS status, s.updatedAt AS updatedAt, s.menuVersion AS menuVersion FROM ShopEntity s WHERE s.shopId = :shopId")
+    Optional<ShopVersionView> findVersionById(@Param("shopId") Long shopId);
+
+    /**
+     * Summarize the operational shops for a cache validator of the shop list.
+     * A shop leaving or joining the list is itself an update, so the newest
+     * update time together with the count changes whenever the list does.
+     * 
+     * @return Number of operational shops and their newest update time
+     */
+    @Query("SELECT COUNT(s) AS count, MAX(s.updatedAt) AS lastUpdated FROM ShopEntity s WHERE s.status = 'ACTIVE' AND s.isOpen = true")
+    ShopListVersionView findOperationalVersion();
+
+    /**
+     * Cache validator inputs of a shop
+     */
+    interface ShopVersionView {
+        Status getStatus();
+
+        Date getUpdatedAt();
+
+        Long getMenuVersion();
+    }
+
+    /**
+     * Cache validator inputs of the operational shop list
+     */
+    interface ShopListVersionView {
+        Long getCount();
+
+        Date getLastUpdated();
+    }
+}
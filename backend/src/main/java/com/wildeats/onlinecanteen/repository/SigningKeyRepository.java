@@ -0,0 +1,18 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.wildeats.onlinecanteen.entity.SigningKeyEntity;
+
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKeyEntity, String> {
+    /**
+     * Find all signing keys, newest first
+     * 
+     * @return List of signing keys
+     */
+    List<SigningKeyEntity> findAllByOrderByCreatedAtDesc();
+}
@@ -0,0 +1,46 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Runs an UPDATE and reads a column of the rows it changed, in one statement
+ *
+ * PostgreSQL appends RETURNING to the UPDATE. H2 (used in tests) has no
+ * RETURNING and selects from the FINAL TABLE of the UPDATE instead.
+ */
+@Repository
+public class UpdateReturning {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgreSQL;
+
+    /**
+     * @param update The UPDATE statement, without RETURNING
+     * @param column The column to read from every updated row
+     * @param type   The type of the column
+     * @param args   Arguments of the UPDATE
+     * @return The column of every updated row
+     */
+    public <T> List<T> update(String update, String column, Class<T> type, Object... args) {
+        String sql = isPostgreSQL()
+                ? update + " RETURNING " + column
+                : "SELECT " + column + " FROM FINAL TABLE (" + update + ")";
+        return jdbcTemplate.queryForList(sql, type, args);
+    }
+
+    private boolean isPostgreSQL() {
+        if (postgreSQL == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgreSQL = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgreSQL;
+    }
+}
@@ -0,0 +1,186 @@
+package com.wildeats.onlinecanteen.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Filtered, keyset-paginated listing of users for the admin endpoints
+ *
+ * Pages are ordered by user ID and continue after the last ID of the previous
+ * page, so every page costs the same however deep the listing goes. Only the
+ * filters that are set become part of the SQL, which keeps the statements
+ * simple enough for the planner to use the matching index. Roles are read
+ * separately, in one query per page.
+ */
+@Repository
+public class UserDirectoryRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Read a page of users
+     *
+     * @param filter  The filters to apply
+     * @param afterId Only users with a higher ID, or null for the first page
+     * @param limit   Maximum number of users
+     * @return The users, ordered by ID
+     */
+    public List<UserRow> findPage(UserFilter filter, Long afterId, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT u.user_id, u.first_name, u.last_name, u.email FROM users u WHERE ");
+        if (afterId != null) {
+            sql.append("u.user_id > ? AND ");
+            args.add(afterId);
+        }
+        sql.append(where(filter, args)).append(" ORDER BY u.user_id LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new UserRow(
+                rs.getLong("user_id"),
+                rs.getString("first_name"),
+                rs.getString("last_name"),
+                rs.getString("email")), args.toArray());
+    }
+
+    /**
+     * Count the users matching the filters
+     *
+     * @param filter The filters to apply
+     * @return Number of matching users
+     */
+    public long count(UserFilter filter) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM users u WHERE " + where(filter, args);
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args.toArray());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Read the role names of some users in one query
+     *
+     * @param userIds The IDs of the users
+     * @return Role names by user ID; users without roles are left out
+     */
+    public Map<Long, List<String>> findRoleNames(Collection<Long> userIds) {
+        Map<Long, List<String>> roles = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return roles;
+        }
+        jdbcTemplate.query("SELECT ur.user_id, r.role_name FROM user_role ur JOIN role r ON r.role_id = ur.role_id "
+                + "WHERE ur.user_id IN (" + String.join(",", Collections.nCopies(userIds.size(), "?")) + ") "
+                + "ORDER BY ur.user_id, r.role_name",
+                rs -> {
+                    roles.computeIfAbsent(rs.getLong("user_id"), id -> new ArrayList<>())
+                            .add(rs.getString("role_name"));
+                }, userIds.toArray());
+        return roles;
+    }
+
+    private static String where(UserFilter filter, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getRoleName() != null) {
+            conditions.add("EXISTS (SELECT 1 FROM user_role ur JOIN role r ON r.role_id = ur.role_id "
+                    + "WHERE ur.user_id = u.user_id AND r.role_name = ?)");
+            args.add(filter.getRoleName());
+        }
+        if (filter.getCreatedFrom() != null) {
+            conditions.add("u.created_at >= ?");
+            args.add(new Timestamp(filter.getCreatedFrom().getTime()));
+        }
+        if (filter.getCreatedBefore() != null) {
+            conditions.add("u.created_at < ?");
+            args.add(new Timestamp(filter.getCreatedBefore().getTime()));
+        }
+        if (filter.getEmailPrefix() != null) {
+            conditions.add("LOWER(u.email) LIKE ? ESCAPE '\\'");
+            args.add(filter.getEmailPrefix().toLowerCase()
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        return conditions.isEmpty() ? "TRUE" : String.join(" AND ", conditions);
+    }
+
+    /**
+     * Filters of the user listing; null fields do not filter
+     */
+    public static class UserFilter {
+        private final String roleName;
+        private final Date createdFrom;
+        private final Date createdBefore;
+        private final String emailPrefix;
+
+        /**
+         * @param roleName      Only users with this role
+         * @param createdFrom   Only users created at or after this time
+         * @param createdBefore Only users created before this time
+         * @param emailPrefix   Only users whose email starts with this,
+         *                      ignoring case
+         */
+        public UserFilter(String roleName, Date createdFrom, Date createdBefore, String emailPrefix) {
+            this.roleName = roleName;
+            this.createdFrom = createdFrom;
+            this.createdBefore = createdBefore;
+            this.emailPrefix = emailPrefix;
+        }
+
+        public String getRoleName() {
+            return roleName;
+        }
+
+        public Date getCreatedFrom() {
+            return createdFrom;
+        }
+
+        public Date getCreatedBefore() {
+            return createdBefore;
+        }
+
+        public String getEmailPrefix() {
+            return emailPrefix;
+        }
+    }
+
+    /**
+     * Summary columns of a user
+     */
+    public static class UserRow {
+        private final Long userId;
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+
+        public UserRow(Long userId, String firstName, String lastName, String email) {
+            this.userId = userId;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.wildeats.onlinecanteen.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.wildeats.onlinecanteen.entity.UserEntity;
 
@@ -52,4 +54,79 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
      */
     @Query("SELECT u FROM UserEntity u JOIN u.roles r WHERE r.roleName = 'SELLER'")
     List<UserEntity> findAllSellers();
-}
\ No newline at end of file
+
+    /**
+     * Read the summary columns of all users, without their roles
+     * 
+     * @return Summaries of all users, ordered by ID
+     */
+    @Query("SELECT u.userId AS userId, u.firstName AS firstName, u.lastName AS lastName, u.email AS email "
+            + "FROM UserEntity u ORDER BY u.userId")
+    List<UserSummaryView> findAllSummaries();
+
+    /**
+     * Read the summary columns of the users with a specific role, without
+     * their roles
+     * 
+     * @param roleName The name of the role
+     * @return Summaries of the users with the role, ordered by ID
+     */
+    @Query("SELECT u.userId AS userId, u.firstName AS firstName, u.lastName AS lastName, u.email AS email "
+            + "FROM UserEntity u JOIN u.roles r WHERE r.roleName = :roleName ORDER BY u.userId")
+    List<UserSummaryView> findSummariesByRoleName(@Param("roleName") String roleName);
+
+    /**
+     * Read the role names of all users in one query
+     * 
+     * @return One row per user and role
+     */
+    @Query("SELECT u.userId AS userId, r.roleName AS roleName FROM UserEntity u JOIN u.roles r")
+    List<UserRoleView> findAllRoleNames();
+
+    /**
+     * Read all role names of the users with a specific role in one query
+     * 
+     * @param roleName The name of the role the users have
+     * @return One row per user and role
+     */
+    @Query("SELECT u.userId AS userId, r.roleName AS roleName FROM UserEntity u JOIN u.roles r "
+            + "WHERE u.userId IN (SELECT f.userId FROM UserEntity f JOIN f.roles fr WHERE fr.roleName = :roleName)")
+    List<UserRoleView> findRoleNamesOfUsersWithRole(@Param("roleName") String roleName);
+
+    /**
+     * Replace a user's password hash, unless the password was changed since
+     * the old hash was read
+     * 
+     * @param userId  The ID of the user
+     * @param oldHash The hash that was read
+     * @param newHash The new hash of the same password
+     * @return Number of users updated (0 or 1)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserEntity u SET u.password = :newHash WHERE u.userId = :userId AND u.password = :oldHash")
+    int replacePasswordHash(@Param("userId") Long userId, @Param("oldHash") String oldHash,
+            @Param("newHash") String newHash);
+
+    /**
+     * Summary columns of a user
+     */
+    interface UserSummaryView {
+        Long getUserId();
+
+        String getFirstName();
+
+        String getLastName();
+
+        String getEmail();
+    }
+
+    /**
+     * A role of a user
+     */
+    interface UserRoleView {
+        Long getUserId();
+
+        String getRoleName();
+    }
+}
@@ -0,0 +1,37 @@
+package com.wildeats.onlinecanteen.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.entity.UserTokenCutoffEntity;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface UserTokenCutoffRepository extends JpaRepository<UserTokenCutoffEntity, Long> {
+    /**
+     * Find the IDs of users whose cutoff was set at or after the given time
+     * 
+     * @param since Earliest update time
+     * @return List of user IDs
+     */
+    @Query("SELECT c.userId FROM UserTokenCutoffEntity c WHERE c.updatedAt >= :since")
+    List<Long> findUserIdsUpdatedSince(@Param("since") Date since);
+
+    /**
+     * Delete cutoffs before the given time; every token they revoke has
+     * expired by then
+     * 
+     * @param before Cutoffs before this time are deleted
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserTokenCutoffEntity c WHERE c.notBefore < :before")
+    int deleteNotBeforeOlderThan(@Param("before") Date before);
+}
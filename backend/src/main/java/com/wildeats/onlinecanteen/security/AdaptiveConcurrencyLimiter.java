@@ -0,0 +1,170 @@
+package com.wildeats.onlinecanteen.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to observed latency (AIMD)
+ *
+ * - a request completing within the latency target while the limit is in
+ * use raises the limit by 1/limit, so roughly by one per round of requests
+ * - a request exceeding the target, or failing with a server error, cuts the
+ * limit by the backoff ratio, at most once per target interval so one slow
+ * burst does not collapse it
+ *
+ * Requests over the limit wait in a bounded queue until a slot frees up or
+ * their deadline passes. While the smoothed latency is above the target,
+ * requests over the limit are rejected right away instead of queued.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyTargetNanos;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long lastDecreaseNanos;
+
+    // Smoothed latency, read without the lock for Retry-After estimates
+    private volatile long smoothedLatencyNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+            long latencyTargetMillis, int maxQueue) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.maxQueue = maxQueue;
+        this.lastDecreaseNanos = System.nanoTime() - this.latencyTargetNanos - 1;
+    }
+
+    /**
+     * Take a slot, waiting up to the given time for one to free up
+     *
+     * @param maxWaitMillis How long the request may wait in the queue
+     * @return true if a slot was taken and must be released, false if the
+     *         request should be shed
+     */
+    public boolean tryAcquire(long maxWaitMillis) {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return true;
+            }
+            if (queued >= maxQueue || smoothedLatencyNanos > latencyTargetNanos) {
+                return false;
+            }
+
+            queued++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give a slot back and adjust the limit to how the request went
+     *
+     * @param latencyNanos How long the request took
+     * @param failed       Whether it failed with a server error
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit - 1;
+            inFlight--;
+            smoothedLatencyNanos = smoothedLatencyNanos == 0 ? latencyNanos
+                    : (long) (smoothedLatencyNanos * 0.9 + latencyNanos * 0.1);
+
+            long now = System.nanoTime();
+            if (failed || latencyNanos > latencyTargetNanos) {
+                if (now - lastDecreaseNanos > latencyTargetNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            if (inFlight < (int) limit) {
+                slotFreed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current concurrency limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Requests currently holding a slot
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Requests currently waiting for a slot
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rough time until a rejected request is likely to get through
+     *
+     * @return Seconds to wait before retrying, at least 1
+     */
+    public long estimateRetryAfterSeconds() {
+        long latency = smoothedLatencyNanos;
+        int currentLimit = Math.max(1, getLimit());
+        long backlogNanos = latency * (getQueued() + currentLimit) / currentLimit;
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(backlogNanos) + 1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.wildeats.onlinecanteen.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Admission control for database-bound endpoints
+ * 
+ * The connection pool is small, so letting every request through makes them
+ * all queue for a connection until the pool times out. Instead, requests to
+ * the configured paths pass an {@link AdaptiveConcurrencyLimiter}: they wait
+ * a bounded time for a slot and are otherwise shed with 503 and Retry-After.
+ * 
+ * Runs after the security filter chain, so unauthenticated requests never
+ * take a slot. The limit, in-flight and queued requests are exported as the
+ * admission.limit, admission.in_flight and admission.queued gauges, shed
+ * requests as the admission.rejected counter.
+ */
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    private final Counter rejected;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.paths:/api/orders/**,/api/shops/**,/api/menu-items/**,/api/users/**}")
+    private List<String> paths;
+
+    @Value("${admission.max-queue-wait-ms:1000}")
+    private long maxQueueWaitMillis;
+
+    public AdmissionControlFilter(MeterRegistry meterRegistry,
+            @Value("${admission.initial-limit:6}") int initialLimit,
+            @Value("${admission.min-limit:1}") int minLimit,
+            @Value("${admission.max-limit:50}") int maxLimit,
+            @Value("${admission.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${admission.latency-target-ms:500}") long latencyTargetMillis,
+            @Value("${admission.max-queue:50}") int maxQueue) {
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio,
+                latencyTargetMillis, maxQueue);
+
+        Gauge.builder("admission.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit").register(meterRegistry);
+        Gauge.builder("admission.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Requests currently admitted").register(meterRegistry);
+        Gauge.builder("admission.queued", limiter, AdaptiveConcurrencyLimiter::getQueued)
+                .description("Requests waiting for admission").register(meterRegistry);
+        this.rejected = Counter.builder("admission.rejected")
+                .description("Requests shed with 503").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String uri = request.getRequestURI();
+        for (String path : paths) {
+            if (pathMatcher.match(path.trim(), uri)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        if (!limiter.tryAcquire(maxQueueWaitMillis)) {
+            rejected.increment();
+            long retryAfter = limiter.estimateRetryAfterSeconds();
+            logger.warn("Shedding {} {} at concurrency limit {}", request.getMethod(), request.getRequestURI(),
+                    limiter.getLimit());
+
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setContentType("application/json");
+            response.getWriter().write(
+                    "{\"message\": \"The service is busy. Please try again shortly.\", \"retryAfter\": "
+                            + retryAfter + "}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.wildeats.onlinecanteen.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of strings: answers "definitely not added" or "maybe added"
+ *
+ * Sized for an expected number of entries and false positive rate; beyond
+ * that many entries the false positive rate grows, so the owner rebuilds a
+ * larger filter. Entries cannot be removed. Adding and checking are safe from
+ * any thread without locking.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+    private final int capacity;
+
+    /**
+     * @param expectedEntries   Number of entries the filter is sized for
+     * @param falsePositiveRate Wanted false positive rate at that size
+     */
+    BloomFilter(int expectedEntries, double falsePositiveRate) {
+        this.capacity = Math.max(1, expectedEntries);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.numBits = (int) Math.min(Math.max(64, optimalBits), Integer.MAX_VALUE - 64L);
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * ln2));
+        this.bits = new AtomicLongArray((numBits + 63) / 64);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    void put(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int index = index(h1 + i * h2);
+            long mask = 1L << index;
+            int word = index >>> 6;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int index = index(h1 + i * h2);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combined) {
+        return (combined & Integer.MAX_VALUE) % numBits;
+    }
+
+    // 64-bit FNV-1a over the characters, spread by the MurmurHash3 finalizer;
+    // the two halves seed the double hashing of put and mightContain
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
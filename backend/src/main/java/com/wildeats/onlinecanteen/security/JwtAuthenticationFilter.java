@@ -1,5 +1,6 @@
 package com.wildeats.onlinecanteen.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,31 +22,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenRevocationStore tokenRevocations;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        Claims claims = null;
 
-        // Extract JWT from Authorization header
+        // Extract JWT from Authorization header; verifying the signature and
+        // expiry once yields every claim
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
+                claims = jwtUtil.extractAllClaims(jwt);
             } catch (Exception e) {
-                logger.error("Error extracting username from JWT: " + e.getMessage());
+                logger.error("Error validating JWT: " + e.getMessage());
             }
         }
 
-        // Validate token and set authentication
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            if (jwtUtil.validateToken(jwt, username)) {
-                // Extract user details from token
-                Long userId = jwtUtil.extractUserId(jwt);
-                String role = jwtUtil.extractRole(jwt);
+        // Check revocation and set authentication
+        if (claims != null && claims.getSubject() != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            Long userId = claims.get("userId", Long.class);
+            if (tokenRevocations.isRevoked(claims.getId(), userId, claims.getIssuedAt())) {
+                logger.debug("Rejected revoked JWT of user " + userId);
+            } else {
+                String role = claims.get("role", String.class);
 
                 // Create authentication token
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
@@ -1,24 +1,50 @@
 package com.wildeats.onlinecanteen.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
-    // Generate a secure key for HS256
-    private final Key SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    // Keys shared by all instances, chosen by the kid header of each token
+    @Autowired
+    private SigningKeyProvider signingKeys;
+
+    @Value("${security.jwt.access-token-minutes:15}")
+    private long accessTokenMinutes;
+
+    private final SigningKeyResolverAdapter keyResolver = new SigningKeyResolverAdapter() {
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            Key key = signingKeys.getVerificationKey(header.getKeyId());
+            if (key == null) {
+                throw new JwtException("Unknown signing key: " + header.getKeyId());
+            }
+            return key;
+        }
+    };
 
-    private static final long JWT_TOKEN_VALIDITY = 1 * 60 * 60 * 1000; // 1 hour
+    /**
+     * Lifetime of access tokens
+     */
+    public long getAccessTokenValiditySeconds() {
+        return TimeUnit.MINUTES.toSeconds(accessTokenMinutes);
+    }
 
     /**
      * Extract username (email) from token
@@ -59,11 +85,13 @@ public class JwtUtil {
     }
 
     /**
-     * Extract all claims from token
+     * Extract all claims from token, verifying it once
+     * 
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
      */
-    private Claims extractAllClaims(String token) {
+    public Claims extractAllClaims(String token) {
         return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
+                .setSigningKeyResolver(keyResolver)
                 .build()
                 .parseClaimsJws(token)
                 .getBody();
@@ -90,12 +118,16 @@ public class JwtUtil {
      * Create token with claims
      */
     private String createToken(Map<String, Object> claims, String subject) {
+        SigningKeyProvider.ActiveKey signingKey = signingKeys.getActiveKey();
+        long now = System.currentTimeMillis();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY))
-                .signWith(SECRET_KEY, SignatureAlgorithm.HS256)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + TimeUnit.MINUTES.toMillis(accessTokenMinutes)))
+                .signWith(signingKey.getKey(), signingKey.getAlgorithm())
                 .compact();
     }
 
@@ -0,0 +1,235 @@
+package com.wildeats.onlinecanteen.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RSA or EC key pairs that sign and verify access tokens, read from a
+ * keystore file
+ *
+ * Each private key entry becomes a signing key whose kid is the JWK thumbprint
+ * (RFC 7638) of its public key, so every instance reading the same file
+ * derives the same IDs. The entry named by the active alias signs; without
+ * one, the entry with the newest certificate does. The others only verify,
+ * which allows rotating by adding a new entry, waiting until every instance
+ * and every client of the JWK set has picked it up, and removing the old entry
+ * once its tokens have expired. The file is read again when it changes.
+ *
+ * RSA keys sign with RS256, EC keys with ES256 or ES384 depending on the
+ * curve. The public keys are published by the JWKS endpoint.
+ */
+@Component
+@ConditionalOnProperty(name = "security.jwt.key-source", havingValue = "keystore")
+public class KeystoreSigningKeyProvider implements SigningKeyProvider {
+    private static final Logger logger = LoggerFactory.getLogger(KeystoreSigningKeyProvider.class);
+
+    private final Path path;
+    private final String type;
+    private final char[] password;
+    private final String activeAlias;
+
+    private volatile LoadedKeys keys;
+    private volatile long lastModified;
+
+    public KeystoreSigningKeyProvider(@Value("${security.jwt.keystore.path}") String path,
+            @Value("${security.jwt.keystore.type:PKCS12}") String type,
+            @Value("${security.jwt.keystore.password}") String password,
+            @Value("${security.jwt.keystore.active-alias:}") String activeAlias) {
+        this.path = Path.of(path);
+        this.type = type;
+        this.password = password.toCharArray();
+        this.activeAlias = activeAlias.isBlank() ? null : activeAlias;
+        try {
+            this.lastModified = Files.getLastModifiedTime(this.path).toMillis();
+            this.keys = load();
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot read signing keys from " + path, e);
+        }
+    }
+
+    /**
+     * Read the keystore again if the file has changed. A file that cannot be
+     * read leaves the current keys in place.
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.key-refresh-interval-ms:60000}",
+            initialDelayString = "${security.jwt.key-refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified != lastModified) {
+                keys = load();
+                lastModified = modified;
+            }
+        } catch (IOException | GeneralSecurityException | IllegalStateException e) {
+            logger.error("Keeping the current signing keys, cannot read {}: {}", path, e.getMessage());
+        }
+    }
+
+    @Override
+    public ActiveKey getActiveKey() {
+        return keys.active;
+    }
+
+    @Override
+    public Key getVerificationKey(String kid) {
+        return kid != null ? keys.publicKeys.get(kid) : null;
+    }
+
+    @Override
+    public List<Map<String, Object>> getPublicJwks() {
+        return keys.jwks;
+    }
+
+    private LoadedKeys load() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream in = Files.newInputStream(path)) {
+            keyStore.load(in, password);
+        }
+
+        Map<String, PublicKey> publicKeys = new HashMap<>();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        ActiveKey active = null;
+        long newest = Long.MIN_VALUE;
+
+        for (String alias : Collections.list(keyStore.aliases())) {
+            if (!keyStore.isKeyEntry(alias)) {
+                continue;
+            }
+            Key key = keyStore.getKey(alias, password);
+            X509Certificate certificate = (X509Certificate) keyStore.getCertificate(alias);
+            if (!(key instanceof PrivateKey) || certificate == null) {
+                continue;
+            }
+            PublicKey publicKey = certificate.getPublicKey();
+            SignatureAlgorithm algorithm = algorithmOf(publicKey);
+            Map<String, Object> jwk = toJwk(publicKey);
+            String kid = thumbprint(jwk);
+            jwk.put("kid", kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", algorithm.getValue());
+
+            publicKeys.put(kid, publicKey);
+            jwks.add(Collections.unmodifiableMap(jwk));
+
+            long notBefore = certificate.getNotBefore().getTime();
+            boolean isActive = activeAlias != null ? activeAlias.equals(alias) : notBefore > newest;
+            if (isActive) {
+                active = new ActiveKey(kid, key, algorithm);
+                newest = notBefore;
+            }
+        }
+
+        if (active == null) {
+            throw new IllegalStateException(activeAlias != null
+                    ? "No private key entry named " + activeAlias
+                    : "No private key entry");
+        }
+        logger.info("Loaded {} signing keys from {}, signing with {} ({})", publicKeys.size(), path,
+                active.getKid(), active.getAlgorithm().getValue());
+        return new LoadedKeys(active, publicKeys, List.copyOf(jwks));
+    }
+
+    private static SignatureAlgorithm algorithmOf(PublicKey publicKey) {
+        if (publicKey instanceof RSAPublicKey) {
+            return SignatureAlgorithm.RS256;
+        }
+        if (publicKey instanceof ECPublicKey ec) {
+            int bits = ec.getParams().getCurve().getField().getFieldSize();
+            if (bits == 256) {
+                return SignatureAlgorithm.ES256;
+            }
+            if (bits == 384) {
+                return SignatureAlgorithm.ES384;
+            }
+        }
+        throw new IllegalStateException("Unsupported signing key: " + publicKey.getAlgorithm());
+    }
+
+    // The members of each JWK in the lexicographic order RFC 7638 hashes them in
+    static Map<String, Object> toJwk(PublicKey publicKey) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        if (publicKey instanceof RSAPublicKey rsa) {
+            jwk.put("e", base64Url(rsa.getPublicExponent(), 0));
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(rsa.getModulus(), 0));
+        } else {
+            ECPublicKey ec = (ECPublicKey) publicKey;
+            int bits = ec.getParams().getCurve().getField().getFieldSize();
+            int length = (bits + 7) / 8;
+            jwk.put("crv", bits == 256 ? "P-256" : "P-384");
+            jwk.put("kty", "EC");
+            jwk.put("x", base64Url(ec.getW().getAffineX(), length));
+            jwk.put("y", base64Url(ec.getW().getAffineY(), length));
+        }
+        return jwk;
+    }
+
+    static String thumbprint(Map<String, Object> jwk) throws GeneralSecurityException {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Object> member : jwk.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(member.getKey()).append("\":\"").append(member.getValue()).append('"');
+        }
+        json.append('}');
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(json.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    // Unsigned big-endian bytes, left-padded to length when it is not zero
+    private static String base64Url(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (length > bytes.length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static class LoadedKeys {
+        final ActiveKey active;
+        final Map<String, PublicKey> publicKeys;
+        final List<Map<String, Object>> jwks;
+
+        LoadedKeys(ActiveKey active, Map<String, PublicKey> publicKeys, List<Map<String, Object>> jwks) {
+            this.active = active;
+            this.publicKeys = publicKeys;
+            this.jwks = jwks;
+        }
+    }
+}
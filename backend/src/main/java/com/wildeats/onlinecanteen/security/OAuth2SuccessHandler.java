@@ -4,6 +4,7 @@ import com.wildeats.onlinecanteen.entity.RoleEntity;
 import com.wildeats.onlinecanteen.entity.UserEntity;
 import com.wildeats.onlinecanteen.repository.RoleRepository;
 import com.wildeats.onlinecanteen.repository.UserRepository;
+import com.wildeats.onlinecanteen.service.RefreshTokenService;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -36,6 +37,9 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     @Value("${frontend.url:http://localhost:3000}")
     private String frontendUrl;
 
@@ -73,12 +77,14 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
                 .map(RoleEntity::getRoleName)
                 .collect(Collectors.toList());
 
-        // Generate JWT token
+        // Generate JWT token and refresh token
         String token = jwtUtil.generateToken(user.getUserId(), user.getEmail(), primaryRole);
+        String refreshToken = refreshTokenService.issue(user.getUserId());
 
         // Redirect to frontend with token and user info
         String redirectUrl = UriComponentsBuilder.fromUriString(frontendUrl + "/oauth-callback")
                 .queryParam("token", token)
+                .queryParam("refreshToken", refreshToken)
                 .queryParam("userId", user.getUserId())
                 .queryParam("email", user.getEmail())
                 .queryParam("firstName", user.getFirstName())
@@ -1,6 +1,7 @@
 package com.wildeats.onlinecanteen.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -51,9 +52,13 @@ public class SecurityConfig {
         @Autowired
         private OAuth2FailureHandler oAuth2FailureHandler;
 
+        // BCrypt cost; stored hashes of another cost are replaced at the next login
+        @Value("${security.password.bcrypt-strength:10}")
+        private int bcryptStrength;
+
         @Bean
         public PasswordEncoder passwordEncoder() {
-                return new BCryptPasswordEncoder();
+                return new BCryptPasswordEncoder(bcryptStrength);
         }
 
         @Bean
@@ -87,6 +92,9 @@ public class SecurityConfig {
                                                                 "/login/oauth2/**")
                                                 .permitAll()
 
+                                                // Public keys that verify access tokens - public
+                                                .requestMatchers("GET", "/.well-known/jwks.json").permitAll()
+
                                                 // Test endpoints - public
                                                 .requestMatchers("/api/test", "/api/canteen/test").permitAll()
 
@@ -94,6 +102,7 @@ public class SecurityConfig {
                                                 .requestMatchers("GET",
                                                                 "/api/shops",
                                                                 "/api/shops/*",
+                                                                "/api/shops/*/pickup-slots",
                                                                 "/api/shops/status/*")
                                                 .permitAll()
 
@@ -103,9 +112,14 @@ public class SecurityConfig {
                                                                 "/api/menu-items/shop/*/search",
                                                                 "/api/menu-items/shop/*/price",
                                                                 "/api/menu-items/shop/*/count",
+                                                                "/api/menu-items/shop/*/changes",
                                                                 "/api/menu-items/*")
                                                 .permitAll()
 
+                                                // Image variants - public, cacheable by CDNs
+                                                .requestMatchers("GET", "/api/images/*", "/api/images/*/*")
+                                                .permitAll()
+
                                                 // User profile viewing - public (limited info)
                                                 .requestMatchers("GET", "/api/users/*").permitAll()
 
@@ -128,7 +142,8 @@ public class SecurityConfig {
                                                 .requestMatchers("POST", "/api/shops").authenticated()
                                                 .requestMatchers("PUT",
                                                                 "/api/shops/*",
-                                                                "/api/shops/*/toggle-status")
+                                                                "/api/shops/*/toggle-status",
+                                                                "/api/shops/*/pickup-slots")
                                                 .authenticated()
                                                 .requestMatchers("DELETE", "/api/shops/*").authenticated()
                                                 .requestMatchers("/api/shops/my-shops").authenticated()
@@ -198,7 +213,7 @@ public class SecurityConfig {
                                 "http://127.0.0.1:8080"));
                 configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
                 configuration.setAllowedHeaders(Arrays.asList("*"));
-                configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+                configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "Idempotent-Replayed", "Retry-After", "ETag"));
                 configuration.setAllowCredentials(true);
                 configuration.setMaxAge(3600L);
 
@@ -0,0 +1,66 @@
+package com.wildeats.onlinecanteen.security;
+
+import java.security.Key;
+import java.util.List;
+import java.util.Map;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Source of the keys that sign and verify access tokens
+ *
+ * Every token names its signing key in the kid header; verification looks the
+ * key up by that ID. Which provider is used is chosen with
+ * security.jwt.key-source: database (shared HMAC keys, the default) or
+ * keystore (RSA or EC key pairs whose public halves are published as a JWK
+ * set, so other services can verify tokens without any shared secret).
+ */
+public interface SigningKeyProvider {
+
+    /**
+     * @return The key that signs new tokens
+     */
+    ActiveKey getActiveKey();
+
+    /**
+     * Find the key that verifies tokens with the given key ID
+     *
+     * @param kid The kid header of the token
+     * @return The key, or null if there is no such key
+     */
+    Key getVerificationKey(String kid);
+
+    /**
+     * The public keys that verify tokens, as JSON Web Keys (RFC 7517)
+     *
+     * @return One map per key; empty if the keys are secret
+     */
+    List<Map<String, Object>> getPublicJwks();
+
+    /**
+     * The key that signs new tokens, with its key ID and algorithm
+     */
+    class ActiveKey {
+        private final String kid;
+        private final Key key;
+        private final SignatureAlgorithm algorithm;
+
+        public ActiveKey(String kid, Key key, SignatureAlgorithm algorithm) {
+            this.kid = kid;
+            this.key = key;
+            this.algorithm = algorithm;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public Key getKey() {
+            return key;
+        }
+
+        public SignatureAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+    }
+}
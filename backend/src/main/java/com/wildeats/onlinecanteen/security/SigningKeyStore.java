@@ -0,0 +1,156 @@
+package com.wildeats.onlinecanteen.security;
+
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.wildeats.onlinecanteen.entity.SigningKeyEntity;
+import com.wildeats.onlinecanteen.repository.SigningKeyRepository;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The set of HMAC keys that sign and verify access tokens, kept in the
+ * signing_key table so that every instance accepts the tokens of the others
+ * and tokens survive restarts
+ *
+ * The newest key signs; each token names it in its kid header. A new key is
+ * created once the newest one is older than the rotation period, and a
+ * replaced key keeps verifying until every token it signed has expired. Each
+ * instance reads the table at startup and every refresh interval, and once
+ * more when a token names a key it does not know yet, so a key created on
+ * another instance is picked up right away.
+ *
+ * The keys are secret, so nothing is published as a JWK set; services other
+ * than this backend need the keystore provider to verify tokens.
+ */
+@Component
+@ConditionalOnProperty(name = "security.jwt.key-source", havingValue = "database", matchIfMissing = true)
+public class SigningKeyStore implements SigningKeyProvider {
+    private static final Logger logger = LoggerFactory.getLogger(SigningKeyStore.class);
+
+    static final String ALGORITHM = "HS256";
+    private static final int KEY_BYTES = 32;
+    // Unknown key IDs reload the table at most this often
+    private static final long MIN_RELOAD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private SigningKeyRepository signingKeyRepo;
+
+    @Value("${security.jwt.key-rotation-days:30}")
+    private long rotationDays;
+
+    @Value("${security.jwt.access-token-minutes:15}")
+    private long accessTokenMinutes;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile Map<String, SecretKey> keys = Map.of();
+    private volatile ActiveKey activeKey;
+    private volatile long lastReload;
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * Reload the keys, create a new signing key when the current one is due
+     * for rotation, and delete keys no token can still be signed with
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.key-refresh-interval-ms:60000}",
+            initialDelayString = "${security.jwt.key-refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        List<SigningKeyEntity> stored = reload();
+        long now = System.currentTimeMillis();
+
+        if (stored.isEmpty() || stored.get(0).getCreatedAt().getTime() < now - TimeUnit.DAYS.toMillis(rotationDays)) {
+            SigningKeyEntity created = new SigningKeyEntity();
+            created.setKid(UUID.randomUUID().toString());
+            created.setAlgorithm(ALGORITHM);
+            byte[] secret = new byte[KEY_BYTES];
+            random.nextBytes(secret);
+            created.setSecret(Base64.getEncoder().encodeToString(secret));
+            signingKeyRepo.save(created);
+            logger.info("Created signing key {}", created.getKid());
+            stored = reload();
+        }
+
+        // A replaced key may still sign on instances that have not reloaded
+        // yet, and its tokens stay valid for the access token lifetime
+        long retention = TimeUnit.MINUTES.toMillis(accessTokenMinutes) * 2;
+        List<String> expired = new ArrayList<>();
+        for (int i = 1; i < stored.size(); i++) {
+            Date replacedAt = stored.get(i - 1).getCreatedAt();
+            if (replacedAt.getTime() < now - retention) {
+                expired.add(stored.get(i).getKid());
+            }
+        }
+        if (!expired.isEmpty()) {
+            signingKeyRepo.deleteAllById(expired);
+            logger.info("Deleted {} expired signing keys", expired.size());
+        }
+    }
+
+    @Override
+    public ActiveKey getActiveKey() {
+        return activeKey;
+    }
+
+    @Override
+    public List<Map<String, Object>> getPublicJwks() {
+        return List.of();
+    }
+
+    @Override
+    public Key getVerificationKey(String kid) {
+        if (kid == null) {
+            return null;
+        }
+        SecretKey key = keys.get(kid);
+        if (key == null && System.nanoTime() - lastReload > MIN_RELOAD_INTERVAL_NANOS) {
+            synchronized (this) {
+                key = keys.get(kid);
+                if (key == null && System.nanoTime() - lastReload > MIN_RELOAD_INTERVAL_NANOS) {
+                    reload();
+                    key = keys.get(kid);
+                }
+            }
+        }
+        return key;
+    }
+
+    private List<SigningKeyEntity> reload() {
+        List<SigningKeyEntity> stored = signingKeyRepo.findAllByOrderByCreatedAtDesc();
+        Map<String, SecretKey> loaded = new HashMap<>();
+        for (SigningKeyEntity entity : stored) {
+            loaded.put(entity.getKid(), Keys.hmacShaKeyFor(Base64.getDecoder().decode(entity.getSecret())));
+        }
+        keys = loaded;
+        if (!stored.isEmpty()) {
+            String kid = stored.get(0).getKid();
+            activeKey = new ActiveKey(kid, loaded.get(kid), SignatureAlgorithm.HS256);
+        }
+        lastReload = System.nanoTime();
+        return stored;
+    }
+}
@@ -0,0 +1,235 @@
+package com.wildeats.onlinecanteen.security;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.wildeats.onlinecanteen.entity.RevokedTokenEntity;
+import com.wildeats.onlinecanteen.entity.UserTokenCutoffEntity;
+import com.wildeats.onlinecanteen.repository.RevokedTokenRepository;
+import com.wildeats.onlinecanteen.repository.UserTokenCutoffRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Revoked access tokens: single tokens by their jti (sign-out) and all tokens
+ * of a user issued before a cutoff (password change, role removal, deleted
+ * account, reused refresh token)
+ *
+ * Both live in the database, and a Bloom filter of the revoked jtis and of
+ * the users with a cutoff sits in front of them. Almost every request carries
+ * a token that is not revoked, which the filter rules out without a database
+ * query; only a possible match is looked up. Revocations made on this
+ * instance enter the filter at once; those made on other instances within the
+ * refresh interval. The filter is rebuilt, without the entries that expired,
+ * whenever expired revocations are purged or it fills up.
+ *
+ * Lookups are counted as token.revocation.lookups, tagged with whether the
+ * token turned out revoked; not-revoked lookups are false positives.
+ */
+@Component
+public class TokenRevocationStore {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationStore.class);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepo;
+
+    @Autowired
+    private UserTokenCutoffRepository cutoffRepo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${security.revocation.expected-entries:10000}")
+    private int expectedEntries;
+
+    @Value("${security.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${security.revocation.refresh-interval-ms:5000}")
+    private long refreshIntervalMillis;
+
+    @Value("${security.jwt.access-token-minutes:15}")
+    private long accessTokenMinutes;
+
+    private volatile BloomFilter filter;
+    private long entries;
+    // Revocations at or after this time (less the refresh interval, for
+    // clock skew and late commits) are read by the next refresh
+    private volatile Date readUpTo;
+
+    private Counter revokedLookups;
+    private Counter falsePositives;
+
+    @PostConstruct
+    public void init() {
+        revokedLookups = Counter.builder("token.revocation.lookups").tag("revoked", "true")
+                .description("Revocation lookups after a Bloom filter match").register(meterRegistry);
+        falsePositives = Counter.builder("token.revocation.lookups").tag("revoked", "false")
+                .description("Revocation lookups after a Bloom filter match").register(meterRegistry);
+        rebuild();
+    }
+
+    /**
+     * Check whether an access token has been revoked
+     *
+     * @param jti      The jti claim of the token
+     * @param userId   The userId claim of the token
+     * @param issuedAt The iat claim of the token
+     * @return true if the token must not be accepted
+     */
+    public boolean isRevoked(String jti, Long userId, Date issuedAt) {
+        BloomFilter current = filter;
+        boolean maybeToken = jti != null && current.mightContain(tokenKey(jti));
+        boolean maybeUser = userId != null && current.mightContain(userKey(userId));
+        if (!maybeToken && !maybeUser) {
+            return false;
+        }
+
+        boolean revoked = (maybeToken && revokedTokenRepo.existsById(jti))
+                || (maybeUser && cutoffRepo.findById(userId)
+                        .map(cutoff -> issuedAt == null || issuedAt.before(cutoff.getNotBefore()))
+                        .orElse(false));
+        (revoked ? revokedLookups : falsePositives).increment();
+        return revoked;
+    }
+
+    /**
+     * Revoke a single access token
+     *
+     * @param jti       The jti claim of the token
+     * @param userId    The userId claim of the token
+     * @param expiresAt The exp claim of the token; expired tokens are not
+     *                  recorded
+     */
+    public void revokeToken(String jti, Long userId, Date expiresAt) {
+        if (jti == null || expiresAt == null || expiresAt.before(new Date())) {
+            return;
+        }
+        RevokedTokenEntity revoked = new RevokedTokenEntity();
+        revoked.setJti(jti);
+        revoked.setUserId(userId);
+        revoked.setExpiresAt(expiresAt);
+        try {
+            revokedTokenRepo.save(revoked);
+        } catch (DataIntegrityViolationException e) {
+            // Already revoked
+        }
+        add(tokenKey(jti));
+    }
+
+    /**
+     * Revoke every access token issued to a user until now
+     *
+     * Token issue times have whole seconds, so the cutoff is the start of the
+     * current second: tokens issued right after it stay valid, at the price
+     * of also keeping those issued earlier within the same second.
+     *
+     * @param userId The ID of the user
+     */
+    public void revokeAllForUser(Long userId) {
+        long now = System.currentTimeMillis();
+        Date notBefore = new Date(now - now % 1000);
+        for (int attempt = 0;; attempt++) {
+            UserTokenCutoffEntity cutoff = cutoffRepo.findById(userId).orElseGet(() -> {
+                UserTokenCutoffEntity created = new UserTokenCutoffEntity();
+                created.setUserId(userId);
+                return created;
+            });
+            if (cutoff.getNotBefore() == null || cutoff.getNotBefore().before(notBefore)) {
+                cutoff.setNotBefore(notBefore);
+            }
+            cutoff.setUpdatedAt(new Date());
+            try {
+                cutoffRepo.save(cutoff);
+                break;
+            } catch (DataIntegrityViolationException e) {
+                // Created concurrently by another request; update that row
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+        add(userKey(userId));
+        logger.info("Revoked access tokens of user {} issued before {}", userId, notBefore);
+    }
+
+    /**
+     * Add the revocations made since the last refresh, here or on other
+     * instances, to the filter
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.refresh-interval-ms:5000}",
+            initialDelayString = "${security.revocation.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        Date now = new Date();
+        Date since = new Date(readUpTo.getTime() - refreshIntervalMillis);
+        List<String> jtis = revokedTokenRepo.findJtisRevokedSince(since, now);
+        List<Long> userIds = cutoffRepo.findUserIdsUpdatedSince(since);
+        jtis.forEach(jti -> add(tokenKey(jti)));
+        userIds.forEach(userId -> add(userKey(userId)));
+        readUpTo = now;
+    }
+
+    /**
+     * Delete revocations of tokens that have expired anyway and rebuild the
+     * filter without them
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval-ms:3600000}",
+            initialDelayString = "${security.revocation.purge-interval-ms:3600000}")
+    public void purge() {
+        Date now = new Date();
+        int tokens = revokedTokenRepo.deleteExpired(now);
+        int cutoffs = cutoffRepo.deleteNotBeforeOlderThan(
+                new Date(now.getTime() - TimeUnit.MINUTES.toMillis(accessTokenMinutes)));
+        if (tokens > 0 || cutoffs > 0) {
+            logger.info("Purged {} revoked tokens and {} token cutoffs", tokens, cutoffs);
+        }
+        rebuild();
+    }
+
+    private synchronized void rebuild() {
+        Date now = new Date();
+        List<String> jtis = revokedTokenRepo.findJtisRevokedSince(new Date(0), now);
+        List<Long> userIds = cutoffRepo.findUserIdsUpdatedSince(new Date(0));
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, 2 * (jtis.size() + userIds.size())),
+                falsePositiveRate);
+        jtis.forEach(jti -> rebuilt.put(tokenKey(jti)));
+        userIds.forEach(userId -> rebuilt.put(userKey(userId)));
+
+        filter = rebuilt;
+        entries = jtis.size() + userIds.size();
+        readUpTo = now;
+        logger.debug("Rebuilt token revocation filter with {} entries", entries);
+    }
+
+    private synchronized void add(String key) {
+        // Refreshes read overlapping windows; count each entry once
+        if (filter.mightContain(key)) {
+            return;
+        }
+        filter.put(key);
+        // Past its capacity the filter matches too often; start a larger one
+        if (++entries > filter.getCapacity()) {
+            rebuild();
+        }
+    }
+
+    private static String tokenKey(String jti) {
+        return "jti:" + jti;
+    }
+
+    private static String userKey(Long userId) {
+        return "user:" + userId;
+    }
+}
@@ -0,0 +1,317 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs checkouts on a small set of workers, fairly across shops
+ *
+ * Every shop has its own bounded queue of pending checkouts. Shops with work
+ * waiting take turns in round-robin order, and a shop may only have a limited
+ * number of checkouts running at once: two by default, one less than the
+ * workers. Checkouts of one shop only serialize on its queue counter row,
+ * which is incremented last, so most of their work overlaps. A rush at one
+ * popular shop therefore fills that shop's queue, but never occupies all
+ * workers or database connections while checkouts for other shops are
+ * waiting.
+ *
+ * On shutdown, queued checkouts fail right away; running ones finish, since
+ * they may already have placed their order and their callers wait for them.
+ *
+ * Per shop, the time spent waiting in the queue and the time to run the
+ * checkout are recorded as the checkout.queue.wait and checkout.execution
+ * timers, and the queue length as the checkout.queue.depth gauge, all tagged
+ * with the shop ID.
+ */
+@Service
+public class CheckoutDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutDispatcher.class);
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private final MeterRegistry meterRegistry;
+    private final int queueCapacity;
+    private final int maxRunningPerShop;
+    private final long maxWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+
+    // Guarded by lock
+    private final Map<Long, ShopQueue> queues = new HashMap<>();
+    private final ArrayDeque<ShopQueue> ready = new ArrayDeque<>();
+    private boolean shutdown;
+
+    public CheckoutDispatcher(MeterRegistry meterRegistry,
+            @Value("${checkout.dispatcher.workers:3}") int workerCount,
+            @Value("${checkout.dispatcher.queue-capacity:20}") int queueCapacity,
+            @Value("${checkout.dispatcher.max-running-per-shop:2}") int maxRunningPerShop,
+            @Value("${checkout.dispatcher.max-wait-ms:10000}") long maxWaitMillis) {
+        this.meterRegistry = meterRegistry;
+        this.queueCapacity = queueCapacity;
+        this.maxRunningPerShop = Math.max(1, maxRunningPerShop);
+        this.maxWaitMillis = maxWaitMillis;
+
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::work, "checkout-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Run a checkout for a shop on the dispatcher and wait for its result
+     *
+     * @param shopId   The ID of the shop the order is placed at
+     * @param checkout The checkout to run
+     * @return The checkout's result
+     * @throws BusyException if the shop's queue is full, or the checkout did
+     *                       not start within the maximum wait
+     */
+    public <T> T submit(Long shopId, Supplier<T> checkout) {
+        Task<T> task = new Task<>(checkout);
+
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new BusyException("Checkout is shutting down, please try again");
+            }
+            ShopQueue queue = queues.computeIfAbsent(shopId, this::newQueue);
+            if (queue.pending.size() >= queueCapacity) {
+                logger.warn("Checkout queue of shop {} is full", shopId);
+                throw new BusyException("This shop is receiving too many orders right now, please try again");
+            }
+            queue.pending.add(task);
+            queue.depth.incrementAndGet();
+            makeReady(queue);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return task.result.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Only a checkout that has not started can be abandoned; a running
+            // one may already have placed the order
+            if (task.state.compareAndSet(NEW, CANCELLED)) {
+                logger.warn("Checkout for shop {} did not start within {} ms", shopId, maxWaitMillis);
+                throw new BusyException("This shop is receiving too many orders right now, please try again");
+            }
+            return awaitUninterruptibly(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (task.state.compareAndSet(NEW, CANCELLED)) {
+                throw new BusyException("Checkout was interrupted");
+            }
+            return awaitUninterruptibly(task);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private <T> T awaitUninterruptibly(Task<T> task) {
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(Exception e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException("Checkout failed", cause);
+    }
+
+    /**
+     * @return Number of shops with checkouts queued or running
+     */
+    public int getActiveShops() {
+        lock.lock();
+        try {
+            int active = 0;
+            for (ShopQueue queue : queues.values()) {
+                if (!queue.pending.isEmpty() || queue.running > 0) {
+                    active++;
+                }
+            }
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param shopId The ID of the shop
+     * @return Checkouts of the shop waiting for a worker
+     */
+    public int getQueued(Long shopId) {
+        lock.lock();
+        try {
+            ShopQueue queue = queues.get(shopId);
+            return queue != null ? queue.pending.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            failPending();
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            ShopQueue queue;
+            Task<?> task;
+            lock.lock();
+            try {
+                while (ready.isEmpty() && !shutdown) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (shutdown) {
+                    return;
+                }
+                queue = ready.poll();
+                queue.inReady = false;
+                task = queue.pending.poll();
+                queue.depth.decrementAndGet();
+                queue.running++;
+                // Back to the end of the line, behind every other waiting shop
+                makeReady(queue);
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                task.run(queue);
+            } finally {
+                lock.lock();
+                try {
+                    queue.running--;
+                    makeReady(queue);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void makeReady(ShopQueue queue) {
+        if (!queue.inReady && !queue.pending.isEmpty() && queue.running < maxRunningPerShop) {
+            ready.add(queue);
+            queue.inReady = true;
+            workAvailable.signal();
+        }
+    }
+
+    // Caller holds the lock
+    private void failPending() {
+        for (ShopQueue queue : queues.values()) {
+            Task<?> task;
+            while ((task = queue.pending.poll()) != null) {
+                queue.depth.decrementAndGet();
+                task.result.completeExceptionally(new BusyException("Checkout is shutting down, please try again"));
+            }
+        }
+    }
+
+    private ShopQueue newQueue(Long shopId) {
+        ShopQueue queue = new ShopQueue(
+                Timer.builder("checkout.queue.wait").tag("shop", String.valueOf(shopId))
+                        .description("Time checkouts wait for a worker").register(meterRegistry),
+                Timer.builder("checkout.execution").tag("shop", String.valueOf(shopId))
+                        .description("Time to run a checkout").register(meterRegistry));
+        Gauge.builder("checkout.queue.depth", queue, q -> q.depth.get()).tag("shop", String.valueOf(shopId))
+                .description("Checkouts waiting for a worker").register(meterRegistry);
+        return queue;
+    }
+
+    /**
+     * Thrown when a checkout is shed because its shop's queue is full or it
+     * waited too long for a worker
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    // Checkouts of one shop; guarded by the dispatcher's lock, except depth
+    private static class ShopQueue {
+        final ArrayDeque<Task<?>> pending = new ArrayDeque<>();
+        // Length of pending, readable without the lock by the gauge
+        final AtomicInteger depth = new AtomicInteger();
+        final Timer queueWait;
+        final Timer execution;
+        int running;
+        boolean inReady;
+
+        ShopQueue(Timer queueWait, Timer execution) {
+            this.queueWait = queueWait;
+            this.execution = execution;
+        }
+    }
+
+    private static class Task<T> {
+        final Supplier<T> checkout;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger state = new AtomicInteger(NEW);
+        final long enqueuedNanos = System.nanoTime();
+
+        Task(Supplier<T> checkout) {
+            this.checkout = checkout;
+        }
+
+        void run(ShopQueue queue) {
+            // Abandoned by its caller while waiting
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return;
+            }
+            long start = System.nanoTime();
+            queue.queueWait.record(start - enqueuedNanos, TimeUnit.NANOSECONDS);
+            try {
+                result.complete(checkout.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            } finally {
+                queue.execution.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
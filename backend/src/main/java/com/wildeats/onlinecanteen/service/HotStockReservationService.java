@@ -0,0 +1,353 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.wildeats.onlinecanteen.repository.MenuItemStockRepository;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reserves the stock of hot menu items (flash specials) in memory
+ *
+ * Decrementing a single menu_item row for every order serializes all checkouts
+ * of a flash special on that row's lock. For items flagged as hot the stock
+ * lives in striped CAS counters instead:
+ * - a checkout takes its portions from the counters without touching the row
+ * - when the order commits, the portions are added to a pending counter;
+ * when it rolls back they go back into the stripes
+ * - a scheduled flush writes the pending portions of all hot items back to
+ * menu_item in one batch
+ *
+ * Orders are the ledger: portions taken but not yet flushed when the process
+ * dies belong to committed orders, so on startup the remaining stock of hot
+ * items is rebuilt from the orders placed since their last refill.
+ *
+ * Setting an item's stock keeps its counters: portions still pending or held
+ * by running transactions count against the new stock. An item that stops
+ * being hot is retired until its pending portions are flushed.
+ *
+ * The counters are local to this instance, so hot stock assumes a single
+ * application node.
+ */
+@Service
+public class HotStockReservationService {
+    private static final Logger logger = LoggerFactory.getLogger(HotStockReservationService.class);
+
+    @Autowired
+    private MenuItemStockRepository stockRepo;
+
+    @Value("${menu.stock.hot.stripes:8}")
+    private int stripeCount;
+
+    private final ConcurrentHashMap<Long, HotItem> items = new ConcurrentHashMap<>();
+
+    // Items no longer hot whose portions are still pending or reserved;
+    // guarded by this service's monitor
+    private final List<HotItem> retired = new ArrayList<>();
+
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onStartup() {
+        int reconciled = stockRepo.reconcileHotStock();
+        // The orders already account for every portion counted in memory
+        items.clear();
+        retired.clear();
+        reload();
+        logger.info("Reconciled the stock of {} hot menu items from their orders", reconciled);
+    }
+
+    /**
+     * Set the in-memory counters to the stock currently in the database.
+     * Portions not yet flushed and those of running transactions are carried
+     * over and count against that stock.
+     */
+    public synchronized void reload() {
+        Map<Long, Integer> stock = stockRepo.findHotStock();
+        for (Long itemId : new ArrayList<>(items.keySet())) {
+            if (!stock.containsKey(itemId)) {
+                retire(itemId);
+            }
+        }
+        stock.forEach(this::set);
+        loaded = true;
+    }
+
+    /**
+     * Start or stop reserving an item's stock in memory
+     *
+     * @param itemId    The ID of the menu item
+     * @param remaining Portions left, or null to stop treating the item as hot
+     */
+    public synchronized void track(Long itemId, Integer remaining) {
+        if (remaining == null) {
+            retire(itemId);
+        } else {
+            set(itemId, remaining);
+        }
+    }
+
+    // Caller holds this service's monitor, so no flush runs meanwhile
+    private void set(Long itemId, int remaining) {
+        HotItem item = items.get(itemId);
+        if (item != null) {
+            item.reset(remaining);
+        } else {
+            items.put(itemId, new HotItem(itemId, stripeCount, remaining));
+        }
+    }
+
+    // Caller holds this service's monitor
+    private void retire(Long itemId) {
+        HotItem item = items.remove(itemId);
+        if (item != null) {
+            retired.add(item);
+        }
+    }
+
+    /**
+     * Take portions of hot items for the current transaction, all or nothing.
+     * They are kept if the transaction commits and given back if it rolls back.
+     *
+     * @param quantities Quantity to take, by menu item ID
+     * @return The ID of an item without enough stock left, or null if every
+     *         item was reserved
+     */
+    public Long reserve(Map<Long, Integer> quantities) {
+        if (!loaded) {
+            throw new IllegalStateException("Stock of special items is still being loaded, please try again");
+        }
+
+        Map<HotItem, Integer> taken = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            HotItem item = items.get(entry.getKey());
+            if (item == null || !item.take(entry.getValue())) {
+                taken.forEach(HotItem::rollback);
+                return entry.getKey();
+            }
+            taken.put(item, entry.getValue());
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    taken.forEach(HotItem::commit);
+                } else {
+                    taken.forEach(HotItem::rollback);
+                }
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Give the portions of cancelled orders back to the counters once the
+     * current transaction commits. The database row is restocked by the
+     * cancellation itself.
+     *
+     * @param quantities Quantity to give back, by menu item ID
+     */
+    public void restock(Map<Long, Integer> quantities) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                quantities.forEach((itemId, quantity) -> {
+                    HotItem item = items.get(itemId);
+                    if (item != null) {
+                        item.give(quantity);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return Whether any item's stock is currently reserved in memory
+     */
+    public boolean hasHotItems() {
+        return !items.isEmpty();
+    }
+
+    /**
+     * @param itemId The ID of the menu item
+     * @return Whether the item's stock is reserved in memory instead of being
+     *         decremented in the database
+     */
+    public boolean isHot(Long itemId) {
+        return items.containsKey(itemId);
+    }
+
+    /**
+     * Portions of an item available for reservation
+     *
+     * @param itemId The ID of the menu item
+     * @return Portions left, or null if the item is not hot
+     */
+    public Integer getAvailable(Long itemId) {
+        HotItem item = items.get(itemId);
+        return item != null ? item.available() : null;
+    }
+
+    /**
+     * Write the portions taken by committed orders back to menu_item
+     */
+    @Scheduled(fixedDelayString = "${menu.stock.hot.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        Map<HotItem, Long> flushed = new HashMap<>();
+        Map<Long, Long> taken = new HashMap<>();
+        List<HotItem> all = new ArrayList<>(items.values());
+        all.addAll(retired);
+        for (HotItem item : all) {
+            long pending = item.pending.sum();
+            if (pending > 0) {
+                flushed.put(item, pending);
+                taken.merge(item.itemId, pending, Long::sum);
+            }
+        }
+        if (!taken.isEmpty()) {
+            try {
+                stockRepo.applyTaken(taken);
+            } catch (DataAccessException e) {
+                // Kept pending and retried on the next flush
+                logger.error("Failed to flush hot item stock: {}", e.getMessage());
+                return;
+            }
+            // Subtract what was written rather than resetting, so portions
+            // committed during the flush stay pending
+            flushed.forEach((item, quantity) -> item.pending.add(-quantity));
+            logger.debug("Flushed hot item stock: {}", taken);
+        }
+        retired.removeIf(item -> item.pending.sum() == 0 && item.reserved.sum() == 0);
+    }
+
+    // Stock of one hot item, spread over several counters so concurrent
+    // checkouts rarely compete for the same one
+    private static class HotItem {
+        final Long itemId;
+        final AtomicInteger[] stripes;
+        final LongAdder pending = new LongAdder();
+        // Portions taken by transactions that have not completed yet
+        final LongAdder reserved = new LongAdder();
+        // Shared by takes and completions, exclusive for a reset, so a reset
+        // sees the counters between operations
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        HotItem(Long itemId, int stripeCount, int remaining) {
+            this.itemId = itemId;
+            stripes = new AtomicInteger[Math.max(1, stripeCount)];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new AtomicInteger();
+            }
+            spread(remaining);
+        }
+
+        private void spread(int remaining) {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].set(remaining / stripes.length + (i < remaining % stripes.length ? 1 : 0));
+            }
+        }
+
+        // Takes from the caller's home stripe first and borrows from the
+        // others when it runs short
+        boolean take(int quantity) {
+            lock.readLock().lock();
+            try {
+                int start = ThreadLocalRandom.current().nextInt(stripes.length);
+                int[] taken = new int[stripes.length];
+                int needed = quantity;
+                for (int i = 0; i < stripes.length && needed > 0; i++) {
+                    int s = (start + i) % stripes.length;
+                    int current;
+                    int take;
+                    do {
+                        current = stripes[s].get();
+                        take = Math.min(current, needed);
+                    } while (take > 0 && !stripes[s].compareAndSet(current, current - take));
+                    taken[s] = take;
+                    needed -= take;
+                }
+
+                if (needed > 0) {
+                    for (int s = 0; s < stripes.length; s++) {
+                        stripes[s].addAndGet(taken[s]);
+                    }
+                    return false;
+                }
+                reserved.add(quantity);
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void commit(int quantity) {
+            lock.readLock().lock();
+            try {
+                pending.add(quantity);
+                reserved.add(-quantity);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void rollback(int quantity) {
+            lock.readLock().lock();
+            try {
+                reserved.add(-quantity);
+                give(quantity);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void give(int quantity) {
+            lock.readLock().lock();
+            try {
+                stripes[ThreadLocalRandom.current().nextInt(stripes.length)].addAndGet(quantity);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // New stock, less what is pending or reserved against it
+        void reset(int remaining) {
+            lock.writeLock().lock();
+            try {
+                spread((int) Math.max(0, remaining - pending.sum() - reserved.sum()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int available() {
+            int sum = 0;
+            for (AtomicInteger stripe : stripes) {
+                sum += stripe.get();
+            }
+            return sum;
+        }
+    }
+}
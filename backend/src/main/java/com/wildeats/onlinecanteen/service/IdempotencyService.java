@@ -0,0 +1,276 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wildeats.onlinecanteen.entity.IdempotencyKeyEntity;
+import com.wildeats.onlinecanteen.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes POST requests safe to retry when the client sends an Idempotency-Key
+ *
+ * The first request with a key records an IN_PROGRESS row and runs the
+ * action, which stores its successful response through a {@link Completion}
+ * in the same transaction as the work it did. Later requests with the same key
+ * and the same request fingerprint get the stored response back without
+ * running the action again. The response is stored as JSON and read back into
+ * its type for a replay, so it is encoded for the replay's own Accept header
+ * (JSON or CBOR). Duplicates arriving while the first request is
+ * still running wait for it on this instance; on another instance the unique
+ * constraint on (user_id, idempotency_key) lets only one of them through and
+ * the others are answered with 409.
+ *
+ * Failed requests (exceptions or non-2xx responses) are not stored, so the
+ * client can retry them. A request that died without finishing leaves its
+ * IN_PROGRESS row behind; since it may have done its work anyway, the key is
+ * answered with 409 until the row expires instead of being run again.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${orders.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${orders.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${orders.idempotency.in-progress-timeout-seconds:60}")
+    private long inProgressTimeoutSeconds;
+
+    /**
+     * Stores the response of an action under its idempotency key
+     */
+    @FunctionalInterface
+    public interface Completion {
+        /**
+         * Store the response; must be called inside the transaction of the
+         * action's work, so both commit or roll back together
+         * 
+         * @param status The HTTP status of the response
+         * @param body   The response body
+         */
+        void complete(HttpStatus status, Object body);
+    }
+
+    // Requests currently executing on this instance, by user and key
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run an action at most once per user and idempotency key
+     *
+     * @param userId      The ID of the user sending the request
+     * @param key         The Idempotency-Key header value
+     * @param fingerprint  A canonical description of the request body
+     * @param responseType The type of the body the action stores
+     * @param action      The action producing the response, storing it through
+     *                    the given completion when it succeeds
+     * @return The response of the action, or the stored response of an earlier
+     *         execution
+     */
+    public ResponseEntity<?> execute(Long userId, String key, String fingerprint, Class<?> responseType,
+            Function<Completion, ResponseEntity<?>> action) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = sha256(userId + "\n" + fingerprint);
+        String localKey = userId + ":" + key;
+
+        while (true) {
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(localKey, mine);
+            if (running != null) {
+                // Same key already executing here: wait for it, then replay
+                awaitQuietly(running);
+                Optional<IdempotencyKeyEntity> finished = idempotencyKeyRepo.findByUserIdAndIdempotencyKey(userId, key);
+                if (finished.isPresent()) {
+                    return answerFromRecord(finished.get(), requestHash, responseType);
+                }
+                // The first attempt failed and was not stored; try again ourselves
+                continue;
+            }
+
+            try {
+                return executeOnce(userId, key, requestHash, responseType, action);
+            } finally {
+                inFlight.remove(localKey, mine);
+                mine.complete(null);
+            }
+        }
+    }
+
+    private ResponseEntity<?> executeOnce(Long userId, String key, String requestHash, Class<?> responseType,
+            Function<Completion, ResponseEntity<?>> action) {
+        Optional<IdempotencyKeyEntity> existing = idempotencyKeyRepo.findByUserIdAndIdempotencyKey(userId, key);
+        if (existing.isPresent()) {
+            IdempotencyKeyEntity record = existing.get();
+            if (!isExpired(record)) {
+                return answerFromRecord(record, requestHash, responseType);
+            }
+            logger.info("Reusing expired idempotency key {} of user {}", key, userId);
+            idempotencyKeyRepo.delete(record);
+        }
+
+        IdempotencyKeyEntity record = new IdempotencyKeyEntity();
+        record.setUserId(userId);
+        record.setIdempotencyKey(key);
+        record.setRequestHash(requestHash);
+        record.setStatus(IdempotencyKeyEntity.Status.IN_PROGRESS);
+        record.setExpiresAt(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ttlHours)));
+
+        try {
+            record = idempotencyKeyRepo.saveAndFlush(record);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance claimed the key first
+            return idempotencyKeyRepo.findByUserIdAndIdempotencyKey(userId, key)
+                    .<ResponseEntity<?>>map(winner -> answerFromRecord(winner, requestHash, responseType))
+                    .orElseGet(() -> conflict("A request with this Idempotency-Key is still being processed"));
+        }
+
+        Long recordId = record.getId();
+        AtomicBoolean completed = new AtomicBoolean();
+        Completion completion = (status, body) -> {
+            if (idempotencyKeyRepo.complete(recordId, status.value(), toJson(body)) == 0) {
+                throw new IllegalStateException("Idempotency key record " + recordId + " is gone");
+            }
+            completed.set(true);
+        };
+
+        ResponseEntity<?> response;
+        try {
+            response = action.apply(completion);
+        } catch (RuntimeException e) {
+            // The stored response, if any, was rolled back with the work
+            idempotencyKeyRepo.deleteInProgress(recordId);
+            throw e;
+        }
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            idempotencyKeyRepo.deleteInProgress(recordId);
+        } else if (!completed.get()) {
+            logger.error("Response for idempotency key {} of user {} was not stored", key, userId);
+            idempotencyKeyRepo.deleteInProgress(recordId);
+        }
+        return response;
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ResponseEntity<?> answerFromRecord(IdempotencyKeyEntity record, String requestHash,
+            Class<?> responseType) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(Map.of("message", HEADER + " was already used for a different request"));
+        }
+        if (record.getStatus() != IdempotencyKeyEntity.Status.COMPLETED) {
+            return conflict("A request with this Idempotency-Key is still being processed");
+        }
+
+        logger.info("Replaying stored response for idempotency key {} of user {}", record.getIdempotencyKey(),
+                record.getUserId());
+        return ResponseEntity.status(record.getResponseStatus())
+                .header(REPLAYED_HEADER, "true")
+                .body(fromJson(record.getResponseBody(), responseType));
+    }
+
+    private Object fromJson(String json, Class<?> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ResponseEntity<?> conflict(String message) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Retry-After", "1")
+                .body(Map.of("message", message));
+    }
+
+    private static boolean isExpired(IdempotencyKeyEntity record) {
+        return record.getExpiresAt().before(new Date());
+    }
+
+    private void awaitQuietly(CompletableFuture<Void> running) {
+        try {
+            running.get(inProgressTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Fall through to the stored record
+        }
+    }
+
+    /**
+     * Remove expired records and trim the table to its maximum size
+     */
+    @Scheduled(fixedDelayString = "${orders.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        int expired = idempotencyKeyRepo.deleteExpired(new Date());
+
+        int trimmed = 0;
+        List<Long> cutoff = idempotencyKeyRepo.findIdsNewestFirst(PageRequest.of(Math.max(0, maxEntries - 1), 1));
+        if (!cutoff.isEmpty()) {
+            trimmed = idempotencyKeyRepo.deleteOlderThan(cutoff.get(0));
+        }
+
+        if (expired > 0 || trimmed > 0) {
+            logger.info("Purged {} expired and {} excess idempotency keys", expired, trimmed);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
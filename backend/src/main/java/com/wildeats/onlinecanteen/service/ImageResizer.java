@@ -0,0 +1,190 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Reads images with ImageIO and writes resized JPEG copies
+ *
+ * An image much larger than the largest variant is subsampled while it is
+ * decoded, so a large photo never needs a full-size bitmap. Downscaling halves
+ * the image (bilinear) while it is at least twice the target, then takes one
+ * bicubic step to the exact size, which avoids the aliasing of a single large
+ * step. Transparent pixels are put on white, as JPEG has no alpha.
+ */
+final class ImageResizer {
+
+    private ImageResizer() {
+    }
+
+    /**
+     * Read the format and size of an image without decoding it
+     *
+     * @param in The image file; closed by the caller
+     * @return Format and size
+     * @throws IllegalArgumentException if the file is not an image ImageIO
+     *                                  can read
+     * @throws IOException              if the file cannot be read
+     */
+    static ImageInfo probe(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(input);
+            try {
+                return new ImageInfo(reader.getFormatName().toLowerCase(Locale.ROOT), reader.getWidth(0),
+                        reader.getHeight(0));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("File is not a readable image");
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decode an image, subsampled to no less than twice the given edge
+     *
+     * @param in          The image file; closed by the caller
+     * @param largestEdge Longest edge of the largest variant to be made
+     * @return The decoded image
+     * @throws IOException if the file cannot be read or decoded
+     */
+    static BufferedImage decode(InputStream in, int largestEdge) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(input);
+            try {
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longest / (2 * largestEdge));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return toRgb(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale an image down to fit a square, keeping its aspect ratio. Smaller
+     * images are returned as they are.
+     *
+     * @param source  The image
+     * @param maxEdge Longest edge of the result
+     * @return The scaled image
+     */
+    static BufferedImage scaleToFit(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = (double) maxEdge / Math.max(width, height);
+        if (scale >= 1.0) {
+            return source;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight) {
+            current = draw(current, targetWidth, targetHeight, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        }
+        return current;
+    }
+
+    /**
+     * Encode an image as baseline JPEG
+     *
+     * @param image   The image, without alpha
+     * @param quality Compression quality from 0 to 1
+     * @return The JPEG file
+     * @throws IOException if encoding fails
+     */
+    static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static ImageReader readerFor(ImageInputStream input) {
+        if (input == null) {
+            throw new IllegalArgumentException("File is not a readable image");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IllegalArgumentException("File is not an image of a supported format");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    private static BufferedImage toRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            graphics.drawImage(source, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, Object interpolation) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Format and size of an image
+     */
+    static final class ImageInfo {
+        final String format;
+        final int width;
+        final int height;
+
+        ImageInfo(String format, int width, int height) {
+            this.format = format;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.wildeats.onlinecanteen.entity.ImageAssetEntity;
+import com.wildeats.onlinecanteen.repository.ImageAssetRepository;
+import com.wildeats.onlinecanteen.repository.ImageVariantRepository;
+import com.wildeats.onlinecanteen.repository.ImageVariantRepository.VariantRow;
+import com.wildeats.onlinecanteen.storage.DocumentStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shop, menu item and profile images, served as resized variants
+ *
+ * An upload is checked to be an image of acceptable size, stored under the
+ * SHA-256 hash of the original in the image store and answered at once; the
+ * variants (see {@link Variant}) are made on a small worker pool. Uploading
+ * the same file again returns the existing image. Images whose variants were
+ * not made, because the queue was full or the instance stopped, are picked up
+ * again by a scheduled job.
+ *
+ * Variants are stored content-addressed too and never change, so they are
+ * served with long-lived cache headers. The most recently served variants are
+ * kept in a hot cache bounded by total bytes, which answers repeated requests
+ * without touching the database or the disk.
+ *
+ * Pool usage is exported under image.processing (ExecutorServiceMetrics), hot
+ * cache hits and misses as the image.hot-cache.requests counter tagged by
+ * result, and its size as the image.hot-cache.bytes gauge.
+ */
+@Service
+public class ImageService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
+
+    /**
+     * The resized copies made of every image, as JPEG, never larger than the
+     * original
+     */
+    public enum Variant {
+        THUMBNAIL(160, 0.75f), CARD(480, 0.8f), FULL(1600, 0.85f);
+
+        private final int maxEdge;
+        private final float quality;
+
+        Variant(int maxEdge, float quality) {
+            this.maxEdge = maxEdge;
+            this.quality = quality;
+        }
+
+        public int getMaxEdge() {
+            return maxEdge;
+        }
+
+        /**
+         * @return The name used in URLs
+         */
+        public String getKey() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @param key The name used in URLs
+         * @return The variant
+         * @throws IllegalArgumentException if there is no such variant
+         */
+        public static Variant fromKey(String key) {
+            return valueOf(key.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final DocumentStore imageStore;
+    private final ImageAssetRepository imageRepo;
+    private final ImageVariantRepository variantRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxUploadBytes;
+    private final long maxPixels;
+    private final long resumeAfterMillis;
+
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService monitored;
+    // Images queued or being processed on this instance
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final HotCache hotCache;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ImageService(@Qualifier("imageStore") DocumentStore imageStore, ImageAssetRepository imageRepo,
+            ImageVariantRepository variantRepo, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${storage.images.max-upload-bytes:10485760}") long maxUploadBytes,
+            @Value("${storage.images.max-pixels:40000000}") long maxPixels,
+            @Value("${storage.images.processing.threads:2}") int threads,
+            @Value("${storage.images.processing.queue-capacity:100}") int queueCapacity,
+            @Value("${storage.images.processing.resume-interval-ms:60000}") long resumeAfterMillis,
+            @Value("${storage.images.hot-cache.max-bytes:33554432}") long hotCacheMaxBytes,
+            @Value("${storage.images.hot-cache.max-entry-bytes:524288}") long hotCacheMaxEntryBytes) {
+        this.imageStore = imageStore;
+        this.imageRepo = imageRepo;
+        this.variantRepo = variantRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxUploadBytes = maxUploadBytes;
+        this.maxPixels = maxPixels;
+        this.resumeAfterMillis = resumeAfterMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "image-processing-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    // Request threads come first
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        this.monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "image.processing");
+
+        this.hotCache = new HotCache(hotCacheMaxBytes, hotCacheMaxEntryBytes);
+        this.hits = Counter.builder("image.hot-cache.requests").tag("result", "hit")
+                .description("Image variant requests answered from the hot cache").register(meterRegistry);
+        this.misses = Counter.builder("image.hot-cache.requests").tag("result", "miss")
+                .description("Image variant requests read from the image store").register(meterRegistry);
+        Gauge.builder("image.hot-cache.bytes", hotCache, HotCache::getBytes)
+                .description("Bytes of image variants in the hot cache").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        monitored.shutdownNow();
+    }
+
+    /**
+     * Upload an image; its variants are made in the background
+     *
+     * @param userId The ID of the uploading user
+     * @param file   The image file
+     * @return The image, PENDING until its variants are ready
+     * @throws IllegalArgumentException if the file is empty, too large, not
+     *                                  an image or has too many pixels
+     * @throws IOException              if the file cannot be read or stored
+     */
+    public ImageAssetEntity upload(Long userId, MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("No image to upload");
+        }
+        if (file.getSize() > maxUploadBytes) {
+            throw new IllegalArgumentException("Image is larger than " + maxUploadBytes + " bytes");
+        }
+
+        // Only the header is read; the multipart file is already on disk
+        ImageResizer.ImageInfo info;
+        try (InputStream in = file.getInputStream()) {
+            info = ImageResizer.probe(in);
+        }
+        if ((long) info.width * info.height > maxPixels) {
+            throw new IllegalArgumentException("Image has more than " + maxPixels + " pixels");
+        }
+
+        DocumentStore.StoredContent original;
+        try (InputStream in = file.getInputStream()) {
+            original = imageStore.store(in, maxUploadBytes);
+        }
+
+        ImageAssetEntity image = imageRepo.findById(original.getHash()).orElse(null);
+        if (image == null) {
+            image = new ImageAssetEntity();
+            image.setImageHash(original.getHash());
+            image.setFormat(info.format);
+            image.setWidth(info.width);
+            image.setHeight(info.height);
+            image.setSizeBytes(original.getSize());
+            image.setUploadedBy(userId);
+            try {
+                image = imageRepo.save(image);
+            } catch (DataIntegrityViolationException e) {
+                // Uploaded concurrently by another request
+                image = imageRepo.findById(original.getHash()).orElseThrow(() -> e);
+            }
+            logger.info("Stored image {} ({} {}x{}) from user {}", image.getImageHash(), info.format, info.width,
+                    info.height, userId);
+        } else if (image.getStatus() == ImageAssetEntity.Status.FAILED) {
+            imageRepo.updateStatus(image.getImageHash(), ImageAssetEntity.Status.PENDING, null);
+            image.setStatus(ImageAssetEntity.Status.PENDING);
+        }
+
+        if (image.getStatus() == ImageAssetEntity.Status.PENDING) {
+            submit(image.getImageHash());
+        }
+        return image;
+    }
+
+    /**
+     * @param imageHash The hash of the image
+     * @return The image, or null if there is no such image
+     */
+    public ImageAssetEntity getImage(String imageHash) {
+        return imageRepo.findById(imageHash).orElse(null);
+    }
+
+    /**
+     * @param imageHash The hash of the image
+     * @return The variants made of the image so far
+     */
+    public List<VariantRow> getVariants(String imageHash) {
+        return variantRepo.findVariants(imageHash);
+    }
+
+    /**
+     * Get the content of a variant, from the hot cache when possible
+     *
+     * @param imageHash The hash of the image
+     * @param variant   The variant
+     * @return The variant, or null if there is no such image or its variants
+     *         could not be made
+     * @throws NotReadyException if the variants are still being made
+     * @throws IOException       if the variant cannot be read
+     */
+    public CachedVariant getVariant(String imageHash, Variant variant) throws IOException {
+        String key = imageHash + "/" + variant.getKey();
+        CachedVariant cached = hotCache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        VariantRow row = variantRepo.findVariant(imageHash, variant.getKey());
+        if (row == null) {
+            ImageAssetEntity image = getImage(imageHash);
+            if (image != null && image.getStatus() == ImageAssetEntity.Status.PENDING) {
+                throw new NotReadyException("Image " + imageHash + " is still being processed");
+            }
+            return null;
+        }
+
+        byte[] content;
+        try (InputStream in = imageStore.open(row.getContentHash())) {
+            content = in.readAllBytes();
+        }
+        CachedVariant loaded = new CachedVariant(row.getContentHash(), content);
+        hotCache.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Queue the images whose variants were never made, e.g. because the
+     * queue was full or an instance stopped while processing them
+     */
+    @Scheduled(fixedDelayString = "${storage.images.processing.resume-interval-ms:60000}",
+            initialDelayString = "${storage.images.processing.resume-interval-ms:60000}")
+    public void resumePending() {
+        List<String> pending = imageRepo
+                .findPendingHashesCreatedBefore(new Date(System.currentTimeMillis() - resumeAfterMillis));
+        for (String imageHash : pending) {
+            submit(imageHash);
+        }
+    }
+
+    private void submit(String imageHash) {
+        if (!inFlight.add(imageHash)) {
+            return;
+        }
+        try {
+            monitored.execute(() -> {
+                try {
+                    process(imageHash);
+                } finally {
+                    inFlight.remove(imageHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Stays PENDING; resumePending tries again
+            inFlight.remove(imageHash);
+            logger.warn("Image processing queue is full, image {} will be processed later", imageHash);
+        }
+    }
+
+    private void process(String imageHash) {
+        long start = System.nanoTime();
+        try {
+            int largestEdge = 0;
+            for (Variant variant : Variant.values()) {
+                largestEdge = Math.max(largestEdge, variant.getMaxEdge());
+            }
+            BufferedImage decoded;
+            try (InputStream in = imageStore.open(imageHash)) {
+                decoded = ImageResizer.decode(in, largestEdge);
+            }
+
+            // Largest first, each scaled from the previous one
+            List<VariantRow> rows = new ArrayList<>();
+            BufferedImage current = decoded;
+            Variant[] variants = Variant.values();
+            for (int i = variants.length - 1; i >= 0; i--) {
+                Variant variant = variants[i];
+                current = ImageResizer.scaleToFit(current, variant.getMaxEdge());
+                byte[] jpeg = ImageResizer.encodeJpeg(current, variant.quality);
+                DocumentStore.StoredContent stored = imageStore.store(new ByteArrayInputStream(jpeg), jpeg.length);
+                rows.add(new VariantRow(variant.getKey(), stored.getHash(), current.getWidth(), current.getHeight(),
+                        stored.getSize()));
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                variantRepo.replaceVariants(imageHash, rows);
+                imageRepo.updateStatus(imageHash, ImageAssetEntity.Status.READY, new Date());
+            });
+            logger.debug("Made variants of image {} in {} ms", imageHash,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not make variants of image {}: {}", imageHash, e.getMessage());
+            imageRepo.updateStatus(imageHash, ImageAssetEntity.Status.FAILED, new Date());
+        }
+    }
+
+    /**
+     * The content of a variant and the hash it is stored under
+     */
+    public static class CachedVariant {
+        private final String contentHash;
+        private final byte[] content;
+
+        public CachedVariant(String contentHash, byte[] content) {
+            this.contentHash = contentHash;
+            this.content = content;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+    }
+
+    /**
+     * Thrown when the variants of an image are still being made
+     */
+    public static class NotReadyException extends RuntimeException {
+        public NotReadyException(String message) {
+            super(message);
+        }
+    }
+
+    // Least recently used variants, up to a total number of bytes. Variants
+    // larger than the entry limit are not kept, so one full-size image cannot
+    // push out many thumbnails.
+    private static class HotCache {
+        private final long maxBytes;
+        private final long maxEntryBytes;
+        private final LinkedHashMap<String, CachedVariant> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+
+        HotCache(long maxBytes, long maxEntryBytes) {
+            this.maxBytes = maxBytes;
+            this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        }
+
+        synchronized CachedVariant get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, CachedVariant value) {
+            if (value.getContent().length > maxEntryBytes) {
+                return;
+            }
+            CachedVariant previous = entries.put(key, value);
+            if (previous != null) {
+                bytes -= previous.getContent().length;
+            }
+            bytes += value.getContent().length;
+            Iterator<Map.Entry<String, CachedVariant>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, CachedVariant> entry = eldest.next();
+                bytes -= entry.getValue().getContent().length;
+                eldest.remove();
+            }
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package com.wildeats.onlinecanteen.service;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.wildeats.onlinecanteen.dto.MenuChangesResponse;
+import com.wildeats.onlinecanteen.dto.MenuItemResponse;
 import com.wildeats.onlinecanteen.entity.MenuItemEntity;
 import com.wildeats.onlinecanteen.entity.ShopEntity;
 import com.wildeats.onlinecanteen.repository.MenuItemRepository;
+import com.wildeats.onlinecanteen.repository.MenuItemStockRepository;
+import com.wildeats.onlinecanteen.repository.MenuRevisionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +30,15 @@ public class MenuItemService {
     @Autowired
     private ShopService shopService;
 
+    @Autowired
+    private MenuItemStockRepository stockRepo;
+
+    @Autowired
+    private MenuRevisionRepository revisionRepo;
+
+    @Autowired
+    private HotStockReservationService hotStock;
+
     /**
      * Get all menu items
      * 
@@ -66,6 +83,18 @@ public class MenuItemService {
         return menuItemRepo.findByShopShopIdAndIsAvailable(shopId, true);
     }
 
+    /**
+     * Get all available menu items for a specific shop as response DTOs, read
+     * without loading the item entities, their shop or its owner
+     * 
+     * @param shopId The ID of the shop
+     * @return List of available menu items for the shop as DTOs
+     */
+    public List<MenuItemResponse> getAvailableMenuItemResponses(Long shopId) {
+        logger.info("Fetching available menu items as DTOs for shop with ID: {}", shopId);
+        return menuItemRepo.findAvailableResponsesByShopId(shopId);
+    }
+
     /**
      * Search menu items by name in a specific shop
      * 
@@ -97,6 +126,7 @@ public class MenuItemService {
      * @param shopId   The ID of the shop
      * @return The created menu item
      */
+    @Transactional
     public MenuItemEntity createMenuItem(MenuItemEntity menuItem, Long shopId) {
         logger.info("Creating new menu item for shop with ID: {}", shopId);
 
@@ -114,7 +144,9 @@ public class MenuItemService {
 
         menuItem.setShop(shop);
 
-        return menuItemRepo.save(menuItem);
+        MenuItemEntity saved = menuItemRepo.saveAndFlush(menuItem);
+        revisionRepo.touchItems(List.of(saved.getItemId()));
+        return saved;
     }
 
     /**
@@ -123,6 +155,7 @@ public class MenuItemService {
      * @param menuItem The menu item with updated fields
      * @return The updated menu item
      */
+    @Transactional
     public MenuItemEntity updateMenuItem(MenuItemEntity menuItem) {
         logger.info("Updating menu item with ID: {}", menuItem.getItemId());
 
@@ -132,10 +165,77 @@ public class MenuItemService {
             throw new IllegalArgumentException("Menu item not found");
         }
 
-        // Keep the original shop
+        // Keep the original shop; stock is managed through updateDailyStock
         menuItem.setShop(existingItem.getShop());
+        menuItem.setDailyStock(existingItem.getDailyStock());
+        menuItem.setStockRemaining(existingItem.getStockRemaining());
+        menuItem.setStockRefilledAt(existingItem.getStockRefilledAt());
+        menuItem.setHotStock(existingItem.isHotStock());
+
+        MenuItemEntity saved = menuItemRepo.saveAndFlush(menuItem);
+        revisionRepo.touchItems(List.of(saved.getItemId()));
+        return saved;
+    }
+
+    /**
+     * Set the daily stock of a menu item
+     * 
+     * The remaining stock is refilled to the new value right away. A stock of
+     * zero marks the item unavailable, a positive stock marks it available.
+     * 
+     * @param itemId     The ID of the menu item
+     * @param dailyStock Portions per day, or null to stop tracking stock
+     * @param hot        Whether to reserve the stock in memory, for flash
+     *                   specials that many customers order at once
+     * @return The updated menu item
+     */
+    @Transactional
+    public MenuItemEntity updateDailyStock(Long itemId, Integer dailyStock, boolean hot) {
+        logger.info("Updating daily stock for menu item with ID: {} to {} (hot: {})", itemId, dailyStock, hot);
+
+        if (dailyStock != null && dailyStock < 0) {
+            throw new IllegalArgumentException("Daily stock cannot be negative");
+        }
+        if (dailyStock == null && hot) {
+            throw new IllegalArgumentException("Only items with a daily stock can be special items");
+        }
+
+        MenuItemEntity menuItem = getMenuItemById(itemId);
+        if (menuItem == null) {
+            logger.error("Menu item with ID {} not found", itemId);
+            throw new IllegalArgumentException("Menu item not found");
+        }
+
+        // Portions taken in memory but not yet written back belong to the
+        // stock being replaced
+        if (menuItem.isHotStock()) {
+            hotStock.flush();
+        }
+
+        menuItem.setDailyStock(dailyStock);
+        menuItem.setStockRemaining(dailyStock);
+        menuItem.setStockRefilledAt(dailyStock != null ? new Date() : null);
+        menuItem.setHotStock(hot);
+        if (dailyStock != null) {
+            menuItem.setIsAvailable(dailyStock > 0);
+        }
+        MenuItemEntity saved = menuItemRepo.saveAndFlush(menuItem);
+        revisionRepo.touchItems(List.of(itemId));
 
-        return menuItemRepo.save(menuItem);
+        hotStock.track(itemId, hot ? dailyStock : null);
+        return saved;
+    }
+
+    /**
+     * Refill every stock-tracked menu item to its daily stock at the start of
+     * the day
+     */
+    @Scheduled(cron = "${menu.stock.reset-cron:0 0 0 * * *}")
+    public void resetDailyStock() {
+        hotStock.flush();
+        int reset = stockRepo.resetDailyStock(new Date());
+        hotStock.reload();
+        logger.info("Reset daily stock of {} menu items", reset);
     }
 
     /**
@@ -145,6 +245,7 @@ public class MenuItemService {
      * @param isAvailable The new availability status
      * @return The updated menu item
      */
+    @Transactional
     public MenuItemEntity updateMenuItemAvailability(Long itemId, boolean isAvailable) {
         logger.info("Updating availability for menu item with ID: {} to {}", itemId, isAvailable);
 
@@ -155,17 +256,61 @@ public class MenuItemService {
         }
 
         menuItem.setIsAvailable(isAvailable);
-        return menuItemRepo.save(menuItem);
+        MenuItemEntity saved = menuItemRepo.saveAndFlush(menuItem);
+        revisionRepo.touchItems(List.of(itemId));
+        return saved;
     }
 
     /**
-     * Delete a menu item
+     * Delete a menu item, leaving a tombstone so clients syncing the menu
+     * incrementally learn about the deletion
      * 
      * @param id The ID of the menu item to delete
      */
+    @Transactional
     public void deleteMenuItem(Long id) {
         logger.info("Deleting menu item with ID: {}", id);
-        menuItemRepo.deleteById(id);
+        MenuItemEntity menuItem = getMenuItemById(id);
+        if (menuItem == null) {
+            return;
+        }
+        menuItemRepo.delete(menuItem);
+        menuItemRepo.flush();
+        revisionRepo.recordDeletion(id, menuItem.getShop().getShopId());
+    }
+
+    /**
+     * Get the changes to a shop's menu since a revision the client has
+     * 
+     * Revision 0 returns every item of the shop. The items are returned
+     * whether they are available or not, so clients can tell an item going
+     * off sale from one that did not change.
+     * 
+     * @param shopId The ID of the shop
+     * @param since  The revision the client has, from an earlier response
+     * @return Items changed and deleted since then, and the current revision
+     */
+    @Transactional(readOnly = true)
+    public MenuChangesResponse getMenuChanges(Long shopId, long since) {
+        logger.info("Fetching menu changes for shop with ID: {} since revision {}", shopId, since);
+
+        // Read first: changes committed meanwhile are sent again next time
+        // rather than skipped
+        Long revision = revisionRepo.findRevision(shopId);
+        if (revision == null) {
+            throw new IllegalArgumentException("Shop not found");
+        }
+        if (since < 0 || since > revision) {
+            throw new IllegalArgumentException("Unknown menu revision: " + since);
+        }
+
+        List<MenuItemEntity> changed = since == 0
+                ? menuItemRepo.findByShopShopId(shopId)
+                : menuItemRepo.findByShopShopIdAndMenuRevisionGreaterThan(shopId, since);
+        List<Long> deleted = since == 0 ? List.of() : revisionRepo.findDeletedSince(shopId, since);
+
+        return new MenuChangesResponse(shopId, revision,
+                changed.stream().map(MenuItemResponse::new).collect(Collectors.toList()), deleted);
     }
 
     /**
@@ -0,0 +1,256 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+import com.wildeats.onlinecanteen.event.OrderStatusBatchChangedEvent;
+import com.wildeats.onlinecanteen.event.OrderStatusChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Estimates when an order will be ready for pickup
+ *
+ * Keeps a small in-memory model per shop:
+ * - the set of orders still waiting to be prepared (PENDING or PREPARING),
+ * in queue-number order
+ * - the timestamps of the most recent READY/COMPLETED transitions, used to
+ * derive the shop's current throughput
+ *
+ * The model is seeded once per shop from the database and afterwards only
+ * updated incrementally from {@link OrderStatusChangedEvent}s, so answering an
+ * ETA query never touches the database.
+ */
+@Service
+public class OrderEtaService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderEtaService.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${orders.eta.default-prep-seconds:300}")
+    private long defaultPrepSeconds;
+
+    @Value("${orders.eta.window-size:20}")
+    private int windowSize;
+
+    @Value("${orders.eta.max-gap-minutes:30}")
+    private long maxGapMinutes;
+
+    private final ConcurrentHashMap<Long, ShopQueueModel> models = new ConcurrentHashMap<>();
+
+    /**
+     * Apply an order status change to the shop's queue model
+     *
+     * @param event The committed status change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        ShopQueueModel model = getSeededModel(event.getShopId());
+        synchronized (model) {
+            apply(model, event);
+        }
+    }
+
+    /**
+     * Apply all changes of a bulk status update under a single lock of the
+     * shop's queue model
+     *
+     * @param event The committed bulk status change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusBatchChanged(OrderStatusBatchChangedEvent event) {
+        ShopQueueModel model = getSeededModel(event.getShopId());
+        synchronized (model) {
+            for (OrderStatusChangedEvent change : event.getChanges()) {
+                apply(model, change);
+            }
+        }
+    }
+
+    // Caller holds the model's monitor
+    private void apply(ShopQueueModel model, OrderStatusChangedEvent event) {
+        if (isWaiting(event.getNewStatus())) {
+            model.addWaiting(event.getOrderId(), event.getQueueNumber());
+        } else {
+            model.removeWaiting(event.getOrderId());
+        }
+
+        // An order counts as "served" when it becomes READY, or when it is
+        // completed without ever having been marked READY
+        boolean served = event.getNewStatus() == OrderEntity.Status.READY
+                || (event.getNewStatus() == OrderEntity.Status.COMPLETED
+                        && event.getPreviousStatus() != OrderEntity.Status.READY);
+        if (served) {
+            model.recordServed(event.getOccurredAt().getTime(), TimeUnit.MINUTES.toMillis(maxGapMinutes));
+        }
+    }
+
+    /**
+     * Get the estimated ready time of an order
+     *
+     * @param order The order
+     * @return The estimated ready time, or null if the order is completed or
+     *         cancelled
+     */
+    public Date estimateReadyTime(OrderEntity order) {
+        if (order == null || order.getShop() == null) {
+            return null;
+        }
+
+        switch (order.getStatus()) {
+            case READY:
+                return new Date();
+            case COMPLETED:
+            case CANCELLED:
+                return null;
+            default:
+                break;
+        }
+
+        long ahead = countOrdersAhead(order);
+        long interval = getServiceIntervalMillis(order.getShop().getShopId());
+        return new Date(System.currentTimeMillis() + (ahead + 1) * interval);
+    }
+
+    /**
+     * Count the orders in front of this one that still have to be prepared
+     *
+     * @param order The order
+     * @return Number of waiting orders ahead of it
+     */
+    public long countOrdersAhead(OrderEntity order) {
+        if (order == null || order.getShop() == null || !isWaiting(order.getStatus())) {
+            return 0;
+        }
+
+        ShopQueueModel model = getSeededModel(order.getShop().getShopId());
+        synchronized (model) {
+            Ticket ticket = model.tickets.get(order.getOrderId());
+            if (ticket == null) {
+                ticket = new Ticket(order.getOrderId(), order.getQueueNumber());
+            }
+            return model.waiting.headSet(ticket).size();
+        }
+    }
+
+    /**
+     * Get the current average time between two orders being served at a shop
+     *
+     * @param shopId The ID of the shop
+     * @return Average service interval in milliseconds
+     */
+    public long getServiceIntervalMillis(Long shopId) {
+        ShopQueueModel model = getSeededModel(shopId);
+        synchronized (model) {
+            long interval = model.meanIntervalMillis();
+            return interval > 0 ? interval : TimeUnit.SECONDS.toMillis(defaultPrepSeconds);
+        }
+    }
+
+    private ShopQueueModel getSeededModel(Long shopId) {
+        ShopQueueModel model = models.computeIfAbsent(shopId, k -> new ShopQueueModel(windowSize));
+        if (!model.seeded) {
+            synchronized (model) {
+                if (!model.seeded) {
+                    List<OrderEntity> active = orderService.getActiveOrdersByShopId(shopId);
+                    for (OrderEntity order : active) {
+                        if (isWaiting(order.getStatus())) {
+                            model.addWaiting(order.getOrderId(), order.getQueueNumber());
+                        }
+                    }
+                    model.seeded = true;
+                    logger.info("Seeded ETA model for shop {} with {} waiting orders", shopId, model.waiting.size());
+                }
+            }
+        }
+        return model;
+    }
+
+    private static boolean isWaiting(OrderEntity.Status status) {
+        return status == OrderEntity.Status.PENDING || status == OrderEntity.Status.PREPARING;
+    }
+
+    // A waiting order's place in the queue. Pre-orders draw their queue
+    // number only when their slot is released, so the order ID alone does not
+    // give the queue order; it only breaks ties between numbers of different
+    // days. Orders without a known number queue last.
+    private static class Ticket {
+        static final Comparator<Ticket> QUEUE_ORDER = Comparator.<Ticket>comparingInt(t -> t.queueNumber)
+                .thenComparingLong(t -> t.orderId);
+
+        final long orderId;
+        final int queueNumber;
+
+        Ticket(Long orderId, Integer queueNumber) {
+            this.orderId = orderId;
+            this.queueNumber = queueNumber != null ? queueNumber : Integer.MAX_VALUE;
+        }
+    }
+
+    // Per-shop queue state, guarded by its own monitor
+    private static class ShopQueueModel {
+        final TreeSet<Ticket> waiting = new TreeSet<>(Ticket.QUEUE_ORDER);
+        final Map<Long, Ticket> tickets = new HashMap<>();
+        final long[] servedAt;
+        int servedCount;
+        int next;
+        volatile boolean seeded;
+
+        ShopQueueModel(int windowSize) {
+            this.servedAt = new long[Math.max(2, windowSize)];
+        }
+
+        // Keeps the ticket of an order already waiting: moving on to PREPARING
+        // does not carry the queue number again
+        void addWaiting(Long orderId, Integer queueNumber) {
+            if (!tickets.containsKey(orderId)) {
+                Ticket ticket = new Ticket(orderId, queueNumber);
+                tickets.put(orderId, ticket);
+                waiting.add(ticket);
+            }
+        }
+
+        void removeWaiting(Long orderId) {
+            Ticket ticket = tickets.remove(orderId);
+            if (ticket != null) {
+                waiting.remove(ticket);
+            }
+        }
+
+        void recordServed(long timestamp, long maxGapMillis) {
+            // After an idle period the old samples say nothing about the
+            // current pace, so start a fresh window
+            if (servedCount > 0) {
+                long last = servedAt[(next - 1 + servedAt.length) % servedAt.length];
+                if (timestamp - last > maxGapMillis) {
+                    servedCount = 0;
+                }
+            }
+            servedAt[next] = timestamp;
+            next = (next + 1) % servedAt.length;
+            servedCount = Math.min(servedCount + 1, servedAt.length);
+        }
+
+        long meanIntervalMillis() {
+            if (servedCount < 2) {
+                return 0;
+            }
+            long newest = servedAt[(next - 1 + servedAt.length) % servedAt.length];
+            long oldest = servedAt[(next - servedCount + servedAt.length) % servedAt.length];
+            return (newest - oldest) / (servedCount - 1);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the monthly partitions of the orders and order_item tables
+ *
+ * - creates partitions for the upcoming months ahead of time, so new orders
+ * never land in the default partition
+ * - moves partitions older than the archive horizon to the orders_archive
+ * schema, where they are only reachable through {@code OrderArchiveRepository}
+ *
+ * The partition layout and both SQL functions are created by the PostgreSQL
+ * migration V5; on other databases (e.g. H2 in tests) this service does nothing.
+ */
+@Service
+public class OrderPartitionService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderPartitionService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${orders.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${orders.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${orders.archive.horizon-months:12}")
+    private int horizonMonths;
+
+    private Boolean partitioned;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        createUpcomingPartitions();
+    }
+
+    /**
+     * Nightly partition maintenance: create upcoming partitions, then archive
+     * the ones that fell behind the horizon
+     */
+    @Scheduled(cron = "${orders.archive.cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        createUpcomingPartitions();
+        if (archiveEnabled) {
+            archiveOldPartitions();
+        }
+    }
+
+    /**
+     * Create the monthly partitions from the current month up to the configured
+     * number of months ahead
+     *
+     * @return Number of partitions created
+     */
+    public int createUpcomingPartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+
+        LocalDate firstMonth = LocalDate.now().withDayOfMonth(1);
+        Integer created = jdbcTemplate.queryForObject("SELECT create_monthly_order_partitions(?, ?)", Integer.class,
+                Date.valueOf(firstMonth), Date.valueOf(firstMonth.plusMonths(monthsAhead)));
+        if (created != null && created > 0) {
+            logger.info("Created {} monthly order partitions", created);
+        }
+        return created != null ? created : 0;
+    }
+
+    /**
+     * Move every monthly partition that ends before the archive horizon to the
+     * orders_archive schema
+     *
+     * @return Number of monthly partitions archived
+     */
+    public int archiveOldPartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        if (horizonMonths < 1) {
+            throw new IllegalStateException("orders.archive.horizon-months must be at least 1");
+        }
+
+        LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(horizonMonths);
+        Integer archived = jdbcTemplate.queryForObject("SELECT archive_order_partitions(?)", Integer.class,
+                Date.valueOf(cutoff));
+        logger.info("Archived {} order partitions older than {}", archived, cutoff);
+        return archived != null ? archived : 0;
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            partitioned = "PostgreSQL".equalsIgnoreCase(product);
+            if (!partitioned) {
+                logger.info("Order partition maintenance disabled on {}", product);
+            }
+        }
+        return partitioned;
+    }
+}
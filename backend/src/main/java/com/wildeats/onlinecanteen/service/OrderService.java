@@ -1,25 +1,52 @@
 package com.wildeats.onlinecanteen.service;
 
 import java.math.BigDecimal;
-import java.util.Calendar;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.wildeats.onlinecanteen.dto.BulkOrderStatusResult;
+import com.wildeats.onlinecanteen.dto.OrderResponse;
 import com.wildeats.onlinecanteen.entity.OrderEntity;
 import com.wildeats.onlinecanteen.entity.OrderItemEntity;
 import com.wildeats.onlinecanteen.entity.MenuItemEntity;
 import com.wildeats.onlinecanteen.entity.ShopEntity;
 import com.wildeats.onlinecanteen.entity.UserEntity;
+import com.wildeats.onlinecanteen.event.OrderStatusBatchChangedEvent;
+import com.wildeats.onlinecanteen.event.OrderStatusChangedEvent;
+import com.wildeats.onlinecanteen.repository.MenuItemRepository;
+import com.wildeats.onlinecanteen.repository.MenuItemStockRepository;
+import com.wildeats.onlinecanteen.repository.MenuRevisionRepository;
+import com.wildeats.onlinecanteen.repository.OrderArchiveRepository;
 import com.wildeats.onlinecanteen.repository.OrderRepository;
+import com.wildeats.onlinecanteen.repository.QueueNumberRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,53 +57,56 @@ public class OrderService {
     @Autowired
     private OrderRepository orderRepo;
 
-    @Autowired
-    private MenuItemService menuItemService;
-
     @Autowired
     private ShopService shopService;
 
     @Autowired
     private UserService userService;
 
-    private final ConcurrentHashMap<Long, Lock> shopLocks = new ConcurrentHashMap<>();
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-    private Lock getLockForShop(Long shopId) {
-        return shopLocks.computeIfAbsent(shopId, k -> new ReentrantLock());
-    }
+    @Autowired
+    private OrderArchiveRepository orderArchiveRepo;
+
+    @Autowired
+    private MenuItemRepository menuItemRepo;
+
+    @Autowired
+    private QueueNumberRepository queueNumberRepo;
+
+    @Autowired
+    private MenuItemStockRepository stockRepo;
 
-    private Integer generateQueueNumber(Long shopId) {
-        Lock lock = getLockForShop(shopId);
-        lock.lock(); // Block other threads trying to generate queue numbers for this shop
+    @Autowired
+    private MenuRevisionRepository revisionRepo;
 
-        try {
-            // Get start and end of today
-            Calendar cal = Calendar.getInstance();
-            cal.set(Calendar.HOUR_OF_DAY, 0);
-            cal.set(Calendar.MINUTE, 0);
-            cal.set(Calendar.SECOND, 0);
-            cal.set(Calendar.MILLISECOND, 0);
-            Date startOfDay = cal.getTime();
+    @Autowired
+    private HotStockReservationService hotStock;
+
+    @Autowired
+    private PickupSlotService pickupSlotService;
 
-            cal.set(Calendar.HOUR_OF_DAY, 23);
-            cal.set(Calendar.MINUTE, 59);
-            cal.set(Calendar.SECOND, 59);
-            cal.set(Calendar.MILLISECOND, 999);
-            Date endOfDay = cal.getTime();
+    @Autowired
+    private TransactionRetrier transactionRetrier;
 
-            // Get max queue number for today (inside the lock, so it's safe)
-            Integer maxQueueNumber = orderRepo.findMaxQueueNumberForShopAndDate(shopId, startOfDay, endOfDay);
+    @Autowired
+    private CheckoutDispatcher checkoutDispatcher;
 
-            // If no orders today, start from 1
-            int nextQueueNumber = (maxQueueNumber == null) ? 1 : maxQueueNumber + 1;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
-            logger.info("Generated queue number {} for shop {} (thread-safe)", nextQueueNumber, shopId);
-            return nextQueueNumber;
+    @PersistenceContext
+    private EntityManager entityManager;
 
-        } finally {
-            lock.unlock(); // Always release the lock, even if an exception occurs
-        }
-    }
+    @Value("${orders.bulk-update.max-size:50}")
+    private int bulkUpdateMaxSize;
+
+    @Value("${orders.stream.batch-size:200}")
+    private int streamBatchSize;
+
+    @Value("${orders.pickup-slots.release-lead-minutes:0}")
+    private int releaseLeadMinutes;
 
     public List<OrderEntity> getAllOrders() {
         logger.info("Fetching all orders");
@@ -117,6 +147,58 @@ public class OrderService {
         return orderRepo.findByShopShopIdOrderByOrderDateTimeDesc(shopId);
     }
 
+    /**
+     * Read all orders of a customer in batches, newest first
+     * 
+     * Each batch is loaded with its items in one query and detached once the
+     * consumer returns, so a long history is never held in memory at once.
+     * Only for read-only requests: the persistence context is cleared after
+     * every batch.
+     * 
+     * @param customerId The ID of the customer
+     * @param consumer   Receives each batch of orders
+     */
+    public void forEachOrderBatchOfCustomer(Long customerId, Consumer<List<OrderEntity>> consumer) {
+        logger.info("Streaming orders for customer with ID: {}", customerId);
+        forEachOrderBatch(() -> orderRepo.findFirstIdsByCustomer(customerId, PageRequest.of(0, streamBatchSize)),
+                (beforeTime, beforeId) -> orderRepo.findIdsByCustomerBefore(customerId, beforeTime, beforeId,
+                        PageRequest.of(0, streamBatchSize)),
+                consumer);
+    }
+
+    /**
+     * Read all orders of a shop in batches, newest first
+     * 
+     * See {@link #forEachOrderBatchOfCustomer}.
+     * 
+     * @param shopId   The ID of the shop
+     * @param consumer Receives each batch of orders
+     */
+    public void forEachOrderBatchOfShop(Long shopId, Consumer<List<OrderEntity>> consumer) {
+        logger.info("Streaming orders for shop with ID: {}", shopId);
+        forEachOrderBatch(() -> orderRepo.findFirstIdsByShop(shopId, PageRequest.of(0, streamBatchSize)),
+                (beforeTime, beforeId) -> orderRepo.findIdsByShopBefore(shopId, beforeTime, beforeId,
+                        PageRequest.of(0, streamBatchSize)),
+                consumer);
+    }
+
+    // Keyset pagination on (orderDateTime, orderId): the first page has no
+    // cursor, every later one starts after the last order read
+    private void forEachOrderBatch(Supplier<List<Long>> firstIds, BiFunction<Date, Long, List<Long>> nextIds,
+            Consumer<List<OrderEntity>> consumer) {
+        List<Long> ids = firstIds.get();
+        while (!ids.isEmpty()) {
+            List<OrderEntity> batch = orderRepo.findWithItemsByOrderIdIn(ids);
+            consumer.accept(batch);
+            if (batch.isEmpty() || ids.size() < streamBatchSize) {
+                return;
+            }
+            OrderEntity last = batch.get(batch.size() - 1);
+            entityManager.clear();
+            ids = nextIds.apply(last.getOrderDateTime(), last.getOrderId());
+        }
+    }
+
     /**
      * Get all orders for a specific shop with a specific status
      * 
@@ -153,18 +235,124 @@ public class OrderService {
     }
 
     /**
-     * Create a new order with SERIALIZABLE transaction isolation
+     * Get archived orders for a customer
      * 
-     * TRANSACTION ISOLATION LEVELS:
-     * - READ_UNCOMMITTED: No protection (not used)
-     * - READ_COMMITTED: Prevents dirty reads
-     * - REPEATABLE_READ: Prevents dirty & non-repeatable reads
-     * - SERIALIZABLE: Full isolation (highest level)
+     * Archived orders live in the orders_archive schema and are read through
+     * plain JDBC, so this path is slower than the regular order queries
      * 
-     * We use SERIALIZABLE for critical order creation to ensure:
-     * 1. Queue numbers are unique
-     * 2. Order totals are calculated correctly
-     * 3. Menu item prices are captured atomically
+     * @param customerId The ID of the customer
+     * @param startDate  The start of the date range
+     * @param endDate    The end of the date range
+     * @return List of archived orders, newest first
+     */
+    public List<OrderResponse> getArchivedOrdersByCustomerId(Long customerId, Date startDate, Date endDate) {
+        logger.info("Fetching archived orders for customer with ID: {} between {} and {}", customerId, startDate,
+                endDate);
+        validateArchiveRange(startDate, endDate);
+        return orderArchiveRepo.findByCustomerIdAndDateRange(customerId, startDate, endDate);
+    }
+
+    /**
+     * Get archived orders for a shop
+     * 
+     * @param shopId    The ID of the shop
+     * @param startDate The start of the date range
+     * @param endDate   The end of the date range
+     * @return List of archived orders, newest first
+     */
+    public List<OrderResponse> getArchivedOrdersByShopId(Long shopId, Date startDate, Date endDate) {
+        logger.info("Fetching archived orders for shop with ID: {} between {} and {}", shopId, startDate, endDate);
+        validateArchiveRange(startDate, endDate);
+        return orderArchiveRepo.findByShopIdAndDateRange(shopId, startDate, endDate);
+    }
+
+    private void validateArchiveRange(Date startDate, Date endDate) {
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Both startDate and endDate are required for archived orders");
+        }
+        if (startDate.after(endDate)) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+    }
+
+    /**
+     * Create a new order
+     * 
+     * The checkout runs at READ COMMITTED and only locks what it depends on:
+     * - stock-tracked menu items, through a single UPDATE that takes the
+     * ordered quantities from their daily stock (hot items are reserved in
+     * memory instead, see {@link HotStockReservationService})
+     * - the other ordered menu items, with a shared row lock, so their
+     * availability and price cannot change before the order commits
+     * - the shop's queue counter row, incremented last to keep that lock
+     * short, so concurrent checkouts at one shop get unique, consecutive
+     * queue numbers without blocking other shops
+     * - for a pre-order, the pickup slot's counter row instead; the order is
+     * SCHEDULED and gets its queue number when the slot starts
+     * 
+     * Deadlocks and lock or serialization failures are retried a bounded
+     * number of times with jittered backoff. The checkout runs on the
+     * {@link CheckoutDispatcher}, so a rush at one shop queues behind itself
+     * instead of holding up checkouts at other shops.
+     * 
+     * @param customerId The ID of the customer placing the order
+     * @param shopId     The ID of the shop the order is being placed at
+     * @param orderItems List of order items
+     * @param notes      Any notes for the order
+     * @param pickupTime Requested pickup time of a pre-order, or null to order
+     *                   for now
+     * @param onCreated  Called with the saved order inside the checkout
+     *                   transaction, so whatever it writes commits or rolls back
+     *                   with the order; may be null
+     * @return The created order
+     */
+    public OrderEntity createOrder(Long customerId, Long shopId, List<OrderItemEntity> orderItems, String notes,
+            Date pickupTime, Consumer<OrderEntity> onCreated) {
+        logger.info("Creating new order for customer with ID: {} at shop with ID: {} for pickup at {}",
+                customerId, shopId, pickupTime != null ? pickupTime : "now");
+
+        // Keep only what was requested, so every attempt starts from fresh entities
+        List<Long> itemIds = new ArrayList<>(orderItems.size());
+        List<Integer> quantities = new ArrayList<>(orderItems.size());
+        for (OrderItemEntity item : orderItems) {
+            if (item.getMenuItem() == null || item.getMenuItem().getItemId() == null) {
+                throw new IllegalArgumentException("Menu item is required for every order item");
+            }
+            if (item.getQuantity() == null || item.getQuantity() < 1) {
+                throw new IllegalArgumentException("Quantity must be at least 1");
+            }
+            itemIds.add(item.getMenuItem().getItemId());
+            quantities.add(item.getQuantity());
+        }
+
+        return checkoutDispatcher.submit(shopId, () -> transactionRetrier.execute("createOrder",
+                () -> checkoutTransaction().execute(status -> {
+                    OrderEntity order = placeOrder(customerId, shopId, itemIds, quantities, pickupTime);
+                    if (onCreated != null) {
+                        onCreated.accept(order);
+                    }
+                    return order;
+                })));
+    }
+
+    /**
+     * Create a new order, for pickup now or as a pre-order
+     * 
+     * @param customerId The ID of the customer placing the order
+     * @param shopId     The ID of the shop the order is being placed at
+     * @param orderItems List of order items
+     * @param notes      Any notes for the order
+     * @param pickupTime Requested pickup time of a pre-order, or null to order
+     *                   for now
+     * @return The created order
+     */
+    public OrderEntity createOrder(Long customerId, Long shopId, List<OrderItemEntity> orderItems, String notes,
+            Date pickupTime) {
+        return createOrder(customerId, shopId, orderItems, notes, pickupTime, null);
+    }
+
+    /**
+     * Create a new order for pickup now
      * 
      * @param customerId The ID of the customer placing the order
      * @param shopId     The ID of the shop the order is being placed at
@@ -172,10 +360,12 @@ public class OrderService {
      * @param notes      Any notes for the order
      * @return The created order
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
     public OrderEntity createOrder(Long customerId, Long shopId, List<OrderItemEntity> orderItems, String notes) {
-        logger.info("Creating new order for customer with ID: {} at shop with ID: {}", customerId, shopId);
+        return createOrder(customerId, shopId, orderItems, notes, null, null);
+    }
 
+    private OrderEntity placeOrder(Long customerId, Long shopId, List<Long> itemIds, List<Integer> quantities,
+            Date pickupTime) {
         UserEntity customer = userService.getUserById(customerId);
         if (customer == null) {
             logger.error("Customer with ID {} not found", customerId);
@@ -194,6 +384,25 @@ public class OrderService {
             throw new IllegalStateException("Shop is not currently accepting orders");
         }
 
+        Date slotStart = pickupTime != null ? pickupSlotService.toSlotStart(shop, pickupTime) : null;
+
+        // Stock is taken first: hot items from the in-memory counters, all others
+        // through one UPDATE that only matches stock-tracked items. It takes
+        // their row locks, so the shared locks below never need upgrading
+        Map<Long, Integer> hot = new TreeMap<>();
+        Map<Long, Integer> fromDatabase = new TreeMap<>();
+        for (int i = 0; i < itemIds.size(); i++) {
+            (hotStock.isHot(itemIds.get(i)) ? hot : fromDatabase)
+                    .merge(itemIds.get(i), quantities.get(i), Integer::sum);
+        }
+        reserveHotStock(shopId, hot);
+        Set<Long> stockTaken = stockRepo.decrement(shopId, fromDatabase);
+
+        Map<Long, MenuItemEntity> menuItems = new HashMap<>();
+        for (MenuItemEntity menuItem : menuItemRepo.findAllByIdForShare(new TreeSet<>(itemIds))) {
+            menuItems.put(menuItem.getItemId(), menuItem);
+        }
+
         // Create the order
         OrderEntity order = new OrderEntity();
         order.setCustomer(customer);
@@ -201,32 +410,48 @@ public class OrderService {
         order.setStatus(OrderEntity.Status.PENDING);
         order.setOrderDateTime(new Date());
 
-        // ✅ RACE CONDITION PROTECTED: Generate queue number with locking
-        order.setQueueNumber(generateQueueNumber(shopId));
-
         // Add order items
-        for (OrderItemEntity item : orderItems) {
-            MenuItemEntity menuItem = menuItemService.getMenuItemById(item.getMenuItem().getItemId());
+        for (int i = 0; i < itemIds.size(); i++) {
+            MenuItemEntity menuItem = menuItems.get(itemIds.get(i));
             if (menuItem == null) {
-                logger.error("Menu item with ID {} not found", item.getMenuItem().getItemId());
+                logger.error("Menu item with ID {} not found", itemIds.get(i));
                 throw new IllegalArgumentException("Menu item not found");
             }
 
             // Check if menu item belongs to the shop
-            if (!menuItemService.isMenuItemInShop(menuItem.getItemId(), shopId)) {
+            if (!menuItem.getShop().getShopId().equals(shopId)) {
                 logger.error("Menu item with ID {} does not belong to shop with ID {}",
                         menuItem.getItemId(), shopId);
                 throw new IllegalArgumentException("Menu item does not belong to the shop");
             }
 
-            // Check if menu item is available
-            if (!menuItem.getIsAvailable()) {
+            // A stock-tracked item the UPDATE left alone was switched off or had
+            // too little stock; its row, now share-locked, says which
+            if (menuItem.getStockRemaining() != null && fromDatabase.containsKey(menuItem.getItemId())
+                    && !stockTaken.contains(menuItem.getItemId())) {
+                if (menuItem.isHotStock()) {
+                    // Hot since its stock was taken, or the counters are not loaded yet
+                    throw new IllegalStateException("Stock of special items is still being loaded, please try again");
+                }
+                // Sold-out items are unavailable too, but with no stock left
+                if (!menuItem.getIsAvailable() && menuItem.getStockRemaining() > 0) {
+                    logger.error("Menu item with ID {} is not available", menuItem.getItemId());
+                    throw new IllegalArgumentException(menuItem.getItemName() + " is currently not available");
+                }
+                throw notEnoughStock(shopId, menuItem.getItemName(), menuItem.getStockRemaining());
+            }
+
+            // Check if menu item is available (a stock-tracked item may just have
+            // sold out with this very order)
+            if (!stockTaken.contains(menuItem.getItemId()) && !menuItem.getIsAvailable()) {
                 logger.error("Menu item with ID {} is not available", menuItem.getItemId());
                 throw new IllegalArgumentException(menuItem.getItemName() + " is currently not available");
             }
 
             // Set the menu item and capture current price (PRICE SNAPSHOT)
+            OrderItemEntity item = new OrderItemEntity();
             item.setMenuItem(menuItem);
+            item.setQuantity(quantities.get(i));
             item.setPriceAtPurchase(menuItem.getPrice());
 
             // Add to order
@@ -236,17 +461,79 @@ public class OrderService {
         // Calculate total amount
         order.calculateTotalAmount();
 
-        // Save the order (within the SERIALIZABLE transaction)
+        // Menus show the remaining stock, so this is a new menu revision; the
+        // shop row is locked after the menu items, like every other menu change
+        if (!stockTaken.isEmpty()) {
+            revisionRepo.touchItems(stockTaken);
+        }
+
+        // Allocated last: the counter row stays locked until commit
+        if (slotStart != null) {
+            order.setStatus(OrderEntity.Status.SCHEDULED);
+            order.setPickupTime(slotStart);
+            pickupSlotService.book(shop, slotStart);
+        } else {
+            order.setQueueNumber(queueNumberRepo.nextQueueNumber(shopId, LocalDate.now()));
+        }
+
         OrderEntity savedOrder = orderRepo.save(order);
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                savedOrder.getOrderId(), shopId, null, savedOrder.getStatus(), savedOrder.getQueueNumber()));
 
-        logger.info("✅ Order created with ID: {} and queue number: {} (race-condition safe)",
+        logger.info("Order created with ID: {} and queue number: {}",
                 savedOrder.getOrderId(), savedOrder.getQueueNumber());
         return savedOrder;
     }
 
+    private void reserveHotStock(Long shopId, Map<Long, Integer> hot) {
+        if (hot.isEmpty()) {
+            return;
+        }
+        Long soldOut = hotStock.reserve(hot);
+        if (soldOut != null) {
+            Integer left = hotStock.getAvailable(soldOut);
+            throw notEnoughStock(shopId, menuItemRepo.findById(soldOut).map(MenuItemEntity::getItemName)
+                    .orElse("Menu item " + soldOut), left != null ? left : 0);
+        }
+    }
+
+    private IllegalArgumentException notEnoughStock(Long shopId, String itemName, int left) {
+        logger.error("Not enough stock for order at shop {}: {} ({} left)", shopId, itemName, left);
+        return new IllegalArgumentException("Not enough stock left for: " + itemName + " (" + left + " left)");
+    }
+
+    // Gives the stock and pickup slots of cancelled orders back; stock both in
+    // the database and to the in-memory counters of hot items
+    private void releaseCancelled(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        Date since = startOfToday();
+        if (hotStock.hasHotItems()) {
+            hotStock.restock(stockRepo.findHotRestockQuantities(orderIds, since));
+        }
+        stockRepo.restock(orderIds, since);
+        pickupSlotService.releaseSlots(orderIds);
+    }
+
+    private static Date startOfToday() {
+        return Timestamp.valueOf(LocalDate.now().atStartOfDay());
+    }
+
+    private TransactionTemplate checkoutTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return template;
+    }
+
     /**
      * Update the status of an order
      * 
+     * The transition is a single conditional UPDATE that only matches when the
+     * order is currently in one of the allowed predecessor statuses, so a
+     * concurrent change (e.g. the customer cancelling while the seller marks it
+     * READY) is never silently overwritten
+     * 
      * @param orderId The ID of the order
      * @param status  The new status
      * @return The updated order
@@ -255,15 +542,20 @@ public class OrderService {
     public OrderEntity updateOrderStatus(Long orderId, OrderEntity.Status status) {
         logger.info("Updating status for order with ID: {} to {}", orderId, status);
 
-        OrderEntity order = getOrderById(orderId);
-        if (order == null) {
-            logger.error("Order with ID {} not found", orderId);
-            throw new IllegalArgumentException("Order not found");
+        if (status == OrderEntity.Status.CANCELLED) {
+            return cancelOrder(orderId, null);
+        }
+        if (status == OrderEntity.Status.PENDING) {
+            // Needs a queue number, see releaseDueOrders
+            throw new IllegalStateException("Scheduled orders are released to the queue when their pickup slot starts");
         }
 
-        order.setStatus(status);
+        Set<OrderEntity.Status> from = status.allowedPredecessors();
+        if (orderRepo.transitionStatus(orderId, status, from) == 0) {
+            throw rejectedTransition(orderId, status);
+        }
 
-        return orderRepo.save(order);
+        return publishTransition(orderId, from, status);
     }
 
     /**
@@ -277,21 +569,176 @@ public class OrderService {
     public OrderEntity cancelOrder(Long orderId, String reason) {
         logger.info("Cancelling order with ID: {} with reason: {}", orderId, reason);
 
+        // Only orders that are not COMPLETED or CANCELLED yet can be cancelled
+        Set<OrderEntity.Status> from = OrderEntity.Status.CANCELLED.allowedPredecessors();
+        if (orderRepo.cancel(orderId, reason, new Date(), from) == 0) {
+            throw rejectedTransition(orderId, OrderEntity.Status.CANCELLED);
+        }
+        releaseCancelled(List.of(orderId));
+
+        return publishTransition(orderId, from, OrderEntity.Status.CANCELLED);
+    }
+
+    /**
+     * Update the status of several orders of one shop at once
+     * 
+     * The statuses and versions of all orders are read with one query. Each
+     * order that may make its transition is then moved with one UPDATE guarded
+     * by the version it was read at, so an order changed by someone else in the
+     * meantime is left alone and the events carry the status each update
+     * really replaced. Orders that are not in the shop or cannot make the
+     * transition are reported back instead of failing the whole batch.
+     * 
+     * @param shopId  The ID of the shop
+     * @param updates The target status of each order, in request order
+     * @return The result for each order, in request order
+     */
+    @Transactional
+    public List<BulkOrderStatusResult> updateOrderStatuses(Long shopId, Map<Long, OrderEntity.Status> updates) {
+        logger.info("Bulk updating {} orders of shop {}", updates.size(), shopId);
+
+        if (updates.size() > bulkUpdateMaxSize) {
+            throw new IllegalArgumentException("At most " + bulkUpdateMaxSize + " orders can be updated at once");
+        }
+
+        Map<Long, OrderRepository.OrderStatusView> before = indexStatusViews(
+                orderRepo.findStatusViews(shopId, updates.keySet()));
+
+        Date now = new Date();
+        List<OrderStatusChangedEvent> changes = new ArrayList<>();
+        List<Long> lost = new ArrayList<>();
+        updates.forEach((orderId, status) -> {
+            OrderRepository.OrderStatusView old = before.get(orderId);
+            // Scheduled orders only become PENDING through releaseDueOrders
+            if (old == null || status == OrderEntity.Status.PENDING || !old.getStatus().canTransitionTo(status)) {
+                return;
+            }
+            int updated = status == OrderEntity.Status.CANCELLED
+                    ? orderRepo.cancelForShop(shopId, orderId, "Cancelled by shop", now, old.getVersion())
+                    : orderRepo.transitionStatusForShop(shopId, orderId, status, old.getVersion());
+            if (updated == 1) {
+                changes.add(new OrderStatusChangedEvent(orderId, shopId, old.getStatus(), status));
+            } else {
+                lost.add(orderId);
+            }
+        });
+
+        // Only orders changed concurrently need reading again, to report where they are now
+        Map<Long, OrderRepository.OrderStatusView> current = new HashMap<>(before);
+        if (!lost.isEmpty()) {
+            lost.forEach(current::remove);
+            current.putAll(indexStatusViews(orderRepo.findStatusViews(shopId, lost)));
+        }
+
+        Set<Long> changed = new HashSet<>();
+        changes.forEach(change -> changed.add(change.getOrderId()));
+        List<BulkOrderStatusResult> results = new ArrayList<>(updates.size());
+        updates.forEach((orderId, status) -> {
+            OrderRepository.OrderStatusView view = current.get(orderId);
+            if (changed.contains(orderId)) {
+                results.add(new BulkOrderStatusResult(orderId, true, status.toString(), null));
+            } else if (view == null) {
+                results.add(new BulkOrderStatusResult(orderId, false, null, "Order not found in this shop"));
+            } else {
+                results.add(new BulkOrderStatusResult(orderId, false, view.getStatus().toString(),
+                        "Cannot change order status from " + view.getStatus() + " to " + status));
+            }
+        });
+
+        List<Long> cancelled = changes.stream()
+                .filter(change -> change.getNewStatus() == OrderEntity.Status.CANCELLED)
+                .map(OrderStatusChangedEvent::getOrderId)
+                .toList();
+        releaseCancelled(cancelled);
+
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new OrderStatusBatchChangedEvent(shopId, changes));
+        }
+        logger.info("Bulk update of shop {}: {} of {} orders updated", shopId, changes.size(), updates.size());
+        return results;
+    }
+
+    private static Map<Long, OrderRepository.OrderStatusView> indexStatusViews(
+            List<OrderRepository.OrderStatusView> views) {
+        Map<Long, OrderRepository.OrderStatusView> byId = new HashMap<>();
+        for (OrderRepository.OrderStatusView view : views) {
+            byId.put(view.getOrderId(), view);
+        }
+        return byId;
+    }
+
+    // Reloads the order after a successful transition and announces the change
+    private OrderEntity publishTransition(Long orderId, Set<OrderEntity.Status> from, OrderEntity.Status status) {
         OrderEntity order = getOrderById(orderId);
-        if (order == null) {
+        OrderEntity.Status previousStatus = from.size() == 1 ? from.iterator().next() : null;
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                orderId, order.getShop().getShopId(), previousStatus, status));
+        return order;
+    }
+
+    // Explains why a conditional status update matched no row
+    private RuntimeException rejectedTransition(Long orderId, OrderEntity.Status status) {
+        OrderEntity current = getOrderById(orderId);
+        if (current == null) {
             logger.error("Order with ID {} not found", orderId);
-            throw new IllegalArgumentException("Order not found");
+            return new IllegalArgumentException("Order not found");
         }
+        logger.error("Cannot change order {} from {} to {}", orderId, current.getStatus(), status);
+        return new IllegalStateException(
+                "Cannot change order status from " + current.getStatus() + " to " + status);
+    }
 
-        // Can only cancel orders that are PENDING or PREPARING
-        if (order.getStatus() == OrderEntity.Status.COMPLETED ||
-                order.getStatus() == OrderEntity.Status.CANCELLED) {
-            logger.error("Cannot cancel order with status: {}", order.getStatus());
-            throw new IllegalStateException("Cannot cancel order with current status");
+    /**
+     * Release scheduled pre-orders to the kitchen queue once their pickup slot
+     * starts (less the configured lead time)
+     * 
+     * The due orders of each shop are released in one transaction: each one
+     * becomes PENDING and gets the shop's next queue number, in pickup slot
+     * and then placement order.
+     * 
+     * @return Number of orders released
+     */
+    @Scheduled(fixedDelayString = "${orders.pickup-slots.release-interval-ms:30000}")
+    public int releaseDueOrders() {
+        Date until = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(releaseLeadMinutes));
+        Map<Long, List<Long>> dueByShop = new LinkedHashMap<>();
+        for (OrderRepository.ScheduledOrderView due : orderRepo.findDueScheduledOrders(until)) {
+            dueByShop.computeIfAbsent(due.getShopId(), k -> new ArrayList<>()).add(due.getOrderId());
         }
 
-        order.cancel(reason);
-        return orderRepo.save(order);
+        int released = 0;
+        for (Map.Entry<Long, List<Long>> entry : dueByShop.entrySet()) {
+            try {
+                released += transactionRetrier.execute("releaseOrders", () -> checkoutTransaction().execute(
+                        status -> releaseOrders(entry.getKey(), entry.getValue())));
+            } catch (RuntimeException e) {
+                // Retried on the next run
+                logger.error("Failed to release scheduled orders of shop {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        if (released > 0) {
+            logger.info("Released {} scheduled orders to the kitchen queue", released);
+        }
+        return released;
+    }
+
+    private int releaseOrders(Long shopId, List<Long> orderIds) {
+        Set<OrderEntity.Status> from = OrderEntity.Status.PENDING.allowedPredecessors();
+        List<OrderStatusChangedEvent> changes = new ArrayList<>();
+        for (Long orderId : orderIds) {
+            // Skips orders cancelled in the meantime; the number is only
+            // allocated for orders that actually moved
+            if (orderRepo.transitionStatus(orderId, OrderEntity.Status.PENDING, from) == 1) {
+                int queueNumber = queueNumberRepo.nextQueueNumber(shopId, LocalDate.now());
+                orderRepo.assignQueueNumber(orderId, queueNumber);
+                changes.add(new OrderStatusChangedEvent(orderId, shopId, OrderEntity.Status.SCHEDULED,
+                        OrderEntity.Status.PENDING, queueNumber));
+            }
+        }
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new OrderStatusBatchChangedEvent(shopId, changes));
+        }
+        return changes.size();
     }
 
     /**
@@ -0,0 +1,230 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashes and verifies passwords on a small dedicated pool
+ *
+ * BCrypt is deliberately slow, so a burst of logins at class change would
+ * otherwise occupy every request thread with hashing. The pool runs only a
+ * few hashes at once with a bounded queue; work that cannot be queued, or
+ * does not finish within the maximum wait, fails fast with
+ * {@link BusyException} instead of piling up.
+ *
+ * Logins for unknown emails wait about as long as a real verification, taken
+ * from recent ones, but sleep on the request thread instead of hashing. Pool
+ * usage is exported under password.hashing (ExecutorServiceMetrics), the time
+ * from submission to result as the password.hashing.latency timer tagged by
+ * operation, and shed work as the password.hashing.rejected counter.
+ */
+@Service
+public class PasswordHashingService {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    // Recent verification latencies that unknown-email logins imitate
+    private static final int SAMPLES = 32;
+
+    private final PasswordEncoder passwordEncoder;
+    private final int bcryptStrength;
+    private final long maxWaitMillis;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService monitored;
+
+    private final Timer hashLatency;
+    private final Timer verifyLatency;
+    private final Counter rejected;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicInteger nextSample = new AtomicInteger();
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+            @Value("${security.password.bcrypt-strength:10}") int bcryptStrength,
+            @Value("${security.password.hashing.threads:2}") int threads,
+            @Value("${security.password.hashing.queue-capacity:32}") int queueCapacity,
+            @Value("${security.password.hashing.max-wait-ms:5000}") long maxWaitMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptStrength = bcryptStrength;
+        this.maxWaitMillis = maxWaitMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "password.hashing");
+
+        this.hashLatency = Timer.builder("password.hashing.latency").tag("operation", "hash")
+                .description("Time from submitting a hash to its result").register(meterRegistry);
+        this.verifyLatency = Timer.builder("password.hashing.latency").tag("operation", "verify")
+                .description("Time from submitting a verification to its result").register(meterRegistry);
+        this.rejected = Counter.builder("password.hashing.rejected")
+                .description("Hashing work shed because the pool was busy").register(meterRegistry);
+
+        // Seed the samples with one hash at the configured cost
+        long start = System.nanoTime();
+        passwordEncoder.encode("calibration");
+        long elapsed = System.nanoTime() - start;
+        for (int i = 0; i < SAMPLES; i++) {
+            samples.set(i, elapsed);
+        }
+    }
+
+    /**
+     * Hash a password
+     *
+     * @param rawPassword The password
+     * @return The BCrypt hash
+     * @throws BusyException if the pool is too busy
+     */
+    public String hash(String rawPassword) {
+        long start = System.nanoTime();
+        try {
+            return await(() -> passwordEncoder.encode(rawPassword));
+        } finally {
+            hashLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Check a password against a stored hash
+     *
+     * @param rawPassword    The password
+     * @param hashedPassword The stored hash
+     * @return true if the password matches
+     * @throws BusyException if the pool is too busy
+     */
+    public boolean matches(String rawPassword, String hashedPassword) {
+        long start = System.nanoTime();
+        boolean matches = await(() -> passwordEncoder.matches(rawPassword, hashedPassword));
+        long elapsed = System.nanoTime() - start;
+        verifyLatency.record(elapsed, TimeUnit.NANOSECONDS);
+        samples.set(Math.floorMod(nextSample.getAndIncrement(), SAMPLES), elapsed);
+        return matches;
+    }
+
+    /**
+     * Wait about as long as a real verification takes, for a login whose email
+     * does not exist, without hashing anything
+     */
+    public void imitateMismatch() {
+        long nanos = samples.get(ThreadLocalRandom.current().nextInt(SAMPLES));
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Whether a stored hash was made at another BCrypt cost than the
+     * configured one, and should be replaced at the next successful login
+     *
+     * @param hashedPassword The stored hash, e.g. $2a$10$...
+     * @return true if the hash should be replaced
+     */
+    public boolean needsRehash(String hashedPassword) {
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(4, 6)) != bcryptStrength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash a password in the background, when the pool has room. Nothing
+     * happens if it is busy; the caller may try again another time.
+     *
+     * @param rawPassword The password
+     * @param onHashed    Receives the hash, on a pool thread
+     */
+    public void hashInBackground(String rawPassword, Consumer<String> onHashed) {
+        try {
+            monitored.execute(() -> {
+                try {
+                    onHashed.accept(passwordEncoder.encode(rawPassword));
+                } catch (RuntimeException e) {
+                    logger.warn("Background password hashing failed: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.debug("Skipped background password hashing, pool is busy");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T await(Callable<T> work) {
+        Future<T> future;
+        try {
+            future = monitored.submit(work);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Password hashing queue is full");
+            throw new BusyException("Too many sign-ins right now, please try again");
+        }
+
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            logger.warn("Password hashing did not finish within {} ms", maxWaitMillis);
+            throw new BusyException("Too many sign-ins right now, please try again");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusyException("Password hashing was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    /**
+     * Thrown when password hashing is shed because the pool is busy
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.wildeats.onlinecanteen.dto.PickupSlotResponse;
+import com.wildeats.onlinecanteen.entity.ShopEntity;
+import com.wildeats.onlinecanteen.repository.PickupSlotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pickup slots for pre-orders
+ *
+ * Slots are laid out from the canteen's opening time in steps of the shop's
+ * slot length, up to its closing time. Each slot admits at most the shop's
+ * slot capacity in orders; admission is counted per shop and slot in
+ * pickup_slot_counter.
+ */
+@Service
+public class PickupSlotService {
+    private static final Logger logger = LoggerFactory.getLogger(PickupSlotService.class);
+
+    @Autowired
+    private PickupSlotRepository slotRepo;
+
+    @Value("${orders.pickup-slots.opening-time:07:00}")
+    private String openingTime;
+
+    @Value("${orders.pickup-slots.closing-time:19:00}")
+    private String closingTime;
+
+    @Value("${orders.pickup-slots.max-days-ahead:7}")
+    private int maxDaysAhead;
+
+    /**
+     * Find the pickup slot a requested pickup time falls into
+     *
+     * @param shop       The shop
+     * @param pickupTime The requested pickup time
+     * @return Start of the slot
+     */
+    public Date toSlotStart(ShopEntity shop, Date pickupTime) {
+        if (!shop.acceptsPreOrders()) {
+            throw new IllegalArgumentException("This shop does not take pre-orders");
+        }
+
+        LocalDateTime requested = LocalDateTime.ofInstant(pickupTime.toInstant(), ZoneId.systemDefault());
+        LocalTime opening = LocalTime.parse(openingTime);
+        LocalTime closing = LocalTime.parse(closingTime);
+        if (requested.toLocalTime().isBefore(opening) || !requested.toLocalTime().isBefore(closing)) {
+            throw new IllegalArgumentException(
+                    "Pickup time must be between " + openingTime + " and " + closingTime);
+        }
+        if (requested.toLocalDate().isAfter(LocalDate.now().plusDays(maxDaysAhead))) {
+            throw new IllegalArgumentException(
+                    "Pre-orders can be placed at most " + maxDaysAhead + " days ahead");
+        }
+
+        long sinceOpening = ChronoUnit.MINUTES.between(opening, requested.toLocalTime());
+        LocalDateTime slotStart = requested.toLocalDate().atTime(opening)
+                .plusMinutes(sinceOpening / shop.getPickupSlotMinutes() * shop.getPickupSlotMinutes());
+        if (!slotStart.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("This pickup slot has already started, please order for now instead");
+        }
+        return Timestamp.valueOf(slotStart);
+    }
+
+    /**
+     * Admit one order into a pickup slot. Must be called inside the checkout
+     * transaction; the slot's counter row stays locked until it ends.
+     *
+     * @param shop      The shop
+     * @param slotStart Start of the slot, see {@link #toSlotStart}
+     */
+    public void book(ShopEntity shop, Date slotStart) {
+        if (!slotRepo.tryBook(shop.getShopId(), slotStart, shop.getPickupSlotCapacity())) {
+            logger.error("Pickup slot {} of shop {} is full", slotStart, shop.getShopId());
+            throw new IllegalStateException("This pickup slot is full, please choose another one");
+        }
+    }
+
+    /**
+     * Free the slots of cancelled pre-orders
+     *
+     * @param orderIds The IDs of the cancelled orders
+     */
+    public void releaseSlots(Collection<Long> orderIds) {
+        slotRepo.release(orderIds, new Date());
+    }
+
+    /**
+     * List the pickup slots of a shop on a day that have not started yet
+     *
+     * @param shop The shop
+     * @param day  The day
+     * @return The slots with their remaining capacity, in time order
+     */
+    public List<PickupSlotResponse> getSlots(ShopEntity shop, LocalDate day) {
+        List<PickupSlotResponse> slots = new ArrayList<>();
+        if (!shop.acceptsPreOrders()) {
+            return slots;
+        }
+
+        LocalDateTime opening = day.atTime(LocalTime.parse(openingTime));
+        LocalDateTime closing = day.atTime(LocalTime.parse(closingTime));
+        Map<Long, Integer> booked = slotRepo.findBooked(shop.getShopId(),
+                Timestamp.valueOf(opening), Timestamp.valueOf(closing));
+
+        LocalDateTime now = LocalDateTime.now();
+        int capacity = shop.getPickupSlotCapacity();
+        for (LocalDateTime start = opening; start.isBefore(closing);
+                start = start.plusMinutes(shop.getPickupSlotMinutes())) {
+            if (!start.isAfter(now)) {
+                continue;
+            }
+            Timestamp slotStart = Timestamp.valueOf(start);
+            int taken = booked.getOrDefault(slotStart.getTime(), 0);
+            slots.add(new PickupSlotResponse(slotStart,
+                    Timestamp.valueOf(start.plusMinutes(shop.getPickupSlotMinutes())),
+                    capacity, Math.max(capacity - taken, 0)));
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,179 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.wildeats.onlinecanteen.entity.RefreshTokenEntity;
+import com.wildeats.onlinecanteen.repository.RefreshTokenRepository;
+import com.wildeats.onlinecanteen.security.TokenRevocationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues and rotates refresh tokens, which let clients get new access tokens
+ * without signing in (and hashing a password) again
+ *
+ * A refresh token is a random value of which only the SHA-256 hash is stored;
+ * it has enough entropy that a fast hash is safe. Every refresh marks the
+ * presented token as rotated and issues the next token of the same family.
+ * A rotated token that is presented again has been copied, so the whole family
+ * is revoked, along with the user's access tokens, and both the thief and the
+ * user have to sign in again.
+ *
+ * The steps are not wrapped in one transaction on purpose: a revocation must
+ * stay in place even though the refresh that detected the reuse fails.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepo;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocations;
+
+    @Value("${security.refresh-token.ttl-days:30}")
+    private long ttlDays;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Issue the first refresh token of a new family, after a sign-in
+     *
+     * @param userId The ID of the user who signed in
+     * @return The refresh token to hand to the client
+     */
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Exchange a refresh token for the next one of its family
+     *
+     * @param refreshToken The refresh token presented by the client
+     * @return The user the token belongs to and the new refresh token
+     * @throws IllegalArgumentException if the token is unknown, expired,
+     *                                  revoked or has already been used
+     */
+    public Rotation rotate(String refreshToken) {
+        RefreshTokenEntity token = refreshTokenRepo.findByTokenHash(sha256(refreshToken))
+                .orElseThrow(() -> new IllegalArgumentException("Invalid refresh token"));
+        Date now = new Date();
+
+        // A token issued while its family was being revoked for reuse is not
+        // revoked itself, so check the family as well
+        if (token.getRevokedAt() != null
+                || refreshTokenRepo.existsByFamilyIdAndRevokedAtIsNotNull(token.getFamilyId())) {
+            throw new IllegalArgumentException("Refresh token has been revoked");
+        }
+        if (token.getRotatedAt() != null || refreshTokenRepo.markRotated(token.getId(), now) == 0) {
+            int revoked = refreshTokenRepo.revokeFamily(token.getFamilyId(), now);
+            tokenRevocations.revokeAllForUser(token.getUserId());
+            logger.warn("Reuse of refresh token {} of user {}; revoked {} tokens of family {}", token.getId(),
+                    token.getUserId(), revoked, token.getFamilyId());
+            throw new IllegalArgumentException("Refresh token has already been used");
+        }
+        if (token.getExpiresAt().before(now)) {
+            throw new IllegalArgumentException("Refresh token has expired");
+        }
+
+        return new Rotation(token.getUserId(), issue(token.getUserId(), token.getFamilyId()));
+    }
+
+    /**
+     * Revoke the family of a refresh token, at sign-out
+     *
+     * @param refreshToken The refresh token presented by the client
+     * @return true if the token was known
+     */
+    public boolean revoke(String refreshToken) {
+        return refreshTokenRepo.findByTokenHash(sha256(refreshToken))
+                .map(token -> {
+                    refreshTokenRepo.revokeFamily(token.getFamilyId(), new Date());
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Revoke every refresh token of a user, e.g. after a password change
+     *
+     * @param userId The ID of the user
+     */
+    public void revokeAllForUser(Long userId) {
+        int revoked = refreshTokenRepo.revokeAllForUser(userId, new Date());
+        if (revoked > 0) {
+            logger.info("Revoked {} refresh tokens of user {}", revoked, userId);
+        }
+    }
+
+    /**
+     * Remove expired refresh tokens
+     */
+    @Scheduled(fixedDelayString = "${security.refresh-token.purge-interval-ms:3600000}")
+    public void purge() {
+        int expired = refreshTokenRepo.deleteExpired(new Date());
+        if (expired > 0) {
+            logger.info("Purged {} expired refresh tokens", expired);
+        }
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] value = new byte[TOKEN_BYTES];
+        random.nextBytes(value);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+
+        RefreshTokenEntity token = new RefreshTokenEntity();
+        token.setTokenHash(sha256(refreshToken));
+        token.setFamilyId(familyId);
+        token.setUserId(userId);
+        token.setExpiresAt(new Date(token.getCreatedAt().getTime() + TimeUnit.DAYS.toMillis(ttlDays)));
+        refreshTokenRepo.save(token);
+        return refreshToken;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Result of a refresh: the owner of the token and its successor
+     */
+    public static class Rotation {
+        private final Long userId;
+        private final String refreshToken;
+
+        public Rotation(Long userId, String refreshToken) {
+            this.userId = userId;
+            this.refreshToken = refreshToken;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.wildeats.onlinecanteen.entity.ShopDocumentEntity;
+import com.wildeats.onlinecanteen.repository.DocumentQuotaRepository;
+import com.wildeats.onlinecanteen.repository.ShopDocumentRepository;
+import com.wildeats.onlinecanteen.storage.DocumentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Documents uploaded by shops (business permits, IDs, etc.)
+ *
+ * The content goes to the document store, which keeps identical files once;
+ * a shop uploading a file it already has gets the existing document back.
+ * Every shop has a quota of document bytes. An upload reserves the declared
+ * size of its files up front, before anything is written, and gives back what
+ * it did not use, so concurrent uploads cannot overshoot the quota. The quota
+ * counts each document in full, even when its bytes are shared with another
+ * shop.
+ *
+ * Multipart files arrive on disk (spring.servlet.multipart.file-size-threshold
+ * is 0) and are streamed from there into the store, so no upload is held in
+ * memory. Content no document refers to any more is deleted by a scheduled
+ * job once it has not been uploaded again for the grace period.
+ */
+@Service
+public class ShopDocumentService {
+    private static final Logger logger = LoggerFactory.getLogger(ShopDocumentService.class);
+
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+
+    @Autowired
+    @Qualifier("documentStore")
+    private DocumentStore documentStore;
+
+    @Autowired
+    private ShopDocumentRepository documentRepo;
+
+    @Autowired
+    private DocumentQuotaRepository quotaRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${storage.documents.max-file-bytes:10485760}")
+    private long maxFileBytes;
+
+    @Value("${storage.documents.shop-quota-bytes:52428800}")
+    private long shopQuotaBytes;
+
+    @Value("${storage.documents.allowed-types:application/pdf,image/jpeg,image/png}")
+    private Set<String> allowedTypes;
+
+    @Value("${storage.documents.orphan-grace-hours:24}")
+    private long orphanGraceHours;
+
+    /**
+     * Upload documents of a shop
+     *
+     * Files are stored one after the other; if one fails, those before it
+     * are kept.
+     *
+     * @param shopId The ID of the shop
+     * @param userId The ID of the uploading user
+     * @param files  The uploaded files; empty ones are skipped
+     * @return The documents, one per non-empty file
+     * @throws IllegalArgumentException if there are no files, or a file is
+     *                                  too large or of a type not accepted
+     * @throws QuotaExceededException   if the files do not fit in the shop's
+     *                                  quota
+     * @throws IOException              if a file cannot be read or stored
+     */
+    public List<ShopDocumentEntity> upload(Long shopId, Long userId, MultipartFile[] files) throws IOException {
+        List<MultipartFile> uploads = new ArrayList<>();
+        if (files != null) {
+            for (MultipartFile file : files) {
+                if (!file.isEmpty()) {
+                    uploads.add(file);
+                }
+            }
+        }
+        if (uploads.isEmpty()) {
+            throw new IllegalArgumentException("No files to upload");
+        }
+
+        long total = 0;
+        for (MultipartFile file : uploads) {
+            if (file.getSize() > maxFileBytes) {
+                throw new IllegalArgumentException(
+                        "File " + fileNameOf(file) + " is larger than " + maxFileBytes + " bytes");
+            }
+            if (!allowedTypes.contains(contentTypeOf(file))) {
+                throw new IllegalArgumentException("File " + fileNameOf(file) + " must be one of " + allowedTypes);
+            }
+            total += file.getSize();
+        }
+
+        if (!quotaRepo.reserve(shopId, total, shopQuotaBytes)) {
+            long available = Math.max(0, shopQuotaBytes - quotaRepo.getUsedBytes(shopId));
+            throw new QuotaExceededException("Documents of this shop are limited to " + shopQuotaBytes
+                    + " bytes; " + available + " bytes are left");
+        }
+
+        long unused = total;
+        List<ShopDocumentEntity> documents = new ArrayList<>();
+        try {
+            for (MultipartFile file : uploads) {
+                DocumentStore.StoredContent content;
+                try (InputStream in = file.getInputStream()) {
+                    content = documentStore.store(in, file.getSize());
+                }
+
+                ShopDocumentEntity existing = documentRepo.findByShopIdAndContentHash(shopId, content.getHash())
+                        .orElse(null);
+                if (existing == null) {
+                    ShopDocumentEntity document = new ShopDocumentEntity();
+                    document.setShopId(shopId);
+                    document.setContentHash(content.getHash());
+                    document.setFileName(fileNameOf(file));
+                    document.setContentType(contentTypeOf(file));
+                    document.setSizeBytes(content.getSize());
+                    document.setUploadedBy(userId);
+                    try {
+                        existing = documentRepo.save(document);
+                        unused -= content.getSize();
+                    } catch (DataIntegrityViolationException e) {
+                        // The same content was uploaded to this shop concurrently
+                        existing = documentRepo.findByShopIdAndContentHash(shopId, content.getHash())
+                                .orElseThrow(() -> e);
+                    }
+                }
+                documents.add(existing);
+            }
+        } finally {
+            if (unused > 0) {
+                quotaRepo.release(shopId, unused);
+            }
+        }
+
+        logger.info("Stored {} documents for shop {}", documents.size(), shopId);
+        return documents;
+    }
+
+    /**
+     * @param shopId The ID of the shop
+     * @return The documents of the shop, newest first
+     */
+    public List<ShopDocumentEntity> getDocuments(Long shopId) {
+        return documentRepo.findByShopIdOrderByUploadedAtDesc(shopId);
+    }
+
+    /**
+     * @param shopId     The ID of the shop
+     * @param documentId The ID of the document
+     * @return The document, or null if the shop has no such document
+     */
+    public ShopDocumentEntity getDocument(Long shopId, Long documentId) {
+        return documentRepo.findByIdAndShopId(documentId, shopId).orElse(null);
+    }
+
+    /**
+     * Delete a document of a shop and give its bytes back to the quota
+     *
+     * Only the request whose DELETE removed the row gives the bytes back, so
+     * concurrent deletes of the same document release its size once.
+     *
+     * @param shopId     The ID of the shop
+     * @param documentId The ID of the document
+     * @return true if the document was deleted, false if it was not found
+     */
+    public boolean deleteDocument(Long shopId, Long documentId) {
+        ShopDocumentEntity document = getDocument(shopId, documentId);
+        if (document == null) {
+            return false;
+        }
+        boolean deleted = new TransactionTemplate(transactionManager).execute(status -> {
+            if (documentRepo.deleteByIdAndShopId(documentId, shopId) != 1) {
+                return false;
+            }
+            quotaRepo.release(shopId, document.getSizeBytes());
+            return true;
+        });
+        if (deleted) {
+            logger.info("Deleted document {} of shop {}", documentId, shopId);
+        }
+        return deleted;
+    }
+
+    /**
+     * @param shopId The ID of the shop
+     * @return Bytes of documents the shop uses
+     */
+    public long getUsedBytes(Long shopId) {
+        return quotaRepo.getUsedBytes(shopId);
+    }
+
+    /**
+     * @return Bytes of documents every shop may keep
+     */
+    public long getShopQuotaBytes() {
+        return shopQuotaBytes;
+    }
+
+    /**
+     * Stream part of a document's content
+     *
+     * @param document The document
+     * @param position Offset of the first byte
+     * @param count    Number of bytes
+     * @param target   The channel to write to
+     * @throws IOException if the content cannot be read or written
+     */
+    public void transferTo(ShopDocumentEntity document, long position, long count,
+            WritableByteChannel target) throws IOException {
+        documentStore.transferTo(document.getContentHash(), position, count, target);
+    }
+
+    /**
+     * @param document The document
+     * @return The file holding its content, or null if it is not on local disk
+     */
+    public Path getLocalFile(ShopDocumentEntity document) {
+        return documentStore.localFile(document.getContentHash());
+    }
+
+    /**
+     * Delete stored content that no document refers to and that has not been
+     * uploaded again for the grace period
+     */
+    @Scheduled(fixedDelayString = "${storage.documents.purge-interval-ms:3600000}",
+            initialDelayString = "${storage.documents.purge-interval-ms:3600000}")
+    public void purgeUnreferenced() {
+        Instant cutoff = Instant.now().minus(orphanGraceHours, ChronoUnit.HOURS);
+        int deleted = 0;
+        try {
+            for (String hash : documentStore.listStoredBefore(cutoff)) {
+                if (!documentRepo.existsByContentHash(hash)) {
+                    documentStore.delete(hash, cutoff);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Cannot purge unreferenced documents: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("Purged {} unreferenced documents", deleted);
+        }
+    }
+
+    private static String contentTypeOf(MultipartFile file) {
+        String contentType = file.getContentType();
+        if (contentType == null) {
+            return "application/octet-stream";
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim()
+                .toLowerCase(Locale.ROOT);
+    }
+
+    // The last path segment of the client's file name, without control
+    // characters, as browsers may send full paths
+    private static String fileNameOf(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        if (name == null) {
+            return "document";
+        }
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        name = name.codePoints().filter(c -> !Character.isISOControl(c))
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString()
+                .trim();
+        if (name.isEmpty()) {
+            return "document";
+        }
+        return name.length() > MAX_FILE_NAME_LENGTH ? name.substring(0, MAX_FILE_NAME_LENGTH) : name;
+    }
+
+    /**
+     * Thrown when documents do not fit in a shop's quota
+     */
+    public static class QuotaExceededException extends RuntimeException {
+        public QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+}
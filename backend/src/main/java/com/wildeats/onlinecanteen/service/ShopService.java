@@ -7,6 +7,7 @@ import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.wildeats.onlinecanteen.dto.ShopResponse;
 import com.wildeats.onlinecanteen.entity.ShopEntity;
 import com.wildeats.onlinecanteen.entity.ShopEntity.Status;
 import com.wildeats.onlinecanteen.entity.UserEntity;
@@ -41,6 +42,57 @@ public class ShopService {
         return shopRepo.findAllOperational();
     }
 
+    /**
+     * Get all operational shops as response DTOs, read without loading the
+     * shop entities or their owners
+     * 
+     * @return List of operational shops as DTOs
+     */
+    public List<ShopResponse> getOperationalShopResponses() {
+        logger.info("Fetching all operational shops as DTOs");
+        return shopRepo.findAllOperationalResponses();
+    }
+
+    /**
+     * ETag of the operational shop list, read without loading any shop. The
+     * ETags are weak, as one version is sent both compressed and not; the
+     * server only compresses responses with weak ETags.
+     * 
+     * @return The ETag
+     */
+    public String getOperationalShopsETag() {
+        ShopRepository.ShopListVersionView version = shopRepo.findOperationalVersion();
+        long lastUpdated = version.getLastUpdated() != null ? version.getLastUpdated().getTime() : 0;
+        return "W/\"shops-" + version.getCount() + "-" + lastUpdated + "\"";
+    }
+
+    /**
+     * ETag of an active shop's public details, read without loading it
+     * 
+     * @param shopId The ID of the shop
+     * @return The ETag, or null if the shop is not found or not active
+     */
+    public String getShopETag(Long shopId) {
+        return shopRepo.findVersionById(shopId)
+                .filter(version -> version.getStatus() == Status.ACTIVE)
+                .map(version -> "W/\"shop-" + shopId + "-"
+                        + (version.getUpdatedAt() != null ? version.getUpdatedAt().getTime() : 0) + "\"")
+                .orElse(null);
+    }
+
+    /**
+     * ETag of an active shop's public menu, read without loading it
+     * 
+     * @param shopId The ID of the shop
+     * @return The ETag, or null if the shop is not found or not active
+     */
+    public String getMenuETag(Long shopId) {
+        return shopRepo.findVersionById(shopId)
+                .filter(version -> version.getStatus() == Status.ACTIVE)
+                .map(version -> "W/\"menu-" + shopId + "-" + version.getMenuVersion() + "\"")
+                .orElse(null);
+    }
+
     /**
      * Get all shops with a specific status
      * 
@@ -220,6 +272,37 @@ public class ShopService {
         return shopRepo.save(shop);
     }
 
+    /**
+     * Configure the pickup slots a shop offers for pre-orders
+     * 
+     * @param shopId      The ID of the shop
+     * @param slotMinutes Length of a pickup slot in minutes, or null to stop
+     *                    taking pre-orders
+     * @param capacity    Orders accepted per slot
+     * @return The updated shop
+     */
+    public ShopEntity updatePickupSlots(Long shopId, Integer slotMinutes, Integer capacity) {
+        logger.info("Updating pickup slots for shop with ID: {} to {} minutes, {} orders", shopId, slotMinutes,
+                capacity);
+        ShopEntity shop = getShopById(shopId);
+        if (shop == null) {
+            throw new IllegalArgumentException("Shop not found");
+        }
+
+        if (slotMinutes == null) {
+            capacity = null;
+        } else if (slotMinutes < 5 || slotMinutes > 240) {
+            throw new IllegalArgumentException("Pickup slots must be between 5 and 240 minutes long");
+        } else if (capacity == null || capacity < 1) {
+            throw new IllegalArgumentException("Pickup slot capacity must be at least 1");
+        }
+
+        shop.setPickupSlotMinutes(slotMinutes);
+        shop.setPickupSlotCapacity(capacity);
+        shop.setUpdatedAt(new Date());
+        return shopRepo.save(shop);
+    }
+
     /**
      * Soft delete a shop by setting status to CLOSED
      * 
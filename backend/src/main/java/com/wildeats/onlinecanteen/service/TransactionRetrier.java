@@ -0,0 +1,69 @@
+package com.wildeats.onlinecanteen.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-runs a transaction that failed for a transient concurrency reason
+ * (serialization failure, deadlock, lock timeout, optimistic lock conflict)
+ *
+ * Attempts are bounded and separated by an exponential backoff with full
+ * jitter, so competing transactions do not collide again in lockstep. The
+ * action must start and commit its own transaction, otherwise a retry would
+ * run inside the already failed one.
+ */
+@Component
+public class TransactionRetrier {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionRetrier.class);
+
+    @Value("${transactions.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${transactions.retry.base-delay-ms:20}")
+    private long baseDelayMs;
+
+    @Value("${transactions.retry.max-delay-ms:500}")
+    private long maxDelayMs;
+
+    /**
+     * Run an action, retrying it on transient concurrency failures
+     *
+     * @param operation Name of the operation, for logging
+     * @param action    The transactional action
+     * @return The result of the first successful attempt
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    logger.error("{} failed after {} attempts", operation, attempt);
+                    throw e;
+                }
+
+                long ceiling = Math.min(maxDelayMs, baseDelayMs << (attempt - 1));
+                long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                logger.warn("{} hit a concurrency failure (attempt {} of {}), retrying in {} ms: {}",
+                        operation, attempt, maxAttempts, delay, e.getMessage());
+                sleep(delay);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -1,18 +1,29 @@
 package com.wildeats.onlinecanteen.service;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.wildeats.onlinecanteen.dto.AuthResponse;
+import com.wildeats.onlinecanteen.dto.UserPageResponse;
 import com.wildeats.onlinecanteen.entity.UserEntity;
 import com.wildeats.onlinecanteen.entity.RoleEntity;
 import com.wildeats.onlinecanteen.repository.UserRepository;
+import com.wildeats.onlinecanteen.repository.UserRepository.UserRoleView;
+import com.wildeats.onlinecanteen.repository.UserRepository.UserSummaryView;
+import com.wildeats.onlinecanteen.repository.UserDirectoryRepository;
+import com.wildeats.onlinecanteen.repository.UserDirectoryRepository.UserFilter;
+import com.wildeats.onlinecanteen.repository.UserDirectoryRepository.UserRow;
 import com.wildeats.onlinecanteen.repository.RoleRepository;
+import com.wildeats.onlinecanteen.security.TokenRevocationStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,7 +38,19 @@ public class UserService {
     private RoleRepository roleRepo;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHasher;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocations;
+
+    @Autowired
+    private UserDirectoryRepository userDirectoryRepo;
+
+    @Value("${users.admin.max-page-size:200}")
+    private int maxPageSize;
 
     /**
      * Get all users from the database
@@ -152,7 +175,12 @@ public class UserService {
         }
 
         user.removeRole(role.get());
-        return userRepo.save(user);
+        UserEntity saved = userRepo.save(user);
+
+        // Tokens still claiming the removed role stop working; clients
+        // refresh to get the current roles
+        tokenRevocations.revokeAllForUser(userId);
+        return saved;
     }
 
     /**
@@ -250,15 +278,19 @@ public class UserService {
         }
 
         // Verify current password using BCrypt
-        if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+        if (!passwordHasher.matches(currentPassword, user.getPassword())) {
             logger.warn("Incorrect current password provided for user with ID: {}", userId);
             return false;
         }
 
         // Hash and update password
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHasher.hash(newPassword));
         userRepo.save(user);
 
+        // Sign out other sessions
+        refreshTokenService.revokeAllForUser(userId);
+        tokenRevocations.revokeAllForUser(userId);
+
         logger.info("Password changed successfully for user with ID: {}", userId);
         return true;
     }
@@ -282,13 +314,14 @@ public class UserService {
         }
 
         // Verify password using BCrypt
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        if (!passwordHasher.matches(password, user.getPassword())) {
             logger.warn("Incorrect password provided for account deletion, user ID: {}", userId);
             return false;
         }
 
         // Delete user
         userRepo.deleteById(userId);
+        tokenRevocations.revokeAllForUser(userId);
         logger.info("Account deleted successfully for user with ID: {}", userId);
         return true;
     }
@@ -302,6 +335,7 @@ public class UserService {
     public boolean deleteUser(Long id) {
         if (userRepo.existsById(id)) {
             userRepo.deleteById(id);
+            tokenRevocations.revokeAllForUser(id);
             return true;
         }
         return false;
@@ -310,19 +344,39 @@ public class UserService {
     /**
      * Check if the provided credentials are valid
      * 
+     * An unknown email takes about as long as a wrong password, so the two
+     * cannot be told apart by timing. A password hashed at another BCrypt cost
+     * than the configured one is rehashed in the background after it matched.
+     * 
      * @param email    The user's email
      * @param password The user's password
      * @return The authenticated user if credentials are valid, null otherwise
+     * @throws PasswordHashingService.BusyException if password hashing is
+     *                                              too busy
      */
     public UserEntity authenticate(String email, String password) {
         logger.info("Authenticating user with email: {}", email);
         UserEntity user = findByEmail(email);
 
-        if (user != null && passwordEncoder.matches(password, user.getPassword())) {
-            return user;
+        if (user == null) {
+            passwordHasher.imitateMismatch();
+            return null;
         }
 
-        return null;
+        String hash = user.getPassword();
+        if (!passwordHasher.matches(password, hash)) {
+            return null;
+        }
+
+        if (passwordHasher.needsRehash(hash)) {
+            Long userId = user.getUserId();
+            passwordHasher.hashInBackground(password, newHash -> {
+                if (userRepo.replacePasswordHash(userId, hash, newHash) > 0) {
+                    logger.info("Rehashed password of user with ID: {} at the configured cost", userId);
+                }
+            });
+        }
+        return user;
     }
 
     /**
@@ -344,4 +398,130 @@ public class UserService {
         logger.info("Fetching all sellers");
         return userRepo.findAllSellers();
     }
-}
\ No newline at end of file
+
+    /**
+     * Get summaries of all users, with their roles
+     * 
+     * Reads only the summary columns and all role names in two queries,
+     * instead of loading every user and its roles one by one.
+     * 
+     * @return Summaries of all users
+     */
+    @Transactional(readOnly = true)
+    public List<AuthResponse> getAllUserSummaries() {
+        logger.info("Fetching summaries of all users");
+        return toSummaries(userRepo.findAllSummaries(), userRepo.findAllRoleNames(), null);
+    }
+
+    /**
+     * Get summaries of all customers, with their roles
+     * 
+     * @return Summaries of users with CUSTOMER role
+     */
+    @Transactional(readOnly = true)
+    public List<AuthResponse> getCustomerSummaries() {
+        logger.info("Fetching summaries of all customers");
+        return toSummaries(userRepo.findSummariesByRoleName("CUSTOMER"),
+                userRepo.findRoleNamesOfUsersWithRole("CUSTOMER"), "CUSTOMER");
+    }
+
+    /**
+     * Get summaries of all sellers, with their roles
+     * 
+     * @return Summaries of users with SELLER role
+     */
+    @Transactional(readOnly = true)
+    public List<AuthResponse> getSellerSummaries() {
+        logger.info("Fetching summaries of all sellers");
+        return toSummaries(userRepo.findSummariesByRoleName("SELLER"),
+                userRepo.findRoleNamesOfUsersWithRole("SELLER"), "SELLER");
+    }
+
+    /**
+     * Join user summaries with their role names
+     * 
+     * @param users       The user summaries
+     * @param roles       Role names of (at least) these users
+     * @param primaryRole The primary role to report, or null to derive it from
+     *                    each user's roles
+     * @return One response per user, in the order of the summaries
+     */
+    private List<AuthResponse> toSummaries(List<UserSummaryView> users, List<UserRoleView> roles,
+            String primaryRole) {
+        Map<Long, List<String>> rolesByUser = new HashMap<>();
+        for (UserRoleView role : roles) {
+            rolesByUser.computeIfAbsent(role.getUserId(), id -> new ArrayList<>()).add(role.getRoleName());
+        }
+
+        List<AuthResponse> responses = new ArrayList<>(users.size());
+        for (UserSummaryView user : users) {
+            List<String> roleNames = rolesByUser.getOrDefault(user.getUserId(), List.of());
+            responses.add(new AuthResponse(
+                    user.getUserId(),
+                    user.getFirstName(),
+                    user.getLastName(),
+                    user.getEmail(),
+                    primaryRole != null ? primaryRole : primaryRoleOf(roleNames),
+                    roleNames));
+        }
+        return responses;
+    }
+
+    /**
+     * Get a page of users for the admin listing, with their roles
+     * 
+     * Reads the summary columns of one page and the roles of its users in one
+     * more query. The matching users are counted on the first page only.
+     * 
+     * @param filter  The filters to apply
+     * @param afterId The next cursor of the previous page, or null for the
+     *                first page
+     * @param size    Page size, at most users.admin.max-page-size
+     * @return The page
+     */
+    @Transactional(readOnly = true)
+    public UserPageResponse getUserPage(UserFilter filter, Long afterId, int size) {
+        logger.info("Fetching page of users after ID {} (size {})", afterId, size);
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+
+        // One extra row tells whether another page follows
+        List<UserRow> rows = userDirectoryRepo.findPage(filter, afterId, size + 1);
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+
+        Map<Long, List<String>> rolesByUser = userDirectoryRepo.findRoleNames(
+                rows.stream().map(UserRow::getUserId).toList());
+
+        List<AuthResponse> users = new ArrayList<>(rows.size());
+        for (UserRow row : rows) {
+            List<String> roleNames = rolesByUser.getOrDefault(row.getUserId(), List.of());
+            users.add(new AuthResponse(
+                    row.getUserId(),
+                    row.getFirstName(),
+                    row.getLastName(),
+                    row.getEmail(),
+                    primaryRoleOf(roleNames),
+                    roleNames));
+        }
+
+        Long nextCursor = hasMore ? rows.get(rows.size() - 1).getUserId() : null;
+        Long totalCount = afterId == null ? userDirectoryRepo.count(filter) : null;
+        return new UserPageResponse(users, nextCursor, totalCount);
+    }
+
+    // Same precedence as UserEntity.isAdmin/isSeller
+    private static String primaryRoleOf(List<String> roleNames) {
+        if (roleNames.stream().anyMatch("ADMIN"::equalsIgnoreCase)) {
+            return "ADMIN";
+        }
+        if (roleNames.stream().anyMatch(role -> role.equalsIgnoreCase("SELLER")
+                || role.equalsIgnoreCase("SHOP_OWNER"))) {
+            return "SELLER";
+        }
+        return "CUSTOMER";
+    }
+}
@@ -0,0 +1,107 @@
+package com.wildeats.onlinecanteen.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Content-addressed storage of uploaded files
+ *
+ * Content is stored under the hex SHA-256 hash of its bytes, so storing the
+ * same bytes twice keeps one copy. Stored content never changes; the database
+ * rows that refer to it carry the file name and type. Content no row refers to
+ * any more is deleted by its owner once it has not been stored again for a
+ * while. Shop documents and images each have their own store, chosen with
+ * storage.documents.backend and storage.images.backend; only local (a
+ * directory on disk) exists so far.
+ */
+public interface DocumentStore {
+
+    /**
+     * Store content read from a stream, without holding it in memory
+     *
+     * @param content  The content; read to the end but not closed
+     * @param maxBytes Largest content accepted
+     * @return The hash and size of the content
+     * @throws IllegalArgumentException if the content is larger than maxBytes
+     * @throws IOException              if the content cannot be read or written
+     */
+    StoredContent store(InputStream content, long maxBytes) throws IOException;
+
+    /**
+     * @param hash Hash of the content
+     * @return true if the content is stored
+     */
+    boolean exists(String hash);
+
+    /**
+     * Read stored content
+     *
+     * @param hash Hash of the content
+     * @return A stream of the content, to be closed by the caller
+     * @throws IOException if the content is missing or cannot be read
+     */
+    InputStream open(String hash) throws IOException;
+
+    /**
+     * Copy part of the stored content to a channel
+     *
+     * @param hash     Hash of the content
+     * @param position Offset of the first byte to copy
+     * @param count    Number of bytes to copy
+     * @param target   The channel to write to
+     * @throws IOException if the content is missing or cannot be copied
+     */
+    void transferTo(String hash, long position, long count, WritableByteChannel target) throws IOException;
+
+    /**
+     * The file holding the content, for servers that can send files straight
+     * from disk
+     *
+     * @param hash Hash of the content
+     * @return The file, or null if the content is not kept on local disk
+     */
+    Path localFile(String hash);
+
+    /**
+     * List content last stored before a time, as candidates for deletion
+     *
+     * @param cutoff Content stored at or after this time is left out
+     * @return Hashes of the content
+     * @throws IOException if the store cannot be listed
+     */
+    List<String> listStoredBefore(Instant cutoff) throws IOException;
+
+    /**
+     * Delete stored content, unless it has been stored again since the cutoff
+     *
+     * @param hash   Hash of the content
+     * @param cutoff The cutoff the content was listed with
+     * @throws IOException if the content cannot be deleted
+     */
+    void delete(String hash, Instant cutoff) throws IOException;
+
+    /**
+     * Hash and size of stored content
+     */
+    class StoredContent {
+        private final String hash;
+        private final long size;
+
+        public StoredContent(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
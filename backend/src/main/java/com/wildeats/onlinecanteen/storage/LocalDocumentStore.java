@@ -0,0 +1,167 @@
+package com.wildeats.onlinecanteen.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Document store in a local directory
+ *
+ * Content goes to root/ab/cd/abcd…, named by its hash. Uploads are streamed
+ * into a temporary file under root/tmp while being hashed, then moved into
+ * place; if the content is already there, the copy is dropped and the
+ * existing file's modification time is set to now, which marks it as stored
+ * again. Reads copy straight from the file with FileChannel.transferTo, and
+ * the file can be handed to the servlet container to send by itself.
+ */
+public class LocalDocumentStore implements DocumentStore {
+    private static final Logger logger = LoggerFactory.getLogger(LocalDocumentStore.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path tmp;
+
+    /**
+     * @param root Directory holding the content; created if missing
+     */
+    public LocalDocumentStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.tmp = this.root.resolve("tmp");
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create document store directory " + tmp, e);
+        }
+        logger.info("Storing documents in {}", this.root);
+    }
+
+    @Override
+    public StoredContent store(InputStream content, long maxBytes) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Path upload = Files.createTempFile(tmp, "upload-", ".part");
+        try {
+            long size = 0;
+            try (DigestInputStream in = new DigestInputStream(content, digest);
+                    OutputStream out = Files.newOutputStream(upload, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("File is larger than " + maxBytes + " bytes");
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(hash);
+            if (Files.exists(target)) {
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            } else {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored concurrently by another upload of the same content
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                }
+            }
+            return new StoredContent(hash, size);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(pathOf(hash));
+    }
+
+    @Override
+    public void transferTo(String hash, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+            long end = position + count;
+            long offset = position;
+            while (offset < end) {
+                long sent = channel.transferTo(offset, end - offset, target);
+                if (sent <= 0) {
+                    if (offset >= channel.size()) {
+                        throw new IOException("Stored content " + hash + " is shorter than expected");
+                    }
+                    continue;
+                }
+                offset += sent;
+            }
+        }
+    }
+
+    @Override
+    public Path localFile(String hash) {
+        return pathOf(hash);
+    }
+
+    @Override
+    public List<String> listStoredBefore(Instant cutoff) throws IOException {
+        try (Stream<Path> files = Files.find(root, 3, (path, attributes) -> attributes.isRegularFile()
+                && attributes.lastModifiedTime().toInstant().isBefore(cutoff)
+                && HASH.matcher(path.getFileName().toString()).matches())) {
+            return files.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public void delete(String hash, Instant cutoff) throws IOException {
+        Path path = pathOf(hash);
+        try {
+            // Stored again since it was listed: keep it
+            if (!Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+                return;
+            }
+            Files.delete(path);
+        } catch (NoSuchFileException e) {
+            // Already gone
+        }
+    }
+
+    private Path pathOf(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid content hash");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
@@ -0,0 +1,3 @@
+-- Optional daily portion limit per menu item; NULL means the item is not stock-tracked
+ALTER TABLE menu_item ADD COLUMN IF NOT EXISTS daily_stock INTEGER;
+ALTER TABLE menu_item ADD COLUMN IF NOT EXISTS stock_remaining INTEGER;
@@ -0,0 +1,7 @@
+-- Hot items (flash specials) have their stock reserved in memory and flushed in batches.
+-- stock_refilled_at marks the start of the current stock period; the orders placed since
+-- then are the ledger the remaining stock is rebuilt from after a crash
+ALTER TABLE menu_item ADD COLUMN IF NOT EXISTS hot_stock BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE menu_item ADD COLUMN IF NOT EXISTS stock_refilled_at TIMESTAMP;
+
+UPDATE menu_item SET stock_refilled_at = CURRENT_DATE WHERE daily_stock IS NOT NULL;
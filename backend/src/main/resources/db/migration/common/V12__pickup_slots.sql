@@ -0,0 +1,15 @@
+-- Pre-orders for a pickup time slot. A shop offers slots of pickup_slot_minutes with room for
+-- pickup_slot_capacity orders each (both NULL: no pre-orders). Scheduled orders keep their
+-- slot start in orders.pickup_time and are released to the kitchen queue when it begins.
+ALTER TABLE shop ADD COLUMN IF NOT EXISTS pickup_slot_minutes INTEGER;
+ALTER TABLE shop ADD COLUMN IF NOT EXISTS pickup_slot_capacity INTEGER;
+
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS pickup_time TIMESTAMP;
+
+-- Per-shop, per-slot admission counter; a booking is one conditional increment of its row
+CREATE TABLE IF NOT EXISTS pickup_slot_counter (
+    shop_id BIGINT NOT NULL,
+    slot_start TIMESTAMP NOT NULL,
+    booked INTEGER NOT NULL,
+    PRIMARY KEY (shop_id, slot_start)
+);
@@ -0,0 +1,4 @@
+-- Version of a shop's public menu, incremented whenever an item is added, edited, removed or its
+-- stock or availability changes. Together with shop.updated_at it backs the ETags of the shop and
+-- menu endpoints, so a conditional GET is answered from this row alone.
+ALTER TABLE shop ADD COLUMN IF NOT EXISTS menu_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,16 @@
+-- Incremental menu sync. Every menu change bumps shop.menu_version and stamps the changed items
+-- with the new value, so a client holding revision N fetches the items with menu_revision > N.
+-- Deleted items leave a tombstone carrying the revision of their deletion.
+ALTER TABLE menu_item ADD COLUMN IF NOT EXISTS menu_revision BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE menu_item ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_menu_item_shop_revision ON menu_item (shop_id, menu_revision);
+
+CREATE TABLE IF NOT EXISTS menu_item_tombstone (
+    item_id BIGINT PRIMARY KEY,
+    shop_id BIGINT NOT NULL,
+    menu_revision BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_menu_item_tombstone_shop_revision ON menu_item_tombstone (shop_id, menu_revision);
@@ -0,0 +1,2 @@
+-- Admin user listing: created-at range filter (UserDirectoryRepository)
+CREATE INDEX IF NOT EXISTS idx_users_created_at ON users (created_at);
@@ -0,0 +1,26 @@
+-- Keys that sign access tokens, shared by every instance. The newest key signs; older keys keep
+-- verifying the tokens they signed until those have expired, then they are deleted.
+CREATE TABLE IF NOT EXISTS signing_key (
+    kid VARCHAR(40) PRIMARY KEY,
+    algorithm VARCHAR(20) NOT NULL,
+    secret VARCHAR(200) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- Refresh tokens, stored as SHA-256 hashes. Each use replaces the token with a new one of the same
+-- family (rotated_at is set on the old one); presenting a rotated token again revokes the family.
+CREATE TABLE IF NOT EXISTS refresh_token (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    token_hash VARCHAR(64) NOT NULL,
+    family_id VARCHAR(36) NOT NULL,
+    user_id BIGINT NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    rotated_at TIMESTAMP(6),
+    revoked_at TIMESTAMP(6),
+    CONSTRAINT uk_refresh_token_hash UNIQUE (token_hash)
+);
+
+CREATE INDEX IF NOT EXISTS idx_refresh_token_family ON refresh_token (family_id);
+CREATE INDEX IF NOT EXISTS idx_refresh_token_user ON refresh_token (user_id);
+CREATE INDEX IF NOT EXISTS idx_refresh_token_expires ON refresh_token (expires_at);
@@ -0,0 +1,20 @@
+-- Revoked access tokens, by their jti, kept until the token would have expired anyway
+CREATE TABLE IF NOT EXISTS revoked_token (
+    jti VARCHAR(36) PRIMARY KEY,
+    user_id BIGINT,
+    expires_at TIMESTAMP(6) NOT NULL,
+    revoked_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_token_revoked_at ON revoked_token (revoked_at);
+CREATE INDEX IF NOT EXISTS idx_revoked_token_expires ON revoked_token (expires_at);
+
+-- Access tokens of a user issued before not_before are revoked (password change, role removal,
+-- deleted account). No foreign key: the row has to outlive a deleted user's tokens.
+CREATE TABLE IF NOT EXISTS user_token_cutoff (
+    user_id BIGINT PRIMARY KEY,
+    not_before TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_token_cutoff_updated_at ON user_token_cutoff (updated_at);
@@ -0,0 +1,69 @@
+-- Baseline schema matching the JPA entities.
+-- Databases that were created by Hibernate (ddl-auto=update) already contain
+-- these tables and are baselined at version 1, so this script is skipped there.
+
+CREATE TABLE IF NOT EXISTS users (
+    user_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email VARCHAR(100) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    first_name VARCHAR(100),
+    last_name VARCHAR(100),
+    avatar_url VARCHAR(255),
+    created_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS role (
+    role_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    role_name VARCHAR(50) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS user_role (
+    user_id BIGINT NOT NULL REFERENCES users (user_id),
+    role_id BIGINT NOT NULL REFERENCES role (role_id),
+    PRIMARY KEY (user_id, role_id)
+);
+
+CREATE TABLE IF NOT EXISTS shop (
+    shop_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    shop_name VARCHAR(100) NOT NULL,
+    shop_descr VARCHAR(500) NOT NULL,
+    shop_address VARCHAR(200) NOT NULL,
+    location VARCHAR(50) NOT NULL,
+    contact_number VARCHAR(20) NOT NULL,
+    shop_image_url VARCHAR(255),
+    status VARCHAR(20) NOT NULL,
+    is_open BOOLEAN,
+    owner_id BIGINT NOT NULL REFERENCES users (user_id),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS menu_item (
+    item_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    shop_id BIGINT NOT NULL REFERENCES shop (shop_id),
+    item_name VARCHAR(100) NOT NULL,
+    item_descr VARCHAR(500),
+    item_image_url VARCHAR(255),
+    price NUMERIC(10, 2) NOT NULL,
+    is_available BOOLEAN NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS orders (
+    order_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (user_id),
+    shop_id BIGINT NOT NULL REFERENCES shop (shop_id),
+    total_amount NUMERIC(10, 2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    queue_number INTEGER,
+    order_date_time TIMESTAMP(6),
+    cancelled_at TIMESTAMP(6),
+    cancellation_reason VARCHAR(500)
+);
+
+CREATE TABLE IF NOT EXISTS order_item (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id BIGINT NOT NULL REFERENCES orders (order_id),
+    item_id BIGINT NOT NULL REFERENCES menu_item (item_id),
+    quantity INTEGER NOT NULL,
+    price_at_purchase NUMERIC(10, 2) NOT NULL
+);
@@ -0,0 +1,22 @@
+-- Documents uploaded by shops (business permits, IDs). The content lives in the document store
+-- under its SHA-256 hash, so identical files are stored once; a shop keeps one row per content.
+CREATE TABLE IF NOT EXISTS shop_document (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    shop_id BIGINT NOT NULL REFERENCES shop (shop_id) ON DELETE CASCADE,
+    content_hash VARCHAR(64) NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    uploaded_by BIGINT,
+    uploaded_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_shop_document_content UNIQUE (shop_id, content_hash)
+);
+
+CREATE INDEX IF NOT EXISTS idx_shop_document_content_hash ON shop_document (content_hash);
+
+-- Bytes of documents per shop, counted against its quota. Uploads reserve their size with a
+-- conditional update of this row before writing anything, so concurrent uploads cannot overshoot.
+CREATE TABLE IF NOT EXISTS shop_document_usage (
+    shop_id BIGINT PRIMARY KEY,
+    used_bytes BIGINT NOT NULL
+);
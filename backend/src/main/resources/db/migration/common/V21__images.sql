@@ -0,0 +1,26 @@
+-- Uploaded images (shop, menu item and profile pictures), keyed by the SHA-256 hash of the original.
+-- Resized variants are made in the background; status tells whether they are ready.
+CREATE TABLE IF NOT EXISTS image_asset (
+    image_hash VARCHAR(64) PRIMARY KEY,
+    format VARCHAR(20) NOT NULL,
+    width INTEGER NOT NULL,
+    height INTEGER NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    uploaded_by BIGINT,
+    created_at TIMESTAMP(6) NOT NULL,
+    processed_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_image_asset_status ON image_asset (status, created_at);
+
+-- Resized, recompressed variants of an image; the content is stored under content_hash
+CREATE TABLE IF NOT EXISTS image_variant (
+    image_hash VARCHAR(64) NOT NULL REFERENCES image_asset (image_hash) ON DELETE CASCADE,
+    variant VARCHAR(20) NOT NULL,
+    content_hash VARCHAR(64) NOT NULL,
+    width INTEGER NOT NULL,
+    height INTEGER NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    PRIMARY KEY (image_hash, variant)
+);
@@ -0,0 +1,28 @@
+-- Composite indexes for the hot repository query shapes.
+-- Date columns are indexed descending because every listing shows newest first.
+
+-- OrderRepository.findByShopShopIdOrderByOrderDateTimeDesc, findByShopIdAndDateRange,
+-- calculateRevenueForShopAndDateRange and findMaxQueueNumberForShopAndDate
+-- (queue_number is included so MAX(queue_number) is answered from the index)
+CREATE INDEX IF NOT EXISTS idx_orders_shop_date ON orders (shop_id, order_date_time DESC, queue_number);
+
+-- OrderRepository.findByShopShopIdAndStatusOrderByOrderDateTimeDesc and countByShopIdAndStatus
+CREATE INDEX IF NOT EXISTS idx_orders_shop_status_date ON orders (shop_id, status, order_date_time DESC);
+
+-- OrderRepository.findActiveOrdersByShopId and findByQueueNumberAndShopShopId
+CREATE INDEX IF NOT EXISTS idx_orders_shop_status_queue ON orders (shop_id, status, queue_number);
+
+-- OrderRepository.findByCustomerUserIdOrderByOrderDateTimeDesc and the per-status variant
+CREATE INDEX IF NOT EXISTS idx_orders_customer_date ON orders (user_id, order_date_time DESC);
+
+-- Foreign keys used for lookups (PostgreSQL does not index these automatically)
+CREATE INDEX IF NOT EXISTS idx_order_item_order ON order_item (order_id);
+CREATE INDEX IF NOT EXISTS idx_order_item_menu_item ON order_item (item_id);
+CREATE INDEX IF NOT EXISTS idx_user_role_role ON user_role (role_id);
+CREATE INDEX IF NOT EXISTS idx_shop_owner ON shop (owner_id);
+
+-- ShopRepository.findAllOperational and findByStatus
+CREATE INDEX IF NOT EXISTS idx_shop_status_open ON shop (status, is_open);
+
+-- MenuItemRepository.findByShopShopIdAndIsAvailable and countAvailableByShopId
+CREATE INDEX IF NOT EXISTS idx_menu_item_shop_available ON menu_item (shop_id, is_available);
@@ -0,0 +1,12 @@
+-- Copy the order timestamp onto its items so order_item can be partitioned
+-- by the same key as orders.
+ALTER TABLE order_item ADD COLUMN IF NOT EXISTS order_date_time TIMESTAMP(6);
+
+-- The partition key cannot be NULL. Orders saved without a placement time get
+-- 1970-01-01 00:00 as an explicit "unknown" marker rather than an invented
+-- date; on PostgreSQL they stay in the default partition (see V5).
+UPDATE orders SET order_date_time = TIMESTAMP '1970-01-01 00:00:00' WHERE order_date_time IS NULL;
+
+UPDATE order_item
+SET order_date_time = (SELECT o.order_date_time FROM orders o WHERE o.order_id = order_item.order_id)
+WHERE order_date_time IS NULL;
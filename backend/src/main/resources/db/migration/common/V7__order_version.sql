@@ -0,0 +1,2 @@
+-- Optimistic locking version for orders
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
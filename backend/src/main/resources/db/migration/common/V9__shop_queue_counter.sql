@@ -0,0 +1,7 @@
+-- Per-shop, per-day queue number counter; its row lock serializes queue number allocation for one shop only
+CREATE TABLE IF NOT EXISTS shop_queue_counter (
+    shop_id BIGINT NOT NULL,
+    queue_date DATE NOT NULL,
+    last_number INTEGER NOT NULL,
+    PRIMARY KEY (shop_id, queue_date)
+);
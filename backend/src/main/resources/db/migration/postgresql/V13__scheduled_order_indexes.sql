@@ -0,0 +1,7 @@
+-- Keep the archive parent in step with orders so detached partitions can still be attached
+ALTER TABLE orders_archive.orders ADD COLUMN IF NOT EXISTS pickup_time TIMESTAMP;
+
+-- Scheduled orders waiting for their pickup slot, scanned by the release job
+CREATE INDEX IF NOT EXISTS idx_orders_scheduled_pickup
+    ON orders (pickup_time)
+    WHERE status = 'SCHEDULED';
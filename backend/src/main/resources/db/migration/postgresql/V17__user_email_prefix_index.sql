@@ -0,0 +1,3 @@
+-- Admin user listing: case-insensitive email prefix filter, LOWER(email) LIKE 'prefix%'
+-- (text_pattern_ops lets LIKE prefixes use the index under any collation)
+CREATE INDEX IF NOT EXISTS idx_users_email_prefix ON users (LOWER(email) text_pattern_ops);
@@ -0,0 +1,11 @@
+-- Partial indexes covering only orders that are still in the kitchen queue.
+-- Completed and cancelled orders make up almost all rows, so these stay small.
+-- The predicate matches OrderRepository.findActiveOrdersByShopId exactly so the
+-- planner can prove it applies.
+CREATE INDEX IF NOT EXISTS idx_orders_active_shop_queue
+    ON orders (shop_id, queue_number)
+    WHERE status IN ('PENDING', 'PREPARING', 'READY');
+
+CREATE INDEX IF NOT EXISTS idx_orders_active_customer
+    ON orders (user_id, order_date_time)
+    WHERE status IN ('PENDING', 'PREPARING', 'READY');
@@ -0,0 +1,168 @@
+-- Monthly range partitioning of orders and order_item on order_date_time.
+--
+-- public.orders / public.order_item hold the hot partitions. Partitions older
+-- than the archive horizon are detached and re-attached under the
+-- orders_archive schema by archive_order_partitions() (see OrderPartitionService).
+--
+-- PostgreSQL requires the partition key in every unique constraint, so the
+-- primary keys become (id, order_date_time). Identity columns are not allowed on
+-- partitioned tables before PostgreSQL 17, so ids come from plain sequences.
+
+CREATE SCHEMA IF NOT EXISTS orders_archive;
+
+-- 1. Move the existing tables out of the way. They are kept under the archive
+--    schema as a backup and can be dropped once the copy has been verified.
+ALTER TABLE order_item RENAME TO legacy_order_item;
+ALTER TABLE orders RENAME TO legacy_orders;
+ALTER TABLE legacy_order_item SET SCHEMA orders_archive;
+ALTER TABLE legacy_orders SET SCHEMA orders_archive;
+
+-- 2. Partitioned parents
+CREATE SEQUENCE orders_order_id_seq_p;
+CREATE SEQUENCE order_item_id_seq_p;
+
+CREATE TABLE orders (
+    order_id BIGINT NOT NULL DEFAULT nextval('orders_order_id_seq_p'),
+    user_id BIGINT NOT NULL REFERENCES users (user_id),
+    shop_id BIGINT NOT NULL REFERENCES shop (shop_id),
+    total_amount NUMERIC(10, 2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    queue_number INTEGER,
+    order_date_time TIMESTAMP(6) NOT NULL,
+    cancelled_at TIMESTAMP(6),
+    cancellation_reason VARCHAR(500),
+    PRIMARY KEY (order_id, order_date_time)
+) PARTITION BY RANGE (order_date_time);
+
+CREATE TABLE order_item (
+    id BIGINT NOT NULL DEFAULT nextval('order_item_id_seq_p'),
+    order_id BIGINT NOT NULL,
+    item_id BIGINT NOT NULL REFERENCES menu_item (item_id),
+    quantity INTEGER NOT NULL,
+    price_at_purchase NUMERIC(10, 2) NOT NULL,
+    order_date_time TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, order_date_time),
+    FOREIGN KEY (order_id, order_date_time) REFERENCES orders (order_id, order_date_time)
+) PARTITION BY RANGE (order_date_time);
+
+ALTER SEQUENCE orders_order_id_seq_p OWNED BY orders.order_id;
+ALTER SEQUENCE order_item_id_seq_p OWNED BY order_item.id;
+
+-- Rows outside every monthly partition land here: normally only orders with
+-- the unknown-time marker of V4
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+CREATE TABLE order_item_default PARTITION OF order_item DEFAULT;
+
+-- Archive parents with the same layout; detached partitions are attached here.
+-- Cold data is read-only, so the archive carries no foreign keys.
+CREATE TABLE orders_archive.orders (LIKE orders INCLUDING DEFAULTS) PARTITION BY RANGE (order_date_time);
+CREATE TABLE orders_archive.order_item (LIKE order_item INCLUDING DEFAULTS) PARTITION BY RANGE (order_date_time);
+
+-- 3. Partition maintenance
+CREATE OR REPLACE FUNCTION create_monthly_order_partitions(first_month DATE, last_month DATE)
+RETURNS INTEGER AS $$
+DECLARE
+    month_start DATE := date_trunc('month', first_month)::date;
+    suffix TEXT;
+    created INTEGER := 0;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        suffix := to_char(month_start, '"y"YYYY"m"MM');
+        IF to_regclass('public.orders_' || suffix) IS NULL
+                AND to_regclass('orders_archive.orders_' || suffix) IS NULL THEN
+            EXECUTE format('CREATE TABLE public.%I PARTITION OF public.orders FOR VALUES FROM (%L) TO (%L)',
+                    'orders_' || suffix, month_start, (month_start + INTERVAL '1 month')::date);
+            EXECUTE format('CREATE TABLE public.%I PARTITION OF public.order_item FOR VALUES FROM (%L) TO (%L)',
+                    'order_item_' || suffix, month_start, (month_start + INTERVAL '1 month')::date);
+            created := created + 1;
+        END IF;
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION archive_order_partitions(before_month DATE)
+RETURNS INTEGER AS $$
+DECLARE
+    part RECORD;
+    suffix TEXT;
+    month_start DATE;
+    fk RECORD;
+    archived INTEGER := 0;
+BEGIN
+    FOR part IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'public.orders'::regclass
+          AND c.relname ~ '^orders_y[0-9]{4}m[0-9]{2}$'
+        ORDER BY c.relname
+    LOOP
+        suffix := substring(part.relname FROM 8);
+        month_start := to_date(substring(suffix FROM 2 FOR 4) || substring(suffix FROM 7 FOR 2), 'YYYYMM');
+        CONTINUE WHEN month_start >= date_trunc('month', before_month)::date;
+
+        -- Items first: their foreign key points at the orders partition
+        EXECUTE format('ALTER TABLE public.order_item DETACH PARTITION public.%I', 'order_item_' || suffix);
+        EXECUTE format('ALTER TABLE public.orders DETACH PARTITION public.%I', 'orders_' || suffix);
+
+        FOR fk IN
+            SELECT con.conname, cls.relname
+            FROM pg_constraint con
+            JOIN pg_class cls ON cls.oid = con.conrelid
+            JOIN pg_namespace ns ON ns.oid = cls.relnamespace
+            WHERE ns.nspname = 'public' AND con.contype = 'f'
+              AND cls.relname IN ('orders_' || suffix, 'order_item_' || suffix)
+        LOOP
+            EXECUTE format('ALTER TABLE public.%I DROP CONSTRAINT %I', fk.relname, fk.conname);
+        END LOOP;
+
+        EXECUTE format('ALTER TABLE public.%I SET SCHEMA orders_archive', 'order_item_' || suffix);
+        EXECUTE format('ALTER TABLE public.%I SET SCHEMA orders_archive', 'orders_' || suffix);
+        EXECUTE format('ALTER TABLE orders_archive.orders ATTACH PARTITION orders_archive.%I FOR VALUES FROM (%L) TO (%L)',
+                'orders_' || suffix, month_start, (month_start + INTERVAL '1 month')::date);
+        EXECUTE format('ALTER TABLE orders_archive.order_item ATTACH PARTITION orders_archive.%I FOR VALUES FROM (%L) TO (%L)',
+                'order_item_' || suffix, month_start, (month_start + INTERVAL '1 month')::date);
+        archived := archived + 1;
+    END LOOP;
+    RETURN archived;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 4. Create partitions for the existing history and the next few months, then copy.
+--    Orders with the unknown-time marker of V4 go to the default partition.
+SELECT create_monthly_order_partitions(
+        COALESCE((SELECT MIN(order_date_time) FROM orders_archive.legacy_orders
+                WHERE order_date_time > TIMESTAMP '1970-01-01 00:00:00'), CURRENT_DATE)::date,
+        (CURRENT_DATE + INTERVAL '3 months')::date);
+
+INSERT INTO orders (order_id, user_id, shop_id, total_amount, status, queue_number, order_date_time,
+        cancelled_at, cancellation_reason)
+SELECT order_id, user_id, shop_id, total_amount, status, queue_number, order_date_time,
+        cancelled_at, cancellation_reason
+FROM orders_archive.legacy_orders;
+
+INSERT INTO order_item (id, order_id, item_id, quantity, price_at_purchase, order_date_time)
+SELECT oi.id, oi.order_id, oi.item_id, oi.quantity, oi.price_at_purchase, o.order_date_time
+FROM orders_archive.legacy_order_item oi
+JOIN orders_archive.legacy_orders o ON o.order_id = oi.order_id;
+
+SELECT setval('orders_order_id_seq_p', COALESCE((SELECT MAX(order_id) FROM orders), 0) + 1, false);
+SELECT setval('order_item_id_seq_p', COALESCE((SELECT MAX(id) FROM order_item), 0) + 1, false);
+
+-- 5. Indexes from V2/V3, now defined on the partitioned parents
+CREATE INDEX idx_orders_shop_date ON orders (shop_id, order_date_time DESC, queue_number);
+CREATE INDEX idx_orders_shop_status_date ON orders (shop_id, status, order_date_time DESC);
+CREATE INDEX idx_orders_shop_status_queue ON orders (shop_id, status, queue_number);
+CREATE INDEX idx_orders_customer_date ON orders (user_id, order_date_time DESC);
+CREATE INDEX idx_orders_active_shop_queue ON orders (shop_id, queue_number)
+    WHERE status IN ('PENDING', 'PREPARING', 'READY');
+CREATE INDEX idx_orders_active_customer ON orders (user_id, order_date_time)
+    WHERE status IN ('PENDING', 'PREPARING', 'READY');
+CREATE INDEX idx_order_item_order ON order_item (order_id, order_date_time);
+CREATE INDEX idx_order_item_menu_item ON order_item (item_id);
+
+CREATE INDEX idx_archive_orders_customer_date ON orders_archive.orders (user_id, order_date_time DESC);
+CREATE INDEX idx_archive_orders_shop_date ON orders_archive.orders (shop_id, order_date_time DESC);
+CREATE INDEX idx_archive_order_item_order ON orders_archive.order_item (order_id, order_date_time);
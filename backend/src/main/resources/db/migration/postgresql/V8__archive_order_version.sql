@@ -0,0 +1,2 @@
+-- Keep the archive parent in step with orders so detached partitions can still be attached
+ALTER TABLE orders_archive.orders ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,233 @@
+package com.wildeats.onlinecanteen.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wildeats.onlinecanteen.dto.BulkOrderStatusResult;
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+import com.wildeats.onlinecanteen.event.OrderStatusBatchChangedEvent;
+import com.wildeats.onlinecanteen.event.OrderStatusChangedEvent;
+import com.wildeats.onlinecanteen.repository.OrderRepository;
+import com.wildeats.onlinecanteen.security.JwtUtil;
+import com.wildeats.onlinecanteen.service.OrderService;
+
+/**
+ * Bulk status updates of a shop's orders
+ *
+ * A batch mixing orders that can make their transition, orders that cannot
+ * and orders of other shops is applied in part, with one result per order in
+ * request order, both through PUT /api/orders/shop/{shopId}/status and the
+ * service. The events name the status each order really left, and an order
+ * changed after it was read is not overwritten.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulkstatus;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test",
+        "orders.pickup-slots.release-interval-ms=3600000",
+        "orders.bulk-update.max-size=5"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@RecordApplicationEvents
+class BulkOrderStatusTests {
+
+    private static final long SHOP = 9401L;
+    private static final long OTHER_SHOP = 9402L;
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepo;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private String ownerToken;
+    private String otherToken;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO role (role_name) SELECT 'SELLER' WHERE NOT EXISTS "
+                + "(SELECT 1 FROM role WHERE role_name = 'SELLER')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9401, 'owner@bulk', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9402, 'other@bulk', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9403, 'customer@bulk', 'x')");
+        jdbcTemplate.update("INSERT INTO user_role (user_id, role_id) "
+                + "SELECT user_id, role_id FROM users, role WHERE user_id IN (9401, 9402) AND role_name = 'SELLER'");
+        for (long shopId : new long[] { SHOP, OTHER_SHOP }) {
+            jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                    + "contact_number, status, is_open, owner_id) VALUES (?, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                    + "'ACTIVE', TRUE, ?)", shopId, shopId);
+        }
+        ownerToken = jwtUtil.generateToken(9401L, "owner@bulk", "SELLER");
+        otherToken = jwtUtil.generateToken(9402L, "other@bulk", "SELLER");
+    }
+
+    @BeforeEach
+    void orders() {
+        jdbcTemplate.update("DELETE FROM orders");
+        order(1, SHOP, "PENDING");
+        order(2, SHOP, "PREPARING");
+        order(3, SHOP, "COMPLETED");
+        order(4, OTHER_SHOP, "PENDING");
+        order(5, SHOP, "SCHEDULED");
+        order(6, SHOP, "READY");
+    }
+
+    private void order(long orderId, long shopId, String status) {
+        jdbcTemplate.update("INSERT INTO orders (order_id, user_id, shop_id, total_amount, status, queue_number, "
+                + "order_date_time) VALUES (?, 9403, ?, 55.00, ?, ?, ?)", orderId, shopId, status, (int) orderId,
+                new Timestamp(System.currentTimeMillis()));
+    }
+
+    private String status(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM orders WHERE order_id = ?", String.class, orderId);
+    }
+
+    private HttpResponse<String> bulkUpdate(long shopId, String token, Object... updates) throws Exception {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < updates.length; i += 2) {
+            items.add(Map.of("orderId", updates[i], "status", updates[i + 1]));
+        }
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/orders/shop/" + shopId + "/status"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(Map.of("updates", items))))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void mixedBatchThroughTheEndpointIsAppliedInPart() throws Exception {
+        HttpResponse<String> response = bulkUpdate(SHOP, ownerToken,
+                1, "preparing", 2, "READY", 3, "READY", 4, "READY", 99, "READY");
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        JsonNode body = objectMapper.readTree(response.body());
+        assertThat(body.get("updated").asLong()).isEqualTo(2);
+        JsonNode results = body.get("results");
+        assertThat(results).extracting(result -> result.get("orderId").asLong()).containsExactly(1L, 2L, 3L, 4L, 99L);
+        assertThat(results).extracting(result -> result.get("updated").asBoolean())
+                .containsExactly(true, true, false, false, false);
+        assertThat(results.get(2).get("status").asText()).isEqualTo("COMPLETED");
+        assertThat(results.get(2).get("message").asText()).isEqualTo("Cannot change order status from COMPLETED to READY");
+        // Another shop's order is reported like a missing one
+        assertThat(results.get(3).get("message").asText()).isEqualTo("Order not found in this shop");
+        assertThat(results.get(4).get("message").asText()).isEqualTo("Order not found in this shop");
+
+        assertThat(status(1)).isEqualTo("PREPARING");
+        assertThat(status(2)).isEqualTo("READY");
+        assertThat(status(3)).isEqualTo("COMPLETED");
+        assertThat(status(4)).isEqualTo("PENDING");
+    }
+
+    @Test
+    void endpointRejectsOtherSellersAndMalformedBatches() throws Exception {
+        assertThat(bulkUpdate(SHOP, otherToken, 1, "READY").statusCode()).isEqualTo(403);
+        assertThat(bulkUpdate(SHOP, ownerToken, 1, "READY", 1, "CANCELLED").statusCode()).isEqualTo(400);
+        assertThat(bulkUpdate(SHOP, ownerToken, 1, "COOKING").statusCode()).isEqualTo(400);
+        assertThat(bulkUpdate(SHOP, ownerToken, 1, "READY", 2, "READY", 3, "READY", 5, "READY", 6, "COMPLETED",
+                7, "READY").statusCode()).isEqualTo(400);
+        assertThat(status(1)).isEqualTo("PENDING");
+    }
+
+    @Test
+    void eventsNameTheStatusEachOrderLeft() {
+        Map<Long, OrderEntity.Status> updates = new LinkedHashMap<>();
+        updates.put(1L, OrderEntity.Status.CANCELLED);
+        updates.put(2L, OrderEntity.Status.CANCELLED);
+        updates.put(6L, OrderEntity.Status.CANCELLED);
+        // Scheduled orders are only released by the scheduler
+        updates.put(5L, OrderEntity.Status.PENDING);
+
+        List<BulkOrderStatusResult> results = orderService.updateOrderStatuses(SHOP, updates);
+
+        assertThat(results).extracting(BulkOrderStatusResult::isUpdated).containsExactly(true, true, true, false);
+        assertThat(status(5)).isEqualTo("SCHEDULED");
+        assertThat(jdbcTemplate.queryForObject("SELECT cancellation_reason FROM orders WHERE order_id = 1",
+                String.class)).isEqualTo("Cancelled by shop");
+
+        List<OrderStatusChangedEvent> changes = events.stream(OrderStatusBatchChangedEvent.class)
+                .flatMap(event -> event.getChanges().stream()).toList();
+        assertThat(changes).extracting(OrderStatusChangedEvent::getOrderId).containsExactly(1L, 2L, 6L);
+        assertThat(changes).extracting(OrderStatusChangedEvent::getPreviousStatus)
+                .containsExactly(OrderEntity.Status.PENDING, OrderEntity.Status.PREPARING, OrderEntity.Status.READY);
+        assertThat(changes).allSatisfy(change -> assertThat(change.getNewStatus())
+                .isEqualTo(OrderEntity.Status.CANCELLED));
+    }
+
+    @Test
+    void orderChangedAfterItWasReadIsNotOverwritten() {
+        Long readVersion = jdbcTemplate.queryForObject("SELECT version FROM orders WHERE order_id = 1", Long.class);
+        orderService.updateOrderStatus(1L, OrderEntity.Status.PREPARING);
+
+        // A bulk update that read order 1 while still PENDING loses the race
+        Integer updated = transactionTemplate.execute(
+                status -> orderRepo.transitionStatusForShop(SHOP, 1L, OrderEntity.Status.READY, readVersion));
+        assertThat(updated).isZero();
+        assertThat(status(1)).isEqualTo("PREPARING");
+
+        Integer cancelled = transactionTemplate.execute(
+                status -> orderRepo.cancelForShop(SHOP, 1L, "Cancelled by shop", new Date(), readVersion));
+        assertThat(cancelled).isZero();
+        assertThat(status(1)).isEqualTo("PREPARING");
+    }
+}
@@ -0,0 +1,160 @@
+package com.wildeats.onlinecanteen.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wildeats.onlinecanteen.security.JwtUtil;
+
+/**
+ * Image upload and variant URLs over HTTP: public, cacheable for a year,
+ * revalidated by ETag, and 503 with Retry-After until the variants are made
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:image-urls;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test",
+        "orders.pickup-slots.release-interval-ms=3600000",
+        "storage.images.public-base-url=https://cdn.test"
+})
+class ImageControllerTests {
+
+    private static final Path STORE_ROOT;
+
+    static {
+        try {
+            STORE_ROOT = Files.createTempDirectory("image-urls");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void storeRoot(DynamicPropertyRegistry registry) {
+        registry.add("storage.images.local-root", STORE_ROOT::toString);
+    }
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void variantsAreServedWithLongLivedCacheHeaders() throws Exception {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new ByteArrayResource(jpeg(1200, 900)) {
+            @Override
+            public String getFilename() {
+                return "tapsilog.jpg";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(jwtUtil.generateToken(9301L, "seller@images", "SELLER"));
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        ResponseEntity<String> uploaded = restTemplate.exchange("/api/images", HttpMethod.POST,
+                new HttpEntity<>(body, headers), String.class);
+        assertThat(uploaded.getStatusCode().value()).isEqualTo(202);
+
+        JsonNode image = objectMapper.readTree(uploaded.getBody());
+        String id = image.get("id").asText();
+        assertThat(image.get("urls").get("card").asText()).isEqualTo("https://cdn.test/api/images/" + id + "/card");
+
+        // Variants are public; until they are made the URL asks to retry
+        String path = "/api/images/" + id + "/card";
+        HttpResponse<byte[]> card = get(path);
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (card.statusCode() == 503 && System.currentTimeMillis() < deadline) {
+            assertThat(card.headers().firstValue("Retry-After")).hasValue("1");
+            assertThat(card.headers().firstValue("Cache-Control")).hasValue("no-store");
+            Thread.sleep(20);
+            card = get(path);
+        }
+
+        assertThat(card.statusCode()).isEqualTo(200);
+        assertThat(card.headers().firstValue("Content-Type")).hasValue("image/jpeg");
+        assertThat(card.headers().firstValue("Cache-Control")).hasValue("max-age=31536000, public, immutable");
+        assertThat(ImageIO.read(new ByteArrayInputStream(card.body())).getWidth()).isEqualTo(480);
+
+        HttpResponse<byte[]> revalidated = get(path, "If-None-Match", card.headers().firstValue("ETag").orElseThrow());
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+        assertThat(revalidated.headers().firstValue("Cache-Control")).hasValue("max-age=31536000, public, immutable");
+
+        assertThat(get("/api/images/" + id + "/poster").statusCode()).isEqualTo(404);
+        assertThat(get("/api/images/" + "0".repeat(64) + "/card").statusCode()).isEqualTo(404);
+    }
+}
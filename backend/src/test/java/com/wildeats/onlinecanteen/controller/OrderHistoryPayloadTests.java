@@ -0,0 +1,258 @@
+package com.wildeats.onlinecanteen.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wildeats.onlinecanteen.dto.OrderResponse;
+import com.wildeats.onlinecanteen.security.JwtUtil;
+
+/**
+ * Bytes sent and latency of a customer's order history
+ *
+ * A customer with 1,000 orders fetches GET /api/orders/my-orders over HTTP,
+ * once as plain JSON and once accepting gzip. The body sizes and the p50/p99
+ * latencies of both are logged; the history has to arrive complete either way
+ * and compress to a fraction of its size. The same history, shop and menu are
+ * also fetched as CBOR, and the size and serialization CPU time of CBOR are
+ * logged next to JSON.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:history;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test",
+        "orders.pickup-slots.release-interval-ms=3600000"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderHistoryPayloadTests {
+    private static final Logger logger = LoggerFactory.getLogger(OrderHistoryPayloadTests.class);
+
+    private static final int ORDERS = 1000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 30;
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private String token;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9101, 'owner@history', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9102, 'customer@history', 'x')");
+        jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                + "contact_number, status, is_open, owner_id) VALUES (9101, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                + "'ACTIVE', TRUE, 9101)");
+        jdbcTemplate.update("INSERT INTO menu_item (item_id, shop_id, item_name, price, is_available) "
+                + "VALUES (9101, 9101, 'Rice bowl', 55.00, TRUE)");
+        jdbcTemplate.update("INSERT INTO menu_item (item_id, shop_id, item_name, price, is_available) "
+                + "VALUES (9102, 9101, 'Iced tea', 25.00, TRUE)");
+
+        long start = System.currentTimeMillis() - ORDERS * 60_000L;
+        List<Object[]> orders = new ArrayList<>();
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            long orderId = 100_000L + i;
+            Timestamp placedAt = new Timestamp(start + i * 60_000L);
+            orders.add(new Object[] { orderId, i % 100 + 1, placedAt });
+            items.add(new Object[] { orderId, 9101L, 1, 55.00, placedAt });
+            items.add(new Object[] { orderId, 9102L, 2, 25.00, placedAt });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO orders (order_id, user_id, shop_id, total_amount, status, "
+                + "queue_number, order_date_time) VALUES (?, 9102, 9101, 105.00, 'COMPLETED', ?, ?)", orders);
+        jdbcTemplate.batchUpdate("INSERT INTO order_item (order_id, item_id, quantity, price_at_purchase, "
+                + "order_date_time) VALUES (?, ?, ?, ?, ?)", items);
+
+        token = jwtUtil.generateToken(9102L, "customer@history", "CUSTOMER");
+    }
+
+    @Test
+    void orderHistoryIsCompleteAndCompresses() throws Exception {
+        Sample plain = measure(false);
+        Sample gzip = measure(true);
+
+        logger.warn("Order history of {} orders: plain {} bytes (p50 {} ms, p99 {} ms), "
+                + "gzip {} bytes (p50 {} ms, p99 {} ms)",
+                ORDERS, plain.bytes, plain.percentile(50), plain.percentile(99),
+                gzip.bytes, gzip.percentile(50), gzip.percentile(99));
+
+        JsonNode history = objectMapper.readTree(plain.body);
+        assertThat(history.isArray()).isTrue();
+        assertThat(history.size()).isEqualTo(ORDERS);
+        // Newest first
+        assertThat(history.get(0).get("orderId").asLong()).isEqualTo(100_000L + ORDERS - 1);
+        assertThat(history.get(ORDERS - 1).get("orderId").asLong()).isEqualTo(100_000L);
+
+        assertThat(gzip.compressed).isTrue();
+        assertThat(gzip.body).isEqualTo(plain.body);
+        assertThat(gzip.bytes).isLessThan(plain.bytes / 4);
+    }
+
+    @Test
+    void orderHistoryIsSmallerAsCbor() throws Exception {
+        Sample json = measure(false);
+        Sample cbor = measure(false, "application/cbor");
+        Sample cborGzip = measure(true, "application/cbor");
+
+        assertThat(cbor.contentType).startsWith("application/cbor");
+        JsonNode history = cborConverter.getObjectMapper().readTree(cbor.body);
+        assertThat(history.size()).isEqualTo(ORDERS);
+        assertThat(history.get(0).get("orderId").asLong()).isEqualTo(100_000L + ORDERS - 1);
+        // Dates are sent as epoch milliseconds
+        assertThat(history.get(0).get("orderDateTime").isNumber()).isTrue();
+        assertThat(cborGzip.body).isEqualTo(cbor.body);
+
+        List<OrderResponse> orders = objectMapper.readValue(json.body, new TypeReference<List<OrderResponse>>() {
+        });
+        long jsonCpu = serializationCpuNanos(objectMapper, orders);
+        long cborCpu = serializationCpuNanos(cborConverter.getObjectMapper(), orders);
+
+        logger.warn("Order history of {} orders: JSON {} bytes, CBOR {} bytes ({} gzipped); "
+                + "serialization CPU per history: JSON {} us, CBOR {} us",
+                ORDERS, json.bytes, cbor.bytes, cborGzip.bytes, jsonCpu / 1000, cborCpu / 1000);
+        assertThat(cbor.bytes).isLessThan(json.bytes);
+    }
+
+    @Test
+    void shopAndMenuAreNegotiated() throws Exception {
+        for (String path : List.of("/api/shops/9101", "/api/menu-items/shop/9101")) {
+            HttpResponse<byte[]> json = get(path, null, false);
+            HttpResponse<byte[]> cbor = get(path, "application/cbor", false);
+
+            assertThat(json.headers().firstValue("Content-Type")).hasValueSatisfying(
+                    type -> assertThat(type).startsWith("application/json"));
+            assertThat(cbor.headers().firstValue("Content-Type")).hasValueSatisfying(
+                    type -> assertThat(type).startsWith("application/cbor"));
+            assertThat(cbor.headers().allValues("Vary")).anySatisfy(
+                    vary -> assertThat(vary).containsIgnoringCase("accept,"));
+            assertThat(cborConverter.getObjectMapper().readTree(cbor.body()).findValuesAsText("shopName"))
+                    .isNotEmpty()
+                    .isEqualTo(objectMapper.readTree(json.body()).findValuesAsText("shopName"));
+        }
+    }
+
+    // Thread CPU time to serialize the orders once, averaged over repeated runs
+    private static long serializationCpuNanos(ObjectMapper mapper, List<OrderResponse> orders) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            mapper.writeValueAsBytes(orders);
+        }
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(orders);
+        }
+        return (threads.getCurrentThreadCpuTime() - start) / ITERATIONS;
+    }
+
+    private HttpResponse<byte[]> get(String path, String accept, boolean acceptGzip) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+        if (accept != null) {
+            builder.header("Accept", accept);
+        }
+        if (acceptGzip) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private Sample measure(boolean acceptGzip) throws Exception {
+        return measure(acceptGzip, null);
+    }
+
+    private Sample measure(boolean acceptGzip, String accept) throws Exception {
+        Sample sample = new Sample(ITERATIONS);
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = get("/api/orders/my-orders", accept, acceptGzip);
+            long elapsed = System.nanoTime() - start;
+            assertThat(response.statusCode()).isEqualTo(200);
+            if (i < WARMUP) {
+                continue;
+            }
+            sample.latencies[i - WARMUP] = elapsed;
+            sample.bytes = response.body().length;
+            sample.contentType = response.headers().firstValue("Content-Type").orElse("");
+            sample.compressed = response.headers().firstValue("Content-Encoding")
+                    .map("gzip"::equalsIgnoreCase).orElse(false);
+            sample.body = sample.compressed
+                    ? new GZIPInputStream(new ByteArrayInputStream(response.body())).readAllBytes()
+                    : response.body();
+        }
+        return sample;
+    }
+
+    private static class Sample {
+        final long[] latencies;
+        int bytes;
+        boolean compressed;
+        String contentType;
+        byte[] body;
+
+        Sample(int iterations) {
+            latencies = new long[iterations];
+        }
+
+        long percentile(int p) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.wildeats.onlinecanteen.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wildeats.onlinecanteen.security.JwtUtil;
+import com.wildeats.onlinecanteen.service.IdempotencyService;
+
+/**
+ * Retries of POST /api/orders with an Idempotency-Key
+ *
+ * A retry with the same key and body gets the stored response and places no
+ * second order, while the same key with a different body is rejected with
+ * 422. Duplicates sent at the same time place exactly one order. A key left
+ * IN_PROGRESS by a request that never finished is answered with 409 until it
+ * expires, and expired keys are purged.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        // The production pool: checkouts waiting for a worker or for a duplicate
+        // must not hold a connection meanwhile
+        "spring.datasource.hikari.maximum-pool-size=3",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test",
+        "orders.pickup-slots.release-interval-ms=3600000",
+        "orders.idempotency.purge-interval-ms=3600000"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderIdempotencyTests {
+
+    private static final long CUSTOMER = 9302L;
+    private static final long SHOP = 9301L;
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private String token;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO role (role_name) SELECT 'CUSTOMER' WHERE NOT EXISTS "
+                + "(SELECT 1 FROM role WHERE role_name = 'CUSTOMER')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9301, 'owner@idempotency', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9302, 'customer@idempotency', 'x')");
+        jdbcTemplate.update("INSERT INTO user_role (user_id, role_id) "
+                + "SELECT 9302, role_id FROM role WHERE role_name = 'CUSTOMER'");
+        jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                + "contact_number, status, is_open, owner_id) VALUES (9301, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                + "'ACTIVE', TRUE, 9301)");
+        jdbcTemplate.update("INSERT INTO menu_item (item_id, shop_id, item_name, price, is_available) "
+                + "VALUES (9301, 9301, 'Rice bowl', 55.00, TRUE)");
+
+        token = jwtUtil.generateToken(CUSTOMER, "customer@idempotency", "CUSTOMER");
+    }
+
+    private HttpResponse<String> order(String key, int quantity) throws Exception {
+        String body = objectMapper.writeValueAsString(Map.of("shopId", SHOP,
+                "orderItems", List.of(Map.of("menuItem", Map.of("itemId", 9301L), "quantity", quantity))));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/orders"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .header(IdempotencyService.HEADER, key)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<byte[]> orderAsCbor(String key, int quantity) throws Exception {
+        String body = objectMapper.writeValueAsString(Map.of("shopId", SHOP,
+                "orderItems", List.of(Map.of("menuItem", Map.of("itemId", 9301L), "quantity", quantity))));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/orders"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/cbor")
+                .header(IdempotencyService.HEADER, key)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private int orders() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE user_id = ?", Integer.class, CUSTOMER);
+    }
+
+    private Map<String, Object> record(String key) {
+        return jdbcTemplate.queryForMap("SELECT status, response_status, response_body FROM idempotency_key "
+                + "WHERE user_id = ? AND idempotency_key = ?", CUSTOMER, key);
+    }
+
+    @Test
+    void retryWithTheSameKeyReplaysTheStoredResponse() throws Exception {
+        int before = orders();
+
+        HttpResponse<String> first = order("replay", 1);
+        assertThat(first.statusCode()).isEqualTo(201);
+        assertThat(first.headers().firstValue(IdempotencyService.REPLAYED_HEADER)).isEmpty();
+
+        // The response was stored with the order
+        assertThat(record("replay")).containsEntry("status", "COMPLETED").containsEntry("response_status", 201);
+        assertThat(objectMapper.readTree((String) record("replay").get("response_body")))
+                .isEqualTo(objectMapper.readTree(first.body()));
+
+        HttpResponse<String> retry = order("replay", 1);
+        assertThat(retry.statusCode()).isEqualTo(201);
+        assertThat(retry.headers().firstValue(IdempotencyService.REPLAYED_HEADER)).contains("true");
+        assertThat(objectMapper.readTree(retry.body())).isEqualTo(objectMapper.readTree(first.body()));
+        assertThat(orders()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void replayIsEncodedForItsOwnAcceptHeader() throws Exception {
+        HttpResponse<String> first = order("replay-cbor", 1);
+        assertThat(first.statusCode()).isEqualTo(201);
+
+        HttpResponse<byte[]> retry = orderAsCbor("replay-cbor", 1);
+        assertThat(retry.statusCode()).isEqualTo(201);
+        assertThat(retry.headers().firstValue(IdempotencyService.REPLAYED_HEADER)).contains("true");
+        assertThat(retry.headers().firstValue("Content-Type")).hasValueSatisfying(
+                type -> assertThat(type).startsWith("application/cbor"));
+
+        // Same order, in the CBOR form of a first response: dates as numbers
+        JsonNode replayed = new ObjectMapper(new CBORFactory()).readTree(retry.body());
+        assertThat(replayed.get("orderId")).isEqualTo(objectMapper.readTree(first.body()).get("orderId"));
+        assertThat(replayed.get("orderDateTime").isNumber()).isTrue();
+        assertThat(replayed.get("totalAmount").decimalValue()).isEqualByComparingTo("55.00");
+    }
+
+    @Test
+    void sameKeyForADifferentOrderIsRejected() throws Exception {
+        assertThat(order("reused", 1).statusCode()).isEqualTo(201);
+        int before = orders();
+
+        HttpResponse<String> different = order("reused", 3);
+        assertThat(different.statusCode()).isEqualTo(422);
+        assertThat(objectMapper.readTree(different.body()).get("message").asText())
+                .contains("different request");
+        assertThat(orders()).isEqualTo(before);
+    }
+
+    @Test
+    void failedOrdersAreNotStored() throws Exception {
+        jdbcTemplate.update("UPDATE shop SET is_open = FALSE WHERE shop_id = ?", SHOP);
+        try {
+            assertThat(order("closed", 1).statusCode()).isEqualTo(400);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key WHERE idempotency_key = ?",
+                    Integer.class, "closed")).isZero();
+        } finally {
+            jdbcTemplate.update("UPDATE shop SET is_open = TRUE WHERE shop_id = ?", SHOP);
+        }
+
+        // So the client can retry with the same key
+        assertThat(order("closed", 1).statusCode()).isEqualTo(201);
+    }
+
+    @Test
+    void concurrentDuplicatesPlaceOneOrder() throws Exception {
+        int before = orders();
+        int threads = 4;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return order("concurrent", 2);
+            }));
+        }
+        start.countDown();
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        for (Future<HttpResponse<String>> future : futures) {
+            responses.add(future.get(1, TimeUnit.MINUTES));
+        }
+        pool.shutdown();
+
+        assertThat(responses).allSatisfy(response -> assertThat(response.statusCode()).isEqualTo(201));
+        assertThat(responses).filteredOn(response -> response.headers()
+                .firstValue(IdempotencyService.REPLAYED_HEADER).isEmpty()).hasSize(1);
+        assertThat(responses).extracting(response -> objectMapper.readTree(response.body()).get("orderId"))
+                .containsOnly(objectMapper.readTree(responses.get(0).body()).get("orderId"));
+        assertThat(orders()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void abandonedKeyIsNotRunAgainUntilItExpires() throws Exception {
+        // As left behind by a request that died after placing its order
+        assertThat(order("abandoned", 1).statusCode()).isEqualTo(201);
+        jdbcTemplate.update("UPDATE idempotency_key SET status = 'IN_PROGRESS', response_status = NULL, "
+                + "response_body = NULL, created_at = ? WHERE idempotency_key = 'abandoned'",
+                new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        int before = orders();
+
+        HttpResponse<String> retry = order("abandoned", 1);
+        assertThat(retry.statusCode()).isEqualTo(409);
+        assertThat(retry.headers().firstValue("Retry-After")).isPresent();
+        assertThat(orders()).isEqualTo(before);
+
+        // Once expired the key is free again
+        jdbcTemplate.update("UPDATE idempotency_key SET expires_at = ? WHERE idempotency_key = 'abandoned'",
+                new Timestamp(System.currentTimeMillis() - 1000));
+        assertThat(order("abandoned", 1).statusCode()).isEqualTo(201);
+        assertThat(orders()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void expiredKeysArePurged() throws Exception {
+        assertThat(order("kept", 1).statusCode()).isEqualTo(201);
+        assertThat(order("expiring", 1).statusCode()).isEqualTo(201);
+        jdbcTemplate.update("UPDATE idempotency_key SET expires_at = ? WHERE idempotency_key = 'expiring'",
+                new Timestamp(System.currentTimeMillis() - 1000));
+
+        idempotencyService.purge();
+
+        assertThat(jdbcTemplate.queryForList("SELECT idempotency_key FROM idempotency_key WHERE "
+                + "idempotency_key IN ('kept', 'expiring')", String.class)).containsExactly("kept");
+    }
+}
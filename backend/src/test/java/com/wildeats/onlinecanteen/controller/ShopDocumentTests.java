@@ -0,0 +1,353 @@
+package com.wildeats.onlinecanteen.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wildeats.onlinecanteen.security.JwtUtil;
+import com.wildeats.onlinecanteen.service.ShopDocumentService;
+
+/**
+ * Shop documents over HTTP: upload, deduplication, quotas, byte ranges and
+ * conditional downloads from the local document store
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:documents;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test",
+        "orders.pickup-slots.release-interval-ms=3600000",
+        "storage.documents.max-file-bytes=200000",
+        "storage.documents.shop-quota-bytes=300000"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShopDocumentTests {
+
+    private static final Path STORE_ROOT;
+
+    static {
+        try {
+            STORE_ROOT = Files.createTempDirectory("documents");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void storeRoot(DynamicPropertyRegistry registry) {
+        registry.add("storage.documents.local-root", STORE_ROOT::toString);
+    }
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ShopDocumentService shopDocumentService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final Random random = new Random(42);
+    private String ownerToken;
+    private String otherToken;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9201, 'owner@documents', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9202, 'other@documents', 'x')");
+        for (long shopId : new long[] { 9201, 9202 }) {
+            jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                    + "contact_number, status, is_open, owner_id) VALUES (?, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                    + "'PENDING', FALSE, ?)", shopId, shopId);
+        }
+        ownerToken = jwtUtil.generateToken(9201L, "owner@documents", "SELLER");
+        otherToken = jwtUtil.generateToken(9202L, "other@documents", "SELLER");
+    }
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM shop_document");
+        jdbcTemplate.update("DELETE FROM shop_document_usage");
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static HttpEntity<ByteArrayResource> part(String fileName, String contentType, byte[] content) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        return new HttpEntity<>(new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        }, headers);
+    }
+
+    @SafeVarargs
+    private ResponseEntity<String> upload(long shopId, String token, HttpEntity<ByteArrayResource>... parts) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        for (HttpEntity<ByteArrayResource> part : parts) {
+            body.add("files", part);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return restTemplate.exchange("/api/shops/" + shopId + "/documents", HttpMethod.POST,
+                new HttpEntity<>(body, headers), String.class);
+    }
+
+    private JsonNode json(ResponseEntity<String> response) throws IOException {
+        return objectMapper.readTree(response.getBody());
+    }
+
+    private HttpResponse<byte[]> download(long shopId, long documentId, String token, String... headers)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/shops/" + shopId + "/documents/" + documentId))
+                .header("Authorization", "Bearer " + token);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private long storedFiles() throws IOException {
+        try (Stream<Path> files = Files.find(STORE_ROOT, 3,
+                (path, attributes) -> attributes.isRegularFile() && !path.startsWith(STORE_ROOT.resolve("tmp")))) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void uploadedDocumentsAreServedWithRanges() throws Exception {
+        byte[] permit = randomBytes(120_000);
+        ResponseEntity<String> uploaded = upload(9201, ownerToken,
+                part("C:\\scans\\permit.pdf", "application/pdf", permit));
+        assertThat(uploaded.getStatusCode().value()).isEqualTo(200);
+        JsonNode document = json(uploaded).get("documents").get(0);
+        assertThat(document.get("fileName").asText()).isEqualTo("permit.pdf");
+        assertThat(document.get("sizeBytes").asLong()).isEqualTo(permit.length);
+        long id = document.get("id").asLong();
+
+        HttpResponse<byte[]> full = download(9201, id, ownerToken);
+        assertThat(full.statusCode()).isEqualTo(200);
+        assertThat(full.body()).isEqualTo(permit);
+        assertThat(full.headers().firstValue("Accept-Ranges")).hasValue("bytes");
+        assertThat(full.headers().firstValue("Content-Type")).hasValue("application/pdf");
+        assertThat(full.headers().firstValue("Content-Disposition").orElseThrow()).startsWith("attachment");
+        String eTag = full.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<byte[]> middle = download(9201, id, ownerToken, "Range", "bytes=1000-1999");
+        assertThat(middle.statusCode()).isEqualTo(206);
+        assertThat(middle.headers().firstValue("Content-Range")).hasValue("bytes 1000-1999/" + permit.length);
+        assertThat(middle.body()).isEqualTo(Arrays.copyOfRange(permit, 1000, 2000));
+
+        HttpResponse<byte[]> tail = download(9201, id, ownerToken, "Range", "bytes=-500");
+        assertThat(tail.statusCode()).isEqualTo(206);
+        assertThat(tail.body()).isEqualTo(Arrays.copyOfRange(permit, permit.length - 500, permit.length));
+
+        // A Range for another version of the document gets the whole document
+        HttpResponse<byte[]> stale = download(9201, id, ownerToken, "Range", "bytes=0-9", "If-Range", "\"other\"");
+        assertThat(stale.statusCode()).isEqualTo(200);
+        assertThat(stale.body()).hasSize(permit.length);
+
+        HttpResponse<byte[]> outside = download(9201, id, ownerToken, "Range", "bytes=500000-");
+        assertThat(outside.statusCode()).isEqualTo(416);
+        assertThat(outside.headers().firstValue("Content-Range")).hasValue("bytes */" + permit.length);
+
+        HttpResponse<byte[]> cached = download(9201, id, ownerToken, "If-None-Match", eTag);
+        assertThat(cached.statusCode()).isEqualTo(304);
+        assertThat(cached.body()).isEmpty();
+
+        // Only the owner may read a shop's documents
+        assertThat(download(9201, id, otherToken).statusCode()).isEqualTo(403);
+        assertThat(download(9202, id, otherToken).statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void identicalContentIsStoredOnce() throws Exception {
+        long before = storedFiles();
+        byte[] content = randomBytes(50_000);
+
+        long first = json(upload(9201, ownerToken, part("id.png", "image/png", content)))
+                .get("documents").get(0).get("id").asLong();
+        long again = json(upload(9201, ownerToken, part("id-copy.png", "image/png", content)))
+                .get("documents").get(0).get("id").asLong();
+        json(upload(9202, otherToken, part("id.png", "image/png", content)));
+
+        // The shop gets its document back and is charged once; the other shop
+        // has its own document over the same stored file
+        assertThat(again).isEqualTo(first);
+        assertThat(shopDocumentService.getUsedBytes(9201L)).isEqualTo(content.length);
+        assertThat(shopDocumentService.getUsedBytes(9202L)).isEqualTo(content.length);
+        assertThat(storedFiles()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void uploadsStayWithinTheQuota() throws Exception {
+        ResponseEntity<String> tooMuch = upload(9201, ownerToken,
+                part("a.pdf", "application/pdf", randomBytes(160_000)),
+                part("b.pdf", "application/pdf", randomBytes(160_000)));
+        assertThat(tooMuch.getStatusCode().value()).isEqualTo(413);
+        assertThat(shopDocumentService.getUsedBytes(9201L)).isZero();
+
+        ResponseEntity<String> wrongType = upload(9201, ownerToken,
+                part("run.sh", "application/x-sh", randomBytes(100)));
+        assertThat(wrongType.getStatusCode().value()).isEqualTo(400);
+
+        // Concurrent uploads of 100 KB each: exactly three fit in 300 KB
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                MultipartFile file = new MockMultipartFile("files", "doc" + i + ".pdf", "application/pdf",
+                        randomBytes(100_000));
+                Callable<Boolean> upload = () -> {
+                    try {
+                        shopDocumentService.upload(9201L, 9201L, new MultipartFile[] { file });
+                        return true;
+                    } catch (ShopDocumentService.QuotaExceededException e) {
+                        return false;
+                    }
+                };
+                results.add(executor.submit(upload));
+            }
+            int accepted = 0;
+            for (Future<Boolean> result : results) {
+                accepted += result.get() ? 1 : 0;
+            }
+            assertThat(accepted).isEqualTo(3);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(shopDocumentService.getUsedBytes(9201L)).isEqualTo(300_000);
+
+        // Deleting a document frees its space
+        long id = shopDocumentService.getDocuments(9201L).get(0).getId();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(ownerToken);
+        ResponseEntity<String> deleted = restTemplate.exchange("/api/shops/9201/documents/" + id, HttpMethod.DELETE,
+                new HttpEntity<>(headers), String.class);
+        assertThat(deleted.getStatusCode().value()).isEqualTo(200);
+        assertThat(shopDocumentService.getUsedBytes(9201L)).isEqualTo(200_000);
+
+        ResponseEntity<String> listed = restTemplate.exchange("/api/shops/9201/documents", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+        assertThat(json(listed).get("documents")).hasSize(2);
+        assertThat(objectMapper.convertValue(json(listed), Map.class)).containsEntry("quotaBytes", 300000);
+
+        // Concurrent deletes of the same document free its space once
+        long other = shopDocumentService.getDocuments(9201L).get(0).getId();
+        executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> shopDocumentService.deleteDocument(9201L, other)));
+            }
+            int removed = 0;
+            for (Future<Boolean> result : results) {
+                removed += result.get() ? 1 : 0;
+            }
+            assertThat(removed).isEqualTo(1);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(shopDocumentService.getUsedBytes(9201L)).isEqualTo(100_000);
+    }
+
+    @Test
+    void unreferencedContentIsPurgedAfterTheGracePeriod() throws Exception {
+        byte[] content = randomBytes(10_000);
+        long id = json(upload(9201, ownerToken, part("old.pdf", "application/pdf", content)))
+                .get("documents").get(0).get("id").asLong();
+        String hash = jdbcTemplate.queryForObject("SELECT content_hash FROM shop_document WHERE id = ?",
+                String.class, id);
+        Path file = STORE_ROOT.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+        assertThat(file).exists();
+
+        ReflectionTestUtils.setField(shopDocumentService, "orphanGraceHours", 0L);
+        try {
+            // Still referenced
+            Thread.sleep(20);
+            shopDocumentService.purgeUnreferenced();
+            assertThat(file).exists();
+
+            shopDocumentService.deleteDocument(9201L, id);
+            Thread.sleep(20);
+            shopDocumentService.purgeUnreferenced();
+            assertThat(file).doesNotExist();
+        } finally {
+            ReflectionTestUtils.setField(shopDocumentService, "orphanGraceHours", 24L);
+        }
+    }
+}
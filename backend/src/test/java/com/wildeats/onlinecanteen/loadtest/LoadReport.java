@@ -0,0 +1,189 @@
+package com.wildeats.onlinecanteen.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response times and outcomes per endpoint, recorded from many threads and
+ * summarized as throughput, p50/p95/p99 latency and error rate
+ *
+ * Responses shed with 503 by admission control are counted apart from
+ * errors: shedding is the intended answer to more load than the server takes.
+ * Nothing is recorded until {@link #start()}, so warm-up requests stay out.
+ */
+class LoadReport {
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+    private volatile long startedAt;
+    private volatile long stoppedAt;
+
+    /**
+     * Start recording; everything recorded before is discarded
+     */
+    void start() {
+        endpoints.clear();
+        stoppedAt = 0;
+        startedAt = System.nanoTime();
+    }
+
+    /**
+     * Stop recording and fix the duration throughput is computed over
+     */
+    void stop() {
+        stoppedAt = System.nanoTime();
+    }
+
+    /**
+     * Record one request
+     *
+     * @param endpoint      Name of the endpoint
+     * @param status        HTTP status, or 0 if the request failed without one
+     * @param durationNanos Time from sending the request to reading the response
+     */
+    void record(String endpoint, int status, long durationNanos) {
+        if (startedAt == 0 || stoppedAt != 0) {
+            return;
+        }
+        endpoints.computeIfAbsent(endpoint, name -> new Endpoint()).add(status, durationNanos);
+    }
+
+    long requests(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats != null ? stats.summary().requests : 0;
+    }
+
+    /**
+     * @return Rate of failed requests over all endpoints, shed requests not
+     *         included
+     */
+    double errorRate() {
+        long requests = 0;
+        long errors = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            Summary summary = endpoint.summary();
+            requests += summary.requests;
+            errors += summary.errors;
+        }
+        return requests > 0 ? (double) errors / requests : 0;
+    }
+
+    /**
+     * @return The highest p95 latency of any endpoint, in milliseconds
+     */
+    double worstP95Millis() {
+        return endpoints.values().stream().mapToDouble(endpoint -> endpoint.summary().p95).max().orElse(0);
+    }
+
+    /**
+     * Print the table of all endpoints
+     *
+     * @param out   Where to print
+     * @param title Line printed above the table
+     */
+    void print(PrintStream out, String title) {
+        double seconds = durationSeconds();
+        out.println();
+        out.println(title);
+        out.printf(Locale.ROOT, "%-40s %9s %9s %9s %9s %9s %9s %8s %8s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors", "shed");
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Summary s = entry.getValue().summary();
+            out.printf(Locale.ROOT, "%-40s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %7.2f%% %7.2f%%%n",
+                    entry.getKey(), s.requests, s.requests / seconds, s.p50, s.p95, s.p99, s.max,
+                    100.0 * s.errors / s.requests, 100.0 * s.shed / s.requests);
+        }
+        out.println();
+    }
+
+    /**
+     * Write the table as CSV
+     *
+     * @param file The file to write; parent directories are created
+     */
+    void writeCsv(Path file) throws IOException {
+        double seconds = durationSeconds();
+        List<String> lines = new ArrayList<>();
+        lines.add("endpoint,requests,throughput_per_s,p50_ms,p95_ms,p99_ms,max_ms,errors,shed");
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Summary s = entry.getValue().summary();
+            lines.add(String.format(Locale.ROOT, "%s,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%d,%d",
+                    entry.getKey(), s.requests, s.requests / seconds, s.p50, s.p95, s.p99, s.max, s.errors,
+                    s.shed));
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, lines);
+    }
+
+    private double durationSeconds() {
+        long end = stoppedAt != 0 ? stoppedAt : System.nanoTime();
+        return Math.max(1, end - startedAt) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static class Endpoint {
+        private long[] durations = new long[1024];
+        private int count;
+        private long errors;
+        private long shed;
+
+        synchronized void add(int status, long durationNanos) {
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = durationNanos;
+            if (status == 503) {
+                shed++;
+            } else if (status < 200 || status >= 400) {
+                errors++;
+            }
+        }
+
+        synchronized Summary summary() {
+            long[] sorted = Arrays.copyOf(durations, count);
+            Arrays.sort(sorted);
+            return new Summary(count, errors, shed, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    percentile(sorted, 0.99), count > 0 ? toMillis(sorted[count - 1]) : 0);
+        }
+
+        // Nearest-rank percentile
+        private static double percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return toMillis(sorted[Math.max(0, rank - 1)]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    private static class Summary {
+        final long requests;
+        final long errors;
+        final long shed;
+        final double p50;
+        final double p95;
+        final double p99;
+        final double max;
+
+        Summary(long requests, long errors, long shed, double p50, double p95, double p99, double max) {
+            this.requests = requests;
+            this.errors = errors;
+            this.shed = shed;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.wildeats.onlinecanteen.loadtest;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Customers, sellers, open shops and menus for a lunch rush, inserted in
+ * batches straight into the database
+ *
+ * Every run gets its own email and shop name prefix, so seeding a database
+ * that already holds an earlier run adds a fresh set instead of colliding
+ * with it. All users share one password hash; hashing thousands of passwords
+ * would only slow the seeding down.
+ */
+class LunchRushData {
+
+    private static final String[] DISHES = { "Adobo", "Sinigang", "Tapsilog", "Pancit", "Lumpia", "Burger",
+            "Spaghetti", "Fried Chicken", "Siomai", "Lugaw", "Halo-Halo", "Iced Coffee" };
+    private static final String[] STYLES = { "Rice Bowl", "Combo", "Solo", "Family Size", "Special" };
+    private static final int BATCH_SIZE = 500;
+
+    final String runId;
+    final List<User> customers;
+    final List<Shop> shops;
+
+    private LunchRushData(String runId, List<User> customers, List<Shop> shops) {
+        this.runId = runId;
+        this.customers = customers;
+        this.shops = shops;
+    }
+
+    /**
+     * @return Some word that appears in menu item names
+     */
+    static String searchTerm(int i) {
+        return DISHES[Math.floorMod(i, DISHES.length)].toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Seed the database
+     *
+     * @param jdbc          Template on the application's data source
+     * @param passwordHash  Hash of the password every seeded user signs in with
+     * @param customerCount Number of customers
+     * @param shopCount     Number of shops, each with its own seller
+     * @param itemsPerShop  Number of menu items of each shop
+     * @return The seeded users and shops
+     */
+    static LunchRushData seed(JdbcTemplate jdbc, String passwordHash, int customerCount, int shopCount,
+            int itemsPerShop) {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        // The roles are created by the sample data initializer, which may not have run
+        for (String role : List.of("CUSTOMER", "SELLER", "ADMIN")) {
+            jdbc.update("INSERT INTO role (role_name) SELECT ? WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM role WHERE role_name = ?)", role, role);
+        }
+
+        List<String> customerEmails = new ArrayList<>();
+        for (int i = 0; i < customerCount; i++) {
+            customerEmails.add("rush-" + runId + "-customer-" + i + "@loadtest.local");
+        }
+        List<String> sellerEmails = new ArrayList<>();
+        for (int i = 0; i < shopCount; i++) {
+            sellerEmails.add("rush-" + runId + "-seller-" + i + "@loadtest.local");
+        }
+
+        List<User> customers = insertUsers(jdbc, customerEmails, passwordHash, "CUSTOMER", now);
+        List<User> sellers = insertUsers(jdbc, sellerEmails, passwordHash, "SELLER", now);
+
+        List<Object[]> shopRows = new ArrayList<>();
+        for (int i = 0; i < shopCount; i++) {
+            shopRows.add(new Object[] { "Rush " + runId + " Shop " + i, "Lunch rush test shop",
+                    "Campus food court, stall " + i, "MAIN_CANTEEN", "0917000" + String.format("%04d", i),
+                    sellers.get(i).id, now, now });
+        }
+        batch(jdbc, "INSERT INTO shop (shop_name, shop_descr, shop_address, location, contact_number, status, "
+                + "is_open, owner_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, 'ACTIVE', TRUE, ?, ?, ?)",
+                shopRows);
+        Map<String, Long> shopIds = jdbc.query("SELECT shop_id, shop_name FROM shop WHERE shop_name LIKE ?",
+                (rs, row) -> Map.entry(rs.getString("shop_name"), rs.getLong("shop_id")),
+                "Rush " + runId + " Shop %").stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        List<Shop> shops = new ArrayList<>();
+        List<Object[]> itemRows = new ArrayList<>();
+        for (int i = 0; i < shopCount; i++) {
+            Long shopId = shopIds.get("Rush " + runId + " Shop " + i);
+            shops.add(new Shop(shopId, sellers.get(i)));
+            for (int j = 0; j < itemsPerShop; j++) {
+                String name = DISHES[(i + j) % DISHES.length] + " " + STYLES[j % STYLES.length] + " " + j;
+                itemRows.add(new Object[] { shopId, name, "Served hot", 45 + (i * 7 + j * 13) % 120 });
+            }
+        }
+        batch(jdbc, "INSERT INTO menu_item (shop_id, item_name, item_descr, price, is_available) "
+                + "VALUES (?, ?, ?, ?, TRUE)", itemRows);
+        for (Shop shop : shops) {
+            shop.itemIds.addAll(jdbc.queryForList("SELECT item_id FROM menu_item WHERE shop_id = ? ORDER BY item_id",
+                    Long.class, shop.id));
+        }
+        return new LunchRushData(runId, customers, shops);
+    }
+
+    private static List<User> insertUsers(JdbcTemplate jdbc, List<String> emails, String passwordHash, String role,
+            Timestamp now) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < emails.size(); i++) {
+            rows.add(new Object[] { emails.get(i), passwordHash, "Rush", role.charAt(0) + role.substring(1)
+                    .toLowerCase(Locale.ROOT) + " " + i, now });
+        }
+        batch(jdbc, "INSERT INTO users (email, password, first_name, last_name, created_at) VALUES (?, ?, ?, ?, ?)",
+                rows);
+
+        Long roleId = jdbc.queryForObject("SELECT role_id FROM role WHERE role_name = ?", Long.class, role);
+        List<User> users = new ArrayList<>();
+        List<Object[]> roleRows = new ArrayList<>();
+        for (List<String> chunk : chunks(emails)) {
+            String placeholders = chunk.stream().map(email -> "?").collect(Collectors.joining(","));
+            Map<String, Long> ids = jdbc.query("SELECT user_id, email FROM users WHERE email IN (" + placeholders + ")",
+                    (rs, row) -> Map.entry(rs.getString("email"), rs.getLong("user_id")), chunk.toArray())
+                    .stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            for (String email : chunk) {
+                Long id = ids.get(email);
+                users.add(new User(id, email));
+                roleRows.add(new Object[] { id, roleId });
+            }
+        }
+        batch(jdbc, "INSERT INTO user_role (user_id, role_id) VALUES (?, ?)", roleRows);
+        return users;
+    }
+
+    private static void batch(JdbcTemplate jdbc, String sql, List<Object[]> rows) {
+        for (List<Object[]> chunk : chunks(rows)) {
+            jdbc.batchUpdate(sql, chunk);
+        }
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += BATCH_SIZE) {
+            chunks.add(list.subList(i, Math.min(list.size(), i + BATCH_SIZE)));
+        }
+        return chunks;
+    }
+
+    static class User {
+        final Long id;
+        final String email;
+
+        User(Long id, String email) {
+            this.id = id;
+            this.email = email;
+        }
+    }
+
+    static class Shop {
+        final Long id;
+        final User seller;
+        final List<Long> itemIds = new ArrayList<>();
+
+        Shop(Long id, User seller) {
+            this.id = id;
+            this.seller = seller;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.wildeats.onlinecanteen.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wildeats.onlinecanteen.security.JwtUtil;
+
+/**
+ * A campus lunch rush against the running backend: thousands of customers
+ * signing in, browsing shops and menus, searching and ordering, most of them
+ * from a few popular shops, while the sellers of those shops work through
+ * their order queues. Every user signs in through /api/auth/login and keeps
+ * its token until it is about to expire, as the apps do.
+ *
+ * Tagged "load" and left out of the normal build; run it with
+ *
+ * <pre>
+ * mvn test -P load-test
+ * </pre>
+ *
+ * It runs only when LOAD_TEST_DB_URL (plus LOAD_TEST_DB_USERNAME /
+ * LOAD_TEST_DB_PASSWORD) points to a PostgreSQL database, which is migrated
+ * and seeded with a fresh set of users and shops; numbers measured on an
+ * in-memory database would say nothing about production. The size and length
+ * of the rush are set with the loadtest.* system properties, e.g.
+ * -Dloadtest.concurrency=200 -Dloadtest.duration-seconds=300.
+ *
+ * Prints throughput, p50/p95/p99 latency and error rate per endpoint, writes
+ * the same as CSV to target/load-test, and fails if the error rate or the
+ * worst p95 exceed loadtest.max-error-rate and loadtest.max-p95-ms.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=${LOAD_TEST_DB_URL}",
+        "spring.datasource.username=${LOAD_TEST_DB_USERNAME:postgres}",
+        "spring.datasource.password=${LOAD_TEST_DB_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test"
+})
+@EnabledIfEnvironmentVariable(named = "LOAD_TEST_DB_URL", matches = ".+",
+        disabledReason = "LOAD_TEST_DB_URL does not point to a PostgreSQL database")
+class LunchRushLoadTest {
+
+    private static final String PASSWORD = "lunch-rush";
+
+    private static final String LOGIN = "POST /api/auth/login";
+    private static final String SHOPS = "GET /api/shops";
+    private static final String MENU = "GET /api/menu-items/shop/{id}";
+    private static final String SEARCH = "GET /api/menu-items/shop/{id}/search";
+    private static final String ORDER = "POST /api/orders";
+    private static final String ACTIVE_ORDERS = "GET /api/orders/shop/{id}/active";
+    private static final String ORDER_STATUS = "PUT /api/orders/{id}/status";
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${loadtest.customers:2000}")
+    private int customerCount;
+
+    @Value("${loadtest.shops:40}")
+    private int shopCount;
+
+    @Value("${loadtest.items-per-shop:25}")
+    private int itemsPerShop;
+
+    // The popular shops most orders go to, each with a seller working its queue
+    @Value("${loadtest.hot-shops:3}")
+    private int hotShopCount;
+
+    @Value("${loadtest.hot-shop-share:0.7}")
+    private double hotShopShare;
+
+    // Number of customers sending requests at the same time
+    @Value("${loadtest.concurrency:50}")
+    private int concurrency;
+
+    // Mean pause between the requests of one customer
+    @Value("${loadtest.think-time-ms:100}")
+    private long thinkTimeMillis;
+
+    // Customers start one by one over the warm-up, whose requests are not reported
+    @Value("${loadtest.warmup-seconds:10}")
+    private long warmupSeconds;
+
+    @Value("${loadtest.duration-seconds:60}")
+    private long durationSeconds;
+
+    @Value("${loadtest.max-error-rate:0.01}")
+    private double maxErrorRate;
+
+    // 0 leaves latency unchecked
+    @Value("${loadtest.max-p95-ms:0}")
+    private double maxP95Millis;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final LoadReport report = new LoadReport();
+
+    // Signed-in users by ID, reused until shortly before the token expires
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    private LunchRushData data;
+    private volatile long deadline;
+
+    @Test
+    void lunchRush() throws Exception {
+        long seedStart = System.nanoTime();
+        data = LunchRushData.seed(jdbcTemplate, passwordEncoder.encode(PASSWORD), customerCount, shopCount,
+                itemsPerShop);
+        System.out.printf("Seeded %d customers and %d shops with %d menu items each in %d ms%n", customerCount,
+                shopCount, itemsPerShop, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+        List<LunchRushData.Shop> hotShops = data.shops.subList(0, Math.min(hotShopCount, data.shops.size()));
+        long warmupMillis = TimeUnit.SECONDS.toMillis(warmupSeconds);
+        long start = System.currentTimeMillis();
+        deadline = start + warmupMillis + TimeUnit.SECONDS.toMillis(durationSeconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency + hotShops.size());
+        for (int i = 0; i < concurrency; i++) {
+            long startAt = start + warmupMillis * i / concurrency;
+            int first = i;
+            workers.execute(() -> customer(startAt, first));
+        }
+        for (LunchRushData.Shop shop : hotShops) {
+            workers.execute(() -> seller(shop));
+        }
+
+        Thread.sleep(warmupMillis);
+        report.start();
+        Thread.sleep(Math.max(0, deadline - System.currentTimeMillis()));
+        report.stop();
+        workers.shutdown();
+        assertThat(workers.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        report.print(System.out, String.format("Lunch rush: %d customers, %d shops (%d hot), concurrency %d, %d s",
+                customerCount, shopCount, hotShops.size(), concurrency, durationSeconds));
+        report.writeCsv(Path.of("target", "load-test", "lunch-rush-" + data.runId + ".csv"));
+
+        assertThat(report.requests(ORDER)).as("orders placed").isPositive();
+        assertThat(report.errorRate()).as("error rate").isLessThanOrEqualTo(maxErrorRate);
+        if (maxP95Millis > 0) {
+            assertThat(report.worstP95Millis()).as("worst p95 in ms").isLessThanOrEqualTo(maxP95Millis);
+        }
+    }
+
+    // One virtual user after another: each signs in or reuses its token, then
+    // browses, searches and sometimes orders
+    private void customer(long startAt, int first) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+            int index = first;
+            while (System.currentTimeMillis() < deadline) {
+                LunchRushData.User customer = data.customers.get(index % data.customers.size());
+                // Students on the campus network each have their own address
+                String address = "10." + (index >> 16 & 255) + "." + (index >> 8 & 255) + "." + (index & 255);
+                index += concurrency;
+
+                String token = signIn(customer, address);
+                if (token == null) {
+                    think(random);
+                    continue;
+                }
+
+                LunchRushData.Shop shop = pickShop(random);
+                int roll = random.nextInt(100);
+                if (roll < 20) {
+                    send(SHOPS, get("/api/shops", token));
+                } else if (roll < 55) {
+                    send(MENU, get("/api/menu-items/shop/" + shop.id, token));
+                } else if (roll < 70) {
+                    send(SEARCH, get("/api/menu-items/shop/" + shop.id + "/search?searchTerm="
+                            + URLEncoder.encode(LunchRushData.searchTerm(random.nextInt(100)), StandardCharsets.UTF_8),
+                            token));
+                } else {
+                    List<Map<String, Object>> items = new ArrayList<>();
+                    for (int n = 1 + random.nextInt(3); n > 0; n--) {
+                        Long itemId = shop.itemIds.get(random.nextInt(shop.itemIds.size()));
+                        items.add(Map.of("menuItem", Map.of("itemId", itemId), "quantity", 1 + random.nextInt(2)));
+                    }
+                    send(ORDER, post("/api/orders", Map.of("shopId", shop.id, "orderItems", items))
+                            .header("Authorization", "Bearer " + token)
+                            .header("Idempotency-Key", UUID.randomUUID().toString()));
+                }
+                think(random);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The seller of a popular shop moving orders along PENDING, PREPARING,
+    // READY and COMPLETED
+    private void seller(LunchRushData.Shop shop) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String address = "10.255.0." + (shop.id & 255);
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                String token = signIn(shop.seller, address);
+                if (token == null) {
+                    think(random);
+                    continue;
+                }
+                JsonNode orders = send(ACTIVE_ORDERS, get("/api/orders/shop/" + shop.id + "/active", token));
+                if (orders != null) {
+                    int updated = 0;
+                    for (JsonNode order : orders) {
+                        String next = nextStatus(order.path("status").asText());
+                        if (next == null || updated++ == 5) {
+                            continue;
+                        }
+                        send(ORDER_STATUS, HttpRequest.newBuilder(uri("/api/orders/" + order.path("orderId").asLong()
+                                + "/status"))
+                                .PUT(body(Map.of("status", next)))
+                                .header("Content-Type", "application/json")
+                                .header("Authorization", "Bearer " + token));
+                    }
+                }
+                think(random);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get a token of a user, signing in through the login endpoint the first
+     * time and again once the previous token is about to expire
+     *
+     * @return The access token, or null if signing in failed
+     */
+    private String signIn(LunchRushData.User user, String address) throws InterruptedException {
+        Session session = sessions.get(user.id);
+        if (session != null && session.expiresAt > System.currentTimeMillis()) {
+            return session.token;
+        }
+        JsonNode login = send(LOGIN, post("/api/auth/login", Map.of("email", user.email, "password", PASSWORD))
+                .header("X-Forwarded-For", address));
+        if (login == null) {
+            return null;
+        }
+        // Renewed a minute early, so no request goes out with an expired token
+        long validMillis = TimeUnit.SECONDS.toMillis(jwtUtil.getAccessTokenValiditySeconds());
+        session = new Session(login.path("token").asText(),
+                System.currentTimeMillis() + Math.max(0, validMillis - TimeUnit.MINUTES.toMillis(1)));
+        sessions.put(user.id, session);
+        return session.token;
+    }
+
+    private static class Session {
+        final String token;
+        final long expiresAt;
+
+        Session(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static String nextStatus(String status) {
+        switch (status) {
+            case "PENDING":
+                return "PREPARING";
+            case "PREPARING":
+                return "READY";
+            case "READY":
+                return "COMPLETED";
+            default:
+                return null;
+        }
+    }
+
+    private LunchRushData.Shop pickShop(ThreadLocalRandom random) {
+        int hot = Math.min(hotShopCount, data.shops.size());
+        if (hot > 0 && random.nextDouble() < hotShopShare) {
+            return data.shops.get(random.nextInt(hot));
+        }
+        return data.shops.get(random.nextInt(data.shops.size()));
+    }
+
+    private void think(ThreadLocalRandom random) throws InterruptedException {
+        if (thinkTimeMillis > 0) {
+            Thread.sleep(random.nextLong(2 * thinkTimeMillis));
+        }
+    }
+
+    /**
+     * Send a request and record it
+     *
+     * @return The parsed response body if the request succeeded, otherwise null
+     */
+    private JsonNode send(String endpoint, HttpRequest.Builder request) throws InterruptedException {
+        long started = System.nanoTime();
+        int status = 0;
+        byte[] body = null;
+        try {
+            HttpResponse<byte[]> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            status = response.statusCode();
+            body = response.body();
+        } catch (IOException e) {
+            // Recorded with status 0
+        }
+        report.record(endpoint, status, System.nanoTime() - started);
+        if (status < 200 || status >= 300) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder get(String path, String token) {
+        return HttpRequest.newBuilder(uri(path)).GET().header("Authorization", "Bearer " + token);
+    }
+
+    private HttpRequest.Builder post(String path, Object json) {
+        return HttpRequest.newBuilder(uri(path)).POST(body(json)).header("Content-Type", "application/json");
+    }
+
+    private HttpRequest.BodyPublisher body(Object json) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(json));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,121 @@
+package com.wildeats.onlinecanteen.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import com.wildeats.onlinecanteen.dto.OrderItemResponse;
+import com.wildeats.onlinecanteen.dto.OrderResponse;
+
+/**
+ * Reads of archived orders through plain SQL
+ *
+ * The orders_archive schema is only created by the PostgreSQL migrations, so
+ * the tables are set up here with the columns the repository reads; moving
+ * partitions into them is covered by PartitionPruningTests.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderArchiveRepository.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:orderarchive;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+class OrderArchiveRepositoryTests {
+
+    @Autowired
+    private OrderArchiveRepository archiveRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS orders_archive");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders_archive.orders (order_id BIGINT, user_id BIGINT, "
+                + "shop_id BIGINT, total_amount NUMERIC(10, 2), status VARCHAR(20), queue_number INTEGER, "
+                + "order_date_time TIMESTAMP(6), cancelled_at TIMESTAMP(6), cancellation_reason VARCHAR(500))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders_archive.order_item (id BIGINT, order_id BIGINT, "
+                + "item_id BIGINT, quantity INTEGER, price_at_purchase NUMERIC(10, 2), order_date_time TIMESTAMP(6))");
+
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password, first_name, last_name) "
+                + "VALUES (1, 'owner@test', 'x', 'Olive', 'Owner'), (2, 'ana@test', 'x', 'Ana', 'Cruz'), "
+                + "(3, 'ben@test', 'x', NULL, NULL)");
+        jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                + "contact_number, status, is_open, owner_id) VALUES (1, 'Kape', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                + "'ACTIVE', TRUE, 1), (2, 'Lugawan', 'd', 'a', 'MAIN_CANTEEN', '1', 'ACTIVE', TRUE, 1)");
+        jdbcTemplate.update("INSERT INTO menu_item (item_id, shop_id, item_name, price, is_available) "
+                + "VALUES (1, 1, 'Latte', 90.00, TRUE), (2, 1, 'Mocha', 110.00, TRUE)");
+
+        archive(1, 2, 1, "COMPLETED", "2024-03-04 12:00:00");
+        archive(2, 2, 1, "CANCELLED", "2024-03-20 08:30:00");
+        archive(3, 2, 1, "COMPLETED", "2024-05-01 12:00:00");
+        archive(4, 3, 1, "COMPLETED", "2024-03-10 09:00:00");
+        archive(5, 2, 2, "COMPLETED", "2024-03-11 09:00:00");
+        item(1, 1, 1, 2, "90.00", "2024-03-04 12:00:00");
+        item(2, 1, 2, 1, "110.00", "2024-03-04 12:00:00");
+        item(3, 2, 1, 1, "85.00", "2024-03-20 08:30:00");
+    }
+
+    private void archive(long orderId, long userId, long shopId, String status, String placedAt) {
+        jdbcTemplate.update("INSERT INTO orders_archive.orders (order_id, user_id, shop_id, total_amount, status, "
+                + "queue_number, order_date_time) VALUES (?, ?, ?, 100.00, ?, ?, ?)", orderId, userId, shopId,
+                status, (int) orderId, Timestamp.valueOf(placedAt));
+    }
+
+    private void item(long id, long orderId, long itemId, int quantity, String price, String placedAt) {
+        jdbcTemplate.update("INSERT INTO orders_archive.order_item (id, order_id, item_id, quantity, "
+                + "price_at_purchase, order_date_time) VALUES (?, ?, ?, ?, ?, ?)", id, orderId, itemId, quantity,
+                new BigDecimal(price), Timestamp.valueOf(placedAt));
+    }
+
+    @Test
+    void customerOrdersWithinTheRangeComeNewestFirstWithTheirItems() {
+        List<OrderResponse> orders = archiveRepo.findByCustomerIdAndDateRange(2L,
+                Timestamp.valueOf("2024-03-01 00:00:00"), Timestamp.valueOf("2024-03-31 23:59:59"));
+
+        assertThat(orders).extracting(OrderResponse::getOrderId).containsExactly(2L, 5L, 1L);
+        OrderResponse oldest = orders.get(2);
+        assertThat(oldest.getCustomerName()).isEqualTo("Ana Cruz");
+        assertThat(oldest.getCustomerEmail()).isEqualTo("ana@test");
+        assertThat(oldest.getShopName()).isEqualTo("Kape");
+        assertThat(oldest.getOrderItems()).extracting(OrderItemResponse::getMenuItemName)
+                .containsExactlyInAnyOrder("Latte", "Mocha");
+        assertThat(oldest.getOrderItems()).filteredOn(item -> item.getMenuItemId() == 1L).singleElement()
+                .satisfies(item -> assertThat(item.getSubtotal()).isEqualByComparingTo("180.00"));
+        assertThat(orders.get(0).getStatus()).isEqualTo("CANCELLED");
+        assertThat(orders.get(0).getOrderItems()).hasSize(1);
+        assertThat(orders.get(1).getOrderItems()).isEmpty();
+    }
+
+    @Test
+    void shopOrdersAreLimitedToTheShopAndRange() {
+        List<OrderResponse> orders = archiveRepo.findByShopIdAndDateRange(1L,
+                Timestamp.valueOf("2024-03-01 00:00:00"), Timestamp.valueOf("2024-03-31 23:59:59"));
+
+        assertThat(orders).extracting(OrderResponse::getOrderId).containsExactly(2L, 4L, 1L);
+        // A customer without a name has none in the response
+        assertThat(orders.get(1).getCustomerName()).isNull();
+    }
+
+    @Test
+    void emptyRangeFindsNothing() {
+        assertThat(archiveRepo.findByCustomerIdAndDateRange(2L, Timestamp.valueOf("2023-01-01 00:00:00"),
+                Timestamp.valueOf("2023-12-31 23:59:59"))).isEmpty();
+    }
+}
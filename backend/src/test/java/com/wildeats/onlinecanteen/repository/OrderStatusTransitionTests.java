@@ -0,0 +1,212 @@
+package com.wildeats.onlinecanteen.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+import com.wildeats.onlinecanteen.entity.OrderEntity.Status;
+
+/**
+ * The order state machine and the conditional status updates enforcing it
+ *
+ * Every transition is checked against the allowed predecessors, directly and
+ * through the single-statement UPDATEs. An order saved from a stale copy is
+ * rejected by the version column, and a cancellation racing the seller never
+ * gets overwritten: whatever the interleaving, the outcome is one that some
+ * serial order of the two updates would give.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:orderstatus;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+class OrderStatusTransitionTests {
+
+    private static final int RACES = 50;
+
+    // Every legal move of the state machine; everything else is illegal
+    private static final Map<Status, Set<Status>> LEGAL = Map.of(
+            Status.SCHEDULED, EnumSet.of(Status.PENDING, Status.CANCELLED),
+            Status.PENDING, EnumSet.of(Status.PREPARING, Status.READY, Status.CANCELLED),
+            Status.PREPARING, EnumSet.of(Status.READY, Status.CANCELLED),
+            Status.READY, EnumSet.of(Status.COMPLETED, Status.CANCELLED),
+            Status.COMPLETED, EnumSet.noneOf(Status.class),
+            Status.CANCELLED, EnumSet.noneOf(Status.class));
+
+    @Autowired
+    private OrderRepository orderRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void seed() {
+        transaction = new TransactionTemplate(transactionManager);
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM shop");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (1, 'owner@status', 'x'), "
+                + "(2, 'customer@status', 'x')");
+        jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                + "contact_number, status, is_open, owner_id) VALUES (1, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                + "'ACTIVE', TRUE, 1)");
+    }
+
+    private void order(long orderId, Status status) {
+        jdbcTemplate.update("INSERT INTO orders (order_id, user_id, shop_id, total_amount, status, queue_number, "
+                + "order_date_time) VALUES (?, 2, 1, 55.00, ?, 1, ?)", orderId, status.name(),
+                new Timestamp(System.currentTimeMillis()));
+    }
+
+    private Map<String, Object> row(long orderId) {
+        return jdbcTemplate.queryForMap("SELECT status, version, cancelled_at FROM orders WHERE order_id = ?",
+                orderId);
+    }
+
+    private int transition(long orderId, Status status) {
+        return transaction.execute(tx -> orderRepo.transitionStatus(orderId, status, status.allowedPredecessors()));
+    }
+
+    private int cancel(long orderId) {
+        return transaction.execute(tx -> orderRepo.cancel(orderId, "Changed my mind", new Date(),
+                Status.CANCELLED.allowedPredecessors()));
+    }
+
+    @Test
+    void stateMachineAllowsExactlyTheLegalMoves() {
+        for (Status from : Status.values()) {
+            for (Status to : Status.values()) {
+                assertThat(from.canTransitionTo(to)).as("%s -> %s", from, to)
+                        .isEqualTo(LEGAL.get(from).contains(to));
+            }
+            assertThat(from.canTransitionTo(null)).isFalse();
+        }
+    }
+
+    @Test
+    void conditionalUpdatesFollowTheStateMachine() {
+        long orderId = 0;
+        for (Status from : Status.values()) {
+            for (Status to : Status.values()) {
+                order(++orderId, from);
+                int updated = to == Status.CANCELLED ? cancel(orderId) : transition(orderId, to);
+                boolean legal = LEGAL.get(from).contains(to);
+
+                assertThat(updated).as("%s -> %s", from, to).isEqualTo(legal ? 1 : 0);
+                Map<String, Object> row = row(orderId);
+                assertThat(row.get("status")).as("%s -> %s", from, to).isEqualTo((legal ? to : from).name());
+                assertThat(((Number) row.get("version")).longValue()).isEqualTo(legal ? 1 : 0);
+            }
+        }
+    }
+
+    @Test
+    void saveFromAStaleCopyIsRejectedByTheVersion() {
+        order(1, Status.PENDING);
+        OrderEntity stale = transaction.execute(tx -> orderRepo.findById(1L).orElseThrow());
+
+        assertThat(cancel(1)).isEqualTo(1);
+
+        // Read-modify-write from the copy would overwrite the cancellation
+        stale.setStatus(Status.READY);
+        assertThatThrownBy(() -> orderRepo.save(stale)).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(row(1)).containsEntry("status", "CANCELLED");
+        assertThat(((Number) row(1).get("version")).longValue()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelRacingAcceptIsNeverOverwritten() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (long orderId = 1; orderId <= RACES; orderId++) {
+                order(orderId, Status.PENDING);
+                long id = orderId;
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Integer> accepted = pool.submit(() -> {
+                    start.await();
+                    return transition(id, Status.PREPARING);
+                });
+                Future<Integer> cancelled = pool.submit(() -> {
+                    start.await();
+                    return cancel(id);
+                });
+                start.countDown();
+
+                // Cancelling is allowed before and after accepting, so it always
+                // wins; the accept only counts if it came first
+                assertThat(cancelled.get(1, TimeUnit.MINUTES)).isEqualTo(1);
+                int acceptedCount = accepted.get(1, TimeUnit.MINUTES);
+                Map<String, Object> row = row(orderId);
+                assertThat(row).containsEntry("status", "CANCELLED");
+                assertThat(row.get("cancelled_at")).isNotNull();
+                assertThat(((Number) row.get("version")).longValue()).isEqualTo(1 + acceptedCount);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void cancelRacingCompletionHasOneWinner() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (long orderId = 1; orderId <= RACES; orderId++) {
+                order(orderId, Status.READY);
+                long id = orderId;
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Integer> completed = pool.submit(() -> {
+                    start.await();
+                    return transition(id, Status.COMPLETED);
+                });
+                Future<Integer> cancelled = pool.submit(() -> {
+                    start.await();
+                    return cancel(id);
+                });
+                start.countDown();
+
+                int completedCount = completed.get(1, TimeUnit.MINUTES);
+                int cancelledCount = cancelled.get(1, TimeUnit.MINUTES);
+                assertThat(completedCount + cancelledCount).isEqualTo(1);
+                assertThat(row(orderId)).containsEntry("status", completedCount == 1 ? "COMPLETED" : "CANCELLED");
+                assertThat(((Number) row(orderId).get("version")).longValue()).isEqualTo(1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
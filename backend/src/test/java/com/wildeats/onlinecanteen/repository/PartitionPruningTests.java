@@ -0,0 +1,150 @@
+package com.wildeats.onlinecanteen.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+
+/**
+ * Verifies partition pruning and archival of the monthly order partitions
+ *
+ * Partitioning only exists in the PostgreSQL migrations, so this test needs a
+ * real PostgreSQL database. It runs only when PARTITION_TEST_DB_URL (plus
+ * PARTITION_TEST_DB_USERNAME / PARTITION_TEST_DB_PASSWORD) point to an EMPTY
+ * throwaway database: the migrations are applied to it and test data is
+ * inserted and archived. The order history queries run here too, since H2
+ * accepts timestamps PostgreSQL rejects.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=${PARTITION_TEST_DB_URL}",
+        "spring.datasource.username=${PARTITION_TEST_DB_USERNAME:postgres}",
+        "spring.datasource.password=${PARTITION_TEST_DB_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@EnabledIfEnvironmentVariable(named = "PARTITION_TEST_DB_URL", matches = ".+")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PartitionPruningTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderRepository orderRepo;
+
+    private final LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (1, 'pruning@test', 'x') "
+                + "ON CONFLICT DO NOTHING");
+        jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                + "contact_number, status, is_open, owner_id) VALUES (1, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                + "'ACTIVE', TRUE, 1) ON CONFLICT DO NOTHING");
+
+        jdbcTemplate.queryForObject("SELECT create_monthly_order_partitions(?, ?)", Integer.class,
+                Date.valueOf(thisMonth.minusMonths(14)), Date.valueOf(thisMonth.plusMonths(1)));
+
+        List<Object[]> orders = new ArrayList<>();
+        for (int month = 0; month <= 14; month++) {
+            for (int i = 0; i < 50; i++) {
+                orders.add(new Object[] { i % 3 == 0 ? "PENDING" : "COMPLETED", i,
+                        Timestamp.valueOf(thisMonth.minusMonths(month).atTime(9, 0).plusMinutes(i * 10L)) });
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO orders (user_id, shop_id, total_amount, status, queue_number, "
+                + "order_date_time) VALUES (1, 1, 10.00, ?, ?, ?)", orders);
+        jdbcTemplate.execute("ANALYZE orders");
+    }
+
+    private String explain(String sql, Object... args) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args));
+    }
+
+    private static String partitionOf(LocalDate month) {
+        return String.format("orders_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+
+    @Test
+    void maxQueueNumberScansOnlyTodaysPartition() {
+        LocalDate today = LocalDate.now();
+        String plan = explain("SELECT MAX(o.queue_number) FROM orders o WHERE o.shop_id = ? "
+                + "AND o.order_date_time BETWEEN ? AND ?", 1L,
+                Timestamp.valueOf(today.atStartOfDay()), Timestamp.valueOf(today.atTime(23, 59, 59)));
+        assertThat(plan).contains(partitionOf(thisMonth));
+        assertThat(plan).doesNotContain(partitionOf(thisMonth.minusMonths(1)));
+        assertThat(plan).doesNotContain("orders_default");
+    }
+
+    @Test
+    void revenueRangeScansOnlyMatchingPartitions() {
+        LocalDate lastMonth = thisMonth.minusMonths(1);
+        String plan = explain("SELECT COALESCE(SUM(o.total_amount), 0) FROM orders o WHERE o.shop_id = ? "
+                + "AND o.status = 'COMPLETED' AND o.order_date_time BETWEEN ? AND ?", 1L,
+                Timestamp.valueOf(lastMonth.atStartOfDay()), Timestamp.valueOf(lastMonth.atTime(23, 59, 59)));
+        assertThat(plan).contains(partitionOf(lastMonth));
+        assertThat(plan).doesNotContain(partitionOf(thisMonth));
+        assertThat(plan).doesNotContain(partitionOf(lastMonth.minusMonths(1)));
+    }
+
+    @Test
+    void orderHistoryPagesRunOnPostgreSQL() {
+        // The first page has no cursor, so no timestamp beyond PostgreSQL's range
+        List<Long> first = orderRepo.findFirstIdsByShop(1L, PageRequest.of(0, 20));
+        assertThat(first).hasSize(20);
+        assertThat(orderRepo.findFirstIdsByCustomer(1L, PageRequest.of(0, 20))).isEqualTo(first);
+
+        OrderEntity last = orderRepo.findById(first.get(first.size() - 1)).orElseThrow();
+        List<Long> next = orderRepo.findIdsByShopBefore(1L, last.getOrderDateTime(), last.getOrderId(),
+                PageRequest.of(0, 20));
+        assertThat(next).hasSize(20).doesNotContainAnyElementsOf(first);
+    }
+
+    @Test
+    void ordersOfUnknownTimeStayInTheDefaultPartition() {
+        jdbcTemplate.update("INSERT INTO orders (user_id, shop_id, total_amount, status, order_date_time) "
+                + "VALUES (1, 1, 10.00, 'COMPLETED', TIMESTAMP '1970-01-01 00:00:00')");
+        jdbcTemplate.queryForObject("SELECT archive_order_partitions(?)", Integer.class,
+                Date.valueOf(thisMonth.minusMonths(12)));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders_default "
+                + "WHERE order_date_time = TIMESTAMP '1970-01-01 00:00:00'", Long.class)).isEqualTo(1L);
+    }
+
+    @Test
+    void archivedPartitionsMoveToArchiveSchema() {
+        LocalDate oldest = thisMonth.minusMonths(14);
+        jdbcTemplate.queryForObject("SELECT archive_order_partitions(?)", Integer.class,
+                Date.valueOf(thisMonth.minusMonths(12)));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class,
+                "public." + partitionOf(oldest))).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders_archive.orders "
+                + "WHERE order_date_time >= ? AND order_date_time < ?", Long.class,
+                Timestamp.valueOf(oldest.atStartOfDay()), Timestamp.valueOf(oldest.plusMonths(1).atStartOfDay())))
+                .isEqualTo(50L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE order_date_time >= ? "
+                + "AND order_date_time < ?", Long.class, Timestamp.valueOf(oldest.atStartOfDay()),
+                Timestamp.valueOf(thisMonth.minusMonths(12).atStartOfDay()))).isZero();
+    }
+}
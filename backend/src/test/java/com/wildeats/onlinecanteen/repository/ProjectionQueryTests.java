@@ -0,0 +1,139 @@
+package com.wildeats.onlinecanteen.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import com.wildeats.onlinecanteen.dto.MenuItemResponse;
+import com.wildeats.onlinecanteen.dto.ShopResponse;
+import com.wildeats.onlinecanteen.repository.UserRepository.UserRoleView;
+import com.wildeats.onlinecanteen.repository.UserRepository.UserSummaryView;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * DTO projections of the list endpoints
+ *
+ * Each projection query has to produce the same DTOs as mapping the loaded
+ * entities, in a single statement and without loading any entity.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:projections;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+class ProjectionQueryTests {
+
+    @Autowired
+    private ShopRepository shopRepo;
+
+    @Autowired
+    private MenuItemRepository menuItemRepo;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO role (role_id, role_name) VALUES (1, 'CUSTOMER'), (2, 'SELLER'), (3, 'ADMIN')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password, first_name, last_name) VALUES "
+                + "(1, 'owner@test', 'x', 'Olive', 'Owner'), (2, 'customer@test', 'x', 'Cody', 'Customer'), "
+                + "(3, 'admin@test', 'x', 'Ada', 'Admin')");
+        jdbcTemplate.update("INSERT INTO user_role (user_id, role_id) VALUES (1, 1), (1, 2), (2, 1), (3, 3)");
+        for (long shopId = 1; shopId <= 3; shopId++) {
+            jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                    + "contact_number, status, is_open, owner_id) VALUES (?, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                    + "?, ?, 1)", shopId, shopId == 3 ? "PENDING" : "ACTIVE", shopId != 2);
+            for (int i = 0; i < 4; i++) {
+                jdbcTemplate.update("INSERT INTO menu_item (shop_id, item_name, price, is_available, daily_stock, "
+                        + "stock_remaining) VALUES (?, 'Item', 10.00, ?, 5, 3)", shopId, i % 2 == 0);
+            }
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void operationalShopsMatchEntityMapping() {
+        List<ShopResponse> projected = shopRepo.findAllOperationalResponses();
+        assertSingleQueryWithoutEntities();
+
+        List<ShopResponse> mapped = shopRepo.findAllOperational().stream().map(ShopResponse::new).toList();
+        assertThat(projected).hasSize(1);
+        assertThat(projected).usingRecursiveFieldByFieldElementComparator().isEqualTo(mapped);
+    }
+
+    @Test
+    void availableMenuItemsMatchEntityMapping() {
+        List<MenuItemResponse> projected = menuItemRepo.findAvailableResponsesByShopId(1L);
+        assertSingleQueryWithoutEntities();
+
+        List<MenuItemResponse> mapped = menuItemRepo.findByShopShopIdAndIsAvailable(1L, true).stream()
+                .map(MenuItemResponse::new).toList();
+        assertThat(projected).hasSize(2);
+        assertThat(projected).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(mapped);
+    }
+
+    @Test
+    void userSummariesAndRolesAreReadWithoutEntities() {
+        List<UserSummaryView> users = userRepo.findAllSummaries();
+        List<UserRoleView> roles = userRepo.findAllRoleNames();
+        List<UserSummaryView> sellers = userRepo.findSummariesByRoleName("SELLER");
+        List<UserRoleView> sellerRoles = userRepo.findRoleNamesOfUsersWithRole("SELLER");
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        assertThat(users).extracting(UserSummaryView::getEmail)
+                .containsExactly("owner@test", "customer@test", "admin@test");
+        assertThat(rolesByUser(roles)).isEqualTo(Map.of(
+                1L, List.of("CUSTOMER", "SELLER"), 2L, List.of("CUSTOMER"), 3L, List.of("ADMIN")));
+        assertThat(sellers).extracting(UserSummaryView::getUserId).containsExactly(1L);
+        // All roles of the sellers, not only the one filtered on
+        assertThat(rolesByUser(sellerRoles)).isEqualTo(Map.of(1L, List.of("CUSTOMER", "SELLER")));
+    }
+
+    private static Map<Long, List<String>> rolesByUser(List<UserRoleView> roles) {
+        return roles.stream().collect(Collectors.groupingBy(UserRoleView::getUserId,
+                Collectors.mapping(UserRoleView::getRoleName,
+                        Collectors.collectingAndThen(Collectors.toList(), list -> list.stream().sorted().toList()))));
+    }
+
+    private void assertSingleQueryWithoutEntities() {
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,133 @@
+package com.wildeats.onlinecanteen.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import com.wildeats.onlinecanteen.repository.UserDirectoryRepository.UserFilter;
+import com.wildeats.onlinecanteen.repository.UserDirectoryRepository.UserRow;
+
+/**
+ * Keyset pages and filters of the admin user listing
+ *
+ * Walking the pages has to return every matching user exactly once, in ID
+ * order, for each filter and their combination.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UserDirectoryRepository.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userdirectory;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+class UserDirectoryRepositoryTests {
+
+    private static final int USERS = 250;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Autowired
+    private UserDirectoryRepository directory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // User i is created on day i % 10 and is a seller when i % 5 == 0; every
+    // user is a customer
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO role (role_id, role_name) VALUES (1, 'CUSTOMER'), (2, 'SELLER')");
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> roles = new ArrayList<>();
+        for (long i = 1; i <= USERS; i++) {
+            String email = (i % 2 == 0 ? "Student" : "staff_") + i + "@cit.edu";
+            users.add(new Object[] { i, email, Timestamp.valueOf(START.plusDays(i % 10)) });
+            roles.add(new Object[] { i, 1L });
+            if (i % 5 == 0) {
+                roles.add(new Object[] { i, 2L });
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (user_id, email, password, created_at) VALUES (?, ?, 'x', ?)",
+                users);
+        jdbcTemplate.batchUpdate("INSERT INTO user_role (user_id, role_id) VALUES (?, ?)", roles);
+    }
+
+    private List<Long> walk(UserFilter filter, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        Long after = null;
+        while (true) {
+            List<UserRow> page = directory.findPage(filter, after, pageSize);
+            page.forEach(row -> ids.add(row.getUserId()));
+            if (page.size() < pageSize) {
+                return ids;
+            }
+            after = page.get(page.size() - 1).getUserId();
+        }
+    }
+
+    private static Date day(int day) {
+        return Timestamp.valueOf(START.plusDays(day));
+    }
+
+    @Test
+    void pagesCoverEveryUserOnceInOrder() {
+        UserFilter all = new UserFilter(null, null, null, null);
+        List<Long> ids = walk(all, 40);
+
+        assertThat(ids).hasSize(USERS).isSorted().doesNotHaveDuplicates();
+        assertThat(directory.count(all)).isEqualTo(USERS);
+    }
+
+    @Test
+    void filtersCombine() {
+        UserFilter sellers = new UserFilter("SELLER", null, null, null);
+        assertThat(walk(sellers, 7)).hasSize(USERS / 5).allMatch(id -> id % 5 == 0);
+        assertThat(directory.count(sellers)).isEqualTo(USERS / 5);
+
+        // Days 2 and 3
+        UserFilter created = new UserFilter(null, day(2), day(4), null);
+        assertThat(walk(created, 10)).hasSize(USERS / 5).allMatch(id -> id % 10 == 2 || id % 10 == 3);
+
+        // Case-insensitive prefix
+        UserFilter students = new UserFilter(null, null, null, "student");
+        assertThat(walk(students, 30)).hasSize(USERS / 2).allMatch(id -> id % 2 == 0);
+
+        UserFilter combined = new UserFilter("SELLER", day(0), day(1), "STUDENT");
+        assertThat(walk(combined, 3)).hasSize(USERS / 10).allMatch(id -> id % 10 == 0);
+        assertThat(directory.count(combined)).isEqualTo(USERS / 10);
+    }
+
+    @Test
+    void emailPrefixWildcardsAreLiteral() {
+        // "_" must not match any character: only staff_ emails start with it
+        assertThat(walk(new UserFilter(null, null, null, "staff_"), 50)).hasSize(USERS / 2);
+        assertThat(walk(new UserFilter(null, null, null, "staff%"), 50)).isEmpty();
+        assertThat(walk(new UserFilter(null, null, null, "s_"), 50)).isEmpty();
+    }
+
+    @Test
+    void rolesOfAPageAreReadTogether() {
+        Map<Long, List<String>> roles = directory.findRoleNames(List.of(4L, 5L, 10L, USERS + 1L));
+
+        assertThat(roles).containsOnlyKeys(4L, 5L, 10L);
+        assertThat(roles.get(4L)).containsExactly("CUSTOMER");
+        assertThat(roles.get(5L)).containsExactly("CUSTOMER", "SELLER");
+    }
+}
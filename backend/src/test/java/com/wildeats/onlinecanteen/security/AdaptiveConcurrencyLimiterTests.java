@@ -0,0 +1,78 @@
+package com.wildeats.onlinecanteen.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * AIMD behaviour of the admission limiter: the limit grows while requests are
+ * fast and the limit is in use, shrinks when they are slow, and requests over
+ * the limit are shed once their queue deadline passes
+ */
+class AdaptiveConcurrencyLimiterTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(900);
+
+    @Test
+    void limitGrowsWhileSaturatedRequestsMeetTheTarget() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, 500, 10);
+
+        for (int round = 0; round < 20; round++) {
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) {
+                assertThat(limiter.tryAcquire(0)).isTrue();
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.release(FAST, false);
+            }
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(2);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void limitBacksOffOnSlowRequestsAndFailures() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 10, 0.5, 500, 10);
+
+        assertThat(limiter.tryAcquire(0)).isTrue();
+        limiter.release(SLOW, false);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        // A second miss within the same interval does not cut again
+        assertThat(limiter.tryAcquire(0)).isTrue();
+        limiter.release(FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void requestsOverTheLimitAreShedAfterTheirDeadline() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0.5, 500, 10);
+        assertThat(limiter.tryAcquire(0)).isTrue();
+
+        long start = System.nanoTime();
+        assertThat(limiter.tryAcquire(50)).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+
+        // A queued request gets the slot as soon as it is released
+        Thread releaser = new Thread(() -> {
+            sleep(20);
+            limiter.release(FAST, false);
+        });
+        releaser.start();
+        assertThat(limiter.tryAcquire(1000)).isTrue();
+        releaser.join();
+        assertThat(limiter.estimateRetryAfterSeconds()).isGreaterThanOrEqualTo(1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
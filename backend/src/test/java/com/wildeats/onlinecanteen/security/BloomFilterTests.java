@@ -0,0 +1,31 @@
+package com.wildeats.onlinecanteen.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTests {
+
+    @Test
+    void addedEntriesAlwaysMatchAndOthersRarely() {
+        int entries = 10_000;
+        BloomFilter filter = new BloomFilter(entries, 0.01);
+        for (int i = 0; i < entries; i++) {
+            filter.put("jti:" + i);
+        }
+        for (int i = 0; i < entries; i++) {
+            assertThat(filter.mightContain("jti:" + i)).isTrue();
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("jti:" + UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+    }
+}
@@ -0,0 +1,157 @@
+package com.wildeats.onlinecanteen.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+/**
+ * Access tokens signed with key pairs from a keystore file and verified with
+ * the published JWK set
+ *
+ * The keystores are made with the JDK's keytool.
+ */
+class KeystoreSigningKeyProviderTests {
+
+    private static final String PASSWORD = "changeit";
+
+    @TempDir
+    Path dir;
+
+    private static void generate(Path keystore, String alias, String startDate, String... keyOptions)
+            throws Exception {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", alias, "-dname", "CN=" + alias, "-validity", "30",
+                "-startdate", startDate, "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD));
+        command.addAll(List.of(keyOptions));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes());
+        assertThat(process.waitFor()).as(output).isZero();
+    }
+
+    private static JwtUtil jwtUtil(SigningKeyProvider provider) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "signingKeys", provider);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenMinutes", 15L);
+        return jwtUtil;
+    }
+
+    private static String headerOf(String token) {
+        return new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+    }
+
+    private static PublicKey rsaKeyOf(Map<String, Object> jwk) throws Exception {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                new BigInteger(1, decoder.decode((String) jwk.get("n"))),
+                new BigInteger(1, decoder.decode((String) jwk.get("e")))));
+    }
+
+    @Test
+    void tokensVerifyWithThePublishedKeySet() throws Exception {
+        Path keystore = dir.resolve("keys.p12");
+        generate(keystore, "old", "-2d", "-keyalg", "RSA", "-keysize", "2048");
+        generate(keystore, "new", "-1d", "-keyalg", "RSA", "-keysize", "2048");
+        KeystoreSigningKeyProvider provider = new KeystoreSigningKeyProvider(keystore.toString(), "PKCS12",
+                PASSWORD, "");
+
+        String token = jwtUtil(provider).generateToken(7L, "user@test", "SELLER");
+        String kid = provider.getActiveKey().getKid();
+        assertThat(headerOf(token)).contains("\"alg\":\"RS256\"").contains("\"kid\":\"" + kid + "\"");
+
+        // The entry with the newest certificate signs; both are published
+        List<Map<String, Object>> jwks = provider.getPublicJwks();
+        assertThat(jwks).hasSize(2).allSatisfy(jwk -> assertThat(jwk)
+                .containsEntry("kty", "RSA").containsEntry("alg", "RS256").containsEntry("use", "sig"));
+        Map<String, Object> published = jwks.stream().filter(jwk -> kid.equals(jwk.get("kid"))).findFirst()
+                .orElseThrow();
+
+        // Another service needs nothing but the key set
+        Claims claims = Jwts.parserBuilder().setSigningKey(rsaKeyOf(published)).build().parseClaimsJws(token)
+                .getBody();
+        assertThat(claims.getSubject()).isEqualTo("user@test");
+        assertThat(claims.get("role", String.class)).isEqualTo("SELLER");
+    }
+
+    @Test
+    void activeAliasChoosesTheSigningKey() throws Exception {
+        Path keystore = dir.resolve("keys.p12");
+        generate(keystore, "rsa", "-1d", "-keyalg", "RSA", "-keysize", "2048");
+        generate(keystore, "ec", "-2d", "-keyalg", "EC", "-groupname", "secp256r1");
+        KeystoreSigningKeyProvider provider = new KeystoreSigningKeyProvider(keystore.toString(), "PKCS12",
+                PASSWORD, "ec");
+        JwtUtil jwtUtil = jwtUtil(provider);
+
+        String token = jwtUtil.generateToken(7L, "user@test", "CUSTOMER");
+        assertThat(headerOf(token)).contains("\"alg\":\"ES256\"");
+        assertThat(jwtUtil.validateToken(token, "user@test")).isTrue();
+        assertThat(provider.getPublicJwks()).anySatisfy(jwk -> assertThat(jwk)
+                .containsEntry("kty", "EC").containsEntry("crv", "P-256"));
+    }
+
+    @Test
+    void changedKeystoresAreReloaded() throws Exception {
+        Path keystore = dir.resolve("keys.p12");
+        generate(keystore, "first", "-1d", "-keyalg", "RSA", "-keysize", "2048");
+        KeystoreSigningKeyProvider provider = new KeystoreSigningKeyProvider(keystore.toString(), "PKCS12",
+                PASSWORD, "");
+        JwtUtil jwtUtil = jwtUtil(provider);
+        String before = jwtUtil.generateToken(7L, "user@test", "CUSTOMER");
+        String firstKid = provider.getActiveKey().getKid();
+
+        Path rotated = dir.resolve("rotated.p12");
+        Files.copy(keystore, rotated);
+        generate(rotated, "second", "-0d", "-keyalg", "EC", "-groupname", "secp384r1");
+        Files.move(rotated, keystore, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(keystore, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        provider.refresh();
+
+        String after = jwtUtil.generateToken(7L, "user@test", "CUSTOMER");
+        assertThat(provider.getActiveKey().getKid()).isNotEqualTo(firstKid);
+        assertThat(headerOf(after)).contains("\"alg\":\"ES384\"");
+        assertThat(jwtUtil.validateToken(before, "user@test")).isTrue();
+        assertThat(jwtUtil.validateToken(after, "user@test")).isTrue();
+
+        // An unreadable file keeps the current keys
+        Files.writeString(keystore, "not a keystore");
+        Files.setLastModifiedTime(keystore, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        provider.refresh();
+        assertThat(jwtUtil.validateToken(after, "user@test")).isTrue();
+    }
+
+    @Test
+    void keyIdsAreJwkThumbprints() throws Exception {
+        // Example of RFC 7638, section 3.1
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("n", "0vx7agoebGcQSuuPiLJXZptN9nndrQmbXEps2aiAFbWhM78LhWx4cbbfAAtVT86zwu1RK7aPFFxuhDR1L6tSoc_BJECPebWKRX"
+                + "jBZCiFV4n3oknjhMstn64tZ_2W-5JsGY4Hc5n9yBXArwl93lqt7_RN5w6Cf0h4QyQ5v-65YGjQR0_FDW2QvzqY368QQMicAtaS"
+                + "qzs8KJZgnYb9c7d0zgdAZHzu6qMQvRL5hajrn1n91CbOpbISD08qNLyrdkt-bFTWhAI4vMQFh6WeZu0fM4lFd2NcRwr3XPksIN"
+                + "HaQ-G_xBniIqbw0Ls1jF44-csFCur-kEgU8awapJzKnqDKgw");
+        jwk.put("e", "AQAB");
+
+        Map<String, Object> canonical = KeystoreSigningKeyProvider.toJwk(rsaKeyOf(jwk));
+        assertThat(canonical).containsEntry("n", jwk.get("n")).containsEntry("e", "AQAB");
+        assertThat(KeystoreSigningKeyProvider.thumbprint(canonical))
+                .isEqualTo("NzbLsXh8uDCcd-6MNwXF4W_7noWXFZAfHkxZsRGC9Xs");
+    }
+}
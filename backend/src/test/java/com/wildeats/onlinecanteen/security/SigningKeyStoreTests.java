@@ -0,0 +1,113 @@
+package com.wildeats.onlinecanteen.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import com.wildeats.onlinecanteen.entity.SigningKeyEntity;
+import com.wildeats.onlinecanteen.repository.SigningKeyRepository;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Access tokens signed with the persisted, rotating key set
+ *
+ * The rotation period is zero, so every refresh creates a new signing key.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ SigningKeyStore.class, JwtUtil.class })
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:signingkeys;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "security.jwt.key-rotation-days=0"
+})
+class SigningKeyStoreTests {
+
+    @Autowired
+    private SigningKeyStore signingKeys;
+
+    @Autowired
+    private SigningKeyRepository signingKeyRepo;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private static String kidOf(String token) {
+        String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+        return header.replaceAll(".*\"kid\":\"([^\"]+)\".*", "$1");
+    }
+
+    @Test
+    void tokensSignedBeforeARotationStayValid() {
+        String before = jwtUtil.generateToken(1L, "user@test", "CUSTOMER");
+        signingKeys.refresh();
+        String after = jwtUtil.generateToken(1L, "user@test", "CUSTOMER");
+
+        assertThat(kidOf(after)).isNotEqualTo(kidOf(before)).isEqualTo(signingKeys.getActiveKey().getKid());
+        assertThat(jwtUtil.validateToken(before, "user@test")).isTrue();
+        assertThat(jwtUtil.validateToken(after, "user@test")).isTrue();
+        assertThat(jwtUtil.extractUserId(before)).isEqualTo(1L);
+        assertThat(jwtUtil.extractClaim(after, Claims::getId)).isNotBlank();
+    }
+
+    @Test
+    void keysCreatedByAnotherInstanceArePickedUp() throws Exception {
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        SigningKeyEntity stored = new SigningKeyEntity();
+        stored.setKid(UUID.randomUUID().toString());
+        stored.setAlgorithm("HS256");
+        stored.setSecret(Base64.getEncoder().encodeToString(key.getEncoded()));
+        signingKeyRepo.saveAndFlush(stored);
+
+        String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, stored.getKid())
+                .setSubject("user@test")
+                .claim("userId", 2L)
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+
+        // Unknown key IDs reload the table at most once a second
+        Thread.sleep(1100);
+        assertThat(jwtUtil.validateToken(token, "user@test")).isTrue();
+    }
+
+    @Test
+    void tokensWithUnknownOrForgedKeysAreRejected() {
+        String forged = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKeys.getActiveKey().getKid())
+                .setSubject("user@test")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS256), SignatureAlgorithm.HS256)
+                .compact();
+        assertThat(jwtUtil.validateToken(forged)).isFalse();
+
+        String unknown = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "unknown")
+                .setSubject("user@test")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS256), SignatureAlgorithm.HS256)
+                .compact();
+        assertThat(jwtUtil.validateToken(unknown)).isFalse();
+    }
+}
@@ -0,0 +1,133 @@
+package com.wildeats.onlinecanteen.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Revoked access tokens behind the Bloom filter
+ *
+ * The filter is sized for very few entries, so it has to grow as tokens are
+ * revoked. Lookups after a filter match are counted, which shows how many
+ * checks of tokens that are not revoked reach the database.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ TokenRevocationStore.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:revocations;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "security.revocation.expected-entries=16"
+})
+class TokenRevocationStoreTests {
+
+    @Autowired
+    private TokenRevocationStore store;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM revoked_token");
+        jdbcTemplate.update("DELETE FROM user_token_cutoff");
+        store.purge();
+    }
+
+    private static Date inMinutes(int minutes) {
+        return new Date(System.currentTimeMillis() + minutes * 60_000L);
+    }
+
+    private double lookups(boolean revoked) {
+        return meterRegistry.get("token.revocation.lookups").tag("revoked", String.valueOf(revoked)).counter()
+                .count();
+    }
+
+    @Test
+    void revokedTokensAreRejectedWithoutLookingUpTheOthers() {
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String jti = UUID.randomUUID().toString();
+            store.revokeToken(jti, 1L, inMinutes(15));
+            revoked.add(jti);
+        }
+        // Already expired: nothing to remember
+        store.revokeToken(UUID.randomUUID().toString(), 1L, inMinutes(-1));
+
+        assertThat(revoked).allMatch(jti -> store.isRevoked(jti, 1L, new Date()));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_token", Integer.class)).isEqualTo(200);
+
+        double before = lookups(false);
+        int probes = 10_000;
+        for (int i = 0; i < probes; i++) {
+            assertThat(store.isRevoked(UUID.randomUUID().toString(), 2L, new Date())).isFalse();
+        }
+        assertThat(lookups(false) - before).isLessThan(probes * 0.03);
+    }
+
+    @Test
+    void cutoffsRevokeOlderTokensOfTheUser() {
+        Date issuedBefore = new Date(System.currentTimeMillis() - 5_000);
+        store.revokeAllForUser(3L);
+        Date issuedAfter = new Date(System.currentTimeMillis() + 1_000);
+
+        assertThat(store.isRevoked(UUID.randomUUID().toString(), 3L, issuedBefore)).isTrue();
+        assertThat(store.isRevoked(UUID.randomUUID().toString(), 3L, issuedAfter)).isFalse();
+        assertThat(store.isRevoked(UUID.randomUUID().toString(), 4L, issuedBefore)).isFalse();
+    }
+
+    @Test
+    void revocationsOfOtherInstancesArriveWithTheRefresh() {
+        String jti = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO revoked_token (jti, user_id, expires_at, revoked_at) VALUES (?, 5, ?, ?)",
+                jti, new Timestamp(inMinutes(15).getTime()), new Timestamp(System.currentTimeMillis()));
+        jdbcTemplate.update("INSERT INTO user_token_cutoff (user_id, not_before, updated_at) VALUES (6, ?, ?)",
+                new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+
+        store.refresh();
+
+        assertThat(store.isRevoked(jti, 5L, new Date())).isTrue();
+        assertThat(store.isRevoked(null, 6L, new Date(System.currentTimeMillis() - 60_000))).isTrue();
+    }
+
+    @Test
+    void purgeForgetsExpiredRevocations() {
+        String jti = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO revoked_token (jti, user_id, expires_at, revoked_at) VALUES (?, 7, ?, ?)",
+                jti, new Timestamp(inMinutes(-1).getTime()), new Timestamp(inMinutes(-16).getTime()));
+        jdbcTemplate.update("INSERT INTO user_token_cutoff (user_id, not_before, updated_at) VALUES (8, ?, ?)",
+                new Timestamp(inMinutes(-60).getTime()), new Timestamp(inMinutes(-60).getTime()));
+
+        store.purge();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_token", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_token_cutoff", Integer.class)).isZero();
+        assertThat(store.isRevoked(jti, 7L, new Date())).isFalse();
+    }
+}
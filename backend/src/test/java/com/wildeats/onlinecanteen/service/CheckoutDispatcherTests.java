@@ -0,0 +1,166 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Fair scheduling of the checkout dispatcher: a shop flooded with slow
+ * checkouts only queues behind itself, and its overflow is shed instead of
+ * delaying other shops. Shutting down fails the checkouts still queued, while
+ * those already running finish for their callers.
+ */
+class CheckoutDispatcherTests {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private CheckoutDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void floodedShopDoesNotDelayOtherShops() throws Exception {
+        dispatcher = new CheckoutDispatcher(new SimpleMeterRegistry(), 2, 20, 1, 10000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Ten checkouts at shop 1 that block until released
+        for (int i = 0; i < 10; i++) {
+            callers.submit(() -> dispatcher.submit(1L, () -> {
+                await(release);
+                return 1;
+            }));
+        }
+        waitUntilActive(1);
+
+        // Shop 1 may only hold one worker, so shop 2 runs on the other right away
+        Future<Integer> other = callers.submit(() -> dispatcher.submit(2L, () -> 2));
+        assertThat(other.get(2, TimeUnit.SECONDS)).isEqualTo(2);
+
+        release.countDown();
+    }
+
+    @Test
+    void fullShopQueueIsShedAndFailuresReachTheCaller() throws Exception {
+        dispatcher = new CheckoutDispatcher(new SimpleMeterRegistry(), 1, 2, 1, 10000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // One running, two queued: the queue of shop 1 is full
+        CountDownLatch started = new CountDownLatch(1);
+        callers.submit(() -> dispatcher.submit(1L, () -> {
+            started.countDown();
+            await(release);
+            return 1;
+        }));
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 2; i++) {
+            callers.submit(() -> dispatcher.submit(1L, () -> {
+                await(release);
+                return 1;
+            }));
+        }
+        waitUntilQueued(2);
+
+        assertThatThrownBy(() -> dispatcher.submit(1L, () -> 1))
+                .isInstanceOf(CheckoutDispatcher.BusyException.class);
+
+        release.countDown();
+        assertThatThrownBy(() -> dispatcher.submit(2L, () -> {
+            throw new IllegalStateException("sold out");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("sold out");
+    }
+
+    @Test
+    void checkoutNotStartedInTimeIsAbandoned() throws Exception {
+        dispatcher = new CheckoutDispatcher(new SimpleMeterRegistry(), 1, 20, 1, 200);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        callers.submit(() -> dispatcher.submit(1L, () -> {
+            started.countDown();
+            await(release);
+            return 1;
+        }));
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+
+        boolean[] ran = new boolean[1];
+        assertThatThrownBy(() -> dispatcher.submit(2L, () -> ran[0] = true))
+                .isInstanceOf(CheckoutDispatcher.BusyException.class);
+
+        release.countDown();
+        assertThat(dispatcher.submit(2L, () -> 3)).isEqualTo(3);
+        assertThat(ran[0]).isFalse();
+    }
+
+    @Test
+    void shutdownFailsQueuedCheckoutsAndFinishesRunningOnes() throws Exception {
+        dispatcher = new CheckoutDispatcher(new SimpleMeterRegistry(), 1, 20, 1, 10000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<Integer> running = callers.submit(() -> dispatcher.submit(1L, () -> {
+            started.countDown();
+            await(release);
+            return 1;
+        }));
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        List<Future<Integer>> queued = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            queued.add(callers.submit(() -> dispatcher.submit(1L, () -> 2)));
+        }
+        waitUntilQueued(2);
+
+        // The only worker is busy, and the queued checkouts fail anyway
+        dispatcher.shutdown();
+        for (Future<Integer> future : queued) {
+            assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(CheckoutDispatcher.BusyException.class);
+        }
+        assertThatThrownBy(() -> dispatcher.submit(2L, () -> 3))
+                .isInstanceOf(CheckoutDispatcher.BusyException.class);
+
+        // The running checkout may already have placed its order, so its
+        // caller stays in submit until it is done
+        assertThatThrownBy(() -> running.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        release.countDown();
+        assertThat(running.get(2, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitUntilActive(int shops) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (dispatcher.getActiveShops() < shops && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitUntilQueued(int tasks) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (dispatcher.getQueued(1L) < tasks && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
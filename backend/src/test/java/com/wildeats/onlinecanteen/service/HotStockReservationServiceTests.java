@@ -0,0 +1,113 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.wildeats.onlinecanteen.repository.MenuItemStockRepository;
+
+/**
+ * Setting the stock of hot items while orders are committing
+ *
+ * Portions of committed orders not yet flushed, and portions held by
+ * transactions still running, must survive a reload or a new daily stock:
+ * they count against the new stock and still reach the database with the
+ * next flush, also for an item that stopped being hot in between.
+ */
+class HotStockReservationServiceTests {
+
+    private final MenuItemStockRepository stockRepo = mock(MenuItemStockRepository.class);
+    private HotStockReservationService hotStock;
+
+    @BeforeEach
+    void setUp() {
+        hotStock = new HotStockReservationService();
+        ReflectionTestUtils.setField(hotStock, "stockRepo", stockRepo);
+        ReflectionTestUtils.setField(hotStock, "stripeCount", 4);
+        when(stockRepo.findHotStock()).thenReturn(Map.of(1L, 10));
+        hotStock.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Reserves in a transaction of its own and returns its synchronizations,
+    // to complete it later
+    private List<TransactionSynchronization> reserve(long itemId, int quantity) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(hotStock.reserve(Map.of(itemId, quantity))).isNull();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void complete(List<TransactionSynchronization> transaction, int status) {
+        transaction.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    @Test
+    void reloadCarriesPendingAndRunningReservationsOver() {
+        complete(reserve(1, 3), TransactionSynchronization.STATUS_COMMITTED);
+        List<TransactionSynchronization> running = reserve(1, 2);
+        assertThat(hotStock.getAvailable(1L)).isEqualTo(5);
+
+        // Nothing was flushed yet, so the database still says 10
+        hotStock.reload();
+        assertThat(hotStock.getAvailable(1L)).isEqualTo(5);
+
+        complete(running, TransactionSynchronization.STATUS_COMMITTED);
+        hotStock.flush();
+        verify(stockRepo).applyTaken(Map.of(1L, 5L));
+        assertThat(hotStock.getAvailable(1L)).isEqualTo(5);
+    }
+
+    @Test
+    void runningReservationRolledBackAfterANewStockIsGivenBack() {
+        List<TransactionSynchronization> running = reserve(1, 4);
+
+        hotStock.track(1L, 20);
+        assertThat(hotStock.getAvailable(1L)).isEqualTo(16);
+
+        complete(running, TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(hotStock.getAvailable(1L)).isEqualTo(20);
+        hotStock.flush();
+        verify(stockRepo, never()).applyTaken(any());
+    }
+
+    @Test
+    void itemNoLongerHotStillFlushesItsPortions() {
+        complete(reserve(1, 3), TransactionSynchronization.STATUS_COMMITTED);
+        List<TransactionSynchronization> running = reserve(1, 2);
+
+        hotStock.track(1L, null);
+        assertThat(hotStock.getAvailable(1L)).isNull();
+        assertThat(hotStock.hasHotItems()).isFalse();
+
+        hotStock.flush();
+        verify(stockRepo).applyTaken(Map.of(1L, 3L));
+
+        // Committed after the item was retired, and still written back
+        complete(running, TransactionSynchronization.STATUS_COMMITTED);
+        hotStock.flush();
+        verify(stockRepo).applyTaken(Map.of(1L, 2L));
+    }
+}
@@ -0,0 +1,207 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.config.StorageConfig;
+import com.wildeats.onlinecanteen.entity.ImageAssetEntity;
+import com.wildeats.onlinecanteen.repository.ImageVariantRepository;
+import com.wildeats.onlinecanteen.repository.ImageVariantRepository.VariantRow;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Resized variants of uploaded images, made on the worker pool, and the hot
+ * cache in front of the image store
+ *
+ * The hot cache is sized to hold a few thumbnails but not the variants of a
+ * large photo, to show that it stays within its bytes.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ ImageService.class, ImageVariantRepository.class, StorageConfig.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:images;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "storage.images.max-pixels=4000000",
+        "storage.images.hot-cache.max-bytes=60000",
+        "storage.images.hot-cache.max-entry-bytes=40000"
+})
+class ImageServiceTests {
+
+    private static final Path STORE_ROOT;
+
+    static {
+        try {
+            STORE_ROOT = Files.createTempDirectory("images");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void storeRoots(DynamicPropertyRegistry registry) {
+        registry.add("storage.images.local-root", () -> STORE_ROOT.resolve("images").toString());
+        registry.add("storage.documents.local-root", () -> STORE_ROOT.resolve("documents").toString());
+    }
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM image_variant");
+        jdbcTemplate.update("DELETE FROM image_asset");
+    }
+
+    private static MockMultipartFile png(int width, int height, Color from, Color to) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, from, width, height, to));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("file", "photo.png", "image/png", out.toByteArray());
+    }
+
+    // Noise does not compress, so its variants are about as large as JPEGs get
+    private static MockMultipartFile noise(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("file", "noise.png", "image/png", out.toByteArray());
+    }
+
+    private ImageAssetEntity awaitProcessed(String imageHash) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (System.currentTimeMillis() < deadline) {
+            ImageAssetEntity image = imageService.getImage(imageHash);
+            if (image.getStatus() != ImageAssetEntity.Status.PENDING) {
+                return image;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Image " + imageHash + " was not processed");
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("image.hot-cache.requests").tag("result", result).counter().count();
+    }
+
+    @Test
+    void uploadsGetResizedJpegVariants() throws Exception {
+        MockMultipartFile photo = png(2400, 1600, Color.ORANGE, Color.BLUE);
+        ImageAssetEntity image = imageService.upload(7L, photo);
+        assertThat(image.getStatus()).isEqualTo(ImageAssetEntity.Status.PENDING);
+        assertThat(image.getWidth()).isEqualTo(2400);
+
+        assertThat(awaitProcessed(image.getImageHash()).getStatus()).isEqualTo(ImageAssetEntity.Status.READY);
+        List<VariantRow> variants = imageService.getVariants(image.getImageHash());
+        assertThat(variants).extracting(VariantRow::getVariant).containsExactlyInAnyOrder("thumbnail", "card", "full");
+        for (VariantRow row : variants) {
+            int maxEdge = ImageService.Variant.fromKey(row.getVariant()).getMaxEdge();
+            assertThat(row.getWidth()).isEqualTo(maxEdge);
+            assertThat(row.getHeight()).isEqualTo(Math.round(maxEdge * 2 / 3f));
+
+            byte[] content = imageService.getVariant(image.getImageHash(),
+                    ImageService.Variant.fromKey(row.getVariant())).getContent();
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(content));
+            assertThat(decoded.getWidth()).isEqualTo(row.getWidth());
+            assertThat(content.length).isEqualTo((int) row.getSizeBytes()).isLessThan((int) photo.getSize());
+        }
+
+        // Uploading the same file again returns the processed image
+        ImageAssetEntity again = imageService.upload(8L, photo);
+        assertThat(again.getImageHash()).isEqualTo(image.getImageHash());
+        assertThat(again.getStatus()).isEqualTo(ImageAssetEntity.Status.READY);
+    }
+
+    @Test
+    void smallImagesAreNotEnlarged() throws Exception {
+        ImageAssetEntity image = imageService.upload(7L, png(120, 90, Color.RED, Color.GREEN));
+        awaitProcessed(image.getImageHash());
+
+        assertThat(imageService.getVariants(image.getImageHash())).allSatisfy(row -> {
+            assertThat(row.getWidth()).isLessThanOrEqualTo(120);
+            assertThat(row.getHeight()).isLessThanOrEqualTo(90);
+        });
+    }
+
+    @Test
+    void servedVariantsStayInTheHotCache() throws Exception {
+        ImageAssetEntity image = imageService.upload(7L, noise(1000, 1000));
+        awaitProcessed(image.getImageHash());
+
+        double hits = requests("hit");
+        double misses = requests("miss");
+        byte[] first = imageService.getVariant(image.getImageHash(), ImageService.Variant.THUMBNAIL).getContent();
+        byte[] second = imageService.getVariant(image.getImageHash(), ImageService.Variant.THUMBNAIL).getContent();
+        assertThat(second).isSameAs(first);
+        assertThat(requests("miss") - misses).isEqualTo(1);
+        assertThat(requests("hit") - hits).isEqualTo(1);
+
+        // The full variant is larger than an entry may be and is read every time
+        imageService.getVariant(image.getImageHash(), ImageService.Variant.FULL);
+        imageService.getVariant(image.getImageHash(), ImageService.Variant.FULL);
+        assertThat(requests("miss") - misses).isEqualTo(3);
+        assertThat(meterRegistry.get("image.hot-cache.bytes").gauge().value()).isLessThanOrEqualTo(60_000);
+    }
+
+    @Test
+    void filesThatAreNotAcceptableImagesAreRejected() {
+        assertThatThrownBy(() -> imageService.upload(7L,
+                new MockMultipartFile("file", "menu.pdf", "image/png", "%PDF-1.4 not an image".getBytes())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> imageService.upload(7L, png(2100, 2000, Color.RED, Color.BLUE)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("pixels");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM image_asset", Integer.class)).isZero();
+    }
+}
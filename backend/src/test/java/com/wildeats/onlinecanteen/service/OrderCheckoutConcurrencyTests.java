@@ -0,0 +1,395 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.wildeats.onlinecanteen.dto.MenuChangesResponse;
+import com.wildeats.onlinecanteen.dto.MenuItemResponse;
+import com.wildeats.onlinecanteen.entity.MenuItemEntity;
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+import com.wildeats.onlinecanteen.entity.OrderItemEntity;
+
+/**
+ * Concurrent checkouts against a single shop
+ *
+ * Many threads place orders at the same shop at the same time. Every checkout
+ * has to succeed (transient lock failures are retried), and the shop's queue
+ * numbers for the day have to stay unique and gap-free. The measured
+ * throughput is logged next to a single-threaded run of the same workload.
+ * A stock-tracked item must never be oversold, however many checkouts race
+ * for its last portions, and a hot item's in-memory reservations are compared
+ * against decrementing the row on every order. Pre-orders racing for one
+ * pickup slot must never exceed its capacity.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=10",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.springframework=WARN",
+        "logging.level.com.wildeats.onlinecanteen=WARN",
+        "spring.security.oauth2.client.registration.google.client-id=test",
+        "spring.security.oauth2.client.registration.google.client-secret=test",
+        "menu.stock.hot.flush-interval-ms=3600000",
+        "orders.pickup-slots.opening-time=00:00",
+        "orders.pickup-slots.closing-time=23:59",
+        "orders.pickup-slots.release-interval-ms=3600000",
+        // Let checkouts at one shop run side by side, so the row locks are what keeps them apart
+        "checkout.dispatcher.workers=8",
+        "checkout.dispatcher.max-running-per-shop=8"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderCheckoutConcurrencyTests {
+
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 25;
+
+    // The sample data seeding is not needed here
+    @MockitoBean(name = "initData")
+    private CommandLineRunner initData;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private MenuItemService menuItemService;
+
+    @Autowired
+    private HotStockReservationService hotStock;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9001, 'owner@checkout', 'x')");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (9002, 'customer@checkout', 'x')");
+        for (long shopId = 9001; shopId <= 9009; shopId++) {
+            jdbcTemplate.update("INSERT INTO shop (shop_id, shop_name, shop_descr, shop_address, location, "
+                    + "contact_number, status, is_open, owner_id) VALUES (?, 'Shop', 'd', 'a', 'MAIN_CANTEEN', '1', "
+                    + "'ACTIVE', TRUE, 9001)", shopId);
+            jdbcTemplate.update("INSERT INTO menu_item (item_id, shop_id, item_name, price, is_available) "
+                    + "VALUES (?, ?, 'Rice bowl', 55.00, TRUE)", shopId, shopId);
+        }
+        menuItemService.updateDailyStock(9003L, 30, false);
+        menuItemService.updateDailyStock(9004L, 1000, false);
+        menuItemService.updateDailyStock(9005L, 1000, true);
+        menuItemService.updateDailyStock(9006L, 10, true);
+        menuItemService.updateDailyStock(9009L, 10, false);
+        shopService.updatePickupSlots(9007L, 15, 10);
+    }
+
+    private OrderEntity checkout(long shopId) {
+        return checkout(shopId, null);
+    }
+
+    private OrderEntity checkout(long shopId, Date pickupTime) {
+        MenuItemEntity menuItem = new MenuItemEntity();
+        menuItem.setItemId(shopId);
+        OrderItemEntity item = new OrderItemEntity();
+        item.setMenuItem(menuItem);
+        item.setQuantity(2);
+        return orderService.createOrder(9002L, shopId, List.of(item), null, pickupTime);
+    }
+
+    @Test
+    void concurrentCheckoutsAtOneShopGetUniqueConsecutiveQueueNumbers() throws Exception {
+        long sequentialStart = System.nanoTime();
+        for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+            checkout(9002L);
+        }
+        double sequentialPerSecond = ORDERS_PER_THREAD / seconds(sequentialStart);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Integer> queueNumbers = new ConcurrentLinkedQueue<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    queueNumbers.add(checkout(9001L).getQueueNumber());
+                }
+                return null;
+            }));
+        }
+
+        long concurrentStart = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        double concurrentPerSecond = THREADS * ORDERS_PER_THREAD / seconds(concurrentStart);
+        pool.shutdown();
+
+        System.out.printf("Checkout throughput for one shop: %.1f orders/s with %d threads, %.1f orders/s sequential%n",
+                concurrentPerSecond, THREADS, sequentialPerSecond);
+
+        int total = THREADS * ORDERS_PER_THREAD;
+        assertThat(queueNumbers).hasSize(total);
+        Set<Integer> distinct = new TreeSet<>(queueNumbers);
+        assertThat(distinct).hasSize(total);
+        assertThat(Collections.min(distinct)).isEqualTo(1);
+        assertThat(Collections.max(distinct)).isEqualTo(total);
+
+        // The other shop's numbering is independent
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(queue_number) FROM orders WHERE shop_id = 9002",
+                Integer.class)).isEqualTo(ORDERS_PER_THREAD);
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversellDailyStock() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Long> placed = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> rejected = new ConcurrentLinkedQueue<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 5; i++) {
+                    try {
+                        placed.add(checkout(9003L).getOrderId());
+                    } catch (IllegalArgumentException soldOut) {
+                        // Expected once the 30 portions are gone
+                        rejected.add(soldOut.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        // 30 portions, 2 per order
+        assertThat(placed).hasSize(15);
+        assertThat(rejected).isNotEmpty().containsOnly("Not enough stock left for: Rice bowl (0 left)");
+        assertThat(jdbcTemplate.queryForMap("SELECT stock_remaining, is_available FROM menu_item WHERE item_id = 9003"))
+                .containsEntry("stock_remaining", 0).containsEntry("is_available", false);
+
+        // Cancelling gives the portions back and the item comes back on sale
+        orderService.cancelOrder(placed.peek(), "Changed my mind");
+        assertThat(jdbcTemplate.queryForMap("SELECT stock_remaining, is_available FROM menu_item WHERE item_id = 9003"))
+                .containsEntry("stock_remaining", 2).containsEntry("is_available", true);
+    }
+
+    @Test
+    void hotItemReservationsVersusDatabaseDecrements() throws Exception {
+        double databasePerSecond = runConcurrently(9004L);
+        double hotPerSecond = runConcurrently(9005L);
+        hotStock.flush();
+
+        System.out.printf("Checkouts of one stock-tracked item: %.1f orders/s reserved in memory, "
+                + "%.1f orders/s decremented in the database (%d threads)%n",
+                hotPerSecond, databasePerSecond, THREADS);
+
+        // 2 portions per order
+        int sold = 2 * THREADS * ORDERS_PER_THREAD;
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_remaining FROM menu_item WHERE item_id = 9004",
+                Integer.class)).isEqualTo(1000 - sold);
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_remaining FROM menu_item WHERE item_id = 9005",
+                Integer.class)).isEqualTo(1000 - sold);
+        assertThat(hotStock.getAvailable(9005L)).isEqualTo(1000 - sold);
+    }
+
+    @Test
+    void hotItemStockIsRebuiltFromOrdersAfterRestart() {
+        checkout(9006L);
+        Long cancelled = checkout(9006L).getOrderId();
+        checkout(9006L);
+        orderService.cancelOrder(cancelled, "Changed my mind");
+        assertThat(hotStock.getAvailable(9006L)).isEqualTo(6);
+
+        // Nothing was flushed, as after a crash: the row still has the full
+        // stock plus the cancelled portions, and the orders are the only record
+        jdbcTemplate.update("UPDATE menu_item SET stock_remaining = 12 WHERE item_id = 9006");
+        hotStock.onStartup();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_remaining FROM menu_item WHERE item_id = 9006",
+                Integer.class)).isEqualTo(6);
+        assertThat(hotStock.getAvailable(9006L)).isEqualTo(6);
+
+        // The rebuilt counter is what sells out, and the rejection names the item
+        for (int i = 0; i < 3; i++) {
+            checkout(9006L);
+        }
+        assertThatThrownBy(() -> checkout(9006L)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock left for: Rice bowl (0 left)");
+    }
+
+    @Test
+    void switchedOffItemIsNotAvailableRatherThanSoldOut() {
+        jdbcTemplate.update("UPDATE menu_item SET is_available = FALSE WHERE item_id = 9009");
+        assertThatThrownBy(() -> checkout(9009L)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Rice bowl is currently not available");
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_remaining FROM menu_item WHERE item_id = 9009",
+                Integer.class)).isEqualTo(10);
+
+        // Switched back on, it sells until it runs out
+        jdbcTemplate.update("UPDATE menu_item SET is_available = TRUE WHERE item_id = 9009");
+        for (int i = 0; i < 5; i++) {
+            checkout(9009L);
+        }
+        assertThatThrownBy(() -> checkout(9009L)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock left for: Rice bowl (0 left)");
+    }
+
+    @Test
+    void concurrentPreOrdersNeverOverbookAPickupSlot() throws Exception {
+        Date pickupTime = Timestamp.valueOf(LocalDate.now().plusDays(1).atTime(12, 5));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<OrderEntity> admitted = new ConcurrentLinkedQueue<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 5; i++) {
+                    try {
+                        admitted.add(checkout(9007L, pickupTime));
+                    } catch (IllegalStateException slotFull) {
+                        // Expected once the 10 places are taken
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertThat(admitted).hasSize(10);
+        assertThat(admitted).allSatisfy(order -> {
+            assertThat(order.getStatus()).isEqualTo(OrderEntity.Status.SCHEDULED);
+            assertThat(order.getQueueNumber()).isNull();
+            assertThat(order.getPickupTime()).isEqualTo(Timestamp.valueOf(LocalDate.now().plusDays(1).atTime(12, 0)));
+        });
+
+        // A cancellation frees its place in the slot
+        orderService.cancelOrder(admitted.peek().getOrderId(), "Changed my mind");
+        checkout(9007L, pickupTime);
+
+        // Once the slot starts, the scheduled orders join the kitchen queue
+        jdbcTemplate.update("UPDATE orders SET pickup_time = ? WHERE shop_id = 9007",
+                new Timestamp(System.currentTimeMillis() - 60_000));
+        assertThat(orderService.releaseDueOrders()).isEqualTo(10);
+        assertThat(jdbcTemplate.queryForList("SELECT queue_number FROM orders WHERE shop_id = 9007 "
+                + "AND status = 'PENDING' ORDER BY queue_number", Integer.class))
+                .containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    }
+
+    @Test
+    void menuETagFollowsStockChangesAndShopETagFollowsTheShop() {
+        String shop = shopService.getShopETag(9008L);
+        String menu = shopService.getMenuETag(9008L);
+
+        // Orders of items without a stock limit leave the menu as it was
+        checkout(9008L);
+        assertThat(shopService.getMenuETag(9008L)).isEqualTo(menu);
+
+        menuItemService.updateDailyStock(9008L, 20, false);
+        String stocked = shopService.getMenuETag(9008L);
+        assertThat(stocked).isNotEqualTo(menu);
+
+        // Remaining stock is shown on the menu, so taking and returning it counts
+        Long orderId = checkout(9008L).getOrderId();
+        String ordered = shopService.getMenuETag(9008L);
+        assertThat(ordered).isNotEqualTo(stocked);
+        orderService.cancelOrder(orderId, "Changed my mind");
+        assertThat(shopService.getMenuETag(9008L)).isNotEqualTo(ordered);
+
+        assertThat(shopService.getShopETag(9008L)).isEqualTo(shop);
+        shopService.toggleShopOpenStatus(9008L);
+        assertThat(shopService.getShopETag(9008L)).isNotEqualTo(shop);
+        shopService.toggleShopOpenStatus(9008L);
+    }
+
+    @Test
+    void menuChangesSinceARevisionIncludeOnlyChangedAndDeletedItems() {
+        long revision = menuItemService.getMenuChanges(9008L, 0).getRevision();
+
+        MenuItemEntity special = new MenuItemEntity();
+        special.setItemName("Special");
+        special.setPrice(new BigDecimal("80.00"));
+        Long specialId = menuItemService.createMenuItem(special, 9008L).getItemId();
+
+        MenuChangesResponse added = menuItemService.getMenuChanges(9008L, revision);
+        assertThat(added.getRevision()).isGreaterThan(revision);
+        assertThat(added.getChanged()).extracting(MenuItemResponse::getItemId).containsExactly(specialId);
+        assertThat(added.getDeleted()).isEmpty();
+
+        menuItemService.deleteMenuItem(specialId);
+        MenuChangesResponse deleted = menuItemService.getMenuChanges(9008L, added.getRevision());
+        assertThat(deleted.getChanged()).isEmpty();
+        assertThat(deleted.getDeleted()).containsExactly(specialId);
+
+        assertThat(menuItemService.getMenuChanges(9008L, deleted.getRevision()).getChanged()).isEmpty();
+    }
+
+    private double runConcurrently(long shopId) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    checkout(shopId);
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return THREADS * ORDERS_PER_THREAD / seconds(startNanos);
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000_000.0;
+    }
+}
@@ -0,0 +1,279 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wildeats.onlinecanteen.entity.OrderEntity;
+import com.wildeats.onlinecanteen.entity.OrderEntity.Status;
+import com.wildeats.onlinecanteen.entity.ShopEntity;
+import com.wildeats.onlinecanteen.event.OrderStatusBatchChangedEvent;
+import com.wildeats.onlinecanteen.event.OrderStatusChangedEvent;
+
+/**
+ * Ready-time estimates from the in-memory queue model of each shop
+ *
+ * Sequences of placed and served orders are fed to the service as events and
+ * the orders ahead and service intervals it derives are checked: the waiting
+ * set, the ring buffer of recent serves and its reset after an idle period,
+ * the seeding of a shop's model from the database on first use, and that
+ * changes only arrive once their transaction commits. Each test uses its own
+ * shop, since the models live as long as the service.
+ */
+@SpringJUnitConfig(OrderEtaServiceTests.Config.class)
+@TestPropertySource(properties = {
+        "orders.eta.default-prep-seconds=300",
+        "orders.eta.window-size=4",
+        "orders.eta.max-gap-minutes=30"
+})
+class OrderEtaServiceTests {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(300);
+
+    @Configuration
+    @EnableTransactionManagement
+    @Import(OrderEtaService.class)
+    static class Config {
+        // Registers transaction synchronizations without any resource behind them
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                }
+            };
+        }
+    }
+
+    @MockitoBean
+    private OrderService orderService;
+
+    @Autowired
+    private OrderEtaService etaService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static OrderEntity order(long orderId, long shopId, Status status) {
+        ShopEntity shop = new ShopEntity();
+        shop.setShopId(shopId);
+        OrderEntity order = new OrderEntity();
+        order.setOrderId(orderId);
+        order.setShop(shop);
+        order.setStatus(status);
+        return order;
+    }
+
+    private void placed(long shopId, long... orderIds) {
+        for (long orderId : orderIds) {
+            etaService.onOrderStatusChanged(new OrderStatusChangedEvent(orderId, shopId, null, Status.PENDING));
+        }
+    }
+
+    private void change(long shopId, long orderId, Status from, Status to, long at) {
+        etaService.onOrderStatusChanged(new OrderStatusChangedEvent(orderId, shopId, from, to, new Date(at)));
+    }
+
+    private long ahead(long shopId, long orderId) {
+        return etaService.countOrdersAhead(order(orderId, shopId, Status.PENDING));
+    }
+
+    @Test
+    void placedAndServedOrdersMoveTheQueue() {
+        placed(1, 101, 102, 103, 104);
+        assertThat(ahead(1, 101)).isZero();
+        assertThat(ahead(1, 104)).isEqualTo(3);
+
+        long now = System.currentTimeMillis();
+        change(1, 101, Status.PENDING, Status.PREPARING, now);
+        assertThat(ahead(1, 104)).isEqualTo(3);
+        change(1, 101, Status.PREPARING, Status.READY, now);
+        change(1, 102, Status.PENDING, Status.CANCELLED, now);
+        assertThat(ahead(1, 104)).isEqualTo(1);
+        assertThat(ahead(1, 103)).isZero();
+
+        // Orders that are ready, done or cancelled are not waiting for anything
+        assertThat(etaService.countOrdersAhead(order(101, 1, Status.READY))).isZero();
+        assertThat(etaService.estimateReadyTime(order(101, 1, Status.COMPLETED))).isNull();
+        assertThat(etaService.estimateReadyTime(order(102, 1, Status.CANCELLED))).isNull();
+    }
+
+    @Test
+    void releasedPreOrdersQueueByTheirQueueNumber() {
+        // 1001 was booked for a pickup slot before 1002 and 1003 were placed,
+        // and draws its queue number only when the slot is released
+        etaService.onOrderStatusChanged(new OrderStatusChangedEvent(1002L, 10L, null, Status.PENDING, 1));
+        etaService.onOrderStatusChanged(new OrderStatusChangedEvent(1003L, 10L, null, Status.PENDING, 2));
+        etaService.onOrderStatusBatchChanged(new OrderStatusBatchChangedEvent(10L, List.of(
+                new OrderStatusChangedEvent(1001L, 10L, Status.SCHEDULED, Status.PENDING, 3))));
+
+        assertThat(ahead(10, 1002)).isZero();
+        assertThat(ahead(10, 1001)).isEqualTo(2);
+
+        // Moving on to PREPARING keeps the order's place
+        change(10, 1001, Status.PENDING, Status.PREPARING, System.currentTimeMillis());
+        assertThat(ahead(10, 1001)).isEqualTo(2);
+        assertThat(ahead(10, 1003)).isEqualTo(1);
+    }
+
+    @Test
+    void estimateIsTheOrdersAheadTimesTheServiceInterval() {
+        placed(2, 201, 202, 203);
+        // A single serve says nothing about the pace yet
+        assertThat(etaService.getServiceIntervalMillis(2L)).isEqualTo(DEFAULT_INTERVAL);
+
+        long start = System.currentTimeMillis() - 10 * MINUTE;
+        change(2, 201, Status.PENDING, Status.READY, start);
+        assertThat(etaService.getServiceIntervalMillis(2L)).isEqualTo(DEFAULT_INTERVAL);
+        change(2, 202, Status.PENDING, Status.READY, start + 2 * MINUTE);
+        assertThat(etaService.getServiceIntervalMillis(2L)).isEqualTo(2 * MINUTE);
+
+        long before = System.currentTimeMillis();
+        Date estimate = etaService.estimateReadyTime(order(203, 2, Status.PENDING));
+        long after = System.currentTimeMillis();
+        assertThat(estimate.getTime()).isBetween(before + 2 * MINUTE, after + 2 * MINUTE);
+
+        // Three orders ahead: ready after the fourth interval
+        placed(2, 204, 205, 206);
+        before = System.currentTimeMillis();
+        estimate = etaService.estimateReadyTime(order(206, 2, Status.PENDING));
+        after = System.currentTimeMillis();
+        assertThat(estimate.getTime()).isBetween(before + 8 * MINUTE, after + 8 * MINUTE);
+    }
+
+    @Test
+    void ringBufferKeepsOnlyTheMostRecentServes() {
+        long start = System.currentTimeMillis() - 20 * MINUTE;
+        // Slow at first: one order every 4 minutes
+        for (int i = 0; i < 4; i++) {
+            change(3, 300 + i, Status.PREPARING, Status.READY, start + i * 4 * MINUTE);
+        }
+        assertThat(etaService.getServiceIntervalMillis(3L)).isEqualTo(4 * MINUTE);
+
+        // Then one a minute; the window of 4 forgets the slow serves
+        long fast = start + 12 * MINUTE;
+        for (int i = 1; i <= 4; i++) {
+            change(3, 310 + i, Status.PREPARING, Status.READY, fast + i * MINUTE);
+        }
+        assertThat(etaService.getServiceIntervalMillis(3L)).isEqualTo(MINUTE);
+    }
+
+    @Test
+    void completingAReadyOrderIsNotServedTwice() {
+        long start = System.currentTimeMillis() - 10 * MINUTE;
+        change(4, 401, Status.PREPARING, Status.READY, start);
+        change(4, 401, Status.READY, Status.COMPLETED, start + MINUTE);
+        change(4, 402, Status.PREPARING, Status.READY, start + 4 * MINUTE);
+        assertThat(etaService.getServiceIntervalMillis(4L)).isEqualTo(4 * MINUTE);
+
+        // Completed straight from PREPARING, it was served at completion
+        change(4, 403, Status.PREPARING, Status.COMPLETED, start + 6 * MINUTE);
+        assertThat(etaService.getServiceIntervalMillis(4L)).isEqualTo(3 * MINUTE);
+    }
+
+    @Test
+    void idlePeriodStartsAFreshWindow() {
+        long start = System.currentTimeMillis() - 3 * 60 * MINUTE;
+        change(5, 501, Status.PREPARING, Status.READY, start);
+        change(5, 502, Status.PREPARING, Status.READY, start + MINUTE);
+        assertThat(etaService.getServiceIntervalMillis(5L)).isEqualTo(MINUTE);
+
+        // 31 minutes later the old pace no longer applies
+        long resumed = start + 32 * MINUTE;
+        change(5, 503, Status.PREPARING, Status.READY, resumed);
+        assertThat(etaService.getServiceIntervalMillis(5L)).isEqualTo(DEFAULT_INTERVAL);
+        change(5, 504, Status.PREPARING, Status.READY, resumed + 3 * MINUTE);
+        assertThat(etaService.getServiceIntervalMillis(5L)).isEqualTo(3 * MINUTE);
+    }
+
+    @Test
+    void modelIsSeededOnceFromTheActiveOrders() {
+        when(orderService.getActiveOrdersByShopId(6L)).thenReturn(List.of(
+                order(601, 6, Status.PREPARING), order(602, 6, Status.PENDING), order(603, 6, Status.READY)));
+
+        assertThat(ahead(6, 604)).isEqualTo(2);
+        verify(orderService, never()).getActiveOrdersByShopId(7L);
+
+        // Later changes update the seeded model instead of reading it again
+        placed(6, 604, 605);
+        change(6, 601, Status.PREPARING, Status.READY, System.currentTimeMillis());
+        assertThat(ahead(6, 605)).isEqualTo(2);
+        etaService.getServiceIntervalMillis(6L);
+        verify(orderService, times(1)).getActiveOrdersByShopId(6L);
+    }
+
+    @Test
+    void bulkChangesAreAppliedTogether() {
+        placed(8, 801, 802, 803);
+        long start = System.currentTimeMillis() - 5 * MINUTE;
+        etaService.onOrderStatusBatchChanged(new OrderStatusBatchChangedEvent(8L, List.of(
+                new OrderStatusChangedEvent(801L, 8L, Status.PENDING, Status.READY, new Date(start)),
+                new OrderStatusChangedEvent(802L, 8L, Status.PENDING, Status.READY, new Date(start + MINUTE)))));
+
+        assertThat(ahead(8, 803)).isZero();
+        assertThat(etaService.getServiceIntervalMillis(8L)).isEqualTo(MINUTE);
+    }
+
+    @Test
+    void changesArriveOnlyOnceTheirTransactionCommits() {
+        placed(9, 901);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(902L, 9L, null, Status.PENDING));
+            assertThat(ahead(9, 903)).isEqualTo(1);
+        });
+        assertThat(ahead(9, 903)).isEqualTo(2);
+
+        transaction.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new OrderStatusBatchChangedEvent(9L, List.of(
+                    new OrderStatusChangedEvent(901L, 9L, Status.PENDING, Status.CANCELLED),
+                    new OrderStatusChangedEvent(902L, 9L, Status.PENDING, Status.CANCELLED))));
+            status.setRollbackOnly();
+        });
+        assertThat(ahead(9, 903)).isEqualTo(2);
+
+        // Outside of a transaction a change applies right away
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(901L, 9L, Status.PENDING, Status.CANCELLED));
+        assertThat(ahead(9, 903)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,169 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The password hashing pool on its own, with a low BCrypt cost and with an
+ * encoder that blocks until released
+ */
+class PasswordHashingServiceTests {
+
+    @Test
+    void hashesVerifiesAndDetectsOtherCosts() {
+        PasswordHashingService hasher = new PasswordHashingService(new BCryptPasswordEncoder(5),
+                new SimpleMeterRegistry(), 5, 2, 4, 5000);
+        try {
+            String hash = hasher.hash("secret");
+            assertThat(hash).startsWith("$2a$05$");
+            assertThat(hasher.matches("secret", hash)).isTrue();
+            assertThat(hasher.matches("wrong", hash)).isFalse();
+
+            assertThat(hasher.needsRehash(hash)).isFalse();
+            assertThat(hasher.needsRehash(new BCryptPasswordEncoder(4).encode("secret"))).isTrue();
+            assertThat(hasher.needsRehash("not-a-bcrypt-hash")).isFalse();
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void rehashesInBackground() throws Exception {
+        PasswordHashingService hasher = new PasswordHashingService(new BCryptPasswordEncoder(5),
+                new SimpleMeterRegistry(), 5, 1, 1, 5000);
+        try {
+            CompletableFuture<String> rehashed = new CompletableFuture<>();
+            hasher.hashInBackground("secret", rehashed::complete);
+
+            String hash = rehashed.get(5, TimeUnit.SECONDS);
+            assertThat(hasher.matches("secret", hash)).isTrue();
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void shedsWorkWhenQueueIsFull() throws Exception {
+        BlockingEncoder encoder = new BlockingEncoder();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // One worker, one queued task
+        PasswordHashingService hasher = new PasswordHashingService(encoder, registry, 4, 1, 1, 5000);
+        try {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.hash("a"));
+            assertThat(encoder.started.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.hash("b"));
+            while (registry.get("executor.queued").gauge().value() < 1) {
+                Thread.sleep(5);
+            }
+
+            assertThatThrownBy(() -> hasher.hash("c")).isInstanceOf(PasswordHashingService.BusyException.class);
+            assertThat(registry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+
+            encoder.release.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash-a");
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash-b");
+        } finally {
+            encoder.release.countDown();
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void shedsWorkThatWaitsTooLong() {
+        BlockingEncoder encoder = new BlockingEncoder();
+        PasswordHashingService hasher = new PasswordHashingService(encoder, new SimpleMeterRegistry(), 4, 1, 4,
+                100);
+        try {
+            assertThatThrownBy(() -> hasher.matches("a", "hash-a"))
+                    .isInstanceOf(PasswordHashingService.BusyException.class);
+        } finally {
+            encoder.release.countDown();
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void unknownEmailsTakeAsLongAsVerifications() {
+        PasswordHashingService hasher = new PasswordHashingService(new SlowEncoder(), new SimpleMeterRegistry(), 4,
+                2, 4, 5000);
+        try {
+            for (int i = 0; i < 40; i++) {
+                hasher.matches("a", "hash-b");
+            }
+
+            long start = System.nanoTime();
+            hasher.imitateMismatch();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertThat(elapsedMillis).isBetween(SlowEncoder.MILLIS - 5, SlowEncoder.MILLIS * 10);
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+    // Blocks every call after the first until released; the calibration hash
+    // in the constructor passes straight through
+    private static class BlockingEncoder implements PasswordEncoder {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private boolean calibrated;
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (!calibrated) {
+                calibrated = true;
+                return "hash-" + rawPassword;
+            }
+            block();
+            return "hash-" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            block();
+            return encodedPassword.equals("hash-" + rawPassword);
+        }
+
+        private void block() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class SlowEncoder implements PasswordEncoder {
+        static final long MILLIS = 30;
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            pause();
+            return "hash-" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            pause();
+            return encodedPassword.equals("hash-" + rawPassword);
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.wildeats.onlinecanteen.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wildeats.onlinecanteen.security.TokenRevocationStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Rotation of refresh tokens and detection of reused ones
+ *
+ * Runs without a surrounding test transaction, like the refresh endpoint, so
+ * every step commits on its own.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ RefreshTokenService.class, TokenRevocationStore.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refreshtokens;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+class RefreshTokenServiceTests {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO users (user_id, email, password) VALUES (1, 'user@test', 'x')");
+    }
+
+    @AfterEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM refresh_token");
+        jdbcTemplate.update("DELETE FROM user_token_cutoff");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void tokensAreStoredHashed() {
+        String token = refreshTokenService.issue(1L);
+
+        List<String> hashes = jdbcTemplate.queryForList("SELECT token_hash FROM refresh_token", String.class);
+        assertThat(hashes).hasSize(1);
+        assertThat(hashes.get(0)).hasSize(64).isNotEqualTo(token);
+    }
+
+    @Test
+    void eachTokenCanBeUsedOnce() {
+        String first = refreshTokenService.issue(1L);
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(first);
+        assertThat(rotation.getUserId()).isEqualTo(1L);
+
+        String second = rotation.getRefreshToken();
+        assertThat(second).isNotEqualTo(first);
+        String third = refreshTokenService.rotate(second).getRefreshToken();
+
+        // Replaying an old token revokes the whole family, including the newest,
+        // and the access tokens of the user
+        assertThatThrownBy(() -> refreshTokenService.rotate(first)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> refreshTokenService.rotate(third)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_token_cutoff WHERE user_id = 1",
+                Integer.class)).isEqualTo(1);
+
+        // Other logins are unaffected
+        String other = refreshTokenService.issue(1L);
+        assertThat(refreshTokenService.rotate(other).getRefreshToken()).isNotBlank();
+    }
+
+    @Test
+    void concurrentRefreshesWithOneTokenRevokeTheFamily() throws Exception {
+        String token = refreshTokenService.issue(1L);
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Callable<String> refresh = () -> {
+                    start.await();
+                    try {
+                        return refreshTokenService.rotate(token).getRefreshToken();
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                };
+                results.add(pool.submit(refresh));
+            }
+            start.countDown();
+
+            List<String> succeeded = new ArrayList<>();
+            for (Future<String> result : results) {
+                if (result.get() != null) {
+                    succeeded.add(result.get());
+                }
+            }
+            assertThat(succeeded).hasSize(1);
+
+            // The others count as reuse, so the winner's token is revoked too
+            assertThatThrownBy(() -> refreshTokenService.rotate(succeeded.get(0)))
+                    .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredRevokedAndUnknownTokensAreRejected() {
+        String expired = refreshTokenService.issue(1L);
+        jdbcTemplate.update("UPDATE refresh_token SET expires_at = DATEADD('DAY', -1, CURRENT_TIMESTAMP)");
+        assertThatThrownBy(() -> refreshTokenService.rotate(expired)).isInstanceOf(IllegalArgumentException.class);
+
+        String signedOut = refreshTokenService.issue(1L);
+        assertThat(refreshTokenService.revoke(signedOut)).isTrue();
+        assertThatThrownBy(() -> refreshTokenService.rotate(signedOut)).isInstanceOf(IllegalArgumentException.class);
+
+        String passwordChanged = refreshTokenService.issue(1L);
+        refreshTokenService.revokeAllForUser(1L);
+        assertThatThrownBy(() -> refreshTokenService.rotate(passwordChanged))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> refreshTokenService.rotate("unknown")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void purgeDeletesExpiredTokens() {
+        refreshTokenService.issue(1L);
+        refreshTokenService.issue(1L);
+        jdbcTemplate.update("UPDATE refresh_token SET expires_at = DATEADD('DAY', -1, CURRENT_TIMESTAMP) "
+                + "WHERE id = (SELECT MIN(id) FROM refresh_token)");
+
+        refreshTokenService.purge();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM refresh_token", Integer.class)).isEqualTo(1);
+    }
+}
@@ -40,6 +40,7 @@ export const AuthProvider = ({ children }) => {
             role: user.role.toLowerCase(), // Primary role (CUSTOMER, SELLER, ADMIN)
             roles: user.roles || [user.role], // All roles array
             token: data.token,
+            refreshToken: data.refreshToken,
         };
     };
 
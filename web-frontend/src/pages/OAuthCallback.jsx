@@ -20,6 +20,7 @@ const OAuthCallback = () => {
         const handleOAuthCallback = () => {
             // Extract parameters from URL
             const token = searchParams.get('token');
+            const refreshToken = searchParams.get('refreshToken');
             const userId = searchParams.get('userId');
             const email = searchParams.get('email');
             const firstName = searchParams.get('firstName');
@@ -47,6 +48,7 @@ const OAuthCallback = () => {
                 role: role?.toLowerCase() || 'customer',
                 roles,
                 token,
+                refreshToken,
             };
 
             // Save to localStorage
@@ -21,10 +21,47 @@ axiosInstance.interceptors.request.use(
     (error) => Promise.reject(error)
 );
 
-// Response interceptor to handle 401 errors
+// One refresh at a time: a refresh token can be used only once, so parallel
+// requests failing with 401 wait for the same refresh
+let refreshInFlight = null;
+
+const refreshStoredTokens = () => {
+    if (!refreshInFlight) {
+        const user = JSON.parse(localStorage.getItem('currentUser') || '{}');
+        refreshInFlight = axios
+            .post(`${API_BASE_URL}/auth/refresh-token`, { refreshToken: user.refreshToken })
+            .then((response) => {
+                const { token, refreshToken } = response.data;
+                localStorage.setItem('currentUser', JSON.stringify({ ...user, token, refreshToken }));
+                return token;
+            })
+            .finally(() => {
+                refreshInFlight = null;
+            });
+    }
+    return refreshInFlight;
+};
+
+// Response interceptor to handle 401 errors: refresh the access token once,
+// and sign out if that fails
 axiosInstance.interceptors.response.use(
     (response) => response,
-    (error) => {
+    async (error) => {
+        const original = error.config;
+        const user = JSON.parse(localStorage.getItem('currentUser') || '{}');
+
+        if (error.response?.status === 401 && user.refreshToken && original && !original._retried
+            && !original.url?.startsWith('/auth/')) {
+            original._retried = true;
+            try {
+                const token = await refreshStoredTokens();
+                original.headers.Authorization = `Bearer ${token}`;
+                return axiosInstance(original);
+            } catch {
+                // Fall through to sign out
+            }
+        }
+
         if (error.response?.status === 401) {
             localStorage.removeItem('currentUser');
             window.location.href = '/login';
@@ -56,11 +93,12 @@ export const getAuthHeader = () => {
 export const login = async (email, password) => {
     try {
         const response = await axiosInstance.post('/auth/login', { email, password });
-        const { token, user } = response.data;
+        const { token, refreshToken, user } = response.data;
 
         return {
             ...user,
             token,
+            refreshToken,
             role: user.role.toLowerCase(),
         };
     } catch (error) {
@@ -87,11 +125,12 @@ export const register = async (firstName, lastName, email, password, confirmPass
             password,
             confirmPassword,
         });
-        const { token, user } = response.data;
+        const { token, refreshToken, user } = response.data;
 
         return {
             ...user,
             token,
+            refreshToken,
             role: user.role.toLowerCase(),
         };
     } catch (error) {
@@ -114,7 +153,8 @@ export const register = async (firstName, lastName, email, password, confirmPass
  */
 export const logout = async () => {
     try {
-        await axiosInstance.post('/auth/logout');
+        const user = JSON.parse(localStorage.getItem('currentUser') || '{}');
+        await axiosInstance.post('/auth/logout', { refreshToken: user.refreshToken });
     } catch (error) {
         console.error('Logout error:', error);
     } finally {
@@ -136,12 +176,11 @@ export const verifyToken = async (token) => {
 };
 
 /**
- * Refresh JWT token
+ * Refresh JWT token with the stored refresh token
  */
-export const refreshToken = async (token) => {
+export const refreshToken = async () => {
     try {
-        const response = await axiosInstance.post('/auth/refresh-token', { token });
-        return response.data.token;
+        return await refreshStoredTokens();
     } catch (error) {
         console.error('Token refresh error:', error);
         throw error;